@@ -75,8 +75,10 @@ import org.apache.wicket.request.cycle.RequestCycleListenerCollection;
 import org.apache.wicket.request.mapper.CompoundRequestMapper;
 import org.apache.wicket.request.mapper.ICompoundRequestMapper;
 import org.apache.wicket.request.mapper.IMapperContext;
+import org.apache.wicket.request.resource.ResourceManifest;
 import org.apache.wicket.request.resource.ResourceReferenceRegistry;
 import org.apache.wicket.resource.ResourceAggregator;
+import org.apache.wicket.response.ResponseBufferPool;
 import org.apache.wicket.response.filter.EmptySrcAttributeCheckFilter;
 import org.apache.wicket.session.DefaultPageFactory;
 import org.apache.wicket.session.ISessionStore;
@@ -195,6 +197,9 @@ public abstract class Application implements UnboundListener, IEventSink
 	/** page renderer provider */
 	private IPageRendererProvider pageRendererProvider;
 
+	/** the pool of response buffers */
+	private volatile ResponseBufferPool responseBufferPool = new ResponseBufferPool();
+
 	/** request cycle provider */
 	private IRequestCycleProvider requestCycleProvider;
 
@@ -663,6 +668,20 @@ public abstract class Application implements UnboundListener, IEventSink
 
 		onDestroy();
 
+		// keep the data derived from static resources for the next start
+		final ResourceManifest resourceManifest = getResourceSettings().getResourceManifest();
+		if (resourceManifest != null)
+		{
+			try
+			{
+				resourceManifest.store();
+			}
+			catch (IOException e)
+			{
+				log.error("Unable to store resource manifest " + resourceManifest.getFile(), e);
+			}
+		}
+
 		destroyInitializers();
 
 		internalGetPageManager().destroy();
@@ -1449,6 +1468,25 @@ public abstract class Application implements UnboundListener, IEventSink
 		this.pageRendererProvider = pageRendererProvider;
 	}
 
+	/**
+	 * @return The pool of the buffers responses collect their content in
+	 */
+	public final ResponseBufferPool getResponseBufferPool()
+	{
+		return responseBufferPool;
+	}
+
+	/**
+	 * Sets the pool of the buffers responses collect their content in, e.g. to change its limits
+	 * 
+	 * @param responseBufferPool
+	 */
+	public final void setResponseBufferPool(final ResponseBufferPool responseBufferPool)
+	{
+		Args.notNull(responseBufferPool, "responseBufferPool");
+		this.responseBufferPool = responseBufferPool;
+	}
+
 
 	// /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	// /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -976,6 +976,9 @@ public abstract class Component
 
 			getApplication().getComponentPreOnBeforeRenderListeners().onBeforeRender(this);
 
+			// Decide whether the output is replayed from the cache, see ICacheableComponent
+			OutputCacheSupport.beforeRender(this);
+
 			onBeforeRender();
 			getApplication().getComponentPostOnBeforeRenderListeners().onBeforeRender(this);
 
@@ -2366,9 +2369,23 @@ public abstract class Component
 
 			try
 			{
-				notifyBehaviorsComponentBeforeRender();
-				onRender();
-				notifyBehaviorsComponentRendered();
+				// Replay the output from the cache or record it, see ICacheableComponent
+				if (OutputCacheSupport.replay(this) == false)
+				{
+					final Response original = OutputCacheSupport.startRecording(this);
+					boolean completed = false;
+					try
+					{
+						notifyBehaviorsComponentBeforeRender();
+						onRender();
+						notifyBehaviorsComponentRendered();
+						completed = true;
+					}
+					finally
+					{
+						OutputCacheSupport.stopRecording(this, original, completed);
+					}
+				}
 
 				// Component has been rendered
 				rendered();
@@ -2666,7 +2683,14 @@ public abstract class Component
 				log.debug("renderHead: " + toString(false));
 			}
 
-			IHeaderResponse response = container.getHeaderResponse();
+			// The header items of cached output are replayed by the cacheable component
+			if (OutputCacheSupport.renderHead(this, container))
+			{
+				return;
+			}
+
+			IHeaderResponse response = OutputCacheSupport.getHeaderResponse(this,
+				container.getHeaderResponse());
 
 			// Allow component to contribute
 			if (response.wasRendered(this) == false)
@@ -27,6 +27,8 @@ import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
 import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.compress.CompressingSerializer;
+import org.apache.wicket.serialize.compress.Compression;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.util.lang.Bytes;
 
@@ -58,7 +60,8 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 		if (dataStore.canBeAsynchronous())
 		{
 			int capacity = storeSettings.getAsynchronousQueueCapacity();
-			dataStore = new AsynchronousDataStore(dataStore, capacity);
+			int writerThreads = storeSettings.getAsynchronousWriterThreads();
+			dataStore = new AsynchronousDataStore(dataStore, capacity, writerThreads);
 		}
 
 		IPageStore pageStore = newPageStore(dataStore);
@@ -69,8 +72,29 @@ public class DefaultPageManagerProvider implements IPageManagerProvider
 	protected IPageStore newPageStore(IDataStore dataStore)
 	{
 		int inmemoryCacheSize = getStoreSettings().getInmemoryCacheSize();
-		ISerializer pageSerializer = application.getFrameworkSettings().getSerializer();
-		return new DefaultPageStore(pageSerializer, dataStore, inmemoryCacheSize);
+		ISerializer serializer = application.getFrameworkSettings().getSerializer();
+		Compression compression = getStoreSettings().getPageCompression();
+		return new DefaultPageStore(newPageSerializer(serializer, compression), dataStore,
+			inmemoryCacheSize);
+	}
+
+	/**
+	 * Creates the serializer of the pages. The serializer is decorated even without compression,
+	 * so pages stored compressed before the compression has been switched off can still be read;
+	 * uncompressed pages are stored as the serializer produces them. Override this method to keep
+	 * the serializer, e.g. to monitor its compression ratio and the time spent compressing.
+	 * 
+	 * @param serializer
+	 *            the serializer of the application
+	 * @param compression
+	 *            the compression of the pages
+	 * @return the serializer of the pages
+	 * @see IStoreSettings#setPageCompression(Compression)
+	 */
+	protected CompressingSerializer newPageSerializer(ISerializer serializer,
+		Compression compression)
+	{
+		return new CompressingSerializer(serializer, compression);
 	}
 
 	protected IDataStore newDataStore()
@@ -32,6 +32,7 @@ import org.apache.wicket.markup.MarkupFactory;
 import org.apache.wicket.markup.MarkupNotFoundException;
 import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.MarkupType;
+import org.apache.wicket.markup.RawMarkup;
 import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.border.Border;
 import org.apache.wicket.markup.html.internal.InlineEnclosure;
@@ -1491,7 +1492,15 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 		else
 		{
 			// Render as raw markup
-			getResponse().write(element.toCharSequence());
+			if (element instanceof RawMarkup)
+			{
+				// lets the response write the cached bytes
+				getResponse().write((RawMarkup)element);
+			}
+			else
+			{
+				getResponse().write(element.toCharSequence());
+			}
 			return true;
 		}
 
@@ -1601,6 +1610,15 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 				break;
 			}
 
+			// Static markup neither needs a component nor moves the stream
+			final MarkupElement element = markupStream.get();
+			if (element instanceof RawMarkup)
+			{
+				getResponse().write((RawMarkup)element);
+				markupStream.next();
+				continue;
+			}
+
 			// Remember where we are
 			final int index = markupStream.getCurrentIndex();
 
@@ -1717,6 +1735,12 @@ public abstract class MarkupContainer extends Component implements Iterable<Comp
 	{
 		super.onBeforeRenderChildren();
 
+		// The children are not rendered if the output is replayed from the cache
+		if (OutputCacheSupport.isReplaying(this))
+		{
+			return;
+		}
+
 		// We need to copy the children list because the children components can
 		// modify the hierarchy in their onBeforeRender.
 		Component[] children = copyChildren();
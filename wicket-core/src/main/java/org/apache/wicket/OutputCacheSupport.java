@@ -0,0 +1,397 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.markup.html.DecoratingHeaderResponse;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.markup.html.internal.HtmlHeaderContainer;
+import org.apache.wicket.markup.html.outputcache.CachedOutput;
+import org.apache.wicket.markup.html.outputcache.ComponentOutputCache;
+import org.apache.wicket.markup.html.outputcache.ICacheableComponent;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.resource.header.HeaderItem;
+import org.apache.wicket.response.StringResponse;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays and records the output of {@link ICacheableComponent}s while rendering. Whether a
+ * component's output is replayed or recorded is decided before it is rendered and kept in the
+ * request cycle until the end of the request.
+ * 
+ * @see ComponentOutputCache
+ */
+final class OutputCacheSupport
+{
+	private static final Logger log = LoggerFactory.getLogger(OutputCacheSupport.class);
+
+	/** The states of the cacheable components rendered by the request */
+	private static final MetaDataKey<Map<Component, State>> STATES = new MetaDataKey<Map<Component, State>>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Construct.
+	 */
+	private OutputCacheSupport()
+	{
+	}
+
+	/**
+	 * Decides whether the output of the component is replayed or recorded. Called before the
+	 * component is prepared for render.
+	 * 
+	 * @param component
+	 */
+	static void beforeRender(final Component component)
+	{
+		if ((component instanceof ICacheableComponent) == false)
+		{
+			return;
+		}
+
+		final RequestCycle requestCycle = component.getRequestCycle();
+		Map<Component, State> states = requestCycle.getMetaData(STATES);
+		if (states != null)
+		{
+			states.remove(component);
+		}
+
+		if ((((ICacheableComponent)component).getOutputCacheKey() == null) ||
+			isAjax(requestCycle.getRequest()) || isEncodingSessionId(requestCycle))
+		{
+			return;
+		}
+
+		final CachedOutput output = getCache(component).get(component);
+		if (states == null)
+		{
+			states = new IdentityHashMap<Component, State>();
+			requestCycle.setMetaData(STATES, states);
+		}
+		states.put(component, new State(output));
+	}
+
+	/**
+	 * @param component
+	 * @return True, if the output of the component is replayed from the cache, in which case its
+	 *         children are neither prepared for render nor rendered
+	 */
+	static boolean isReplaying(final Component component)
+	{
+		final State state = getState(component);
+		return (state != null) && (state.output != null);
+	}
+
+	/**
+	 * Renders the header contributions of a component whose output is replayed, by itself or by
+	 * one of its parents. The component's raw <code>&lt;wicket:head&gt;</code> markup is rendered as
+	 * usual.
+	 * 
+	 * @param component
+	 * @param container
+	 * @return False, if the output of the component is not replayed and its header contributions
+	 *         have to be rendered by the caller
+	 */
+	static boolean renderHead(final Component component, final HtmlHeaderContainer container)
+	{
+		final Map<Component, State> states = getStates();
+		if (states == null)
+		{
+			return false;
+		}
+
+		State replayed = null;
+		for (Component current = component; current != null; current = current.getParent())
+		{
+			final State state = states.get(current);
+			if ((state != null) && (state.output != null))
+			{
+				replayed = state;
+				break;
+			}
+		}
+		if (replayed == null)
+		{
+			return false;
+		}
+
+		final IHeaderResponse response = getHeaderResponse(component,
+			container.getHeaderResponse());
+		if (response.wasRendered(component) == false)
+		{
+			component.getMarkupSourcingStrategy().renderHead(component, container);
+			response.markRendered(component);
+		}
+
+		if (replayed == states.get(component))
+		{
+			for (HeaderItem item : replayed.output.getHeaderItems())
+			{
+				response.render(item);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the header response to render the header contributions of the component to. Items
+	 * rendered while the output of the component or one of its parents is recorded are recorded as
+	 * well.
+	 * 
+	 * @param component
+	 * @param response
+	 * @return The response to render to
+	 */
+	static IHeaderResponse getHeaderResponse(final Component component,
+		final IHeaderResponse response)
+	{
+		final Map<Component, State> states = getStates();
+		if (states == null)
+		{
+			return response;
+		}
+
+		IHeaderResponse result = response;
+		for (Component current = component; current != null; current = current.getParent())
+		{
+			final State state = states.get(current);
+			if ((state != null) && (state.output == null))
+			{
+				result = new RecordingHeaderResponse(result, state.headerItems);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the cached output of the component to the response, if it is replayed.
+	 * 
+	 * @param component
+	 * @return True, if the output has been replayed
+	 */
+	static boolean replay(final Component component)
+	{
+		final State state = getState(component);
+		if ((state == null) || (state.output == null))
+		{
+			return false;
+		}
+
+		component.getResponse().write(state.output.getMarkup());
+		return true;
+	}
+
+	/**
+	 * Redirects the output of the component into a buffer, if it is recorded.
+	 * 
+	 * @param component
+	 * @return The original response, to be passed to
+	 *         {@link #stopRecording(Component, Response, boolean)}, or null if the output is not
+	 *         recorded
+	 */
+	static Response startRecording(final Component component)
+	{
+		final State state = getState(component);
+		if ((state == null) || (state.output != null))
+		{
+			return null;
+		}
+
+		return component.getRequestCycle().setResponse(new StringResponse());
+	}
+
+	/**
+	 * Restores the original response and writes the recorded output to it. The output is cached if
+	 * the component rendered without error and it and all its visible children are stateless.
+	 * 
+	 * @param component
+	 * @param original
+	 *            The response returned by {@link #startRecording(Component)}, null if the output is
+	 *            not recorded
+	 * @param completed
+	 *            True, if the component rendered without error
+	 */
+	static void stopRecording(final Component component, final Response original,
+		final boolean completed)
+	{
+		if (original == null)
+		{
+			return;
+		}
+
+		final RequestCycle requestCycle = component.getRequestCycle();
+		final StringResponse recorded = (StringResponse)requestCycle.setResponse(original);
+		final CharSequence markup = recorded.getBuffer();
+		original.write(markup);
+
+		final State state = getState(component);
+		if (completed && (state != null) && isStateless(component))
+		{
+			final ICacheableComponent cacheable = (ICacheableComponent)component;
+			getCache(component).put(component,
+				new CachedOutput(markup, state.headerItems, cacheable.getOutputCacheDuration()));
+		}
+		else if (completed && log.isDebugEnabled())
+		{
+			log.debug("Output of " + component +
+				" is not cached, because it or one of its children is stateful");
+		}
+	}
+
+	/**
+	 * @param component
+	 * @return True, if the component and all its visible children are stateless. Invisible
+	 *         children don't contribute to the output.
+	 */
+	private static boolean isStateless(final Component component)
+	{
+		if (component.isStateless() == false)
+		{
+			return false;
+		}
+		if (component instanceof MarkupContainer)
+		{
+			final Boolean stateful = ((MarkupContainer)component).visitChildren(new IVisitor<Component, Boolean>()
+			{
+				@Override
+				public void component(final Component child, final IVisit<Boolean> visit)
+				{
+					if (child.isVisibleInHierarchy() == false)
+					{
+						visit.dontGoDeeper();
+					}
+					else if (child.isStateless() == false)
+					{
+						visit.stop(Boolean.TRUE);
+					}
+				}
+			});
+			return stateful == null;
+		}
+		return true;
+	}
+
+	/**
+	 * @param request
+	 * @return True, if the request is an ajax request
+	 */
+	private static boolean isAjax(final Request request)
+	{
+		return (request instanceof WebRequest) && ((WebRequest)request).isAjax();
+	}
+
+	/**
+	 * @param requestCycle
+	 * @return True, if the urls rendered by the request contain the id of the session, e.g.
+	 *         <code>;jsessionid=...</code> as long as the client has not confirmed to accept
+	 *         cookies. Such output must neither be recorded, as it would be replayed to other
+	 *         users, nor be replaced by output without the session id.
+	 */
+	private static boolean isEncodingSessionId(final RequestCycle requestCycle)
+	{
+		final String url = "./";
+		return url.equals(requestCycle.getOriginalResponse().encodeURL(url)) == false;
+	}
+
+	/**
+	 * @param component
+	 * @return The output cache of the component's application
+	 */
+	private static ComponentOutputCache getCache(final Component component)
+	{
+		return component.getApplication().getMarkupSettings().getComponentOutputCache();
+	}
+
+	/**
+	 * @return The states of the request, null if no cacheable component has been rendered
+	 */
+	private static Map<Component, State> getStates()
+	{
+		final RequestCycle requestCycle = RequestCycle.get();
+		if (requestCycle == null)
+		{
+			return null;
+		}
+		final Map<Component, State> states = requestCycle.getMetaData(STATES);
+		return ((states == null) || states.isEmpty()) ? null : states;
+	}
+
+	/**
+	 * @param component
+	 * @return The state of the component, null if its output is neither replayed nor recorded
+	 */
+	private static State getState(final Component component)
+	{
+		if ((component instanceof ICacheableComponent) == false)
+		{
+			return null;
+		}
+		final Map<Component, State> states = getStates();
+		return (states != null) ? states.get(component) : null;
+	}
+
+	/**
+	 * Whether the output of a component is replayed or recorded
+	 */
+	private static final class State
+	{
+		/** The output replayed, null if the output is recorded */
+		private final CachedOutput output;
+
+		/** The header items recorded */
+		private final List<HeaderItem> headerItems = new ArrayList<HeaderItem>();
+
+		private State(final CachedOutput output)
+		{
+			this.output = output;
+		}
+	}
+
+	/**
+	 * Records the header items rendered
+	 */
+	private static final class RecordingHeaderResponse extends DecoratingHeaderResponse
+	{
+		private final List<HeaderItem> headerItems;
+
+		private RecordingHeaderResponse(final IHeaderResponse real,
+			final List<HeaderItem> headerItems)
+		{
+			super(real);
+			this.headerItems = headerItems;
+		}
+
+		@Override
+		public void render(final HeaderItem item)
+		{
+			headerItems.add(item);
+			super.render(item);
+		}
+	}
+}
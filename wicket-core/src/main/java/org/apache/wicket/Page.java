@@ -612,6 +612,13 @@ public abstract class Page extends MarkupContainer implements IRedirectListener,
 				@Override
 				public void component(final Component component, final IVisit<Void> visit)
 				{
+					// The children of output replayed from the cache are not rendered
+					if (OutputCacheSupport.isReplaying(component))
+					{
+						visit.dontGoDeeper();
+						return;
+					}
+
 					// If component never rendered
 					if (renderedComponents == null || !renderedComponents.contains(component))
 					{
@@ -645,9 +645,10 @@ public class AjaxRequestTarget implements IPageRequestHandler, ILoggableRequestH
 
 		try
 		{
-			final StringResponse bodyResponse = new StringResponse();
+			final AppendingStringBuffer body = app.getResponseBufferPool().acquireCharBuffer();
+			final StringResponse bodyResponse = new StringResponse(body);
 			constructResponseBody(bodyResponse, encoding);
-			CharSequence filteredResponse = invokeResponseFilters(bodyResponse);
+			CharSequence filteredResponse = invokeResponseFilters(body);
 			response.write(filteredResponse);
 		}
 		finally
@@ -712,15 +713,12 @@ public class AjaxRequestTarget implements IPageRequestHandler, ILoggableRequestH
 	/**
 	 * Runs the configured {@link IResponseFilter}s over the constructed Ajax response
 	 * 
-	 * @param contentResponse
-	 *            the Ajax {@link Response} body
+	 * @param responseBuffer
+	 *            the Ajax {@link Response} body, which may be modified by the filters
 	 * @return filtered response
 	 */
-	private AppendingStringBuffer invokeResponseFilters(final StringResponse contentResponse)
+	private AppendingStringBuffer invokeResponseFilters(AppendingStringBuffer responseBuffer)
 	{
-		AppendingStringBuffer responseBuffer = new AppendingStringBuffer(
-			contentResponse.getBuffer());
-
 		List<IResponseFilter> responseFilters = Application.get()
 			.getRequestCycleSettings()
 			.getResponseFilters();
@@ -25,6 +25,7 @@ import java.util.regex.Pattern;
 import org.apache.wicket.Application;
 import org.apache.wicket.markup.parser.IMarkupFilter;
 import org.apache.wicket.markup.parser.IXmlPullParser;
+import org.apache.wicket.markup.parser.MarkupPrescan;
 import org.apache.wicket.markup.parser.XmlPullParser;
 import org.apache.wicket.markup.parser.filter.RootMarkupFilter;
 import org.apache.wicket.settings.IMarkupSettings;
@@ -152,6 +153,23 @@ public abstract class AbstractMarkupParser
 	 */
 	protected abstract List<IMarkupFilter> initializeMarkupFilters(final Markup markup);
 
+	/**
+	 * Whether the filter has to be part of the filter chain for the markup. Large markup files
+	 * with few wicket constructs load faster without the filters which are known to do nothing
+	 * for them.
+	 * 
+	 * @param filter
+	 *            A filter of {@link #getMarkupFilters()}
+	 * @param prescan
+	 *            The wicket constructs the markup may contain
+	 * @return false, if the filter can not fire for the markup. By default true.
+	 */
+	protected boolean isMarkupFilterNeeded(final IMarkupFilter filter,
+		final MarkupPrescan prescan)
+	{
+		return true;
+	}
+
 	/**
 	 * Reads and parses markup from a file.
 	 * 
@@ -161,21 +179,28 @@ public abstract class AbstractMarkupParser
 	 */
 	public final Markup parse() throws IOException, ResourceStreamNotFoundException
 	{
+		// Initialize the xml parser
+		MarkupResourceStream markupResourceStream = markup.getMarkupResourceStream();
+		xmlParser.parse(markupResourceStream.getResource().getInputStream(),
+			markupSettings.getDefaultMarkupEncoding());
+
+		// Find the wicket constructs in the markup, to leave out filters which can not fire
+		final MarkupPrescan prescan = new MarkupPrescan(xmlParser.getInputFromPositionMarker(-1),
+			markupResourceStream.getWicketNamespace());
+
 		// The root of all markup filters is the xml parser
 		markupFilterChain = new RootMarkupFilter(xmlParser);
 
 		// Convert the list of markup filters into a chain
 		for (IMarkupFilter filter : getMarkupFilters())
 		{
-			filter.setNextFilter(markupFilterChain);
-			markupFilterChain = filter;
+			if (isMarkupFilterNeeded(filter, prescan))
+			{
+				filter.setNextFilter(markupFilterChain);
+				markupFilterChain = filter;
+			}
 		}
 
-		// Initialize the xml parser
-		MarkupResourceStream markupResourceStream = markup.getMarkupResourceStream();
-		xmlParser.parse(markupResourceStream.getResource().getInputStream(),
-			markupSettings.getDefaultMarkupEncoding());
-
 		// parse the xml markup and tokenize it into wicket relevant markup
 		// elements
 		parseMarkup();
@@ -19,8 +19,12 @@ package org.apache.wicket.markup;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
@@ -52,6 +56,18 @@ public class Markup implements IMarkupFragment
 	/** The associated markup file */
 	private final MarkupResourceStream markupResourceStream;
 
+	/** Incremented on each modification of the markup elements, invalidates the child indices */
+	private int modCount;
+
+	/** The ids of the children of this markup, built on first use */
+	private volatile ChildIndex childIndex;
+
+	/** The ids of the children of fragments of this markup, by the fragments' start index */
+	private final ConcurrentMap<Integer, ChildIndex> fragmentChildIndices = new ConcurrentHashMap<Integer, ChildIndex>();
+
+	/** The compiled render plan, built on first render and dropped on modification */
+	private volatile RenderPlan renderPlan;
+
 	/**
 	 * Take the markup string, parse it and return the Markup (list of MarkupElements).
 	 * <p>
@@ -131,6 +147,8 @@ public class Markup implements IMarkupFragment
 		}
 
 		markupElements.set(index, elem);
+		modCount++;
+		renderPlan = null;
 	}
 
 	/**
@@ -157,6 +175,8 @@ public class Markup implements IMarkupFragment
 	final public void addMarkupElement(final MarkupElement markupElement)
 	{
 		markupElements.add(markupElement);
+		modCount++;
+		renderPlan = null;
 	}
 
 	/**
@@ -168,6 +188,8 @@ public class Markup implements IMarkupFragment
 	final public void addMarkupElement(final int pos, final MarkupElement markupElement)
 	{
 		markupElements.add(pos, markupElement);
+		modCount++;
+		renderPlan = null;
 	}
 
 	/**
@@ -187,11 +209,53 @@ public class Markup implements IMarkupFragment
 		markupElements = Collections.unmodifiableList(markupElements);
 	}
 
+	/**
+	 * Finds the child with the given id. The ids of all children are indexed on first use, so
+	 * subsequent lookups do not have to scan the markup.
+	 */
 	@Override
 	public final IMarkupFragment find(final String id)
 	{
 		Args.notEmpty(id, "id");
 
+		ChildIndex index = childIndex;
+		if ((index == null) || (index.modCount != modCount))
+		{
+			Map<String, Integer> ids = new HashMap<String, Integer>();
+			boolean complete = true;
+			try
+			{
+				findChild(null, ids);
+			}
+			catch (RuntimeException ex)
+			{
+				// e.g. a missing close tag. Children up to this point are still found by the
+				// index, all other lookups fall back to scanning
+				complete = false;
+			}
+			index = new ChildIndex(modCount, ids, complete);
+			childIndex = index;
+		}
+
+		int position = index.get(id);
+		if ((position == -1) && (index.complete == false))
+		{
+			position = findChild(id, null);
+		}
+		return (position == -1) ? null : new MarkupFragment(this, position);
+	}
+
+	/**
+	 * Scans the markup for a child.
+	 * 
+	 * @param id
+	 *            the id of the child to find, <code>null</code> to scan all children
+	 * @param ids
+	 *            optional map to collect the ids and indices of all scanned children
+	 * @return the index of the child or -1 if not found
+	 */
+	private int findChild(final String id, final Map<String, Integer> ids)
+	{
 		MarkupStream stream = new MarkupStream(this);
 		stream.setCurrentIndex(0);
 		while (stream.hasMore())
@@ -204,8 +268,9 @@ public class Markup implements IMarkupFragment
 				{
 					if (tag.getId().equals(id))
 					{
-						return stream.getMarkupFragment();
+						return stream.getCurrentIndex();
 					}
+					ChildIndex.put(ids, tag.getId(), stream.getCurrentIndex());
 					if (tag.isOpen() && !tag.hasNoCloseTag() && !(tag instanceof WicketTag) &&
 						!"head".equals(tag.getName()) && !tag.isAutoComponentTag())
 					{
@@ -217,7 +282,64 @@ public class Markup implements IMarkupFragment
 			stream.next();
 		}
 
-		return null;
+		return -1;
+	}
+
+	/**
+	 * @param startIndex
+	 *            the index of the fragment's open tag in this markup
+	 * @return the index of the children of the fragment or <code>null</code> if not yet built or
+	 *         outdated
+	 */
+	final ChildIndex getFragmentChildIndex(final int startIndex)
+	{
+		ChildIndex index = fragmentChildIndices.get(startIndex);
+		return ((index != null) && (index.modCount == modCount)) ? index : null;
+	}
+
+	/**
+	 * @param startIndex
+	 *            the index of the fragment's open tag in this markup
+	 * @param ids
+	 *            the ids and indices, relative to the fragment, of the fragment's children
+	 * @param complete
+	 *            whether all children are contained in ids
+	 * @return the index
+	 */
+	final ChildIndex putFragmentChildIndex(final int startIndex, final Map<String, Integer> ids,
+		final boolean complete)
+	{
+		ChildIndex index = new ChildIndex(modCount, ids, complete);
+		fragmentChildIndices.put(startIndex, index);
+		return index;
+	}
+
+	/**
+	 * Gets the render plan of this markup. The plan is compiled on first use, i.e. when the markup
+	 * is rendered first, and again after the markup has been modified.
+	 * 
+	 * @return the render plan
+	 */
+	final RenderPlan getRenderPlan()
+	{
+		RenderPlan plan = renderPlan;
+		if (plan == null)
+		{
+			plan = new RenderPlan(this);
+			renderPlan = plan;
+		}
+		return plan;
+	}
+
+	/**
+	 * Gets the render plan of this markup if it has been compiled already. Fragments use it
+	 * without triggering the compilation.
+	 * 
+	 * @return the render plan or null if not compiled yet
+	 */
+	final RenderPlan getCompiledRenderPlan()
+	{
+		return renderPlan;
 	}
 
 	@Override
@@ -278,4 +400,52 @@ public class Markup implements IMarkupFragment
 	{
 		return markupElements.subList(startIndex, startIndex + size).iterator();
 	}
+
+	/**
+	 * An immutable map from the ids of the children of a markup (fragment) to their indices.
+	 */
+	static final class ChildIndex
+	{
+		/** the modCount of the markup when the index was built */
+		private final int modCount;
+
+		private final Map<String, Integer> ids;
+
+		/** false if the scan failed and ids contains only the children before the failure */
+		final boolean complete;
+
+		private ChildIndex(final int modCount, final Map<String, Integer> ids,
+			final boolean complete)
+		{
+			this.modCount = modCount;
+			this.ids = ids;
+			this.complete = complete;
+		}
+
+		/**
+		 * @param id
+		 * @return the index of the child or -1
+		 */
+		int get(final String id)
+		{
+			Integer index = ids.get(id);
+			return (index != null) ? index : -1;
+		}
+
+		/**
+		 * Records the index of a child, unless a child with the same id has been found before.
+		 * 
+		 * @param ids
+		 *            the map to record in, may be <code>null</code>
+		 * @param id
+		 * @param index
+		 */
+		static void put(final Map<String, Integer> ids, final String id, final int index)
+		{
+			if ((ids != null) && (id != null) && (ids.containsKey(id) == false))
+			{
+				ids.put(id, index);
+			}
+		}
+	}
 }
@@ -17,13 +17,17 @@
 package org.apache.wicket.markup;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.settings.IMarkupSettings;
+import org.apache.wicket.util.collections.SegmentedLruCache;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.listener.IChangeListener;
 import org.apache.wicket.util.watch.IModifiable;
@@ -64,6 +68,13 @@ public class MarkupCache implements IMarkupCache
 	 */
 	private final ICache<String, String> markupKeyCache;
 
+	/**
+	 * The locations of the cached markup derived from a base markup: cache key of the base markup
+	 * => locations of the derived markup. Allows to remove the derived markup together with its base
+	 * markup without scanning the whole cache.
+	 */
+	private final ConcurrentMap<String, Set<String>> derivedMarkup = new ConcurrentHashMap<String, Set<String>>();
+
 	/** The markup cache key provider used by MarkupCache */
 	private IMarkupCacheKeyProvider markupCacheKeyProvider;
 
@@ -93,7 +104,7 @@ public class MarkupCache implements IMarkupCache
 	{
 		application = Application.get();
 
-		markupCache = newCacheImplementation();
+		markupCache = newMarkupCacheImplementation();
 		if (markupCache == null)
 		{
 			throw new WicketRuntimeException("The map used to cache markup must not be null");
@@ -107,6 +118,7 @@ public class MarkupCache implements IMarkupCache
 	{
 		markupCache.clear();
 		markupKeyCache.clear();
+		derivedMarkup.clear();
 	}
 
 	@Override
@@ -114,6 +126,7 @@ public class MarkupCache implements IMarkupCache
 	{
 		markupCache.shutdown();
 		markupKeyCache.shutdown();
+		derivedMarkup.clear();
 	}
 
 	/**
@@ -149,7 +162,7 @@ public class MarkupCache implements IMarkupCache
 
 		// If a base markup file has been removed from the cache, than
 		// the derived markup should be removed as well.
-		removeMarkupWhereBaseMarkupIsNoLongerInTheCache();
+		onMarkupRemoved(locationString, (Markup)markup);
 
 		// And now remove all watcher entries associated with markup
 		// resources no longer in the cache.
@@ -182,50 +195,133 @@ public class MarkupCache implements IMarkupCache
 		return markup;
 	}
 
-	private void removeMarkupWhereBaseMarkupIsNoLongerInTheCache()
+	/**
+	 * Removes the markup derived from a markup no longer in the cache, recursively. Called after
+	 * the markup has been removed or evicted from the cache.
+	 * 
+	 * @param locationString
+	 *            The location of the removed markup
+	 * @param markup
+	 *            The removed markup
+	 */
+	private void onMarkupRemoved(final String locationString, final Markup markup)
 	{
-		// Repeat until all dependent resources have been removed (count == 0)
-		int count = 1;
-		while (count > 0)
+		if ((markup == null) || (markup == Markup.NO_MARKUP))
 		{
-			// Reset prior to next round
-			count = 0;
+			return;
+		}
 
-			// Iterate though all entries of the cache
-			Iterator<Markup> iter = markupCache.getValues().iterator();
-			while (iter.hasNext())
+		MarkupResourceStream resourceStream = markup.getMarkupResourceStream();
+		if (resourceStream == null)
+		{
+			return;
+		}
+
+		// The markup is no longer derived from its base markup
+		removeDerivedMarkupLocation(resourceStream.getBaseMarkupResourceStream(), locationString);
+
+		String cacheKey = resourceStream.getCacheKey();
+		Set<String> derivedLocations = (cacheKey != null) ? derivedMarkup.remove(cacheKey) : null;
+		if (derivedLocations == null)
+		{
+			return;
+		}
+
+		for (String derivedLocation : derivedLocations)
+		{
+			Markup derived = peekMarkup(derivedLocation);
+			if ((derived == null) || (derived == Markup.NO_MARKUP))
 			{
-				Markup markup = iter.next();
+				continue;
+			}
+
+			// Is the base markup still available in the cache, e.g. has it been reloaded meanwhile?
+			MarkupResourceStream derivedResourceStream = derived.getMarkupResourceStream();
+			MarkupResourceStream baseResourceStream = (derivedResourceStream != null)
+				? derivedResourceStream.getBaseMarkupResourceStream() : null;
+			if ((baseResourceStream != null) && !isMarkupCached(baseResourceStream))
+			{
+				markupCache.remove(derivedLocation);
 
-				if ((markup != null) && (markup != Markup.NO_MARKUP))
+				if (log.isDebugEnabled())
 				{
-					// Check if the markup associated with key has a base markup. And if yes, test
-					// if that is cached. If the base markup has been removed, than remove the
-					// derived markup as well.
+					log.debug("Removed derived markup from cache: " + derivedResourceStream);
+				}
 
-					MarkupResourceStream resourceStream = markup.getMarkupResourceStream();
-					if (resourceStream != null)
-					{
-						resourceStream = resourceStream.getBaseMarkupResourceStream();
-					}
+				onMarkupRemoved(derivedLocation, derived);
+			}
+		}
+	}
 
-					// Is the base markup available in the cache?
-					if ((resourceStream != null) && !isMarkupCached(resourceStream))
-					{
-						iter.remove();
-						count++;
+	/**
+	 * Remembers that the markup cached at the location is derived from a base markup.
+	 * 
+	 * @param locationString
+	 * @param markup
+	 */
+	private void addDerivedMarkupLocation(final String locationString, final Markup markup)
+	{
+		MarkupResourceStream resourceStream = markup.getMarkupResourceStream();
+		if (resourceStream != null)
+		{
+			resourceStream = resourceStream.getBaseMarkupResourceStream();
+		}
+		String baseCacheKey = (resourceStream != null) ? resourceStream.getCacheKey() : null;
+		if (baseCacheKey == null)
+		{
+			return;
+		}
 
-						if (log.isDebugEnabled())
-						{
-							log.debug("Removed derived markup from cache: " +
-								markup.getMarkupResourceStream());
-						}
-					}
-				}
+		Set<String> locations = derivedMarkup.get(baseCacheKey);
+		if (locations == null)
+		{
+			locations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			Set<String> existing = derivedMarkup.putIfAbsent(baseCacheKey, locations);
+			if (existing != null)
+			{
+				locations = existing;
+			}
+		}
+		locations.add(locationString);
+	}
+
+	/**
+	 * @param baseResourceStream
+	 *            The resource stream of the base markup, may be null
+	 * @param locationString
+	 *            The location of the derived markup
+	 */
+	private void removeDerivedMarkupLocation(final MarkupResourceStream baseResourceStream,
+		final String locationString)
+	{
+		String baseCacheKey = (baseResourceStream != null) ? baseResourceStream.getCacheKey()
+			: null;
+		if (baseCacheKey != null)
+		{
+			Set<String> locations = derivedMarkup.get(baseCacheKey);
+			if (locations != null)
+			{
+				locations.remove(locationString);
 			}
 		}
 	}
 
+	/**
+	 * Looks up cached markup without recording the access, so maintaining the cache does not
+	 * affect its hit rate and eviction order.
+	 * 
+	 * @param locationString
+	 * @return The cached markup, null if none
+	 */
+	private Markup peekMarkup(final String locationString)
+	{
+		if (markupCache instanceof BoundedCacheImplementation)
+		{
+			return ((BoundedCacheImplementation<String, Markup>)markupCache).peek(locationString);
+		}
+		return markupCache.get(locationString);
+	}
+
 	/**
 	 * @param resourceStream
 	 * @return True if the markup is cached
@@ -238,7 +334,7 @@ public class MarkupCache implements IMarkupCache
 			if (key != null)
 			{
 				String locationString = markupKeyCache.get(key);
-				if ((locationString != null) && (markupCache.get(locationString) != null))
+				if ((locationString != null) && markupCache.containsKey(locationString))
 				{
 					return true;
 				}
@@ -381,6 +477,10 @@ public class MarkupCache implements IMarkupCache
 				}
 
 				markupCache.put(locationString, markup);
+				if (markup != Markup.NO_MARKUP)
+				{
+					addDerivedMarkupLocation(locationString, markup);
+				}
 			}
 			else
 			{
@@ -510,27 +610,7 @@ public class MarkupCache implements IMarkupCache
 			}
 
 			// Watch file in the future
-			final IModificationWatcher watcher = application.getResourceSettings()
-				.getResourceWatcher(true);
-			if (watcher != null)
-			{
-				watcher.add(markupResourceStream, new IChangeListener()
-				{
-					@Override
-					public void onChange()
-					{
-						if (log.isDebugEnabled())
-						{
-							log.debug("Remove markup from watcher: " + markupResourceStream);
-						}
-
-						// Remove the markup from the cache. It will be reloaded
-						// next time when the markup is requested.
-						watcher.remove(markupResourceStream);
-						removeMarkup(cacheKey);
-					}
-				});
-			}
+			watchForChanges(cacheKey, markupResourceStream);
 		}
 
 		if (log.isDebugEnabled())
@@ -540,6 +620,41 @@ public class MarkupCache implements IMarkupCache
 		return loadMarkup(container, markupResourceStream, enforceReload);
 	}
 
+	/**
+	 * Add an {@link IChangeListener} to the {@link ModificationWatcher} which removes the markup
+	 * from the cache if the resource changes.
+	 * 
+	 * @param cacheKey
+	 *            The key of the markup
+	 * @param markupResourceStream
+	 *            The markup stream to watch
+	 */
+	private void watchForChanges(final String cacheKey,
+		final MarkupResourceStream markupResourceStream)
+	{
+		final IModificationWatcher watcher = application.getResourceSettings()
+			.getResourceWatcher(true);
+		if (watcher != null)
+		{
+			watcher.add(markupResourceStream, new IChangeListener()
+			{
+				@Override
+				public void onChange()
+				{
+					if (log.isDebugEnabled())
+					{
+						log.debug("Remove markup from watcher: " + markupResourceStream);
+					}
+
+					// Remove the markup from the cache. It will be reloaded
+					// next time when the markup is requested.
+					watcher.remove(markupResourceStream);
+					removeMarkup(cacheKey);
+				}
+			});
+		}
+	}
+
 	/**
 	 * Get the markup cache key provider to be used
 	 * 
@@ -574,6 +689,55 @@ public class MarkupCache implements IMarkupCache
 		return new DefaultCacheImplementation<K, V>();
 	}
 
+	/**
+	 * Creates the cache holding the markup. If {@link IMarkupSettings#getMarkupCacheMaxWeight()} is
+	 * set, it is a {@link BoundedCacheImplementation} bounded by the number of markup elements.
+	 * Otherwise it
+	 * is the cache created by {@link #newCacheImplementation()}.
+	 * <p>
+	 * Markup evicted from a bounded cache is handled like markup removed by
+	 * {@link #removeMarkup(String)}, i.e. the markup derived from it is removed as well.
+	 * 
+	 * @return new instance of cache implementation
+	 */
+	protected ICache<String, Markup> newMarkupCacheImplementation()
+	{
+		final long maxWeight = application.getMarkupSettings().getMarkupCacheMaxWeight();
+		if (maxWeight <= 0)
+		{
+			return newCacheImplementation();
+		}
+
+		SegmentedLruCache<String, Markup> cache = new SegmentedLruCache<String, Markup>(
+			maxWeight, new MarkupWeigher());
+		cache.setEvictionListener(new SegmentedLruCache.IEvictionListener<String, Markup>()
+		{
+			@Override
+			public void onEvicted(final String locationString, final Markup markup)
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug("Evicted from cache: " + locationString);
+				}
+
+				onMarkupRemoved(locationString, markup);
+			}
+		});
+		return new BoundedCacheImplementation<String, Markup>(cache);
+	}
+
+	/**
+	 * Weighs markup by its number of elements
+	 */
+	private static final class MarkupWeigher implements SegmentedLruCache.IWeigher<String, Markup>
+	{
+		@Override
+		public int weigh(final String locationString, final Markup markup)
+		{
+			return (markup == Markup.NO_MARKUP) ? 1 : markup.size();
+		}
+	}
+
 	/**
 	 * MarkupCache allows you to implement you own cache implementation. ICache is the interface the
 	 * implementation must comply with.
@@ -734,4 +898,97 @@ public class MarkupCache implements IMarkupCache
 			clear();
 		}
 	}
+
+	/**
+	 * Adapts a {@link SegmentedLruCache} bounded by the weight of its entries.
+	 * 
+	 * @param <K>
+	 * @param <V>
+	 */
+	public static class BoundedCacheImplementation<K, V> implements ICache<K, V>
+	{
+		private final SegmentedLruCache<K, V> cache;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param cache
+		 */
+		public BoundedCacheImplementation(final SegmentedLruCache<K, V> cache)
+		{
+			this.cache = Args.notNull(cache, "cache");
+		}
+
+		/**
+		 * @return The adapted cache, e.g. for its weight and hit rate
+		 */
+		public SegmentedLruCache<K, V> getCache()
+		{
+			return cache;
+		}
+
+		/**
+		 * @param key
+		 * @return The value, without recording the access
+		 * @see SegmentedLruCache#peek(Object)
+		 */
+		public V peek(final K key)
+		{
+			return cache.peek(key);
+		}
+
+		@Override
+		public void clear()
+		{
+			cache.clear();
+		}
+
+		@Override
+		public boolean containsKey(final K key)
+		{
+			return cache.containsKey(key);
+		}
+
+		@Override
+		public V get(final K key)
+		{
+			return cache.get(key);
+		}
+
+		@Override
+		public Collection<K> getKeys()
+		{
+			return cache.getKeys();
+		}
+
+		@Override
+		public Collection<V> getValues()
+		{
+			return cache.getValues();
+		}
+
+		@Override
+		public void put(final K key, final V value)
+		{
+			cache.put(key, value);
+		}
+
+		@Override
+		public boolean remove(final K key)
+		{
+			return cache.remove(key);
+		}
+
+		@Override
+		public int size()
+		{
+			return cache.size();
+		}
+
+		@Override
+		public void shutdown()
+		{
+			cache.clear();
+		}
+	}
 }
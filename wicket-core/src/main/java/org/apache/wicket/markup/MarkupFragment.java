@@ -16,7 +16,9 @@
  */
 package org.apache.wicket.markup;
 
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import org.apache.wicket.markup.parser.filter.HtmlHandler;
 import org.apache.wicket.util.lang.Args;
@@ -47,6 +49,15 @@ public class MarkupFragment implements IMarkupFragment
 	/** The size of the fragment (usually from open to close tag) */
 	private final int size;
 
+	/** The root markup, null if the parent is neither a Markup nor a MarkupFragment */
+	private final Markup rootMarkup;
+
+	/** The index at which the fragment starts, relative to the root markup */
+	private final int rootStartIndex;
+
+	/** The slice of the root markup's render plan, null until the root markup has been rendered */
+	private volatile RenderPlan renderPlan;
+
 	/**
 	 * Construct.
 	 * 
@@ -78,6 +89,22 @@ public class MarkupFragment implements IMarkupFragment
 		this.markup = markup;
 		this.startIndex = startIndex;
 
+		if (markup instanceof Markup)
+		{
+			rootMarkup = (Markup)markup;
+			rootStartIndex = startIndex;
+		}
+		else if (markup instanceof MarkupFragment)
+		{
+			rootMarkup = ((MarkupFragment)markup).rootMarkup;
+			rootStartIndex = ((MarkupFragment)markup).rootStartIndex + startIndex;
+		}
+		else
+		{
+			rootMarkup = null;
+			rootStartIndex = -1;
+		}
+
 		// Make sure we are at an open tag
 		MarkupElement startElem = markup.get(startIndex);
 		if ((startElem instanceof ComponentTag) == false)
@@ -86,6 +113,9 @@ public class MarkupFragment implements IMarkupFragment
 				"Parameter 'startIndex' does not point to a Wicket open tag");
 		}
 
+		// the plan of the root markup, if it has been rendered already
+		final RenderPlan rootPlan = (rootMarkup != null) ? rootMarkup.getCompiledRenderPlan() : null;
+
 		// Determine the size. Find the close tag
 		int endIndex;
 		ComponentTag startTag = (ComponentTag)startElem;
@@ -106,6 +136,11 @@ public class MarkupFragment implements IMarkupFragment
 				endIndex = markupSize;
 			}
 		}
+		else if ((rootPlan != null) && ((endIndex = rootPlan.getCloseIndex(rootStartIndex)) != -1))
+		{
+			// the render plan knows the close tag, relative to the root markup
+			endIndex = endIndex - rootStartIndex + startIndex;
+		}
 		else
 		{
 			for (endIndex = startIndex + 1; endIndex < markupSize; endIndex++)
@@ -129,6 +164,34 @@ public class MarkupFragment implements IMarkupFragment
 		}
 
 		size = endIndex - startIndex + 1;
+		if (rootPlan != null)
+		{
+			renderPlan = rootPlan.slice(rootStartIndex, size);
+		}
+	}
+
+	/**
+	 * Gets the index of the close tag of an open tag from the render plan of the root markup. The
+	 * plan is not compiled for the fragment, it is known once the root markup has been rendered.
+	 * 
+	 * @param openIndex
+	 *            the index of the open tag in this fragment
+	 * @return the index of the close tag in this fragment or -1 if not known
+	 */
+	final int getCloseIndex(final int openIndex)
+	{
+		RenderPlan plan = renderPlan;
+		if (plan == null)
+		{
+			RenderPlan rootPlan = (rootMarkup != null) ? rootMarkup.getCompiledRenderPlan() : null;
+			if (rootPlan == null)
+			{
+				return -1;
+			}
+			plan = rootPlan.slice(rootStartIndex, size);
+			renderPlan = plan;
+		}
+		return plan.getCloseIndex(openIndex);
 	}
 
 	@Override
@@ -144,11 +207,59 @@ public class MarkupFragment implements IMarkupFragment
 		return markup.get(startIndex + index);
 	}
 
+	/**
+	 * Finds the child with the given id. The ids of all children are indexed in the root markup on
+	 * first use, so subsequent lookups, even on other fragments for the same range, do not have to
+	 * scan the markup.
+	 */
 	@Override
 	public final IMarkupFragment find(final String id)
 	{
 		Args.notEmpty(id, "id");
 
+		if (rootMarkup == null)
+		{
+			int position = findChild(id, null);
+			return (position == -1) ? null : new MarkupFragment(this, position);
+		}
+
+		Markup.ChildIndex index = rootMarkup.getFragmentChildIndex(rootStartIndex);
+		if (index == null)
+		{
+			Map<String, Integer> ids = new HashMap<String, Integer>();
+			boolean complete = true;
+			try
+			{
+				findChild(null, ids);
+			}
+			catch (RuntimeException ex)
+			{
+				// e.g. a missing close tag. Children up to this point are still found by the
+				// index, all other lookups fall back to scanning
+				complete = false;
+			}
+			index = rootMarkup.putFragmentChildIndex(rootStartIndex, ids, complete);
+		}
+
+		int position = index.get(id);
+		if ((position == -1) && (index.complete == false))
+		{
+			position = findChild(id, null);
+		}
+		return (position == -1) ? null : new MarkupFragment(this, position);
+	}
+
+	/**
+	 * Scans the fragment for a child.
+	 * 
+	 * @param id
+	 *            the id of the child to find, <code>null</code> to scan all children
+	 * @param ids
+	 *            optional map to collect the ids and indices of all scanned children
+	 * @return the index of the child or -1 if not found
+	 */
+	private int findChild(final String id, final Map<String, Integer> ids)
+	{
 		MarkupStream stream = new MarkupStream(this);
 		stream.setCurrentIndex(1);
 		while (stream.hasMore())
@@ -161,8 +272,9 @@ public class MarkupFragment implements IMarkupFragment
 				{
 					if (tag.getId().equals(id))
 					{
-						return stream.getMarkupFragment();
+						return stream.getCurrentIndex();
 					}
+					Markup.ChildIndex.put(ids, tag.getId(), stream.getCurrentIndex());
 					if (tag.isOpen() && !tag.hasNoCloseTag() && !tag.isAutoComponentTag())
 					{
 						stream.skipToMatchingCloseTag(tag);
@@ -173,7 +285,7 @@ public class MarkupFragment implements IMarkupFragment
 			stream.next();
 		}
 
-		return null;
+		return -1;
 	}
 
 	@Override
@@ -22,6 +22,7 @@ import org.apache.wicket.Page;
 import org.apache.wicket.markup.html.form.AutoLabelTagHandler;
 import org.apache.wicket.markup.parser.IMarkupFilter;
 import org.apache.wicket.markup.parser.IXmlPullParser;
+import org.apache.wicket.markup.parser.MarkupPrescan;
 import org.apache.wicket.markup.parser.filter.ConditionalCommentFilter;
 import org.apache.wicket.markup.parser.filter.EnclosureHandler;
 import org.apache.wicket.markup.parser.filter.HeadForceTagIdHandler;
@@ -178,6 +179,43 @@ public class MarkupParser extends AbstractMarkupParser
 		return filters;
 	}
 
+	/**
+	 * Leaves out Wicket's filters for wicket tags and attributes the markup does not contain.
+	 * Subclasses of these filters are always kept, since they might do more.
+	 */
+	@Override
+	protected boolean isMarkupFilterNeeded(final IMarkupFilter filter,
+		final MarkupPrescan prescan)
+	{
+		final Class<?> filterClass = filter.getClass();
+		if (filterClass == WicketRemoveTagHandler.class)
+		{
+			return prescan.hasWicketTag("remove");
+		}
+		else if (filterClass == WicketLinkTagHandler.class)
+		{
+			return ((WicketLinkTagHandler)filter).getAutomaticLinking() ||
+				prescan.hasWicketTag("link");
+		}
+		else if (filterClass == AutoLabelTagHandler.class)
+		{
+			return prescan.hasWicketAttribute("for");
+		}
+		else if (filterClass == WicketMessageTagHandler.class)
+		{
+			return prescan.hasWicketAttribute("message");
+		}
+		else if (filterClass == EnclosureHandler.class)
+		{
+			return prescan.hasWicketTag("enclosure");
+		}
+		else if (filterClass == InlineEnclosureHandler.class)
+		{
+			return prescan.hasWicketAttribute("enclosure");
+		}
+		return true;
+	}
+
 	/**
 	 * A simple extension to ArrayList to manage Wicket MarkupFilter's more easily
 	 */
@@ -461,6 +461,17 @@ public class MarkupStream
 	 */
 	public void skipToMatchingCloseTag(final ComponentTag openTag)
 	{
+		// The render plan knows the close tag if we are right behind the open tag
+		if ((currentIndex > 0) && (get(currentIndex - 1) == openTag))
+		{
+			int closeIndex = getCloseIndex(currentIndex - 1);
+			if (closeIndex != -1)
+			{
+				setCurrentIndex(closeIndex);
+				return;
+			}
+		}
+
 		// Loop through the markup in this container
 		while (hasMore())
 		{
@@ -477,6 +488,24 @@ public class MarkupStream
 		throwMarkupException("Expected close tag for " + openTag);
 	}
 
+	/**
+	 * @param openIndex
+	 *            the index of an open tag
+	 * @return the index of its close tag from the render plan or -1 if not known
+	 */
+	private int getCloseIndex(final int openIndex)
+	{
+		if (markup instanceof Markup)
+		{
+			return ((Markup)markup).getRenderPlan().getCloseIndex(openIndex);
+		}
+		else if (markup instanceof MarkupFragment)
+		{
+			return ((MarkupFragment)markup).getCloseIndex(openIndex);
+		}
+		return -1;
+	}
+
 	/**
 	 * @return A markup fragment starting at the current position
 	 */
@@ -0,0 +1,664 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.IPageFactory;
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.Page;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.mapper.ICompoundRequestMapper;
+import org.apache.wicket.request.mapper.MountedMapper;
+import org.apache.wicket.response.NullResponse;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the markup of component classes into the {@link MarkupCache} in background threads, so
+ * that the first requests after a deployment do not have to wait for the markup to be parsed. The
+ * component classes are taken from the mounted pages and from the markup files found in a list of
+ * packages. Their markup is loaded for each of the configured locales and styles.
+ *
+ * <pre>
+ * protected void init()
+ * {
+ * 	super.init();
+ * 	mountPage(&quot;/products&quot;, ProductsPage.class);
+ *
+ * 	new MarkupWarmup(this).addMountedPages()
+ * 		.addPackage(&quot;com.example.components&quot;)
+ * 		.setLocales(Locale.ENGLISH, Locale.GERMAN)
+ * 		.start();
+ * }
+ * </pre>
+ *
+ * The markup is loaded the same way as on first render: a throwaway instance of each class is
+ * created in a temporary request cycle and session with the locale and style and its markup is
+ * requested from the {@link MarkupFactory}. Pages are created by the {@link IPageFactory} if they
+ * are bookmarkable, other containers if they have a public constructor taking the component id.
+ * Classes which can not be instantiated this way are skipped, instantiation errors are counted as
+ * failures.
+ * Components using other locales, styles or variations still load their markup on first use.
+ */
+public class MarkupWarmup
+{
+	private static final Logger log = LoggerFactory.getLogger(MarkupWarmup.class);
+
+	private final Application application;
+
+	private final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+
+	private final Set<String> packageNames = new LinkedHashSet<String>();
+
+	private List<Locale> locales = Arrays.asList(Locale.getDefault());
+
+	private List<String> styles = Arrays.asList((String)null);
+
+	private MarkupType markupType = MarkupType.HTML_MARKUP_TYPE;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private ExecutorService executor;
+
+	private CountDownLatch finished;
+
+	private volatile int total;
+
+	private final AtomicInteger completed = new AtomicInteger();
+
+	private final AtomicInteger loaded = new AtomicInteger();
+
+	private final AtomicInteger failed = new AtomicInteger();
+
+	private long startTime;
+
+	private volatile Duration duration;
+
+	/**
+	 * Construct.
+	 *
+	 * @param application
+	 *            the application whose markup cache is warmed up
+	 */
+	public MarkupWarmup(final Application application)
+	{
+		this.application = Args.notNull(application, "application");
+	}
+
+	/**
+	 * Adds the home page and the pages mounted with {@link MountedMapper}s to the root request
+	 * mapper.
+	 *
+	 * @return this
+	 */
+	public MarkupWarmup addMountedPages()
+	{
+		classes.add(application.getHomePage());
+		addMountedPages(application.getRootRequestMapper());
+		return this;
+	}
+
+	private void addMountedPages(final IRequestMapper mapper)
+	{
+		if (mapper instanceof MountedMapper)
+		{
+			classes.add(((MountedMapper)mapper).getPageClass());
+		}
+		else if (mapper instanceof ICompoundRequestMapper)
+		{
+			for (IRequestMapper child : (ICompoundRequestMapper)mapper)
+			{
+				addMountedPages(child);
+			}
+		}
+	}
+
+	/**
+	 * Adds the components whose markup files are found in the package or its sub packages.
+	 *
+	 * @param packageName
+	 *            e.g. "com.example.components"
+	 * @return this
+	 */
+	public MarkupWarmup addPackage(final String packageName)
+	{
+		packageNames.add(Args.notEmpty(packageName, "packageName"));
+		return this;
+	}
+
+	/**
+	 * Adds a component class
+	 *
+	 * @param componentClass
+	 * @return this
+	 */
+	public MarkupWarmup addClass(final Class<? extends MarkupContainer> componentClass)
+	{
+		classes.add(Args.notNull(componentClass, "componentClass"));
+		return this;
+	}
+
+	/**
+	 * Sets the locales to load the markup for. Defaults to the JVM's default locale.
+	 *
+	 * @param locales
+	 * @return this
+	 */
+	public MarkupWarmup setLocales(final Locale... locales)
+	{
+		Args.notNull(locales, "locales");
+		this.locales = Arrays.asList(locales);
+		return this;
+	}
+
+	/**
+	 * Sets the styles to load the markup for. Defaults to no style.
+	 *
+	 * @param styles
+	 *            the styles, may contain <code>null</code> for no style
+	 * @return this
+	 */
+	public MarkupWarmup setStyles(final String... styles)
+	{
+		Args.notNull(styles, "styles");
+		this.styles = Arrays.asList(styles);
+		return this;
+	}
+
+	/**
+	 * Sets the type of the markup files looked for in the packages. Defaults to html.
+	 *
+	 * @param markupType
+	 * @return this
+	 */
+	public MarkupWarmup setMarkupType(final MarkupType markupType)
+	{
+		this.markupType = Args.notNull(markupType, "markupType");
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads loading the markup. Defaults to the number of processors.
+	 *
+	 * @param threads
+	 * @return this
+	 */
+	public MarkupWarmup setThreads(final int threads)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, threads, "threads");
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Starts loading the markup in the background. Must be called with the application attached
+	 * to the current thread, e.g. from {@link Application#init()}.
+	 *
+	 * @return this
+	 */
+	public synchronized MarkupWarmup start()
+	{
+		if (executor != null)
+		{
+			throw new IllegalStateException("The markup warm-up has already been started");
+		}
+
+		startTime = System.currentTimeMillis();
+
+		IClassResolver classResolver = application.getApplicationSettings().getClassResolver();
+		for (String packageName : packageNames)
+		{
+			scanPackage(classResolver, packageName);
+		}
+
+		final List<ContainerInfo> containers = new ArrayList<ContainerInfo>();
+		for (Class<?> componentClass : classes)
+		{
+			for (Locale locale : locales)
+			{
+				for (String style : styles)
+				{
+					containers.add(new ContainerInfo(componentClass, locale, style, null, null));
+				}
+			}
+		}
+
+		// not thread safe, must be created before the tasks use it
+		final MarkupFactory markupFactory = application.getMarkupSettings().getMarkupFactory();
+		final IMarkupCache markupCache = markupFactory.getMarkupCache();
+		total = containers.size();
+		finished = new CountDownLatch(1);
+		executor = Executors.newFixedThreadPool(threads, new WarmupThreadFactory());
+
+		log.info("Warming up the markup cache with {} classes in {} threads", classes.size(),
+			threads);
+		if (markupCache == null)
+		{
+			log.warn("The markup cache is disabled");
+			containers.clear();
+		}
+		if (containers.isEmpty())
+		{
+			onFinished();
+		}
+
+		for (final ContainerInfo container : containers)
+		{
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					ThreadContext.setApplication(application);
+					try
+					{
+						preload(markupFactory, container);
+					}
+					finally
+					{
+						ThreadContext.detach();
+						if (completed.incrementAndGet() == total)
+						{
+							onFinished();
+						}
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		return this;
+	}
+
+	private void preload(final MarkupFactory markupFactory, final ContainerInfo container)
+	{
+		try
+		{
+			Request request = new WarmupRequest(container.getLocale());
+			ThreadContext.setRequestCycle(application.createRequestCycle(request,
+				NullResponse.getInstance()));
+			Session session = application.newSession(request, NullResponse.getInstance());
+			session.setStyle(container.getStyle());
+			ThreadContext.setSession(session);
+
+			MarkupContainer instance = newContainer(container.getContainerClass());
+			if ((instance != null) && (markupFactory.getMarkup(instance, false) != null))
+			{
+				loaded.incrementAndGet();
+				log.debug("Preloaded markup of {}", container);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			failed.incrementAndGet();
+			log.warn("Failed to preload the markup of " + container, e);
+		}
+	}
+
+	/**
+	 * Creates a throwaway instance of a container class.
+	 *
+	 * @param containerClass
+	 * @return the container, <code>null</code> if the class can not be instantiated
+	 */
+	@SuppressWarnings("unchecked")
+	private MarkupContainer newContainer(final Class<?> containerClass)
+	{
+		if (Modifier.isAbstract(containerClass.getModifiers()))
+		{
+			return null;
+		}
+
+		if (Page.class.isAssignableFrom(containerClass))
+		{
+			IPageFactory pageFactory = application.getPageFactory();
+			Class<? extends Page> pageClass = (Class<? extends Page>)containerClass;
+			return pageFactory.isBookmarkable(pageClass) ? (Page)pageFactory.newPage(pageClass)
+				: null;
+		}
+
+		try
+		{
+			return (MarkupContainer)containerClass.getConstructor(String.class).newInstance(
+				"warmup");
+		}
+		catch (NoSuchMethodException e)
+		{
+			return null;
+		}
+		catch (InvocationTargetException e)
+		{
+			throw new WicketRuntimeException(e.getCause());
+		}
+		catch (InstantiationException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	private void onFinished()
+	{
+		duration = Duration.milliseconds(System.currentTimeMillis() - startTime);
+		log.info("Markup warm-up finished in {}: {} of {} markups loaded, {} failed",
+			new Object[] { duration, loaded.get(), total, failed.get() });
+		finished.countDown();
+	}
+
+	/**
+	 * Stops the warm-up, e.g. when the application is destroyed.
+	 */
+	public synchronized void cancel()
+	{
+		if (executor != null)
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Waits for the warm-up to finish.
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return <code>true</code> if the warm-up finished, <code>false</code> if the timeout elapsed
+	 * @throws InterruptedException
+	 */
+	public boolean await(final long timeout, final TimeUnit unit) throws InterruptedException
+	{
+		CountDownLatch latch;
+		synchronized (this)
+		{
+			latch = finished;
+		}
+		if (latch == null)
+		{
+			throw new IllegalStateException("The markup warm-up has not been started");
+		}
+		return latch.await(timeout, unit);
+	}
+
+	/**
+	 * @return the number of combinations of classes, locales and styles to load
+	 */
+	public int getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * @return the number of combinations processed so far
+	 */
+	public int getCompleted()
+	{
+		return completed.get();
+	}
+
+	/**
+	 * @return the number of markups loaded, excluding classes without markup and classes whose
+	 *         markup can not be preloaded
+	 */
+	public int getLoaded()
+	{
+		return loaded.get();
+	}
+
+	/**
+	 * @return the number of markups which failed to load
+	 */
+	public int getFailed()
+	{
+		return failed.get();
+	}
+
+	/**
+	 * @return the duration of the warm-up or <code>null</code> if it has not finished yet
+	 */
+	public Duration getDuration()
+	{
+		return duration;
+	}
+
+	/**
+	 * Adds the classes of all markup files in the package and its sub packages.
+	 *
+	 * @param classResolver
+	 * @param packageName
+	 */
+	private void scanPackage(final IClassResolver classResolver, final String packageName)
+	{
+		String path = packageName.replace('.', '/');
+		Iterator<URL> urls = classResolver.getResources(path);
+		while (urls.hasNext())
+		{
+			URL url = urls.next();
+			List<String> names = new ArrayList<String>();
+			try
+			{
+				if ("file".equals(url.getProtocol()))
+				{
+					listFiles(new File(url.toURI()), path, names);
+				}
+				else
+				{
+					URLConnection connection = url.openConnection();
+					if (connection instanceof JarURLConnection)
+					{
+						listEntries(((JarURLConnection)connection).getJarFile(), path, names);
+					}
+					else
+					{
+						log.debug("Can not scan {} for markup", url);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to scan " + url + " for markup", e);
+			}
+			catch (URISyntaxException e)
+			{
+				log.warn("Failed to scan " + url + " for markup", e);
+			}
+
+			for (String name : names)
+			{
+				Class<?> componentClass = resolveClass(classResolver, name);
+				if (componentClass != null)
+				{
+					classes.add(componentClass);
+				}
+			}
+		}
+	}
+
+	private void listFiles(final File dir, final String path, final List<String> names)
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			if (file.isDirectory())
+			{
+				listFiles(file, path + "/" + file.getName(), names);
+			}
+			else
+			{
+				addMarkupFile(path + "/" + file.getName(), names);
+			}
+		}
+	}
+
+	private void listEntries(final JarFile jar, final String path, final List<String> names)
+	{
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements())
+		{
+			JarEntry entry = entries.nextElement();
+			if ((entry.isDirectory() == false) && entry.getName().startsWith(path + "/"))
+			{
+				addMarkupFile(entry.getName(), names);
+			}
+		}
+	}
+
+	private void addMarkupFile(final String fileName, final List<String> names)
+	{
+		String extension = "." + markupType.getExtension();
+		if (fileName.endsWith(extension))
+		{
+			names.add(fileName.substring(0, fileName.length() - extension.length()));
+		}
+	}
+
+	/**
+	 * Gets the component class of a markup file, e.g. com.example.Panel for
+	 * com/example/Panel_style_de.html
+	 *
+	 * @param classResolver
+	 * @param name
+	 *            the markup file name without extension
+	 * @return the class or <code>null</code> if there is no such component
+	 */
+	private Class<?> resolveClass(final IClassResolver classResolver, String name)
+	{
+		int slash = name.lastIndexOf('/');
+		while (true)
+		{
+			try
+			{
+				Class<?> componentClass = classResolver.resolveClass(name.replace('/', '.'));
+				return MarkupContainer.class.isAssignableFrom(componentClass) ? componentClass
+					: null;
+			}
+			catch (ClassNotFoundException e)
+			{
+				// strip the locale, style or variation suffix
+			}
+			catch (LinkageError e)
+			{
+				log.debug("Failed to load class " + name, e);
+				return null;
+			}
+
+			int underscore = name.lastIndexOf('_');
+			if (underscore <= slash)
+			{
+				return null;
+			}
+			name = name.substring(0, underscore);
+		}
+	}
+
+	/**
+	 * The request of the temporary request cycles the containers are created in
+	 */
+	private static class WarmupRequest extends Request
+	{
+		private final Locale locale;
+
+		private WarmupRequest(final Locale locale)
+		{
+			this.locale = locale;
+		}
+
+		@Override
+		public Url getUrl()
+		{
+			return new Url();
+		}
+
+		@Override
+		public Url getClientUrl()
+		{
+			return new Url();
+		}
+
+		@Override
+		public Locale getLocale()
+		{
+			return locale;
+		}
+
+		@Override
+		public Charset getCharset()
+		{
+			return Charset.forName("UTF-8");
+		}
+
+		@Override
+		public Object getContainerRequest()
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Creates daemon threads, the warm-up must not prevent the JVM from shutting down
+	 */
+	private static class WarmupThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "Wicket-MarkupWarmup-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
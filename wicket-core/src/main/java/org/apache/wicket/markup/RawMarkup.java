@@ -16,6 +16,10 @@
  */
 package org.apache.wicket.markup;
 
+import java.nio.charset.Charset;
+
+import org.apache.wicket.request.IPreEncodedText;
+
 /**
  * This class is for framework purposes only, which is why the class is (default) protected.
  * <p>
@@ -24,11 +28,14 @@ package org.apache.wicket.markup;
  * @see MarkupElement
  * @author Jonathan Locke
  */
-public final class RawMarkup extends MarkupElement
+public final class RawMarkup extends MarkupElement implements IPreEncodedText
 {
 	/** The raw markup string * */
 	private final CharSequence string;
 
+	/** The markup encoded with the charset of the last response it was written to */
+	private volatile EncodedText encoded;
+
 	/**
 	 * Create a RawMarkup element referencing an uninterpreted markup string.
 	 * 
@@ -96,6 +103,31 @@ public final class RawMarkup extends MarkupElement
 		return string;
 	}
 
+	/**
+	 * @see org.apache.wicket.request.IPreEncodedText#getText()
+	 */
+	@Override
+	public CharSequence getText()
+	{
+		return string;
+	}
+
+	/**
+	 * @see org.apache.wicket.request.IPreEncodedText#getBytes(java.nio.charset.Charset)
+	 */
+	@Override
+	public byte[] getBytes(final Charset charset)
+	{
+		EncodedText current = encoded;
+		if ((current == null) || (current.charset.equals(charset) == false))
+		{
+			// racing threads encode the same bytes, one of them wins
+			current = new EncodedText(charset, string.toString().getBytes(charset));
+			encoded = current;
+		}
+		return current.bytes;
+	}
+
 	/**
 	 * @return This raw markup string
 	 */
@@ -113,4 +145,20 @@ public final class RawMarkup extends MarkupElement
 	{
 		return "[Raw markup]";
 	}
+
+	/**
+	 * The bytes of the markup in a charset
+	 */
+	private static final class EncodedText
+	{
+		private final Charset charset;
+
+		private final byte[] bytes;
+
+		private EncodedText(final Charset charset, final byte[] bytes)
+		{
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+	}
 }
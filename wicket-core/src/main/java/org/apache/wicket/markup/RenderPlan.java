@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The structure of a {@link Markup} compiled for rendering. Rendering and {@link MarkupFragment}s
+ * repeatedly skip from an open tag to its close tag, which otherwise requires to scan and compare
+ * all elements in between. The plan records the index of the close tag of each open tag, so
+ * {@link MarkupStream#skipToMatchingCloseTag(ComponentTag)} and
+ * {@link MarkupStream#skipComponent()} can jump there directly.
+ * <p>
+ * The plan is compiled in one pass over the markup when a stream over the root markup first needs
+ * it, and is immutable. Fragments use a {@link #slice(int, int) slice} of the root's plan, which
+ * shares its indices.
+ * </p>
+ *
+ * @see Markup#getRenderPlan()
+ */
+final class RenderPlan
+{
+	/** The plan of markup without elements */
+	private static final int[] NO_CLOSE_INDICES = new int[0];
+
+	/** the index of the close tag by the index of the open tag in the root markup, or -1 */
+	private final int[] closeIndices;
+
+	/** the index in the root markup at which the plan starts */
+	private final int offset;
+
+	/** the number of elements covered by the plan */
+	private final int length;
+
+	/**
+	 * Construct.
+	 *
+	 * @param markup
+	 *            the markup to compile
+	 */
+	RenderPlan(final Markup markup)
+	{
+		offset = 0;
+		length = (markup == Markup.NO_MARKUP) ? 0 : markup.size();
+		if (length == 0)
+		{
+			closeIndices = NO_CLOSE_INDICES;
+			return;
+		}
+
+		closeIndices = new int[length];
+		Arrays.fill(closeIndices, -1);
+
+		// the indices of the open tags whose close tag has not been found yet, innermost last
+		final List<Integer> open = new ArrayList<Integer>();
+		for (int i = 0; i < length; i++)
+		{
+			final MarkupElement element = markup.get(i);
+			if ((element instanceof ComponentTag) == false)
+			{
+				continue;
+			}
+
+			// Same test as in skipToMatchingCloseTag(). Well formed markup closes the innermost
+			// open tag, but the test has to be applied to all of them to get the same result.
+			for (int j = open.size() - 1; j >= 0; j--)
+			{
+				final int openIndex = open.get(j);
+				if (element.closes(markup.get(openIndex)))
+				{
+					closeIndices[openIndex] = i;
+					open.remove(j);
+				}
+			}
+
+			// Tags like <br> are not closed. Scanning for their close tag is left to the caller.
+			final ComponentTag tag = (ComponentTag)element;
+			if (tag.isOpen() && (tag.hasNoCloseTag() == false))
+			{
+				open.add(i);
+			}
+		}
+	}
+
+	/**
+	 * Construct a slice.
+	 *
+	 * @param closeIndices
+	 *            the close indices of the root markup
+	 * @param offset
+	 *            the index in the root markup at which the slice starts
+	 * @param length
+	 *            the number of elements in the slice
+	 */
+	private RenderPlan(final int[] closeIndices, final int offset, final int length)
+	{
+		this.closeIndices = closeIndices;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	/**
+	 * Gets the plan of a range of the markup, e.g. of a {@link MarkupFragment}. The slice shares
+	 * the indices of this plan, close tags outside of the range are not known to it.
+	 *
+	 * @param start
+	 *            the index at which the range starts, relative to this plan
+	 * @param size
+	 *            the number of elements in the range
+	 * @return the plan of the range
+	 */
+	RenderPlan slice(final int start, final int size)
+	{
+		return new RenderPlan(closeIndices, offset + start, size);
+	}
+
+	/**
+	 * Gets the index of the first element after the open tag which closes it.
+	 *
+	 * @param openIndex
+	 *            the index of an open tag, relative to the plan
+	 * @return the index of the close tag, relative to the plan, or -1 if not known, in which case
+	 *         the caller has to scan the markup
+	 */
+	int getCloseIndex(final int openIndex)
+	{
+		if ((openIndex < 0) || (openIndex >= length))
+		{
+			return -1;
+		}
+		final int closeIndex = closeIndices[offset + openIndex];
+		if ((closeIndex == -1) || (closeIndex - offset >= length))
+		{
+			return -1;
+		}
+		return closeIndex - offset;
+	}
+}
@@ -31,6 +31,7 @@ import org.apache.wicket.markup.WicketTag;
 import org.apache.wicket.markup.html.IHeaderResponse;
 import org.apache.wicket.markup.html.TransparentWebMarkupContainer;
 import org.apache.wicket.markup.renderStrategy.AbstractHeaderRenderStrategy;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.response.StringResponse;
 
@@ -164,6 +165,12 @@ public class HtmlHeaderContainer extends TransparentWebMarkupContainer
 					webResponse.write("</head>");
 				}
 			}
+
+			// Let the browser fetch the resources of a streamed page while the body is rendered
+			if (webResponse instanceof StreamingWebResponse)
+			{
+				((StreamingWebResponse)webResponse).flush();
+			}
 		}
 		finally
 		{
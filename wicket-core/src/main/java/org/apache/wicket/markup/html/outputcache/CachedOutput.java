@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.outputcache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.wicket.resource.header.HeaderItem;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * The output of a {@link ICacheableComponent} as stored in the {@link ComponentOutputCache}.
+ * Immutable.
+ */
+public final class CachedOutput
+{
+	private final String markup;
+
+	private final List<HeaderItem> headerItems;
+
+	/** null if it doesn't expire */
+	private final Time expires;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param markup
+	 *            The markup rendered by the component and its children
+	 * @param headerItems
+	 *            The header items contributed by the component and its children
+	 * @param duration
+	 *            How long the output may be replayed, null if it doesn't expire
+	 */
+	public CachedOutput(final CharSequence markup, final List<HeaderItem> headerItems,
+		final Duration duration)
+	{
+		Args.notNull(markup, "markup");
+		Args.notNull(headerItems, "headerItems");
+
+		this.markup = markup.toString();
+		this.headerItems = Collections.unmodifiableList(new ArrayList<HeaderItem>(headerItems));
+		expires = (duration != null) ? Time.now().add(duration) : null;
+	}
+
+	/**
+	 * @return The markup rendered by the component and its children
+	 */
+	public String getMarkup()
+	{
+		return markup;
+	}
+
+	/**
+	 * @return The header items contributed by the component and its children, in the order they
+	 *         have been rendered
+	 */
+	public List<HeaderItem> getHeaderItems()
+	{
+		return headerItems;
+	}
+
+	/**
+	 * @return True, if the output must not be replayed any longer
+	 */
+	public boolean isExpired()
+	{
+		return (expires != null) && Time.now().after(expires);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[CachedOutput length=" + markup.length() + " headerItems=" + headerItems.size() +
+			" expires=" + expires + "]";
+	}
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.outputcache;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.Page;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.util.collections.SegmentedLruCache;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+
+/**
+ * The application wide cache of the output of {@link ICacheableComponent}s. The cache is bounded
+ * by the total length of the cached markup and evicts the least recently used output first.
+ * <p>
+ * Each application gets a cache with the default maximum weight on first access. Use
+ * {@link org.apache.wicket.settings.IMarkupSettings#setComponentOutputCache(ComponentOutputCache)},
+ * e.g. in <code>Application.init()</code>, to configure a different one:
+ * 
+ * <pre>
+ * getMarkupSettings().setComponentOutputCache(new ComponentOutputCache(10 * 1024 * 1024));
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The output of a component is replayed until it expires, is evicted or is removed explicitly,
+ * e.g. when the data it displays has changed:
+ * 
+ * <pre>
+ * ComponentOutputCache.get().remove(MenuPanel.class, menuKey);
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @see ICacheableComponent
+ */
+public class ComponentOutputCache
+{
+	/** The default maximum total length of the cached markup */
+	public static final long DEFAULT_MAX_WEIGHT = 1024 * 1024;
+
+	private final SegmentedLruCache<Key, CachedOutput> cache;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxWeight
+	 *            The maximum total length of the cached markup
+	 */
+	public ComponentOutputCache(final long maxWeight)
+	{
+		cache = new SegmentedLruCache<Key, CachedOutput>(maxWeight,
+			new SegmentedLruCache.IWeigher<Key, CachedOutput>()
+			{
+				@Override
+				public int weigh(final Key key, final CachedOutput value)
+				{
+					return value.getMarkup().length();
+				}
+			});
+	}
+
+	/**
+	 * @return The cache of the current application
+	 * @see org.apache.wicket.settings.IMarkupSettings#getComponentOutputCache()
+	 */
+	public static ComponentOutputCache get()
+	{
+		return Application.get().getMarkupSettings().getComponentOutputCache();
+	}
+
+	/**
+	 * Gets the output cached for the component. Expired output is removed.
+	 * 
+	 * @param component
+	 *            A component implementing {@link ICacheableComponent}
+	 * @return The output, or null if none is cached or the component provides no cache key
+	 */
+	public CachedOutput get(final Component component)
+	{
+		final Key key = newKey(component);
+		if (key == null)
+		{
+			return null;
+		}
+
+		CachedOutput output = cache.get(key);
+		if ((output != null) && output.isExpired())
+		{
+			cache.remove(key);
+			output = null;
+		}
+
+		if (output != null)
+		{
+			hitCount.incrementAndGet();
+		}
+		else
+		{
+			missCount.incrementAndGet();
+		}
+		return output;
+	}
+
+	/**
+	 * Caches the output of the component
+	 * 
+	 * @param component
+	 *            A component implementing {@link ICacheableComponent}
+	 * @param output
+	 */
+	public void put(final Component component, final CachedOutput output)
+	{
+		Args.notNull(output, "output");
+
+		final Key key = newKey(component);
+		if (key != null)
+		{
+			cache.put(key, output);
+		}
+	}
+
+	/**
+	 * Removes the output cached for the component class and key, for all locales, styles,
+	 * variations, pages and base paths
+	 * 
+	 * @param componentClass
+	 * @param key
+	 *            The key as returned by {@link ICacheableComponent#getOutputCacheKey()}
+	 * @return The number of entries removed
+	 */
+	public int remove(final Class<? extends Component> componentClass, final String key)
+	{
+		Args.notNull(componentClass, "componentClass");
+		Args.notNull(key, "key");
+
+		return remove(componentClass.getName(), key);
+	}
+
+	/**
+	 * Removes all output cached for the component class
+	 * 
+	 * @param componentClass
+	 * @return The number of entries removed
+	 */
+	public int removeAll(final Class<? extends Component> componentClass)
+	{
+		Args.notNull(componentClass, "componentClass");
+
+		return remove(componentClass.getName(), null);
+	}
+
+	/**
+	 * Removes all cached output
+	 */
+	public void clear()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * @return The number of cached outputs
+	 */
+	public int size()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return The total length of the cached markup
+	 */
+	public long getWeight()
+	{
+		return cache.getWeight();
+	}
+
+	/**
+	 * @return The maximum total length of the cached markup
+	 */
+	public long getMaxWeight()
+	{
+		return cache.getMaxWeight();
+	}
+
+	/**
+	 * @return The number of renders which replayed cached output
+	 */
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	/**
+	 * @return The number of renders which found no cached output, or expired output only
+	 */
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	/**
+	 * @return The share of renders which replayed cached output, 0 if there were none yet
+	 */
+	public double getHitRate()
+	{
+		final long hits = hitCount.get();
+		final long lookups = hits + missCount.get();
+		return (lookups == 0) ? 0 : ((double)hits / lookups);
+	}
+
+	/**
+	 * @return The number of outputs evicted to stay within the maximum weight
+	 */
+	public long getEvictionCount()
+	{
+		return cache.getEvictionCount();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[ComponentOutputCache size=" + size() + " weight=" + getWeight() + " hitRate=" +
+			getHitRate() + "]";
+	}
+
+	/**
+	 * @param className
+	 * @param key
+	 *            null for all keys
+	 * @return The number of entries removed
+	 */
+	private int remove(final String className, final String key)
+	{
+		int count = 0;
+		final Iterator<Key> iter = cache.getKeys().iterator();
+		while (iter.hasNext())
+		{
+			final Key entry = iter.next();
+			if (entry.className.equals(className) && ((key == null) || entry.key.equals(key)))
+			{
+				if (cache.remove(entry))
+				{
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param component
+	 * @return The key of the component's output, null if the component provides no cache key
+	 */
+	private static Key newKey(final Component component)
+	{
+		Args.notNull(component, "component");
+		if ((component instanceof ICacheableComponent) == false)
+		{
+			throw new IllegalArgumentException("Component must implement " +
+				ICacheableComponent.class.getName() + ": " + component);
+		}
+
+		final String key = ((ICacheableComponent)component).getOutputCacheKey();
+		if (key == null)
+		{
+			return null;
+		}
+
+		// the output contains urls rendered relative to the path of the base url, and the urls of
+		// stateless listeners contain the page class, its parameters and the path of the component
+		final Url baseUrl = component.getRequestCycle().getUrlRenderer().getBaseUrl();
+		final Page page = component.getPage();
+		return new Key(component.getClass().getName(), key, component.getLocale(),
+			component.getStyle(), component.getVariation(), baseUrl.getPath(),
+			page.getClass().getName(), String.valueOf(page.getPageParameters()),
+			component.getPageRelativePath());
+	}
+
+	/**
+	 * The key of a cached output
+	 */
+	private static final class Key
+	{
+		private final String className;
+
+		private final String key;
+
+		private final Locale locale;
+
+		private final String style;
+
+		private final String variation;
+
+		private final String basePath;
+
+		private final String pageClassName;
+
+		private final String pageParameters;
+
+		private final String path;
+
+		private final int hashCode;
+
+		private Key(final String className, final String key, final Locale locale,
+			final String style, final String variation, final String basePath,
+			final String pageClassName, final String pageParameters, final String path)
+		{
+			this.className = className;
+			this.key = key;
+			this.locale = locale;
+			this.style = style;
+			this.variation = variation;
+			this.basePath = basePath;
+			this.pageClassName = pageClassName;
+			this.pageParameters = pageParameters;
+			this.path = path;
+			hashCode = Objects.hashCode(className, key, locale, style, variation, basePath,
+				pageClassName, pageParameters, path);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object obj)
+		{
+			if (obj == this)
+			{
+				return true;
+			}
+			if ((obj instanceof Key) == false)
+			{
+				return false;
+			}
+			final Key that = (Key)obj;
+			return className.equals(that.className) && key.equals(that.key) &&
+				Objects.equal(locale, that.locale) && Objects.equal(style, that.style) &&
+				Objects.equal(variation, that.variation) && basePath.equals(that.basePath) &&
+				pageClassName.equals(that.pageClassName) &&
+				pageParameters.equals(that.pageParameters) && path.equals(that.path);
+		}
+
+		@Override
+		public String toString()
+		{
+			return className + ":" + key + ":" + locale + ":" + style + ":" + variation + ":" +
+				basePath + ":" + pageClassName + ":" + pageParameters + ":" + path;
+		}
+	}
+}
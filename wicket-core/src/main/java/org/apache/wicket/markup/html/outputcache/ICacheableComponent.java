@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.outputcache;
+
+import org.apache.wicket.util.time.Duration;
+
+/**
+ * Implemented by components whose rendered output depends on nothing but the cache key, e.g. a
+ * navigation menu or a footer. Once such a component has been rendered, its output - including
+ * the output of all its children and the header items contributed by them - is kept in the
+ * {@link ComponentOutputCache} of the application. Later renders with the same key replay the
+ * output, without preparing or rendering any of the children.
+ * <p>
+ * Caching is restricted to full page renders of stateless component hierarchies: the output is
+ * only stored if the component and all its visible children are stateless, and ajax requests always
+ * render the component. Neither is output replayed nor recorded while the session id is encoded
+ * into urls, as it would leak the session of one user to other users. The raw <code>&lt;wicket:head&gt;</code> markup of the components is not
+ * cached but contributed as usual. Markup ids generated for the page rendering the output first
+ * are replayed as they are, thus components with generated markup ids should not be cached.
+ * </p>
+ * 
+ * @see ComponentOutputCache
+ */
+public interface ICacheableComponent
+{
+	/**
+	 * Gets the key identifying the output of the component. The component class, locale, style and
+	 * variation are added to the key automatically, as well as the path of the base url, the page
+	 * class and parameters and the component path the urls in the output are rendered for.
+	 * 
+	 * @return The key, or null to render the component without cache
+	 */
+	String getOutputCacheKey();
+
+	/**
+	 * @return How long the output may be replayed, or null to replay it until it is removed from
+	 *         the cache
+	 */
+	Duration getOutputCacheDuration();
+}
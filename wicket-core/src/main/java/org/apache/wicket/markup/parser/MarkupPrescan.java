@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * The wicket specific constructs found by a quick scan of the markup text, prior to parsing it.
+ * Markup filters which can not fire for the markup, e.g. the enclosure handler for markup without
+ * any <code>&lt;wicket:enclosure&gt;</code>, may be left out of the filter chain.
+ * <p>
+ * The scan looks at each prefixed name like <code>wicket:id</code> in the text, including text
+ * which is not part of a tag. It may thus report constructs which are not there, but never misses
+ * one. Names are compared case-insensitively. Every namespace declared with
+ * <code>xmlns:prefix</code> is considered a wicket namespace, because the declared URI is not
+ * evaluated.
+ * </p>
+ *
+ * @see org.apache.wicket.markup.AbstractMarkupParser#isMarkupFilterNeeded(IMarkupFilter,
+ *      MarkupPrescan)
+ */
+public final class MarkupPrescan
+{
+	/** The names of the wicket tags found, e.g. "enclosure" */
+	private final Set<String> tagNames = new HashSet<String>();
+
+	/** The names of the wicket attributes found, e.g. "message" */
+	private final Set<String> attributeNames = new HashSet<String>();
+
+	/**
+	 * Scans the markup
+	 *
+	 * @param markup
+	 *            The markup text
+	 * @param wicketNamespace
+	 *            The wicket namespace of the markup, usually "wicket"
+	 */
+	public MarkupPrescan(final CharSequence markup, final String wicketNamespace)
+	{
+		Args.notNull(markup, "markup");
+		Args.notNull(wicketNamespace, "wicketNamespace");
+
+		// The names by prefix. Prefixes are resolved once all namespace declarations are known.
+		final Map<String, Set<String>> tagsByPrefix = new HashMap<String, Set<String>>();
+		final Map<String, Set<String>> attributesByPrefix = new HashMap<String, Set<String>>();
+		final Set<String> namespaces = new HashSet<String>();
+		namespaces.add(wicketNamespace.toLowerCase());
+
+		final int length = markup.length();
+		for (int colon = 0; colon < length; colon++)
+		{
+			if (markup.charAt(colon) != ':')
+			{
+				continue;
+			}
+
+			int prefixStart = colon;
+			while ((prefixStart > 0) && isNameChar(markup.charAt(prefixStart - 1)))
+			{
+				prefixStart--;
+			}
+			int nameEnd = colon + 1;
+			while ((nameEnd < length) && isNameChar(markup.charAt(nameEnd)))
+			{
+				nameEnd++;
+			}
+			if ((prefixStart == colon) || (nameEnd == colon + 1))
+			{
+				continue;
+			}
+
+			final String prefix = markup.subSequence(prefixStart, colon).toString().toLowerCase();
+			final String name = markup.subSequence(colon + 1, nameEnd).toString().toLowerCase();
+			if ("xmlns".equals(prefix))
+			{
+				namespaces.add(name);
+			}
+			else if (isTagStart(markup, prefixStart))
+			{
+				add(tagsByPrefix, prefix, name);
+			}
+			else
+			{
+				add(attributesByPrefix, prefix, name);
+			}
+			colon = nameEnd - 1;
+		}
+
+		for (String namespace : namespaces)
+		{
+			addAll(tagNames, tagsByPrefix.get(namespace));
+			addAll(attributeNames, attributesByPrefix.get(namespace));
+		}
+	}
+
+	/**
+	 * @return true, if the markup may contain any wicket tag
+	 */
+	public boolean hasWicketTags()
+	{
+		return tagNames.isEmpty() == false;
+	}
+
+	/**
+	 * @param name
+	 *            The name of the tag without namespace, e.g. "enclosure"
+	 * @return true, if the markup may contain the wicket tag
+	 */
+	public boolean hasWicketTag(final String name)
+	{
+		return tagNames.contains(name.toLowerCase());
+	}
+
+	/**
+	 * @param name
+	 *            The name of the attribute without namespace, e.g. "message"
+	 * @return true, if the markup may contain the wicket attribute
+	 */
+	public boolean hasWicketAttribute(final String name)
+	{
+		return attributeNames.contains(name.toLowerCase());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[MarkupPrescan tags=" + tagNames + " attributes=" + attributeNames + "]";
+	}
+
+	/**
+	 * @param ch
+	 * @return true, if the char may be part of a namespace or name
+	 */
+	private static boolean isNameChar(final char ch)
+	{
+		return Character.isLetterOrDigit(ch) || (ch == '_') || (ch == '-') || (ch == '.');
+	}
+
+	/**
+	 * @param markup
+	 * @param prefixStart
+	 * @return true, if the prefixed name follows "&lt;" or "&lt;/"
+	 */
+	private static boolean isTagStart(final CharSequence markup, final int prefixStart)
+	{
+		int pos = prefixStart - 1;
+		if ((pos >= 0) && (markup.charAt(pos) == '/'))
+		{
+			pos--;
+		}
+		return (pos >= 0) && (markup.charAt(pos) == '<');
+	}
+
+	private static void add(final Map<String, Set<String>> names, final String prefix,
+		final String name)
+	{
+		Set<String> set = names.get(prefix);
+		if (set == null)
+		{
+			set = new HashSet<String>();
+			names.put(prefix, set);
+		}
+		set.add(name);
+	}
+
+	private static void addAll(final Set<String> names, final Set<String> add)
+	{
+		if (add != null)
+		{
+			names.addAll(add);
+		}
+	}
+}
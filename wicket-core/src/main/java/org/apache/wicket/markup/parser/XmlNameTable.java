@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+/**
+ * A fixed table of the element, namespace and attribute names commonly found in markup. The
+ * {@link XmlPullParser} looks names up by their position in the markup and shares the strings of
+ * the table between all tags, instead of copying the name of each tag from the markup. Names not
+ * in the table are copied as before.
+ * <p>
+ * The table is immutable and thus thread safe.
+ * </p>
+ */
+final class XmlNameTable
+{
+	/** The names. All lower case, because that's how most markup is written */
+	private static final String[] NAMES = {
+			// namespaces
+			"wicket",
+			"xmlns",
+			"xml",
+
+			// elements
+			"a", "abbr", "address", "area", "article", "aside", "b", "base", "blockquote", "body",
+			"br", "button", "caption", "code", "col", "colgroup", "dd", "div", "dl", "dt", "em",
+			"fieldset", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hr",
+			"html", "i", "iframe", "img", "input", "label", "legend", "li", "link", "meta", "nav",
+			"noscript", "ol", "optgroup", "option", "p", "pre", "script", "section", "select",
+			"small", "span", "strong", "style", "sub", "sup", "table", "tbody", "td", "textarea",
+			"tfoot", "th", "thead", "title", "tr", "u", "ul",
+
+			// attributes
+			"accesskey", "action", "align", "alt", "border", "cellpadding", "cellspacing",
+			"charset", "checked", "class", "cols", "colspan", "content", "dir", "disabled",
+			"enctype", "for", "height", "href", "http-equiv", "id", "lang", "maxlength", "media",
+			"method", "multiple", "name", "onblur", "onchange", "onclick", "onfocus", "onkeydown",
+			"onkeyup", "onload", "onmouseout", "onmouseover", "onsubmit", "readonly", "rel",
+			"rows", "rowspan", "selected", "size", "src", "tabindex", "target", "type", "valign",
+			"value", "width", "xml:lang", "xmlns:wicket",
+
+			// wicket elements and attributes not listed above
+			"child", "container", "enclosure", "extend", "fragment", "header-items", "message",
+			"panel", "remove", "wicket:enclosure", "wicket:id", "wicket:message", "wicket:unknown" };
+
+	/** The hash table. The size is a power of two well above the number of names */
+	private static final String[] TABLE = new String[512];
+
+	static
+	{
+		for (String name : NAMES)
+		{
+			int index = hash(name, 0, name.length()) & (TABLE.length - 1);
+			while ((TABLE[index] != null) && (TABLE[index].equals(name) == false))
+			{
+				index = (index + 1) & (TABLE.length - 1);
+			}
+			TABLE[index] = name;
+		}
+	}
+
+	/**
+	 * Construct.
+	 */
+	private XmlNameTable()
+	{
+	}
+
+	/**
+	 * Gets the name found in the given range of the input.
+	 *
+	 * @param input
+	 *            the input
+	 * @param start
+	 *            the index of the first char of the name
+	 * @param end
+	 *            the index after the last char of the name
+	 * @return the shared string from the table, or a copy of the range if the name is not in the
+	 *         table
+	 */
+	static String get(final CharSequence input, final int start, final int end)
+	{
+		int index = hash(input, start, end) & (TABLE.length - 1);
+		String name;
+		while ((name = TABLE[index]) != null)
+		{
+			if (regionEquals(name, input, start, end))
+			{
+				return name;
+			}
+			index = (index + 1) & (TABLE.length - 1);
+		}
+		return input.subSequence(start, end).toString();
+	}
+
+	/**
+	 * Same as String.hashCode() for the range of the input
+	 *
+	 * @param input
+	 * @param start
+	 * @param end
+	 * @return the hash code
+	 */
+	private static int hash(final CharSequence input, final int start, final int end)
+	{
+		int hash = 0;
+		for (int i = start; i < end; i++)
+		{
+			hash = 31 * hash + input.charAt(i);
+		}
+
+		// spread the bits, since the table is indexed with the lower bits only
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @param name
+	 * @param input
+	 * @param start
+	 * @param end
+	 * @return true, if the range of the input equals the name
+	 */
+	private static boolean regionEquals(final String name, final CharSequence input,
+		final int start, final int end)
+	{
+		if (name.length() != (end - start))
+		{
+			return false;
+		}
+		for (int i = start; i < end; i++)
+		{
+			if (name.charAt(i - start) != input.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -21,6 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
+import java.util.regex.Matcher;
 
 import org.apache.wicket.markup.parser.XmlTag.TagType;
 import org.apache.wicket.markup.parser.XmlTag.TextSegment;
@@ -59,6 +60,18 @@ public final class XmlPullParser implements IXmlPullParser
 	 */
 	private FullyBufferedReader input;
 
+	/**
+	 * The markup as read by {@link #input}. Tag names and attributes are parsed directly from it,
+	 * without copying the text of each tag first.
+	 */
+	private String markup;
+
+	/** Parses the tag names of the markup. Created once per markup and reused for all tags. */
+	private TagNameParser tagNameParser;
+
+	/** Parses the attributes of the markup. Created once per markup and reused for all tags. */
+	private VariableAssignmentParser attributeParser;
+
 	/** temporary variable which will hold the name of the closing tag. */
 	private String skipUntilText;
 
@@ -225,9 +238,11 @@ public final class XmlPullParser implements IXmlPullParser
 		// Get the complete tag text
 		lastText = input.getSubstring(openBracketIndex, closeBracketIndex + 1);
 
-		// Get the tagtext between open and close brackets
-		String tagText = lastText.subSequence(1, lastText.length() - 1).toString();
-		if (tagText.length() == 0)
+		// Get the range of the tagtext between open and close brackets. The tag text itself is
+		// not copied, but parsed directly from the markup.
+		int tagTextStart = openBracketIndex + 1;
+		int tagTextEnd = closeBracketIndex;
+		if (tagTextStart == tagTextEnd)
 		{
 			throw new ParseException("Found empty tag: '<>' at" + getLineAndColumnText(),
 				input.getPosition());
@@ -237,16 +252,16 @@ public final class XmlPullParser implements IXmlPullParser
 		final TagType type;
 
 		// If the tag ends in '/', it's a "simple" tag like <foo/>
-		if (tagText.endsWith("/"))
+		if (markup.charAt(tagTextEnd - 1) == '/')
 		{
 			type = TagType.OPEN_CLOSE;
-			tagText = tagText.substring(0, tagText.length() - 1);
+			tagTextEnd--;
 		}
-		else if (tagText.startsWith("/"))
+		else if (markup.charAt(tagTextStart) == '/')
 		{
 			// The tag text starts with a '/', it's a simple close tag
 			type = TagType.CLOSE;
-			tagText = tagText.substring(1);
+			tagTextStart++;
 		}
 		else
 		{
@@ -254,16 +269,16 @@ public final class XmlPullParser implements IXmlPullParser
 			type = TagType.OPEN;
 
 			// If open tag and starts with "s" like "script" or "style", than ...
-			if ((tagText.length() > STYLE.length()) &&
-				((tagText.charAt(0) == 's') || (tagText.charAt(0) == 'S')))
+			final char firstChar = markup.charAt(tagTextStart);
+			if (((tagTextEnd - tagTextStart) > STYLE.length()) &&
+				((firstChar == 's') || (firstChar == 'S')))
 			{
-				final String lowerCase = tagText.substring(0, 6).toLowerCase();
-				if (lowerCase.startsWith(SCRIPT))
+				if (markup.regionMatches(true, tagTextStart, SCRIPT, 0, SCRIPT.length()))
 				{
 					// prepare to skip everything between the open and close tag
 					skipUntilText = SCRIPT;
 				}
-				else if (lowerCase.startsWith(STYLE))
+				else if (markup.regionMatches(true, tagTextStart, STYLE, 0, STYLE.length()))
 				{
 					// prepare to skip everything between the open and close tag
 					skipUntilText = STYLE;
@@ -271,10 +286,17 @@ public final class XmlPullParser implements IXmlPullParser
 			}
 		}
 
+		if (tagTextStart == tagTextEnd)
+		{
+			throw new ParseException("Found empty tag: '" + lastText + "' at" +
+				getLineAndColumnText(), input.getPosition());
+		}
+
 		// Handle special tags like <!-- and <![CDATA ...
-		final char firstChar = tagText.charAt(0);
+		final char firstChar = markup.charAt(tagTextStart);
 		if ((firstChar == '!') || (firstChar == '?'))
 		{
+			final String tagText = markup.substring(tagTextStart, tagTextEnd);
 			specialTagHandling(tagText, openBracketIndex, closeBracketIndex);
 
 			input.countLinesTo(openBracketIndex);
@@ -291,7 +313,7 @@ public final class XmlPullParser implements IXmlPullParser
 		lastTag = tag;
 
 		// Parse the tag text and populate tag attributes
-		if (parseTagText(tag, tagText))
+		if (parseTagText(tag, tagTextStart, tagTextEnd))
 		{
 			// Move to position after the tag
 			input.setPosition(closeBracketIndex + 1);
@@ -584,6 +606,9 @@ public final class XmlPullParser implements IXmlPullParser
 		{
 			xmlReader = new XmlReader(new BufferedInputStream(inputStream, 4000), encoding);
 			input = new FullyBufferedReader(xmlReader);
+			markup = input.toString();
+			tagNameParser = new TagNameParser(markup);
+			attributeParser = new VariableAssignmentParser(markup);
 		}
 		finally
 		{
@@ -612,61 +637,60 @@ public final class XmlPullParser implements IXmlPullParser
 
 	/**
 	 * Parses the text between tags. For example, "a href=foo.html".
+	 * <p>
+	 * The parsers are applied to the range of the tag text within the markup. Tag and attribute
+	 * names are taken from {@link XmlNameTable} if possible, hence only the attribute values and
+	 * uncommon names are copied from the markup.
+	 * </p>
 	 * 
 	 * @param tag
-	 * @param tagText
-	 *            The text between tags
+	 * @param tagTextStart
+	 *            The index of the text between tags in the markup
+	 * @param tagTextEnd
+	 *            The index after the text between tags in the markup
 	 * @return false in case of an error
 	 * @throws ParseException
 	 */
-	private boolean parseTagText(final XmlTag tag, final String tagText) throws ParseException
+	private boolean parseTagText(final XmlTag tag, final int tagTextStart, final int tagTextEnd)
+		throws ParseException
 	{
-		// Get the length of the tagtext
-		final int tagTextLength = tagText.length();
-
 		// If we match tagname pattern
-		final TagNameParser tagnameParser = new TagNameParser(tagText);
-		if (tagnameParser.matcher().lookingAt())
+		final Matcher tagNameMatcher = tagNameParser.matcher();
+		tagNameMatcher.region(tagTextStart, tagTextEnd);
+		if (tagNameMatcher.lookingAt())
 		{
 			// Extract the tag from the pattern matcher
-			tag.name = tagnameParser.getName();
-			tag.namespace = tagnameParser.getNamespace();
+			tag.name = XmlNameTable.get(markup, tagNameParser.getNameStart(),
+				tagNameParser.getNameEnd());
+			final int namespaceStart = tagNameParser.getNamespaceStart();
+			if (namespaceStart != -1)
+			{
+				tag.namespace = XmlNameTable.get(markup, namespaceStart,
+					tagNameParser.getNamespaceEnd()).toLowerCase();
+			}
 
 			// Are we at the end? Then there are no attributes, so we just
 			// return the tag
-			int pos = tagnameParser.matcher().end(0);
-			if (pos == tagTextLength)
+			int pos = tagNameMatcher.end(0);
+			if (pos == tagTextEnd)
 			{
 				return true;
 			}
 
 			// Extract attributes
-			final VariableAssignmentParser attributeParser = new VariableAssignmentParser(tagText);
-			while (attributeParser.matcher().find(pos))
+			final Matcher attributeMatcher = attributeParser.matcher();
+			attributeMatcher.region(pos, tagTextEnd);
+			while (attributeMatcher.find())
 			{
 				// Get key and value using attribute pattern
-				String value = attributeParser.getValue();
-
-				// In case like <html xmlns:wicket> will the value be null
-				if (value == null)
-				{
-					value = "";
-				}
+				final String value = getAttributeValue();
 
 				// Set new position to end of attribute
-				pos = attributeParser.matcher().end(0);
-
-				// Chop off double quotes or single quotes
-				if (value.startsWith("\"") || value.startsWith("\'"))
-				{
-					value = value.substring(1, value.length() - 1);
-				}
-
-				// Trim trailing whitespace
-				value = value.trim();
+				pos = attributeMatcher.end(0);
 
 				// Get key
-				final String key = attributeParser.getKey();
+				final String key = XmlNameTable.get(markup, attributeParser.getKeyStart(),
+					attributeParser.getKeyEnd());
 
 				// Put the attribute in the attributes hash
 				if (null != tag.getAttributes().put(key, value))
@@ -677,7 +701,7 @@ public final class XmlPullParser implements IXmlPullParser
 
 				// The input has to match exactly (no left over junk after
 				// attributes)
-				if (pos == tagTextLength)
+				if (pos == tagTextEnd)
 				{
 					return true;
 				}
@@ -688,4 +712,42 @@ public final class XmlPullParser implements IXmlPullParser
 
 		return false;
 	}
+
+	/**
+	 * Gets the value of the attribute just found by the attribute parser, without the quotes and
+	 * trimmed.
+	 * 
+	 * @return the attribute value
+	 */
+	private String getAttributeValue()
+	{
+		int start = attributeParser.getValueStart();
+
+		// In case like <html xmlns:wicket> will the value be null
+		if (start == -1)
+		{
+			return "";
+		}
+		int end = attributeParser.getValueEnd();
+
+		// Chop off double quotes or single quotes
+		final char firstChar = markup.charAt(start);
+		if ((firstChar == '"') || (firstChar == '\''))
+		{
+			start++;
+			end = Math.max(start, end - 1);
+		}
+
+		// Trim whitespace
+		while ((start < end) && (markup.charAt(start) <= ' '))
+		{
+			start++;
+		}
+		while ((start < end) && (markup.charAt(end - 1) <= ' '))
+		{
+			end--;
+		}
+
+		return markup.substring(start, end);
+	}
 }
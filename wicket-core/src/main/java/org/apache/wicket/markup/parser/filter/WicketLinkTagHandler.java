@@ -79,6 +79,14 @@ public class WicketLinkTagHandler extends AbstractMarkupFilter implements ICompo
 		setAutomaticLinking(Application.get().getMarkupSettings().getAutomaticLinking());
 	}
 
+	/**
+	 * @return the default value for autolinking
+	 */
+	public boolean getAutomaticLinking()
+	{
+		return autolinking;
+	}
+
 	/**
 	 * Set the default value for autolinking
 	 * 
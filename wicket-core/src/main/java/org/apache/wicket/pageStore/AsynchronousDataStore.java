@@ -16,28 +16,35 @@
  */
 package org.apache.wicket.pageStore;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.apache.wicket.util.lang.Args;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Facade for {@link IDataStore} that does the actual saving in worker thread.
+ * Facade for {@link IDataStore} that does the actual saving in worker threads.
  * <p>
- * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in
- * {@link #entries} queue if there is room. Acts as producer.<br/>
- * Later {@link PageSavingRunnable} reads in blocking manner from {@link #entries} and saves each
- * entry. Acts as consumer.
+ * Creates an {@link Entry} for each triple (sessionId, pageId, data) and puts it in one of the
+ * {@link #partitions} queues if there is room. Acts as producer.<br/>
+ * Later {@link PageSavingRunnable} reads in blocking manner from its queue and saves the entries
+ * in batches. Acts as consumer. An entry that has been replaced by a newer version of the same page
+ * (or removed) before it was saved is skipped.
  * </p>
- * It starts only one instance of {@link PageSavingRunnable} because all we need is to make the page
- * storing asynchronous. We don't want to write concurrently in the wrapped {@link IDataStore},
- * though it may happen in the extreme case when the queue is full. These cases should be avoided.
+ * By default only one instance of {@link PageSavingRunnable} is started because all we need is to
+ * make the page storing asynchronous. When more writer threads are configured the entries are
+ * partitioned by session id, so the pages of a session are still saved in order by a single
+ * thread. If a queue is full the entry is saved synchronously by the calling thread. These cases
+ * should be avoided; see {@link #getSynchronousCount()}.
  * 
  * @author Matej Knopp
  */
@@ -57,9 +64,20 @@ public class AsynchronousDataStore implements IDataStore
 	private static final long POLL_WAIT = 1000L;
 
 	/**
-	 * The page saving thread.
+	 * The maximum number of entries a page saving thread takes from its queue at once.
 	 */
-	private final Thread pageSavingThread;
+	private static final int MAX_BATCH_SIZE = 50;
+
+	/**
+	 * The upper bounds (exclusive) of the buckets of the write latency histogram. In millis. The
+	 * last bucket counts all writes taking longer than the last bound.
+	 */
+	private static final long[] WRITE_LATENCY_BUCKETS = new long[] { 1, 5, 10, 50, 100, 500, 1000 };
+
+	/**
+	 * The page saving threads, one per partition.
+	 */
+	private final Thread[] pageSavingThreads;
 
 	/**
 	 * The wrapped {@link IDataStore} that actually stores that pages
@@ -67,9 +85,10 @@ public class AsynchronousDataStore implements IDataStore
 	private final IDataStore dataStore;
 
 	/**
-	 * The queue where the entries which have to be saved are temporary stored
+	 * The queues where the entries which have to be saved are temporary stored. The entries of a
+	 * session always go to the same queue.
 	 */
-	private final BlockingQueue<Entry> entries;
+	private final List<BlockingQueue<Entry>> partitions;
 
 	/**
 	 * A map 'sessionId:::pageId' -> {@link Entry}. Used for fast retrieval of {@link Entry}s which
@@ -77,6 +96,11 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	private final ConcurrentMap<String, Entry> entryMap;
 
+	/**
+	 * The statistics shared with the page saving threads
+	 */
+	private final Statistics statistics = new Statistics();
+
 	/**
 	 * Construct.
 	 * 
@@ -87,37 +111,134 @@ public class AsynchronousDataStore implements IDataStore
 	 */
 	public AsynchronousDataStore(final IDataStore dataStore, final int capacity)
 	{
+		this(dataStore, capacity, 1);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param dataStore
+	 *            the wrapped {@link IDataStore} that actually saved the data
+	 * @param capacity
+	 *            the total capacity of the queues that delay the saving
+	 * @param writerThreads
+	 *            the number of threads saving the pages
+	 */
+	public AsynchronousDataStore(final IDataStore dataStore, final int capacity,
+		final int writerThreads)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, writerThreads, "writerThreads");
+
 		this.dataStore = dataStore;
-		entries = new LinkedBlockingQueue<Entry>(capacity);
 		entryMap = new ConcurrentHashMap<String, Entry>();
 
-		PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, entries, entryMap);
-		pageSavingThread = new Thread(savingRunnable, "Wicket-PageSavingThread");
-		pageSavingThread.setDaemon(true);
-		pageSavingThread.start();
+		partitions = new ArrayList<BlockingQueue<Entry>>(writerThreads);
+		pageSavingThreads = new Thread[writerThreads];
+		int partitionCapacity = Math.max(1, (capacity + writerThreads - 1) / writerThreads);
+		for (int i = 0; i < writerThreads; i++)
+		{
+			BlockingQueue<Entry> partition = new LinkedBlockingQueue<Entry>(partitionCapacity);
+			partitions.add(partition);
+
+			PageSavingRunnable savingRunnable = new PageSavingRunnable(dataStore, partition,
+				entryMap, statistics);
+			String name = "Wicket-PageSavingThread" + (writerThreads > 1 ? "-" + i : "");
+			pageSavingThreads[i] = new Thread(savingRunnable, name);
+			pageSavingThreads[i].setDaemon(true);
+			pageSavingThreads[i].start();
+		}
 	}
 
 	/**
+	 * Stops the page saving threads. The entries still queued are saved before the wrapped
+	 * {@link IDataStore} is destroyed.
+	 * 
 	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
 	 */
 	@Override
 	public void destroy()
 	{
-		if (pageSavingThread.isAlive())
+		for (Thread pageSavingThread : pageSavingThreads)
 		{
-			pageSavingThread.interrupt();
-			try
-			{
-				pageSavingThread.join();
-			} catch (InterruptedException e)
+			if (pageSavingThread.isAlive())
 			{
-				log.error(e.getMessage(), e);
+				pageSavingThread.interrupt();
+				try
+				{
+					pageSavingThread.join();
+				} catch (InterruptedException e)
+				{
+					log.error(e.getMessage(), e);
+				}
 			}
 		}
 
 		dataStore.destroy();
 	}
 
+	/**
+	 * @param sessionId
+	 * @return the queue for the entries of the given session
+	 */
+	private BlockingQueue<Entry> getPartition(final String sessionId)
+	{
+		return partitions.get((sessionId.hashCode() & Integer.MAX_VALUE) % partitions.size());
+	}
+
+	/**
+	 * @return the number of entries waiting to be saved
+	 */
+	public int getQueueSize()
+	{
+		int size = 0;
+		for (BlockingQueue<Entry> partition : partitions)
+		{
+			size += partition.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of entries saved by the page saving threads
+	 */
+	public long getSavedCount()
+	{
+		return statistics.saved.get();
+	}
+
+	/**
+	 * @return the number of entries skipped because a newer version of the page was stored or the
+	 *         page was removed before the entry has been saved
+	 */
+	public long getSupersededCount()
+	{
+		return statistics.superseded.get();
+	}
+
+	/**
+	 * @return the number of entries saved synchronously by the calling thread because the queue
+	 *         was full
+	 */
+	public long getSynchronousCount()
+	{
+		return statistics.synchronous.get();
+	}
+
+	/**
+	 * @return the number of saves per latency bucket. The buckets count the saves that took less
+	 *         than 1, 5, 10, 50, 100, 500 and 1000 milliseconds and, in the last bucket, the saves
+	 *         that took longer.
+	 */
+	public long[] getWriteLatencyHistogram()
+	{
+		long[] histogram = new long[statistics.writeLatencies.length()];
+		for (int i = 0; i < histogram.length; i++)
+		{
+			histogram[i] = statistics.writeLatencies.get(i);
+		}
+		return histogram;
+	}
+
 	/**
 	 * Little helper
 	 * 
@@ -173,7 +294,7 @@ public class AsynchronousDataStore implements IDataStore
 			Entry entry = entryMap.remove(key);
 			if (entry != null)
 			{
-				entries.remove(entry);
+				getPartition(sessionId).remove(entry);
 			}
 		}
 
@@ -186,7 +307,7 @@ public class AsynchronousDataStore implements IDataStore
 	@Override
 	public void removeData(final String sessionId)
 	{
-		for (Iterator<Entry> itor = entries.iterator(); itor.hasNext();)
+		for (Iterator<Entry> itor = getPartition(sessionId).iterator(); itor.hasNext();)
 		{
 			Entry entry = itor.next();
 			if (entry != null) // this check is not needed in JDK6
@@ -219,19 +340,22 @@ public class AsynchronousDataStore implements IDataStore
 
 		try
 		{
-			boolean added = entries.offer(entry, OFFER_WAIT, TimeUnit.MILLISECONDS);
+			boolean added = getPartition(sessionId).offer(entry, OFFER_WAIT,
+				TimeUnit.MILLISECONDS);
 
 			if (added == false)
 			{
 				log.debug("Storing synchronously page with id '{}' in session '{}'", id, sessionId);
-				entryMap.remove(key);
+				entryMap.remove(key, entry);
+				statistics.synchronous.incrementAndGet();
 				dataStore.storeData(sessionId, id, data);
 			}
 		}
 		catch (InterruptedException e)
 		{
 			log.error(e.getMessage(), e);
-			entryMap.remove(key);
+			entryMap.remove(key, entry);
+			statistics.synchronous.incrementAndGet();
 			dataStore.storeData(sessionId, id, data);
 		}
 	}
@@ -313,6 +437,32 @@ public class AsynchronousDataStore implements IDataStore
 
 	}
 
+	/**
+	 * The counters updated by the page saving threads and the producers
+	 */
+	private static class Statistics
+	{
+		private final AtomicLong saved = new AtomicLong();
+
+		private final AtomicLong superseded = new AtomicLong();
+
+		private final AtomicLong synchronous = new AtomicLong();
+
+		private final AtomicLongArray writeLatencies = new AtomicLongArray(
+			WRITE_LATENCY_BUCKETS.length + 1);
+
+		private void recordWrite(long millis)
+		{
+			int bucket = 0;
+			while (bucket < WRITE_LATENCY_BUCKETS.length && millis >= WRITE_LATENCY_BUCKETS[bucket])
+			{
+				bucket++;
+			}
+			writeLatencies.incrementAndGet(bucket);
+			saved.incrementAndGet();
+		}
+	}
+
 	/**
 	 * The thread that acts as consumer of {@link Entry}ies
 	 */
@@ -326,17 +476,21 @@ public class AsynchronousDataStore implements IDataStore
 
 		private final IDataStore dataStore;
 
+		private final Statistics statistics;
+
 		private PageSavingRunnable(IDataStore dataStore, BlockingQueue<Entry> entries,
-			ConcurrentMap<String, Entry> entryMap)
+			ConcurrentMap<String, Entry> entryMap, Statistics statistics)
 		{
 			this.dataStore = dataStore;
 			this.entries = entries;
 			this.entryMap = entryMap;
+			this.statistics = statistics;
 		}
 
 		@Override
 		public void run()
 		{
+			List<Entry> batch = new ArrayList<Entry>(MAX_BATCH_SIZE);
 			while (!Thread.interrupted())
 			{
 				Entry entry = null;
@@ -351,11 +505,40 @@ public class AsynchronousDataStore implements IDataStore
 
 				if (entry != null)
 				{
-					log.debug("Saving asynchronously: {}...", entry);
-					dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
-					entryMap.remove(getKey(entry));
+					batch.add(entry);
+					entries.drainTo(batch, MAX_BATCH_SIZE - 1);
+					for (Entry e : batch)
+					{
+						save(e);
+					}
+					batch.clear();
 				}
 			}
+
+			// save what has been queued before the store was destroyed
+			entries.drainTo(batch);
+			for (Entry e : batch)
+			{
+				save(e);
+			}
+		}
+
+		private void save(Entry entry)
+		{
+			String key = getKey(entry);
+			if (entryMap.get(key) != entry)
+			{
+				// a newer version of the page is queued or the page has been removed
+				log.debug("Skipping superseded entry: {}", entry);
+				statistics.superseded.incrementAndGet();
+				return;
+			}
+
+			log.debug("Saving asynchronously: {}...", entry);
+			long start = System.currentTimeMillis();
+			dataStore.storeData(entry.sessionId, entry.pageId, entry.data);
+			statistics.recordWrite(System.currentTimeMillis() - start);
+			entryMap.remove(key, entry);
 		}
 	}
 
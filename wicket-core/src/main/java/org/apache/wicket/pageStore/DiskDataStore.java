@@ -18,27 +18,30 @@ package org.apache.wicket.pageStore;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.pageStore.PageWindowManager.PageWindow;
 import org.apache.wicket.util.file.Files;
-import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
 import org.slf4j.Logger;
@@ -53,6 +56,11 @@ public class DiskDataStore implements IDataStore
 
 	private static final String INDEX_FILE_NAME = "DiskDataStoreIndex";
 
+	/**
+	 * The default number of file channels kept open by {@link FileChannelPool}
+	 */
+	public static final int DEFAULT_FILE_CHANNEL_POOL_CAPACITY = 50;
+
 	private final String applicationName;
 
 	private final Bytes maxSizePerPageSession;
@@ -61,21 +69,64 @@ public class DiskDataStore implements IDataStore
 
 	private final ConcurrentMap<String, SessionEntry> sessionEntryMap;
 
+	private final FileChannelPool fileChannelPool;
+
+	private final boolean mappedReads;
+
 	/**
 	 * Construct.
 	 * 
 	 * @param applicationName
 	 * @param fileStoreFolder
 	 * @param maxSizePerSession
-	 * @param fileChannelPoolCapacity
 	 */
 	public DiskDataStore(final String applicationName, final File fileStoreFolder,
 		final Bytes maxSizePerSession)
 	{
+		this(applicationName, fileStoreFolder, maxSizePerSession,
+			DEFAULT_FILE_CHANNEL_POOL_CAPACITY);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param fileChannelPoolCapacity
+	 *            the maximum number of idle session files kept open
+	 */
+	public DiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final int fileChannelPoolCapacity)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, fileChannelPoolCapacity, false);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param fileChannelPoolCapacity
+	 *            the maximum number of idle session files kept open
+	 * @param mappedReads
+	 *            whether to read the pages from a memory mapping of the session file instead of
+	 *            reading each page with a separate system call. The mappings are kept by the
+	 *            {@link FileChannelPool} along with the channels, so at most
+	 *            <code>fileChannelPoolCapacity</code> idle files are mapped. Note that on some
+	 *            platforms (e.g. Windows) a mapped file cannot be deleted until the mapping is
+	 *            garbage collected.
+	 */
+	public DiskDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final int fileChannelPoolCapacity, final boolean mappedReads)
+	{
+		this.mappedReads = mappedReads;
 		this.applicationName = applicationName;
 		this.fileStoreFolder = fileStoreFolder;
 		maxSizePerPageSession = Args.notNull(maxSizePerSession, "maxSizePerSession");
 		sessionEntryMap = new ConcurrentHashMap<String, SessionEntry>();
+		fileChannelPool = new FileChannelPool(fileChannelPoolCapacity);
 
 		try
 		{
@@ -105,6 +156,7 @@ public class DiskDataStore implements IDataStore
 	{
 		log.debug("Destroying...");
 		saveIndex();
+		fileChannelPool.destroy();
 		log.debug("Destroyed.");
 	}
 
@@ -160,11 +212,8 @@ public class DiskDataStore implements IDataStore
 		if (sessionEntry != null)
 		{
 			log.debug("Removing data for pages in session with id '{}'", sessionId);
-			synchronized (sessionEntry)
-			{
-				sessionEntryMap.remove(sessionEntry.sessionId);
-				sessionEntry.unbind();
-			}
+			sessionEntryMap.remove(sessionEntry.sessionId);
+			sessionEntry.unbind();
 		}
 	}
 
@@ -183,6 +232,14 @@ public class DiskDataStore implements IDataStore
 		}
 	}
 
+	/**
+	 * @return the pool which keeps the files of the sessions open
+	 */
+	public FileChannelPool getFileChannelPool()
+	{
+		return fileChannelPool;
+	}
+
 	/**
 	 * 
 	 * @param sessionId
@@ -281,10 +338,36 @@ public class DiskDataStore implements IDataStore
 		private PageWindowManager manager;
 		private boolean unbound = false;
 
+		/**
+		 * Guards the page windows. Readers hold the read lock while reading from the file, writers
+		 * hold the write lock only while allocating a window.
+		 */
+		private transient ReadWriteLock lock;
+
+		/** serializes the writers so that windows are written in the order they were allocated */
+		private transient Lock writerLock;
+
+		/** pages which have a window already but whose data is still being written */
+		private transient ConcurrentMap<Integer, byte[]> pendingPages;
+
 		protected SessionEntry(DiskDataStore diskDataStore, String sessionId)
 		{
 			this.diskDataStore = diskDataStore;
 			this.sessionId = sessionId;
+			initLocks();
+		}
+
+		private void initLocks()
+		{
+			lock = new ReentrantReadWriteLock();
+			writerLock = new ReentrantLock();
+			pendingPages = new ConcurrentHashMap<Integer, byte[]>();
+		}
+
+		private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException
+		{
+			s.defaultReadObject();
+			initLocks();
 		}
 
 		public PageWindowManager getManager()
@@ -319,42 +402,65 @@ public class DiskDataStore implements IDataStore
 		 * @param pageId
 		 * @param data
 		 */
-		public synchronized void savePage(int pageId, byte data[])
+		public void savePage(int pageId, byte data[])
 		{
-			if (unbound)
+			// only save page that has some data
+			if (data == null)
 			{
 				return;
 			}
-			// only save page that has some data
-			if (data != null)
-			{
-				// allocate window for page
-				PageWindow window = getManager().createPageWindow(pageId, data.length);
 
-				FileChannel channel = getFileChannel(true);
-				if (channel != null)
+			writerLock.lock();
+			try
+			{
+				FileChannel channel;
+				int offset;
+				lock.writeLock().lock();
+				try
 				{
-					try
-					{
-						// write the content
-						channel.write(ByteBuffer.wrap(data), window.getFilePartOffset());
-					}
-					catch (IOException e)
+					if (unbound)
 					{
-						log.error("Error writing to a channel " + channel, e);
+						return;
 					}
-					finally
+
+					channel = getFileChannel(true);
+					if (channel == null)
 					{
-						IOUtils.closeQuietly(channel);
+						log.warn(
+							"Cannot save page with id '{}' because the data file cannot be opened.",
+							pageId);
+						return;
 					}
+
+					// allocate window for page
+					PageWindow window = getManager().createPageWindow(pageId, data.length);
+					offset = window.getFilePartOffset();
+					pendingPages.put(pageId, data);
+				}
+				finally
+				{
+					lock.writeLock().unlock();
+				}
+
+				try
+				{
+					// write the content
+					channel.write(ByteBuffer.wrap(data), offset);
 				}
-				else
+				catch (IOException e)
 				{
-					log.warn(
-						"Cannot save page with id '{}' because the data file cannot be opened.",
-						pageId);
+					log.error("Error writing to a channel " + channel, e);
+				}
+				finally
+				{
+					pendingPages.remove(pageId, data);
+					diskDataStore.fileChannelPool.returnFileChannel(channel);
 				}
 			}
+			finally
+			{
+				writerLock.unlock();
+			}
 		}
 
 		/**
@@ -362,23 +468,38 @@ public class DiskDataStore implements IDataStore
 		 * 
 		 * @param pageId
 		 */
-		public synchronized void removePage(int pageId)
+		public void removePage(int pageId)
 		{
-			if (unbound)
+			lock.writeLock().lock();
+			try
 			{
-				return;
+				if (unbound)
+				{
+					return;
+				}
+				pendingPages.remove(pageId);
+				getManager().removePage(pageId);
+			}
+			finally
+			{
+				lock.writeLock().unlock();
 			}
-			getManager().removePage(pageId);
 		}
 
 		/**
-		 * Loads the part of pagemap file specified by the given PageWindow.
+		 * Loads the part of pagemap file specified by the given PageWindow. The caller is
+		 * responsible to hold the lock of this entry while reading.
 		 * 
 		 * @param window
 		 * @return serialized page data
 		 */
 		public byte[] loadPage(PageWindow window)
 		{
+			if (diskDataStore.mappedReads)
+			{
+				return loadMappedPage(window);
+			}
+
 			byte[] result = null;
 			FileChannel channel = getFileChannel(false);
 			if (channel != null)
@@ -398,31 +519,56 @@ public class DiskDataStore implements IDataStore
 				}
 				finally
 				{
-					IOUtils.closeQuietly(channel);
+					diskDataStore.fileChannelPool.returnFileChannel(channel);
 				}
 			}
 			return result;
 		}
 
-		private FileChannel getFileChannel(boolean create)
+		/**
+		 * Copies the part of the file specified by the given PageWindow out of the mapping of the
+		 * session file, which is kept by the {@link FileChannelPool} along with the channel.
+		 * 
+		 * @param window
+		 * @return serialized page data
+		 */
+		private byte[] loadMappedPage(PageWindow window)
 		{
-			FileChannel channel = null;
-			File file = new File(getFileName());
-			if (create || file.exists())
+			byte[] result = null;
+			FileChannel channel = getFileChannel(false);
+			if (channel != null)
 			{
-				String mode = create ? "rw" : "r";
 				try
 				{
-					RandomAccessFile randomAccessFile = new RandomAccessFile(file, mode);
-					channel = randomAccessFile.getChannel();
+					ByteBuffer mapping = diskDataStore.fileChannelPool.getMapping(channel,
+						window.getFilePartOffset() + window.getFilePartSize());
+					if (mapping != null)
+					{
+						// duplicate so that concurrent readers don't share the position
+						ByteBuffer buffer = mapping.duplicate();
+						buffer.position(window.getFilePartOffset());
+						result = new byte[window.getFilePartSize()];
+						buffer.get(result);
+					}
 				}
-				catch (FileNotFoundException fnfx)
+				finally
 				{
-					// can happen if the file is locked. WICKET-4176
-					log.error(fnfx.getMessage(), fnfx);
+					diskDataStore.fileChannelPool.returnFileChannel(channel);
 				}
 			}
-			return channel;
+			return result;
+		}
+
+		/**
+		 * Obtains the channel for the session's file from the {@link FileChannelPool}. The channel
+		 * must be given back to the pool after use.
+		 * 
+		 * @param create
+		 * @return the channel or {@code null} if the file cannot be opened
+		 */
+		private FileChannel getFileChannel(boolean create)
+		{
+			return diskDataStore.fileChannelPool.getFileChannel(getFileName(), create);
 		}
 
 		/**
@@ -431,32 +577,81 @@ public class DiskDataStore implements IDataStore
 		 * @param id
 		 * @return page data or null if the page is no longer in pagemap file
 		 */
-		public synchronized byte[] loadPage(int id)
+		public byte[] loadPage(int id)
 		{
-			if (unbound)
+			lock.readLock().lock();
+			try
 			{
-				return null;
+				if (unbound || manager == null)
+				{
+					return null;
+				}
+
+				// the page may still be being written by another thread
+				byte[] result = pendingPages.get(id);
+				if (result == null)
+				{
+					PageWindow window = manager.getPageWindow(id);
+					if (window != null)
+					{
+						result = loadPage(window);
+					}
+				}
+				return result;
 			}
-			byte[] result = null;
-			PageWindow window = getManager().getPageWindow(id);
-			if (window != null)
+			finally
 			{
-				result = loadPage(window);
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Returns the last n saved page windows.
+		 * 
+		 * @param count
+		 * @return list of page windows
+		 */
+		public List<PageWindow> getLastPageWindows(int count)
+		{
+			lock.readLock().lock();
+			try
+			{
+				if (manager == null)
+				{
+					return Collections.emptyList();
+				}
+				return manager.getLastPageWindows(count);
+			}
+			finally
+			{
+				lock.readLock().unlock();
 			}
-			return result;
 		}
 
 		/**
 		 * Deletes all files for this session.
 		 */
-		public synchronized void unbind()
+		public void unbind()
 		{
-			File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
-			if (sessionFolder.exists())
+			lock.writeLock().lock();
+			try
+			{
+				if (fileName != null)
+				{
+					diskDataStore.fileChannelPool.closeFileChannel(fileName);
+				}
+				pendingPages.clear();
+				File sessionFolder = diskDataStore.getSessionFolder(sessionId, false);
+				if (sessionFolder.exists())
+				{
+					Files.removeFolder(sessionFolder);
+				}
+				unbound = true;
+			}
+			finally
 			{
-				Files.removeFolder(sessionFolder);
+				lock.writeLock().unlock();
 			}
-			unbound = true;
 		}
 	}
 
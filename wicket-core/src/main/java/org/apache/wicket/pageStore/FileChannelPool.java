@@ -0,0 +1,338 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bounded number of {@link FileChannel}s open so that the files used by
+ * {@link DiskDataStore} don't have to be opened and closed for every page read and write.
+ * <p>
+ * Channels are looked up by file name. A channel obtained with
+ * {@link #getFileChannel(String, boolean)} must be given back with
+ * {@link #returnFileChannel(FileChannel)}. Channels that are in use are never closed; when the
+ * capacity is exceeded the least recently used idle channels are closed instead.
+ * <p>
+ * A read only mapping of a file can be kept along with its channel, see
+ * {@link #getMapping(FileChannel, long)}. The mapping is dropped together with the channel, so
+ * the capacity bounds the number of mappings too.
+ */
+public class FileChannelPool
+{
+	private static final Logger log = LoggerFactory.getLogger(FileChannelPool.class);
+
+	/**
+	 * An open channel and the number of its current users
+	 */
+	private static class Entry
+	{
+		private final String fileName;
+
+		private final FileChannel channel;
+
+		/** how many callers currently hold the channel */
+		private int usageCount = 0;
+
+		/** whether the channel should be closed as soon as it is not used anymore */
+		private boolean closeWhenIdle = false;
+
+		/** the mapping of the file, if requested */
+		private ByteBuffer mapping;
+
+		private Entry(String fileName, FileChannel channel)
+		{
+			this.fileName = fileName;
+			this.channel = channel;
+		}
+	}
+
+	/** file name -> entry, in access order (the eldest entry is the least recently used) */
+	private final LinkedHashMap<String, Entry> nameToEntry = new LinkedHashMap<String, Entry>(16,
+		0.75f, true);
+
+	/** channel -> entry, to be able to find the entry when the channel is returned */
+	private final Map<FileChannel, Entry> channelToEntry = new HashMap<FileChannel, Entry>();
+
+	private final int capacity;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	/**
+	 * Construct.
+	 *
+	 * @param capacity
+	 *            the maximum number of idle channels kept open
+	 */
+	public FileChannelPool(int capacity)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, capacity, "capacity");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns an open channel for the given file. The channel must be given back with
+	 * {@link #returnFileChannel(FileChannel)} and must not be closed by the caller.
+	 *
+	 * @param fileName
+	 *            the absolute name of the file
+	 * @param createIfDoesNotExist
+	 *            whether to create the file if it doesn't exist
+	 * @return the channel or {@code null} if the file doesn't exist and shouldn't be created or
+	 *         cannot be opened
+	 */
+	public synchronized FileChannel getFileChannel(String fileName, boolean createIfDoesNotExist)
+	{
+		Entry entry = nameToEntry.get(fileName);
+		if (entry != null)
+		{
+			++hits;
+			++entry.usageCount;
+		}
+		else
+		{
+			File file = new File(fileName);
+			if (createIfDoesNotExist == false && file.exists() == false)
+			{
+				return null;
+			}
+
+			FileChannel channel = newFileChannel(file);
+			if (channel == null)
+			{
+				return null;
+			}
+
+			++misses;
+			entry = new Entry(fileName, channel);
+			entry.usageCount = 1;
+			nameToEntry.put(fileName, entry);
+			channelToEntry.put(channel, entry);
+			reduceChannels();
+		}
+
+		return entry.channel;
+	}
+
+	/**
+	 * Gives back a channel previously obtained by {@link #getFileChannel(String, boolean)}.
+	 *
+	 * @param channel
+	 */
+	public synchronized void returnFileChannel(FileChannel channel)
+	{
+		Entry entry = channelToEntry.get(channel);
+		if (entry == null)
+		{
+			throw new IllegalArgumentException("Unknown file channel " + channel);
+		}
+
+		if (--entry.usageCount == 0)
+		{
+			if (entry.closeWhenIdle)
+			{
+				close(entry);
+			}
+			else
+			{
+				reduceChannels();
+			}
+		}
+	}
+
+	/**
+	 * Returns a read only mapping of the file of a channel obtained by
+	 * {@link #getFileChannel(String, boolean)}, mapping the file again if it grew beyond the
+	 * current mapping.
+	 *
+	 * @param channel
+	 *            the channel, which must not have been returned yet
+	 * @param requiredSize
+	 *            the size the mapping must have at least
+	 * @return the mapping, whose position must not be changed by the caller, or {@code null} if
+	 *         the file is smaller than required or cannot be mapped
+	 */
+	public synchronized ByteBuffer getMapping(FileChannel channel, long requiredSize)
+	{
+		Entry entry = channelToEntry.get(channel);
+		if (entry == null)
+		{
+			throw new IllegalArgumentException("Unknown file channel " + channel);
+		}
+
+		if (entry.mapping == null || entry.mapping.capacity() < requiredSize)
+		{
+			entry.mapping = null;
+			try
+			{
+				long size = channel.size();
+				if (size >= requiredSize)
+				{
+					entry.mapping = channel.map(MapMode.READ_ONLY, 0, size);
+				}
+				else
+				{
+					log.error("File {} is smaller than expected: {} < {}", new Object[] {
+							entry.fileName, size, requiredSize });
+				}
+			}
+			catch (IOException e)
+			{
+				log.error("Error mapping file channel " + channel, e);
+			}
+		}
+		return entry.mapping;
+	}
+
+	/**
+	 * Closes the channel for the given file. If the channel is currently in use it will be closed
+	 * as soon as it is returned.
+	 *
+	 * @param fileName
+	 */
+	public synchronized void closeFileChannel(String fileName)
+	{
+		Entry entry = nameToEntry.remove(fileName);
+		if (entry != null)
+		{
+			if (entry.usageCount == 0)
+			{
+				close(entry);
+			}
+			else
+			{
+				entry.closeWhenIdle = true;
+			}
+		}
+	}
+
+	/**
+	 * Closes all channels. Must be called only when no channel is in use anymore.
+	 */
+	public synchronized void destroy()
+	{
+		log.debug("Destroying...");
+		for (Entry entry : channelToEntry.values())
+		{
+			if (entry.usageCount > 0)
+			{
+				log.warn("Closing file channel for '{}' which is still in use.", entry.fileName);
+			}
+			IOUtils.closeQuietly(entry.channel);
+		}
+		channelToEntry.clear();
+		nameToEntry.clear();
+		log.debug("Destroyed.");
+	}
+
+	/**
+	 * @return the number of times an already open channel has been reused
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of times a channel had to be opened
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of idle channels which have been closed because the capacity was exceeded
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return the number of currently open channels
+	 */
+	public synchronized int getOpenChannels()
+	{
+		return channelToEntry.size();
+	}
+
+	/**
+	 * @return the maximum number of idle channels kept open
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Closes the least recently used idle channels until the capacity is respected again.
+	 */
+	private void reduceChannels()
+	{
+		Iterator<Entry> iterator = nameToEntry.values().iterator();
+		while (nameToEntry.size() > capacity && iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			if (entry.usageCount == 0)
+			{
+				iterator.remove();
+				close(entry);
+				++evictions;
+			}
+		}
+	}
+
+	private void close(Entry entry)
+	{
+		entry.mapping = null;
+		channelToEntry.remove(entry.channel);
+		IOUtils.closeQuietly(entry.channel);
+	}
+
+	private FileChannel newFileChannel(File file)
+	{
+		try
+		{
+			return new RandomAccessFile(file, "rw").getChannel();
+		}
+		catch (FileNotFoundException fnfx)
+		{
+			// can happen if the file is locked. WICKET-4176
+			log.error(fnfx.getMessage(), fnfx);
+			return null;
+		}
+	}
+}
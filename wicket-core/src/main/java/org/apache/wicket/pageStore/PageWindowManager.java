@@ -28,6 +28,10 @@ import org.apache.wicket.util.collections.IntHashMap;
  * The pages are stored inside the file in a cyclic way. Newer pages are placed after older ones,
  * until the maximum file size is reached. After that, the next page is stored in the beginning of
  * the file.
+ * <p>
+ * The manager is not thread safe. Mutating methods must be called exclusively, while
+ * {@link #getPageWindow(int)} and {@link #getLastPageWindows(int)} may be called concurrently
+ * with each other.
  * 
  * @author Matej Knopp
  */
@@ -59,10 +63,16 @@ public class PageWindowManager implements Serializable
 
 	/**
 	 * map from page id to list of pagewindow indices (referring to the windows list) - to improve
-	 * searching speed the index must be cleaned when the instances in the windows list change their
-	 * indexes (e.g. items are shifted on page window removal)
+	 * searching speed. The index is kept up to date by the methods changing the windows, readers
+	 * never modify it.
+	 */
+	private final IntHashMap<Integer> idToWindowIndex = new IntHashMap<Integer>();
+
+	/**
+	 * whether windows have been inserted or removed while allocating a window, so the indices of
+	 * the following windows have changed and have to be indexed again
 	 */
-	private IntHashMap<Integer> idToWindowIndex = null;
+	private boolean windowsShifted = false;
 
 	/** index of last added page */
 	private int indexPointer = -1;
@@ -82,7 +92,7 @@ public class PageWindowManager implements Serializable
 	 */
 	private void putWindowIndex(int pageId, int windowIndex)
 	{
-		if (idToWindowIndex != null && pageId != -1 && windowIndex != -1)
+		if (pageId != -1 && windowIndex != -1)
 		{
 			idToWindowIndex.put(pageId, windowIndex);
 		}
@@ -98,17 +108,20 @@ public class PageWindowManager implements Serializable
 	}
 
 	/**
-	 * 
+	 * Indexes all windows again after they have been shifted.
 	 */
 	private void rebuildIndices()
 	{
-		idToWindowIndex = null;
-		idToWindowIndex = new IntHashMap<Integer>();
+		idToWindowIndex.clear();
 		for (int i = 0; i < windows.size(); ++i)
 		{
 			PageWindowInternal window = windows.get(i);
-			putWindowIndex(window.pageId, i);
+			if (window.pageId != -1)
+			{
+				idToWindowIndex.put(window.pageId, i);
+			}
 		}
+		windowsShifted = false;
 	}
 
 	/**
@@ -119,11 +132,6 @@ public class PageWindowManager implements Serializable
 	 */
 	private int getWindowIndex(int pageId)
 	{
-		if (idToWindowIndex == null)
-		{
-			rebuildIndices();
-		}
-
 		Integer result = idToWindowIndex.get(pageId);
 		return result != null ? result : -1;
 	}
@@ -192,9 +200,8 @@ public class PageWindowManager implements Serializable
 
 			newWindow.filePartOffset = getWindowFileOffset(index + 1);
 			newWindow.filePartSize = delta;
+			windowsShifted = true;
 		}
-
-		idToWindowIndex = null;
 	}
 
 	/**
@@ -212,7 +219,7 @@ public class PageWindowManager implements Serializable
 			window.filePartSize += next.filePartSize;
 
 			windows.remove(index + 1);
-			idToWindowIndex = null; // reset index
+			windowsShifted = true;
 		}
 	}
 
@@ -302,13 +309,18 @@ public class PageWindowManager implements Serializable
 	}
 
 	/**
-	 * Public (read only) version of page window.
+	 * Public (read only) snapshot of a page window. It is not affected by later changes of the
+	 * windows, so it can be used after the lock guarding the manager has been released.
 	 * 
 	 * @author Matej Knopp
 	 */
 	public static class PageWindow
 	{
-		private final PageWindowInternal pageWindowInternal;
+		private final int pageId;
+
+		private final int filePartOffset;
+
+		private final int filePartSize;
 
 		/**
 		 * Construct.
@@ -317,7 +329,9 @@ public class PageWindowManager implements Serializable
 		 */
 		private PageWindow(PageWindowInternal pageWindowInternal)
 		{
-			this.pageWindowInternal = pageWindowInternal;
+			pageId = pageWindowInternal.pageId;
+			filePartOffset = pageWindowInternal.filePartOffset;
+			filePartSize = pageWindowInternal.filePartSize;
 		}
 
 		/**
@@ -325,7 +339,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getPageId()
 		{
-			return pageWindowInternal.pageId;
+			return pageId;
 		}
 
 		/**
@@ -333,7 +347,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartOffset()
 		{
-			return pageWindowInternal.filePartOffset;
+			return filePartOffset;
 		}
 
 		/**
@@ -341,7 +355,7 @@ public class PageWindowManager implements Serializable
 		 */
 		public int getFilePartSize()
 		{
-			return pageWindowInternal.filePartSize;
+			return filePartSize;
 		}
 	}
 
@@ -371,10 +385,23 @@ public class PageWindowManager implements Serializable
 			index = incrementIndexPointer();
 		}
 
+		// the page in the reused window is overwritten
+		if (index < windows.size() && windows.get(index).pageId != -1)
+		{
+			removeWindowIndex(windows.get(index).pageId);
+		}
+
 		PageWindowInternal window = allocatePageWindow(index, size);
 		window.pageId = pageId;
 
-		putWindowIndex(pageId, index);
+		if (windowsShifted)
+		{
+			rebuildIndices();
+		}
+		else
+		{
+			putWindowIndex(pageId, index);
+		}
 		return new PageWindow(window);
 	}
 
@@ -428,7 +455,7 @@ public class PageWindowManager implements Serializable
 	 * @param count
 	 * @return list of page windows
 	 */
-	public synchronized List<PageWindow> getLastPageWindows(int count)
+	public List<PageWindow> getLastPageWindows(int count)
 	{
 		List<PageWindow> result = new ArrayList<PageWindow>();
 
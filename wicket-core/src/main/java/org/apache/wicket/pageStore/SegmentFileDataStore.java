@@ -0,0 +1,844 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A data store implementation which stores the pages of all sessions in a small number of large,
+ * preallocated segment files instead of using a folder and a file per session like
+ * {@link DiskDataStore}.
+ * <p>
+ * Pages are appended to the current segment. The location of each page is kept in an in-memory
+ * index, so removing a page or a whole session only updates the index. A background thread
+ * compacts segments whose live data dropped below {@link #COMPACTION_THRESHOLD} by moving the
+ * remaining pages to the current segment, and deletes segments which no longer contain live data.
+ * </p>
+ * Like {@link DiskDataStore} each session holds at most <em>maxSizePerSession</em> bytes; the
+ * oldest pages of a session are dropped from the index when this size is exceeded.
+ */
+public class SegmentFileDataStore implements IDataStore
+{
+	private static final Logger log = LoggerFactory.getLogger(SegmentFileDataStore.class);
+
+	private static final String INDEX_FILE_NAME = "SegmentFileDataStoreIndex";
+
+	private static final String SEGMENT_FILE_PREFIX = "segment-";
+
+	/**
+	 * The default size of a segment file
+	 */
+	public static final Bytes DEFAULT_SEGMENT_SIZE = Bytes.megabytes(16);
+
+	/**
+	 * The default interval between two compaction runs
+	 */
+	public static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.seconds(30);
+
+	/**
+	 * Segments whose live data is below this ratio of their size are compacted
+	 */
+	public static final double COMPACTION_THRESHOLD = 0.5;
+
+	/**
+	 * A preallocated file holding the pages of many sessions
+	 */
+	private static class Segment implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int id;
+
+		private final long capacity;
+
+		/** the offset where the next page will be written */
+		private long writeOffset = 0;
+
+		/** the number of bytes still referenced by the index */
+		private long liveBytes = 0;
+
+		/** whether no more pages will be appended */
+		private boolean sealed = false;
+
+		private transient FileChannel channel;
+
+		/** the live pages in this segment, rebuilt from the sessions when loaded */
+		private transient Map<Location, Record> records = new IdentityHashMap<Location, Record>();
+
+		private Segment(int id, long capacity)
+		{
+			this.id = id;
+			this.capacity = capacity;
+		}
+	}
+
+	/**
+	 * The position of a page inside a segment
+	 */
+	private static class Location implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int segmentId;
+
+		private final long offset;
+
+		private final int length;
+
+		private Location(int segmentId, long offset, int length)
+		{
+			this.segmentId = segmentId;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * The pages of a session in the order they were stored
+	 */
+	private static class SessionPages implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final LinkedHashMap<Integer, Location> pages = new LinkedHashMap<Integer, Location>();
+
+		/** the sum of the lengths of all pages */
+		private long size = 0;
+	}
+
+	/**
+	 * A page stored in a segment, which has to be moved out of it when it is compacted
+	 */
+	private static class Record
+	{
+		private final String sessionId;
+
+		private final int pageId;
+
+		private final Location location;
+
+		private Record(String sessionId, int pageId, Location location)
+		{
+			this.sessionId = sessionId;
+			this.pageId = pageId;
+			this.location = location;
+		}
+	}
+
+	private final String applicationName;
+
+	private final File fileStoreFolder;
+
+	private final Bytes maxSizePerSession;
+
+	private final Bytes segmentSize;
+
+	/** sessionId -> pages. Guarded by this */
+	private final Map<String, SessionPages> sessions = new HashMap<String, SessionPages>();
+
+	/** segmentId -> segment. Guarded by this */
+	private final Map<Integer, Segment> segments = new HashMap<Integer, Segment>();
+
+	/** the segment new pages are appended to. Guarded by this */
+	private Segment currentSegment;
+
+	/** Guarded by this */
+	private int nextSegmentId = 0;
+
+	/**
+	 * Reads and writes hold the read lock. Deleting a segment requires the write lock so that no
+	 * channel is closed while in use.
+	 */
+	private final ReadWriteLock ioLock = new ReentrantReadWriteLock();
+
+	private final Thread compactionThread;
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 */
+	public SegmentFileDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession)
+	{
+		this(applicationName, fileStoreFolder, maxSizePerSession, DEFAULT_SEGMENT_SIZE,
+			DEFAULT_COMPACTION_INTERVAL);
+	}
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationName
+	 * @param fileStoreFolder
+	 * @param maxSizePerSession
+	 * @param segmentSize
+	 *            the size each segment file is preallocated with
+	 * @param compactionInterval
+	 *            the time between two compaction runs
+	 */
+	public SegmentFileDataStore(final String applicationName, final File fileStoreFolder,
+		final Bytes maxSizePerSession, final Bytes segmentSize, final Duration compactionInterval)
+	{
+		this.applicationName = applicationName;
+		this.fileStoreFolder = fileStoreFolder;
+		this.maxSizePerSession = Args.notNull(maxSizePerSession, "maxSizePerSession");
+		this.segmentSize = Args.notNull(segmentSize, "segmentSize");
+		Args.notNull(compactionInterval, "compactionInterval");
+
+		try
+		{
+			File storeFolder = getStoreFolder();
+			if (storeFolder.exists() || storeFolder.mkdirs())
+			{
+				loadIndex();
+			}
+			else
+			{
+				log.warn("Cannot create file store folder for some reason.");
+			}
+		}
+		catch (SecurityException e)
+		{
+			throw new WicketRuntimeException(
+				"SecurityException occurred while creating SegmentFileDataStore. Consider using a non-disk based IDataStore implementation. "
+					+ "See org.apache.wicket.Application.setPageManagerProvider(IPageManagerProvider)",
+				e);
+		}
+
+		compactionThread = new Thread(new CompactionRunnable(compactionInterval),
+			"Wicket-SegmentCompactionThread");
+		compactionThread.setDaemon(true);
+		compactionThread.start();
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#getData(java.lang.String, int)
+	 */
+	@Override
+	public byte[] getData(final String sessionId, final int id)
+	{
+		byte[] pageData = null;
+		ioLock.readLock().lock();
+		try
+		{
+			Location location;
+			Segment segment;
+			synchronized (this)
+			{
+				SessionPages sessionPages = sessions.get(sessionId);
+				location = sessionPages != null ? sessionPages.pages.get(id) : null;
+				segment = location != null ? segments.get(location.segmentId) : null;
+			}
+			if (segment != null)
+			{
+				pageData = read(segment, location);
+			}
+		}
+		finally
+		{
+			ioLock.readLock().unlock();
+		}
+
+		log.debug("Returning data{} for page with id '{}' in session with id '{}'", new Object[] {
+				pageData != null ? "" : "(null)", id, sessionId });
+		return pageData;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String, int)
+	 */
+	@Override
+	public synchronized void removeData(final String sessionId, final int id)
+	{
+		SessionPages sessionPages = sessions.get(sessionId);
+		if (sessionPages != null)
+		{
+			log.debug("Removing data for page with id '{}' in session with id '{}'", new Object[] {
+					id, sessionId });
+			Location location = sessionPages.pages.remove(id);
+			if (location != null)
+			{
+				sessionPages.size -= location.length;
+				release(location);
+			}
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#removeData(java.lang.String)
+	 */
+	@Override
+	public synchronized void removeData(final String sessionId)
+	{
+		SessionPages sessionPages = sessions.remove(sessionId);
+		if (sessionPages != null)
+		{
+			log.debug("Removing data for pages in session with id '{}'", sessionId);
+			for (Location location : sessionPages.pages.values())
+			{
+				release(location);
+			}
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#storeData(java.lang.String, int, byte[])
+	 */
+	@Override
+	public void storeData(final String sessionId, final int id, final byte[] data)
+	{
+		log.debug("Storing data for page with id '{}' in session with id '{}'", new Object[] { id,
+				sessionId });
+		ioLock.readLock().lock();
+		try
+		{
+			Location location = write(data);
+			if (location != null)
+			{
+				publish(sessionId, id, location);
+			}
+			else
+			{
+				log.warn("Cannot save page with id '{}' because no segment can be written.", id);
+			}
+		}
+		finally
+		{
+			ioLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#isReplicated()
+	 */
+	@Override
+	public boolean isReplicated()
+	{
+		return false;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#canBeAsynchronous()
+	 */
+	@Override
+	public boolean canBeAsynchronous()
+	{
+		return true;
+	}
+
+	/**
+	 * @see org.apache.wicket.pageStore.IDataStore#destroy()
+	 */
+	@Override
+	public void destroy()
+	{
+		log.debug("Destroying...");
+		if (compactionThread.isAlive())
+		{
+			compactionThread.interrupt();
+			try
+			{
+				compactionThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				log.error(e.getMessage(), e);
+			}
+		}
+
+		ioLock.writeLock().lock();
+		try
+		{
+			synchronized (this)
+			{
+				saveIndex();
+				for (Segment segment : segments.values())
+				{
+					IOUtils.closeQuietly(segment.channel);
+				}
+			}
+		}
+		finally
+		{
+			ioLock.writeLock().unlock();
+		}
+		log.debug("Destroyed.");
+	}
+
+	/**
+	 * @return the number of segment files
+	 */
+	public synchronized int getSegmentCount()
+	{
+		return segments.size();
+	}
+
+	/**
+	 * @return the number of bytes in all segments that are still referenced by the index
+	 */
+	public synchronized long getLiveBytes()
+	{
+		long liveBytes = 0;
+		for (Segment segment : segments.values())
+		{
+			liveBytes += segment.liveBytes;
+		}
+		return liveBytes;
+	}
+
+	/**
+	 * This folder contains the segment files and the index.
+	 *
+	 * @return the folder where the pages are stored
+	 */
+	protected File getStoreFolder()
+	{
+		return new File(fileStoreFolder, applicationName + "-segmentstore");
+	}
+
+	/**
+	 * Moves the live pages out of the segments that are used less than
+	 * {@link #COMPACTION_THRESHOLD} and deletes the segments without live data.
+	 */
+	void compact()
+	{
+		List<Segment> candidates = new ArrayList<Segment>();
+		synchronized (this)
+		{
+			for (Segment segment : segments.values())
+			{
+				if (segment.sealed && segment.liveBytes < segment.capacity * COMPACTION_THRESHOLD)
+				{
+					candidates.add(segment);
+				}
+			}
+		}
+
+		for (Segment segment : candidates)
+		{
+			for (Record record : getRecords(segment))
+			{
+				move(segment, record);
+			}
+			deleteIfEmpty(segment);
+		}
+	}
+
+	private void move(Segment segment, Record record)
+	{
+		ioLock.readLock().lock();
+		try
+		{
+			byte[] data = read(segment, record.location);
+			if (data != null)
+			{
+				Location location = write(data);
+				if (location != null)
+				{
+					relocate(record, location);
+				}
+			}
+		}
+		finally
+		{
+			ioLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a copy of the live pages of the segment, taken from its index so that only the pages
+	 *         of this segment are visited
+	 */
+	private synchronized List<Record> getRecords(Segment segment)
+	{
+		return new ArrayList<Record>(segment.records.values());
+	}
+
+	/**
+	 * Points the index to the new location of a moved page, unless the page has been replaced or
+	 * removed meanwhile.
+	 */
+	private synchronized void relocate(Record record, Location location)
+	{
+		SessionPages sessionPages = sessions.get(record.sessionId);
+		if (sessionPages != null && sessionPages.pages.get(record.pageId) == record.location)
+		{
+			sessionPages.pages.put(record.pageId, location);
+			release(record.location);
+			index(record.sessionId, record.pageId, location);
+		}
+		else
+		{
+			release(location);
+		}
+	}
+
+	private void deleteIfEmpty(Segment segment)
+	{
+		ioLock.writeLock().lock();
+		try
+		{
+			synchronized (this)
+			{
+				if (segment.liveBytes > 0)
+				{
+					return;
+				}
+				segments.remove(segment.id);
+			}
+			IOUtils.closeQuietly(segment.channel);
+			Files.remove(getSegmentFile(segment.id));
+		}
+		finally
+		{
+			ioLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds the location of a stored page to the index and drops the oldest pages of the session
+	 * if it got too big.
+	 */
+	private synchronized void publish(String sessionId, int id, Location location)
+	{
+		SessionPages sessionPages = sessions.get(sessionId);
+		if (sessionPages == null)
+		{
+			sessionPages = new SessionPages();
+			sessions.put(sessionId, sessionPages);
+		}
+
+		Location old = sessionPages.pages.remove(id);
+		if (old != null)
+		{
+			sessionPages.size -= old.length;
+			release(old);
+		}
+		sessionPages.pages.put(id, location);
+		sessionPages.size += location.length;
+		index(sessionId, id, location);
+
+		long maxSize = maxSizePerSession.bytes();
+		Iterator<Location> iterator = sessionPages.pages.values().iterator();
+		while (sessionPages.size > maxSize && sessionPages.pages.size() > 1)
+		{
+			Location eldest = iterator.next();
+			iterator.remove();
+			sessionPages.size -= eldest.length;
+			release(eldest);
+		}
+	}
+
+	/**
+	 * Adds a page to the index of the segment it is stored in.
+	 */
+	private void index(String sessionId, int id, Location location)
+	{
+		Segment segment = segments.get(location.segmentId);
+		if (segment != null)
+		{
+			segment.records.put(location, new Record(sessionId, id, location));
+		}
+	}
+
+	private void release(Location location)
+	{
+		Segment segment = segments.get(location.segmentId);
+		if (segment != null)
+		{
+			segment.liveBytes -= location.length;
+			segment.records.remove(location);
+		}
+	}
+
+	/**
+	 * Reserves space for the given number of bytes in the current segment, starting a new segment
+	 * if there is not enough room left.
+	 */
+	private synchronized Location allocate(int length)
+	{
+		if (currentSegment == null || currentSegment.writeOffset + length > currentSegment.capacity)
+		{
+			if (currentSegment != null)
+			{
+				currentSegment.sealed = true;
+			}
+			currentSegment = newSegment(Math.max(segmentSize.bytes(), length));
+			if (currentSegment == null)
+			{
+				return null;
+			}
+		}
+
+		Location location = new Location(currentSegment.id, currentSegment.writeOffset, length);
+		currentSegment.writeOffset += length;
+		currentSegment.liveBytes += length;
+		return location;
+	}
+
+	private Location write(byte[] data)
+	{
+		Location location = allocate(data.length);
+		if (location != null)
+		{
+			Segment segment;
+			synchronized (this)
+			{
+				segment = segments.get(location.segmentId);
+			}
+			try
+			{
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				long position = location.offset;
+				while (buffer.hasRemaining())
+				{
+					position += segment.channel.write(buffer, position);
+				}
+			}
+			catch (IOException e)
+			{
+				log.error("Error writing to segment " + segment.id, e);
+				synchronized (this)
+				{
+					release(location);
+				}
+				location = null;
+			}
+		}
+		return location;
+	}
+
+	private byte[] read(Segment segment, Location location)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(location.length);
+		try
+		{
+			long position = location.offset;
+			while (buffer.hasRemaining())
+			{
+				int read = segment.channel.read(buffer, position);
+				if (read < 0)
+				{
+					log.error("Unexpected end of segment {}", segment.id);
+					return null;
+				}
+				position += read;
+			}
+			return buffer.array();
+		}
+		catch (IOException e)
+		{
+			log.error("Error reading from segment " + segment.id, e);
+			return null;
+		}
+	}
+
+	private Segment newSegment(long capacity)
+	{
+		Segment segment = new Segment(nextSegmentId++, capacity);
+		File file = getSegmentFile(segment.id);
+		try
+		{
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			randomAccessFile.setLength(capacity);
+			segment.channel = randomAccessFile.getChannel();
+		}
+		catch (IOException e)
+		{
+			log.error("Cannot create segment file " + file, e);
+			return null;
+		}
+		segments.put(segment.id, segment);
+		return segment;
+	}
+
+	private File getSegmentFile(int segmentId)
+	{
+		return new File(getStoreFolder(), SEGMENT_FILE_PREFIX + segmentId);
+	}
+
+	private Integer getSegmentId(String fileName)
+	{
+		try
+		{
+			return Integer.valueOf(fileName.substring(SEGMENT_FILE_PREFIX.length()));
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Loads the index and opens the segments it refers to. Segment files without an index are
+	 * removed.
+	 */
+	@SuppressWarnings("unchecked")
+	private synchronized void loadIndex()
+	{
+		File index = new File(getStoreFolder(), INDEX_FILE_NAME);
+		if (index.exists() && index.length() > 0)
+		{
+			try
+			{
+				ObjectInputStream ois = new ObjectInputStream(new FileInputStream(index));
+				try
+				{
+					Map<Integer, Segment> loadedSegments = (Map<Integer, Segment>)ois.readObject();
+					Map<String, SessionPages> loadedSessions = (Map<String, SessionPages>)ois.readObject();
+					for (Segment segment : loadedSegments.values())
+					{
+						File file = getSegmentFile(segment.id);
+						segment.channel = new RandomAccessFile(file, "rw").getChannel();
+						segment.records = new IdentityHashMap<Location, Record>();
+						segment.sealed = true;
+						nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+					}
+					segments.putAll(loadedSegments);
+					sessions.putAll(loadedSessions);
+					for (Map.Entry<String, SessionPages> session : sessions.entrySet())
+					{
+						for (Map.Entry<Integer, Location> page : session.getValue().pages.entrySet())
+						{
+							index(session.getKey(), page.getKey(), page.getValue());
+						}
+					}
+				}
+				finally
+				{
+					ois.close();
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't load SegmentFileDataStore index from file " + index + ".", e);
+				for (Segment segment : segments.values())
+				{
+					IOUtils.closeQuietly(segment.channel);
+				}
+				segments.clear();
+				sessions.clear();
+			}
+		}
+		Files.remove(index);
+
+		File[] files = getStoreFolder().listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				String name = file.getName();
+				if (name.startsWith(SEGMENT_FILE_PREFIX) &&
+					segments.containsKey(getSegmentId(name)) == false)
+				{
+					Files.remove(file);
+				}
+			}
+		}
+	}
+
+	private void saveIndex()
+	{
+		File storeFolder = getStoreFolder();
+		if (storeFolder.exists())
+		{
+			File index = new File(storeFolder, INDEX_FILE_NAME);
+			Files.remove(index);
+			try
+			{
+				ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(index));
+				try
+				{
+					oos.writeObject(new HashMap<Integer, Segment>(segments));
+					oos.writeObject(new HashMap<String, SessionPages>(sessions));
+				}
+				finally
+				{
+					oos.close();
+				}
+			}
+			catch (Exception e)
+			{
+				log.error("Couldn't write SegmentFileDataStore index to file " + index + ".", e);
+			}
+		}
+	}
+
+	/**
+	 * Periodically compacts the segments until interrupted.
+	 */
+	private class CompactionRunnable implements Runnable
+	{
+		private final Duration interval;
+
+		private CompactionRunnable(Duration interval)
+		{
+			this.interval = interval;
+		}
+
+		@Override
+		public void run()
+		{
+			while (true)
+			{
+				try
+				{
+					Thread.sleep(interval.getMilliseconds());
+					compact();
+				}
+				catch (InterruptedException e)
+				{
+					log.debug("Compaction thread interrupted, stopping.");
+					return;
+				}
+				catch (RuntimeException e)
+				{
+					log.error("An error occurred while compacting the segments", e);
+				}
+			}
+		}
+	}
+}
@@ -29,6 +29,7 @@ import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.response.ResponseBufferPool;
 import org.apache.wicket.response.filter.IResponseFilter;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.AppendingStringBuffer;
@@ -132,11 +133,13 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 
 	private static class WriteCharSequenceAction extends Action
 	{
-		private final StringBuilder builder = new StringBuilder(4096);
+		private final AppendingStringBuffer builder;
 
 		public WriteCharSequenceAction()
 		{
-
+			builder = Application.exists() ? Application.get()
+				.getResponseBufferPool()
+				.acquireCharBuffer() : new AppendingStringBuffer(4096);
 		}
 
 		public void append(CharSequence sequence)
@@ -147,18 +150,22 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		@Override
 		protected void invoke(WebResponse response)
 		{
-			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
-
 			List<IResponseFilter> responseFilters = Application.get()
 				.getRequestCycleSettings()
 				.getResponseFilters();
 
-			if (responseFilters != null)
+			if (responseFilters == null)
 			{
-				for (IResponseFilter filter : responseFilters)
-				{
-					responseBuffer = filter.filter(responseBuffer);
-				}
+				// no need to copy the buffer
+				response.write(builder);
+				return;
+			}
+
+			// filters may modify the buffer, keep the original in case it is written again
+			AppendingStringBuffer responseBuffer = new AppendingStringBuffer(builder);
+			for (IResponseFilter filter : responseFilters)
+			{
+				responseBuffer = filter.filter(responseBuffer);
 			}
 			response.write(responseBuffer);
 		}
@@ -173,11 +180,13 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 
 	private static class WriteDataAction extends Action
 	{
-		private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		private final ByteArrayOutputStream stream;
 
 		public WriteDataAction()
 		{
-
+			stream = Application.exists() ? Application.get()
+				.getResponseBufferPool()
+				.acquireByteBuffer() : new ByteArrayOutputStream();
 		}
 
 		public void append(byte data[])
@@ -583,6 +592,50 @@ public class BufferedWebResponse extends WebResponse implements IMetaDataBufferi
 		}
 	}
 
+	/**
+	 * Keeps the buffers of this response from being returned to the
+	 * {@link org.apache.wicket.response.ResponseBufferPool} when the current request cycle
+	 * detaches, because the response is stored to be written by a later request.
+	 */
+	void retainBuffers()
+	{
+		if (Application.exists())
+		{
+			ResponseBufferPool pool = Application.get().getResponseBufferPool();
+			if (charSequenceAction != null)
+			{
+				pool.retain(charSequenceAction.builder);
+			}
+			if (dataAction != null)
+			{
+				pool.retain(dataAction.stream);
+			}
+		}
+	}
+
+	/**
+	 * Returns the buffers of a stored response to the
+	 * {@link org.apache.wicket.response.ResponseBufferPool} once the current request cycle, which
+	 * writes the response, detaches.
+	 * 
+	 * @see #retainBuffers()
+	 */
+	void releaseBuffersOnDetach()
+	{
+		if (Application.exists())
+		{
+			ResponseBufferPool pool = Application.get().getResponseBufferPool();
+			if (charSequenceAction != null)
+			{
+				pool.releaseOnDetach(charSequenceAction.builder);
+			}
+			if (dataAction != null)
+			{
+				pool.releaseOnDetach(dataAction.stream);
+			}
+		}
+	}
+
 	@Override
 	public boolean isRedirect()
 	{
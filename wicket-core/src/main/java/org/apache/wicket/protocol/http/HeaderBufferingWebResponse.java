@@ -19,6 +19,7 @@ package org.apache.wicket.protocol.http;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.wicket.request.IPreEncodedText;
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.time.Time;
@@ -174,6 +175,13 @@ class HeaderBufferingWebResponse extends WebResponse implements IMetaDataBufferi
 		originalResponse.write(sequence);
 	}
 
+	@Override
+	public void write(IPreEncodedText text)
+	{
+		writeBuffered();
+		originalResponse.write(text);
+	}
+
 	@Override
 	public void write(byte[] array)
 	{
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import javax.servlet.http.Cookie;
+
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A {@link WebResponse} streaming the rendered page to another response in chunks. Text is
+ * buffered until the buffer holds at least the flush threshold, then it is written to the other
+ * response and flushed to the client. Unlike {@link BufferedWebResponse} the buffer never holds
+ * more than about one chunk of the page.
+ * <p>
+ * Headers, cookies and the status are passed to the other response right away. Once the first
+ * chunk has been flushed, the response is committed: it can't be reset and headers can't be
+ * changed anymore.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamingFlushThreshold(int)
+ */
+public class StreamingWebResponse extends WebResponse
+{
+	private final WebResponse originalResponse;
+
+	private final int threshold;
+
+	/** The text not written to the original response yet */
+	private final StringBuilder buffer;
+
+	/** True, once anything has been written to the original response */
+	private boolean flushed = false;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param originalResponse
+	 *            The response to stream to
+	 * @param threshold
+	 *            The number of characters after which the buffered text is flushed
+	 */
+	public StreamingWebResponse(final WebResponse originalResponse, final int threshold)
+	{
+		Args.notNull(originalResponse, "originalResponse");
+		if (threshold < 1)
+		{
+			throw new IllegalArgumentException("Argument 'threshold' must be greater than 0: " +
+				threshold);
+		}
+
+		this.originalResponse = originalResponse;
+		this.threshold = threshold;
+		buffer = new StringBuilder(Math.min(threshold, 16 * 1024) + 256);
+	}
+
+	/**
+	 * @return True, if a part of the response has been written to the original response. The
+	 *         response can't be replaced anymore.
+	 */
+	public boolean isFlushed()
+	{
+		return flushed;
+	}
+
+	@Override
+	public void write(final CharSequence sequence)
+	{
+		buffer.append(sequence);
+		if (buffer.length() >= threshold)
+		{
+			flush();
+		}
+	}
+
+	@Override
+	public void write(final byte[] array)
+	{
+		writeBuffer();
+		flushed = true;
+		originalResponse.write(array);
+	}
+
+	@Override
+	public void write(final byte[] array, final int offset, final int length)
+	{
+		writeBuffer();
+		flushed = true;
+		originalResponse.write(array, offset, length);
+	}
+
+	/**
+	 * Writes the buffered text to the original response and flushes it to the client.
+	 */
+	@Override
+	public void flush()
+	{
+		writeBuffer();
+		originalResponse.flush();
+		flushed = true;
+	}
+
+	/**
+	 * Writes the remaining buffered text to the original response, without closing it.
+	 */
+	@Override
+	public void close()
+	{
+		writeBuffer();
+	}
+
+	/**
+	 * Discards the buffered text and resets the original response.
+	 * 
+	 * @throws IllegalStateException
+	 *             if a part of the response has already been flushed
+	 */
+	@Override
+	public void reset()
+	{
+		if (flushed)
+		{
+			throw new IllegalStateException("The response has already been flushed to the client.");
+		}
+		super.reset();
+		buffer.setLength(0);
+		originalResponse.reset();
+	}
+
+	@Override
+	public void addCookie(final Cookie cookie)
+	{
+		originalResponse.addCookie(cookie);
+	}
+
+	@Override
+	public void clearCookie(final Cookie cookie)
+	{
+		originalResponse.clearCookie(cookie);
+	}
+
+	@Override
+	public void setHeader(final String name, final String value)
+	{
+		originalResponse.setHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(final String name, final String value)
+	{
+		originalResponse.addHeader(name, value);
+	}
+
+	@Override
+	public void setDateHeader(final String name, final Time date)
+	{
+		originalResponse.setDateHeader(name, date);
+	}
+
+	@Override
+	public void setContentLength(final long length)
+	{
+		originalResponse.setContentLength(length);
+	}
+
+	@Override
+	public void setContentType(final String mimeType)
+	{
+		originalResponse.setContentType(mimeType);
+	}
+
+	@Override
+	public void setStatus(final int sc)
+	{
+		originalResponse.setStatus(sc);
+	}
+
+	@Override
+	public void sendError(final int sc, final String msg)
+	{
+		originalResponse.sendError(sc, msg);
+	}
+
+	@Override
+	public void sendRedirect(final String url)
+	{
+		originalResponse.sendRedirect(url);
+	}
+
+	@Override
+	public boolean isRedirect()
+	{
+		return originalResponse.isRedirect();
+	}
+
+	@Override
+	public String encodeURL(final CharSequence url)
+	{
+		return originalResponse.encodeURL(url);
+	}
+
+	@Override
+	public String encodeRedirectURL(final CharSequence url)
+	{
+		return originalResponse.encodeRedirectURL(url);
+	}
+
+	@Override
+	public Object getContainerResponse()
+	{
+		return originalResponse.getContainerResponse();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[StreamingWebResponse threshold=" + threshold + " flushed=" + flushed + "]";
+	}
+
+	/**
+	 * Writes the buffered text to the original response
+	 */
+	private void writeBuffer()
+	{
+		if (buffer.length() > 0)
+		{
+			originalResponse.write(buffer);
+			buffer.setLength(0);
+			flushed = true;
+		}
+	}
+}
@@ -468,7 +468,10 @@ public abstract class WebApplication extends Application
 	protected WebResponse newWebResponse(final WebRequest webRequest,
 		final HttpServletResponse httpServletResponse)
 	{
-		return new ServletWebResponse((ServletWebRequest)webRequest, httpServletResponse);
+		ServletWebResponse webResponse = new ServletWebResponse((ServletWebRequest)webRequest,
+			httpServletResponse);
+		webResponse.setPreEncodedMarkup(getRequestCycleSettings().getPreEncodedMarkup());
+		return webResponse;
 	}
 
 	/**
@@ -826,7 +829,13 @@ public abstract class WebApplication extends Application
 	public BufferedWebResponse getAndRemoveBufferedResponse(String sessionId, Url url)
 	{
 		String key = sessionId + url.toString();
-		return storedResponses.remove(key);
+		BufferedWebResponse response = storedResponses.remove(key);
+		if (response != null)
+		{
+			// written by the current request
+			response.releaseBuffersOnDetach();
+		}
+		return response;
 	}
 
 	/**
@@ -838,6 +847,8 @@ public abstract class WebApplication extends Application
 	public void storeBufferedResponse(String sessionId, Url url, BufferedWebResponse response)
 	{
 		String key = sessionId + url.toString();
+		// the response outlives the current request
+		response.retainBuffers();
 		storedResponses.put(key, response);
 	}
 
@@ -16,12 +16,18 @@
  */
 package org.apache.wicket.protocol.http.servlet;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.request.IPreEncodedText;
 import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.time.Time;
@@ -38,6 +44,15 @@ public class ServletWebResponse extends WebResponse
 
 	private boolean redirect = false;
 
+	/** whether static text is written as pre-encoded bytes */
+	private boolean preEncodedMarkup = false;
+
+	/** the charset of the encoder, the response's charset when the first text was written */
+	private Charset charset;
+
+	/** encodes the characters into the output stream in pre-encoded mode */
+	private Writer encoder;
+
 	/**
 	 * Construct.
 	 * 
@@ -98,12 +113,52 @@ public class ServletWebResponse extends WebResponse
 		httpServletResponse.addHeader(sanitize(name), sanitize(value));
 	}
 
+	/**
+	 * Sets whether {@link IPreEncodedText}s are written as their cached bytes. In this mode all
+	 * characters are encoded into the servlet response's output stream, its writer is not used.
+	 * 
+	 * @param preEncodedMarkup
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setPreEncodedMarkup(boolean)
+	 */
+	public void setPreEncodedMarkup(boolean preEncodedMarkup)
+	{
+		this.preEncodedMarkup = preEncodedMarkup;
+	}
+
 	@Override
 	public void write(CharSequence sequence)
 	{
 		try
 		{
-			httpServletResponse.getWriter().append(sequence);
+			if (preEncodedMarkup)
+			{
+				getEncoder().append(sequence);
+			}
+			else
+			{
+				httpServletResponse.getWriter().append(sequence);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new ResponseIOException(e);
+		}
+	}
+
+	@Override
+	public void write(IPreEncodedText text)
+	{
+		if (preEncodedMarkup == false)
+		{
+			super.write(text);
+			return;
+		}
+
+		try
+		{
+			// keep the order of the characters encoded so far
+			getEncoder().flush();
+			httpServletResponse.getOutputStream().write(text.getBytes(charset));
 		}
 		catch (IOException e)
 		{
@@ -116,6 +171,7 @@ public class ServletWebResponse extends WebResponse
 	{
 		try
 		{
+			flushEncoder();
 			httpServletResponse.getOutputStream().write(array);
 		}
 		catch (IOException e)
@@ -129,6 +185,7 @@ public class ServletWebResponse extends WebResponse
 	{
 		try
 		{
+			flushEncoder();
 			httpServletResponse.getOutputStream().write(array, offset, length);
 		}
 		catch (IOException e)
@@ -137,6 +194,30 @@ public class ServletWebResponse extends WebResponse
 		}
 	}
 
+	/**
+	 * @return the writer encoding the characters into the output stream
+	 * @throws IOException
+	 */
+	private Writer getEncoder() throws IOException
+	{
+		if (encoder == null)
+		{
+			String encoding = httpServletResponse.getCharacterEncoding();
+			charset = Charset.forName(encoding != null ? encoding : "ISO-8859-1");
+			encoder = new OutputStreamWriter(new UnflushedOutputStream(
+				httpServletResponse.getOutputStream()), charset);
+		}
+		return encoder;
+	}
+
+	private void flushEncoder() throws IOException
+	{
+		if (encoder != null)
+		{
+			encoder.flush();
+		}
+	}
+
 
 	@Override
 	public void setStatus(int sc)
@@ -219,8 +300,8 @@ public class ServletWebResponse extends WebResponse
 				 * using multipart ajax handling) and the headers are not available because XHR is
 				 * not used and that is the only way javascript has access to response headers.
 				 */
-				httpServletResponse.getWriter().write(
-					"<ajax-response><redirect><![CDATA[" + url + "]]></redirect></ajax-response>");
+				write("<ajax-response><redirect><![CDATA[" + url +
+					"]]></redirect></ajax-response>");
 
 				setContentType("text/xml;charset=" +
 					webRequest.getContainerRequest().getCharacterEncoding());
@@ -248,6 +329,7 @@ public class ServletWebResponse extends WebResponse
 	{
 		try
 		{
+			flushEncoder();
 			httpServletResponse.flushBuffer();
 		}
 		catch (IOException e)
@@ -262,6 +344,8 @@ public class ServletWebResponse extends WebResponse
 		super.reset();
 		httpServletResponse.reset();
 		redirect = false;
+		encoder = null;
+		charset = null;
 	}
 
 	@Override
@@ -282,4 +366,32 @@ public class ServletWebResponse extends WebResponse
 		String output = input.replace('\n', ' ').replace('\r', ' ');
 		return output;
 	}
+
+	/**
+	 * Passes the encoded characters to the servlet output stream without flushing it, flushing
+	 * would commit the servlet response.
+	 */
+	private static class UnflushedOutputStream extends FilterOutputStream
+	{
+		private UnflushedOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
 }
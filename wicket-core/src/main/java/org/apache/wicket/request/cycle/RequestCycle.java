@@ -531,6 +531,9 @@ public class RequestCycle implements IRequestCycle, IEventSink
 
 		if (Application.exists())
 		{
+			// return the response buffers of the request to the pool
+			Application.get().getResponseBufferPool().detach(this);
+
 			IRequestLogger requestLogger = Application.get().getRequestLogger();
 			if (requestLogger instanceof IStagedRequestLogger)
 			{
@@ -16,7 +16,9 @@
  */
 package org.apache.wicket.request.handler.render;
 
+import org.apache.wicket.Application;
 import org.apache.wicket.protocol.http.BufferedWebResponse;
+import org.apache.wicket.protocol.http.StreamingWebResponse;
 import org.apache.wicket.protocol.http.WebApplication;
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.Request;
@@ -27,6 +29,7 @@ import org.apache.wicket.request.handler.RenderPageRequestHandler;
 import org.apache.wicket.request.handler.RenderPageRequestHandler.RedirectPolicy;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.settings.IRequestCycleSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -124,6 +127,95 @@ public class WebPageRenderer extends PageRenderer
 		}
 	}
 
+	/**
+	 * Renders the page directly to the response of the request cycle, flushing it in chunks. All
+	 * URLs in page will be rendered relative to <code>targetUrl</code>.
+	 * <p>
+	 * As long as nothing has been flushed, exceptions and request handlers scheduled during render
+	 * are handled like for a buffered response. Afterwards the response can't be replaced anymore:
+	 * exceptions are logged and the client receives a truncated page.
+	 * </p>
+	 * 
+	 * @param targetUrl
+	 * @param requestCycle
+	 * @param threshold
+	 *            the number of characters after which the response is flushed
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamingFlushThreshold(int)
+	 */
+	protected void streamPage(Url targetUrl, RequestCycle requestCycle, int threshold)
+	{
+		IRequestHandler scheduled = requestCycle.getRequestHandlerScheduledAfterCurrent();
+
+		// keep the original response
+		final Response originalResponse = requestCycle.getResponse();
+
+		// streaming web response for page
+		StreamingWebResponse response = new StreamingWebResponse((WebResponse)originalResponse,
+			threshold);
+
+		// keep the original base URL
+		Url originalBaseUrl = requestCycle.getUrlRenderer().setBaseUrl(targetUrl);
+
+		try
+		{
+			requestCycle.setResponse(response);
+			getPage().renderPage();
+		}
+		catch (RuntimeException e)
+		{
+			if (response.isFlushed() == false)
+			{
+				// nothing has been sent yet, let the request cycle handle it
+				throw e;
+			}
+			logger.error("Error while streaming page " + getPage() +
+				", the client received a truncated page", e);
+			return;
+		}
+		finally
+		{
+			// restore original response and base URL
+			requestCycle.setResponse(originalResponse);
+			requestCycle.getUrlRenderer().setBaseUrl(originalBaseUrl);
+		}
+
+		if (scheduled == null && requestCycle.getRequestHandlerScheduledAfterCurrent() != null)
+		{
+			if (response.isFlushed() == false)
+			{
+				// Same as for buffered pages: the scheduled handler will want to overwrite the
+				// response, so we need to let it
+				return;
+			}
+			logger.warn("A request handler has been scheduled while streaming page " + getPage() +
+				", but the page has been sent to the client already. Ignoring " +
+				requestCycle.getRequestHandlerScheduledAfterCurrent());
+			requestCycle.scheduleRequestHandlerAfterCurrent(null);
+		}
+
+		response.close();
+	}
+
+	/**
+	 * @param isAjax
+	 * @return the number of characters after which the page is flushed, 0 if the page has to be
+	 *         buffered
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamingFlushThreshold(int)
+	 */
+	protected int getStreamingFlushThreshold(boolean isAjax)
+	{
+		if (isAjax || isOnePassRender() == false)
+		{
+			return 0;
+		}
+		IRequestCycleSettings settings = Application.get().getRequestCycleSettings();
+		if (settings.getResponseFilters() != null)
+		{
+			return 0;
+		}
+		return settings.getStreamingFlushThreshold();
+	}
+
 	/**
 	 * 
 	 * @param url
@@ -179,10 +271,18 @@ public class WebPageRenderer extends PageRenderer
 			// or the targetUrl matches current url, page is stateless but it's redirect-to-render
 			// or the request determines that the current url should be preserved
 			// just render the page
-			BufferedWebResponse response = renderPage(currentUrl, requestCycle);
-			if (response != null)
+			int streamingFlushThreshold = getStreamingFlushThreshold(isAjax);
+			if (streamingFlushThreshold > 0)
 			{
-				response.writeTo((WebResponse)requestCycle.getResponse());
+				streamPage(currentUrl, requestCycle, streamingFlushThreshold);
+			}
+			else
+			{
+				BufferedWebResponse response = renderPage(currentUrl, requestCycle);
+				if (response != null)
+				{
+					response.writeTo((WebResponse)requestCycle.getResponse());
+				}
 			}
 		}
 		else if (getRedirectPolicy() == RedirectPolicy.ALWAYS_REDIRECT //
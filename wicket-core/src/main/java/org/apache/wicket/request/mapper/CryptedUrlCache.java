@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.IClusterable;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.Session;
+import org.apache.wicket.util.IProvider;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A bounded cache of the URLs encrypted and decrypted by a {@link CryptoMapper}. It maps the plain
+ * URL to its encrypted form and vice versa, including the hashed placeholder segments appended to
+ * the encrypted URL. The least recently used URLs are evicted once the cache is full.
+ * <p>
+ * The cache must have the same scope as the encryption key: use {@link #applicationScoped(int)}
+ * if the application uses a single key (e.g.
+ * {@link org.apache.wicket.util.crypt.CachingSunJceCryptFactory}) and {@link #sessionScoped(int)}
+ * if each session has its own key (e.g.
+ * {@link org.apache.wicket.util.crypt.KeyInSessionSunJceCryptFactory}). An application scoped
+ * cache in combination with session specific keys would hand out URLs encrypted with the key of
+ * another session.
+ * </p>
+ *
+ * @see CryptoMapper#setUrlCacheProvider(IProvider)
+ */
+public class CryptedUrlCache implements IClusterable
+{
+	private static final long serialVersionUID = 1L;
+
+	/** metadata-key used to store the cache in session metadata */
+	private static final MetaDataKey<CryptedUrlCache> KEY = new MetaDataKey<CryptedUrlCache>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private final int maxSize;
+
+	/** plain url -> cached url, in least recently used order */
+	private transient Map<String, CachedUrl> plainUrls;
+
+	/** encrypted url -> cached url, always holds the same urls as {@link #plainUrls} */
+	private transient Map<String, CachedUrl> encryptedUrls;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached urls
+	 */
+	public CryptedUrlCache(final int maxSize)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, maxSize, "maxSize");
+		this.maxSize = maxSize;
+		initMaps();
+	}
+
+	/**
+	 * Creates a provider of a cache shared by all sessions.
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached urls
+	 * @return the provider
+	 */
+	public static IProvider<CryptedUrlCache> applicationScoped(final int maxSize)
+	{
+		final CryptedUrlCache cache = new CryptedUrlCache(maxSize);
+		return new IProvider<CryptedUrlCache>()
+		{
+			@Override
+			public CryptedUrlCache get()
+			{
+				return cache;
+			}
+		};
+	}
+
+	/**
+	 * Creates a provider of caches kept in the metadata of the current session. No cache is used
+	 * if there is no session.
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached urls per session
+	 * @return the provider
+	 */
+	public static IProvider<CryptedUrlCache> sessionScoped(final int maxSize)
+	{
+		Args.withinRange(1, Integer.MAX_VALUE, maxSize, "maxSize");
+		return new IProvider<CryptedUrlCache>()
+		{
+			@Override
+			public CryptedUrlCache get()
+			{
+				if (Session.exists() == false)
+				{
+					return null;
+				}
+				Session session = Session.get();
+				CryptedUrlCache cache = session.getMetaData(KEY);
+				if (cache == null)
+				{
+					// concurrent requests may create two caches, one of them is lost
+					cache = new CryptedUrlCache(maxSize);
+					session.setMetaData(KEY, cache);
+				}
+				return cache;
+			}
+		};
+	}
+
+	/**
+	 * @param plainUrl
+	 * @return the cached url for the plain url or <code>null</code>
+	 */
+	CachedUrl getByPlainUrl(final String plainUrl)
+	{
+		CachedUrl url;
+		synchronized (this)
+		{
+			url = plainUrls.get(plainUrl);
+		}
+		count(url);
+		return url;
+	}
+
+	/**
+	 * @param encryptedUrl
+	 * @return the cached url for the encrypted url or <code>null</code>
+	 */
+	CachedUrl getByEncryptedUrl(final String encryptedUrl)
+	{
+		CachedUrl url;
+		synchronized (this)
+		{
+			url = encryptedUrls.get(encryptedUrl);
+			if (url != null)
+			{
+				// both directions share the least recently used order
+				plainUrls.get(url.plainUrl);
+			}
+		}
+		count(url);
+		return url;
+	}
+
+	/**
+	 * @param url
+	 */
+	synchronized void put(final CachedUrl url)
+	{
+		final CachedUrl replaced = plainUrls.put(url.plainUrl, url);
+		if (replaced != null)
+		{
+			encryptedUrls.remove(replaced.encryptedUrl);
+		}
+		encryptedUrls.put(url.encryptedUrl, url);
+	}
+
+	private void count(final CachedUrl url)
+	{
+		if (url == null)
+		{
+			misses.incrementAndGet();
+		}
+		else
+		{
+			hits.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes all urls.
+	 */
+	public synchronized void clear()
+	{
+		plainUrls.clear();
+		encryptedUrls.clear();
+	}
+
+	/**
+	 * @return the number of cached urls
+	 */
+	public synchronized int size()
+	{
+		return plainUrls.size();
+	}
+
+	/**
+	 * @return the maximum number of cached urls
+	 */
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of lookups which found the url
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups which did not find the url
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of urls removed to make room for new ones
+	 */
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	private void initMaps()
+	{
+		encryptedUrls = new HashMap<String, CachedUrl>();
+		plainUrls = new LinkedHashMap<String, CachedUrl>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CachedUrl> eldest)
+			{
+				if (size() > maxSize)
+				{
+					// evict both directions of the pair together
+					encryptedUrls.remove(eldest.getValue().encryptedUrl);
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException,
+		ClassNotFoundException
+	{
+		in.defaultReadObject();
+		// the cached urls are not worth replicating
+		initMaps();
+	}
+
+	/**
+	 * A plain url, its encrypted form and the hashed segments appended to the encrypted url.
+	 */
+	static final class CachedUrl
+	{
+		final String plainUrl;
+
+		final String encryptedUrl;
+
+		final String[] segments;
+
+		CachedUrl(final String plainUrl, final String encryptedUrl, final String[] segments)
+		{
+			this.plainUrl = plainUrl;
+			this.encryptedUrl = encryptedUrl;
+			this.segments = segments;
+		}
+	}
+}
@@ -54,6 +54,8 @@ public class CryptoMapper implements IRequestMapper
 	private final IRequestMapper wrappedMapper;
 	private final IProvider<ICrypt> cryptProvider;
 
+	private volatile IProvider<CryptedUrlCache> urlCacheProvider;
+
 	/**
 	 * Construct.
 	 * 
@@ -130,22 +132,57 @@ public class CryptoMapper implements IRequestMapper
 		return wrappedMapper;
 	}
 
+	/**
+	 * Sets the provider of the cache of encrypted and decrypted urls, which saves repeatedly
+	 * encrypting the same urls on each render. The scope of the cache has to match the scope of
+	 * the encryption key, see {@link CryptedUrlCache}.
+	 * 
+	 * @param urlCacheProvider
+	 *            the cache provider, <code>null</code> to disable caching
+	 * @return this
+	 */
+	public CryptoMapper setUrlCacheProvider(final IProvider<CryptedUrlCache> urlCacheProvider)
+	{
+		this.urlCacheProvider = urlCacheProvider;
+		return this;
+	}
+
+	/**
+	 * @return the cache of encrypted and decrypted urls or <code>null</code> if there is none
+	 */
+	protected final CryptedUrlCache getUrlCache()
+	{
+		IProvider<CryptedUrlCache> provider = urlCacheProvider;
+		return provider != null ? provider.get() : null;
+	}
+
 	private Url encryptUrl(final Url url)
 	{
 		if (url.getSegments().isEmpty() && url.getQueryParameters().isEmpty())
 		{
 			return url;
 		}
-		String encryptedUrlString = getCrypt().encryptUrlSafe(url.toString());
+		String urlString = url.toString();
 
-		Url encryptedUrl = new Url(url.getCharset());
-		encryptedUrl.getSegments().add(encryptedUrlString);
+		CryptedUrlCache cache = getUrlCache();
+		CryptedUrlCache.CachedUrl cachedUrl = cache != null ? cache.getByPlainUrl(urlString)
+			: null;
+		if (cachedUrl == null)
+		{
+			String encryptedUrlString = getCrypt().encryptUrlSafe(urlString);
+			cachedUrl = new CryptedUrlCache.CachedUrl(urlString, encryptedUrlString,
+				generateSegments(encryptedUrlString, url.getSegments().size()));
+			if (cache != null && encryptedUrlString != null)
+			{
+				cache.put(cachedUrl);
+			}
+		}
 
-		int numberOfSegments = url.getSegments().size();
-		HashedSegmentGenerator generator = new HashedSegmentGenerator(encryptedUrlString);
-		for (int segNo = 0; segNo < numberOfSegments; segNo++)
+		Url encryptedUrl = new Url(url.getCharset());
+		encryptedUrl.getSegments().add(cachedUrl.encryptedUrl);
+		for (String segment : cachedUrl.segments)
 		{
-			encryptedUrl.getSegments().add(generator.next());
+			encryptedUrl.getSegments().add(segment);
 		}
 		return encryptedUrl;
 	}
@@ -172,22 +209,38 @@ public class CryptoMapper implements IRequestMapper
 				return null;
 			}
 
-			String decryptedUrl = getCrypt().decryptUrlSafe(encryptedUrlString);
-			if (decryptedUrl == null)
+			CryptedUrlCache cache = getUrlCache();
+			CryptedUrlCache.CachedUrl cachedUrl = cache != null
+				? cache.getByEncryptedUrl(encryptedUrlString) : null;
+			Url originalUrl;
+			if (cachedUrl == null)
 			{
-				return null;
+				String decryptedUrl = getCrypt().decryptUrlSafe(encryptedUrlString);
+				if (decryptedUrl == null)
+				{
+					return null;
+				}
+				originalUrl = Url.parse(decryptedUrl, request.getCharset());
+				cachedUrl = new CryptedUrlCache.CachedUrl(decryptedUrl, encryptedUrlString,
+					generateSegments(encryptedUrlString, originalUrl.getSegments().size()));
+				if (cache != null)
+				{
+					cache.put(cachedUrl);
+				}
+			}
+			else
+			{
+				originalUrl = Url.parse(cachedUrl.plainUrl, request.getCharset());
 			}
-			Url originalUrl = Url.parse(decryptedUrl, request.getCharset());
 
 			int originalNumberOfSegments = originalUrl.getSegments().size();
 			int encryptedNumberOfSegments = encryptedUrl.getSegments().size();
 
-			HashedSegmentGenerator generator = new HashedSegmentGenerator(encryptedUrlString);
 			int segNo = 1;
 			for (; segNo < encryptedNumberOfSegments; segNo++)
 			{
 				if (segNo > originalNumberOfSegments ||
-					!generator.next().equals(encryptedSegments.get(segNo)))
+					!cachedUrl.segments[segNo - 1].equals(encryptedSegments.get(segNo)))
 				{
 					break;
 				}
@@ -212,6 +265,22 @@ public class CryptoMapper implements IRequestMapper
 		return url;
 	}
 
+	/**
+	 * @param encryptedUrlString
+	 * @param count
+	 * @return the hashed segments appended to the encrypted url
+	 */
+	private static String[] generateSegments(final String encryptedUrlString, final int count)
+	{
+		String[] segments = new String[count];
+		HashedSegmentGenerator generator = new HashedSegmentGenerator(encryptedUrlString);
+		for (int segNo = 0; segNo < count; segNo++)
+		{
+			segments[segNo] = generator.next();
+		}
+		return segments;
+	}
+
 	private static class ApplicationCryptProvider implements IProvider<ICrypt>
 	{
 		private final Application application;
@@ -277,4 +346,4 @@ public class CryptoMapper implements IRequestMapper
 			return hash;
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
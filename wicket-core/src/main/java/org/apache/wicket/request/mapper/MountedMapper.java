@@ -16,6 +16,7 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -63,7 +64,7 @@ import org.apache.wicket.util.string.Strings;
  * 
  * @author Matej Knopp
  */
-public class MountedMapper extends AbstractBookmarkableMapper
+public class MountedMapper extends AbstractBookmarkableMapper implements IIndexableRequestMapper
 {
 	private final IPageParametersEncoder pageParametersEncoder;
 
@@ -494,6 +495,43 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		}
 	}
 
+	/**
+	 * Returns the fixed segments at the start of the mount path. Subclasses overriding the
+	 * matching of urls, i.e. {@link #mapRequest(Request)}, {@link #parseRequest(Request)} or
+	 * {@link #urlStartsWith(Url, String...)}, are not indexed, as they may map urls not starting
+	 * with the mount path.
+	 * 
+	 * @see org.apache.wicket.request.mapper.IIndexableRequestMapper#getFixedLeadingSegments()
+	 */
+	public String[] getFixedLeadingSegments()
+	{
+		if (overridesMatching())
+		{
+			return null;
+		}
+		return getFixedPrefix(mountSegments);
+	}
+
+	/**
+	 * @return <code>true</code> if a subclass declares one of the methods matching the urls
+	 */
+	private boolean overridesMatching()
+	{
+		for (Class<?> c = getClass(); c != MountedMapper.class; c = c.getSuperclass())
+		{
+			for (Method method : c.getDeclaredMethods())
+			{
+				final String name = method.getName();
+				if ("mapRequest".equals(name) || "parseRequest".equals(name) ||
+					"urlStartsWith".equals(name))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * @see org.apache.wicket.request.mapper.AbstractBookmarkableMapper#checkPageClass(java.lang.Class)
 	 */
@@ -503,7 +541,10 @@ public class MountedMapper extends AbstractBookmarkableMapper
 		return pageClass.equals(this.getPageClass());
 	}
 
-	private Class<? extends IRequestablePage> getPageClass()
+	/**
+	 * @return the mounted page class
+	 */
+	public Class<? extends IRequestablePage> getPageClass()
 	{
 		return pageClassProvider.get();
 	}
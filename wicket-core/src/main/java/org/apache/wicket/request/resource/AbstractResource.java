@@ -16,11 +16,23 @@
  */
 package org.apache.wicket.request.resource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -30,11 +42,19 @@ import org.apache.wicket.request.HttpHeaderCollection;
 import org.apache.wicket.request.Response;
 import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.PackageResourceCache.ProcessedData;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.response.ByteArrayResponse;
 import org.apache.wicket.settings.IResourceSettings;
+import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.io.Streams;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.resource.FileResourceStream;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.string.Strings;
 import org.apache.wicket.util.time.Duration;
 import org.apache.wicket.util.time.Time;
 
@@ -48,6 +68,12 @@ public abstract class AbstractResource implements IResource
 {
 	private static final long serialVersionUID = 1L;
 
+	/** The length below which data is not compressed, because it would hardly get any shorter */
+	private static final int MIN_COMPRESSED_LENGTH = 256;
+
+	/** The maximum number of ranges served for a request */
+	private static final int MAX_RANGES = 16;
+
 	/** header values that are managed internally and must not be set directly */
 	public static final Set<String> INTERNAL_HEADERS;
 
@@ -60,6 +86,7 @@ public abstract class AbstractResource implements IResource
 		INTERNAL_HEADERS.add("last-modified");
 		INTERNAL_HEADERS.add("content-type");
 		INTERNAL_HEADERS.add("content-length");
+		INTERNAL_HEADERS.add("content-encoding");
 		INTERNAL_HEADERS.add("content-disposition");
 		INTERNAL_HEADERS.add("transfer-encoding");
 		INTERNAL_HEADERS.add("connection");
@@ -96,6 +123,16 @@ public abstract class AbstractResource implements IResource
 		private String contentType = null;
 		private String textEncoding;
 		private long contentLength = -1;
+
+		private String contentEncoding;
+
+		private String eTag;
+
+		private boolean weakETag;
+
+		private boolean acceptRanges;
+
+		private Integer statusCode;
 		private Time lastModified = null;
 		private WriteCallback writeCallback;
 		private Duration cacheDuration;
@@ -224,6 +261,26 @@ public abstract class AbstractResource implements IResource
 			return contentType;
 		}
 
+		/**
+		 * Sets the encoding of the content, e.g. <code>gzip</code>, if the data written by the
+		 * {@link WriteCallback} is compressed.
+		 * 
+		 * @param contentEncoding
+		 *            content encoding, <code>null</code> for the identity encoding
+		 */
+		public void setContentEncoding(String contentEncoding)
+		{
+			this.contentEncoding = contentEncoding;
+		}
+
+		/**
+		 * @return content encoding, <code>null</code> for the identity encoding
+		 */
+		public String getContentEncoding()
+		{
+			return contentEncoding;
+		}
+
 		/**
 		 * Sets the text encoding for the resource. The encoding is only used if the content type
 		 * indicates a textual resource.
@@ -286,10 +343,100 @@ public abstract class AbstractResource implements IResource
 			return lastModified;
 		}
 
+		/**
+		 * Sets the entity tag of the data, which identifies its current version. It is sent in
+		 * the <code>ETag</code> header, quoted as a strong entity tag.
+		 * 
+		 * @param eTag
+		 *            the unquoted entity tag, <code>null</code> if none
+		 */
+		public void setETag(String eTag)
+		{
+			setETag(eTag, false);
+		}
+
+		/**
+		 * Sets the entity tag of the data. A strong entity tag changes with every change of the
+		 * bytes of the data, e.g. a digest of the data. A weak entity tag, e.g. one derived from
+		 * the modification time and the length of the data, is sent with the <code>W/</code>
+		 * prefix. It is used for conditional requests with <code>If-None-Match</code>, but not
+		 * for ranges requested with <code>If-Range</code>.
+		 * 
+		 * @param eTag
+		 *            the unquoted entity tag, <code>null</code> if none
+		 * @param weak
+		 *            whether the entity tag is weak
+		 */
+		public void setETag(String eTag, boolean weak)
+		{
+			this.eTag = eTag;
+			weakETag = weak;
+		}
+
+		/**
+		 * @return the unquoted entity tag, <code>null</code> if none
+		 */
+		public String getETag()
+		{
+			return eTag;
+		}
+
+		/**
+		 * @return whether the entity tag is weak
+		 * @see #setETag(String, boolean)
+		 */
+		public boolean isETagWeak()
+		{
+			return weakETag;
+		}
+
+		/**
+		 * Sets whether the client may request ranges of the data. Ranges are served only if the
+		 * content length is known, see
+		 * {@link WriteCallback#writeData(IResource.Attributes, long, long)}.
+		 * 
+		 * @param acceptRanges
+		 *            <code>true</code> to serve ranges of the data
+		 */
+		public void setAcceptRanges(boolean acceptRanges)
+		{
+			this.acceptRanges = acceptRanges;
+		}
+
+		/**
+		 * @return whether the client may request ranges of the data
+		 */
+		public boolean getAcceptRanges()
+		{
+			return acceptRanges;
+		}
+
+		/**
+		 * Sets the status code of a successful response, e.g. 206 for partial content.
+		 * 
+		 * @param statusCode
+		 *            the status code, <code>null</code> for the default
+		 * @see #setError(Integer)
+		 */
+		public void setStatusCode(Integer statusCode)
+		{
+			this.statusCode = statusCode;
+		}
+
+		/**
+		 * @return the status code, <code>null</code> for the default
+		 */
+		public Integer getStatusCode()
+		{
+			return statusCode;
+		}
+
 		/**
 		 * Check to determine if the resource data needs to be written. This method checks the
-		 * <code>If-Modified-Since</code> request header and compares it to lastModified property.
-		 * In order for this method to work {@link #setLastModified(Time)} has to be called first.
+		 * <code>If-None-Match</code> request header and compares it to the entity tag if set,
+		 * otherwise the <code>If-Modified-Since</code> request header and compares it to
+		 * lastModified property. In order for this method to work {@link #setETag(String)} or
+		 * {@link #setLastModified(Time)} has to be called first.
 		 * 
 		 * @param attributes
 		 *            request attributes
@@ -299,6 +446,17 @@ public abstract class AbstractResource implements IResource
 		public boolean dataNeedsToBeWritten(Attributes attributes)
 		{
 			WebRequest request = (WebRequest)attributes.getRequest();
+
+			if (eTag != null)
+			{
+				// If-None-Match takes precedence over If-Modified-Since
+				String ifNoneMatch = request.getHeader("If-None-Match");
+				if (ifNoneMatch != null)
+				{
+					return !matchesETag(ifNoneMatch, eTag, true);
+				}
+			}
+
 			Time ifModifiedSince = request.getIfModifiedSinceHeader();
 
 			if (ifModifiedSince != null && lastModified != null)
@@ -481,7 +639,14 @@ public abstract class AbstractResource implements IResource
 		if (this instanceof IStaticCacheableResource)
 		{
 			getCachingStrategy().decorateResponse(data, (IStaticCacheableResource)this);
+
+			// compress the data if the client accepts it
+			encodeContent(data, attributes);
 		}
+
+		// serve ranges of the data if the client requests them
+		selectRanges(data, attributes);
+
 		// set response header
 		setResponseHeaders(data, attributes);
 
@@ -498,6 +663,612 @@ public abstract class AbstractResource implements IResource
 		data.getWriteCallback().writeData(attributes);
 	}
 
+	/**
+	 * Replaces the data of a textual static resource with its gzip or deflate encoded variant, if
+	 * the client accepts one of these encodings.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @param attributes
+	 *            request attributes
+	 */
+	private void encodeContent(final ResourceResponse data, final Attributes attributes)
+	{
+		if ((data.getErrorCode() != null) || (data.getContentEncoding() != null) ||
+			(data.getWriteCallback() == null) || !(attributes.getRequest() instanceof WebRequest) ||
+			!Application.exists() ||
+			!Application.get().getResourceSettings().getUseResponseCompression() ||
+			!isCompressible(data.getContentType()) || !data.dataNeedsToBeWritten(attributes))
+		{
+			return;
+		}
+
+		// the data depends on the Accept-Encoding header of the request
+		data.getHeaders().addHeader("Vary", "Accept-Encoding");
+
+		final long contentLength = data.getContentLength();
+		if ((contentLength != -1) && (contentLength < MIN_COMPRESSED_LENGTH))
+		{
+			return;
+		}
+
+		final WebRequest request = (WebRequest)attributes.getRequest();
+		final String contentEncoding = negotiateContentEncoding(request.getHeader("Accept-Encoding"));
+		if (contentEncoding == null)
+		{
+			return;
+		}
+
+		// the encoded data is a representation of its own
+		final String eTag = data.getETag();
+		if (eTag != null)
+		{
+			data.setETag(eTag + "-" + contentEncoding, data.isETagWeak());
+			if (!data.dataNeedsToBeWritten(attributes))
+			{
+				data.setContentEncoding(contentEncoding);
+				return;
+			}
+		}
+
+		// the encoded data of this version of the resource may be cached already or have been
+		// kept in the manifest before a restart
+		final PackageResourceCache cache = PackageResourceCache.get();
+		final ResourceManifest manifest = ResourceManifest.get();
+		Serializable key = null;
+		String manifestKey = null;
+		if ((cache != null) || (manifest != null))
+		{
+			final Serializable dataKey = getEncodedDataKey(data);
+			if ((dataKey != null) && (cache != null))
+			{
+				key = new EncodedDataKey(getClass().getName(), dataKey, data.getLastModified(),
+					contentLength, contentEncoding);
+			}
+			final String stableKey = (manifest != null) ? ResourceManifest.keyOf(dataKey) : null;
+			if (stableKey != null)
+			{
+				manifestKey = contentEncoding + ":" + getClass().getName() + ":" + stableKey + ":" +
+					contentLength;
+			}
+		}
+		ProcessedData encoded = (key != null) ? cache.get(key) : null;
+
+		if ((encoded == null) && (manifestKey != null))
+		{
+			final byte[] bytes = manifest.get(manifestKey, data.getLastModified());
+			if (bytes != null)
+			{
+				encoded = new ProcessedData(bytes, data.getContentType(), data.getLastModified());
+				if (key != null)
+				{
+					cache.put(key, encoded);
+				}
+			}
+		}
+
+		if (encoded == null)
+		{
+			final ByteArrayResponse original = new ByteArrayResponse(attributes.getResponse());
+			data.getWriteCallback().writeData(
+				new Attributes(request, original, attributes.getParameters()));
+			final byte[] bytes = original.getBytes();
+			if (bytes.length < MIN_COMPRESSED_LENGTH)
+			{
+				data.setETag(eTag, data.isETagWeak());
+				writeData(data, bytes);
+				return;
+			}
+
+			encoded = new ProcessedData(encode(bytes, contentEncoding), data.getContentType(),
+				data.getLastModified());
+			if (key != null)
+			{
+				cache.put(key, encoded);
+			}
+			if (manifestKey != null)
+			{
+				manifest.put(manifestKey, data.getLastModified(), encoded.getData());
+			}
+		}
+
+		data.setContentEncoding(contentEncoding);
+		writeData(data, encoded.getData());
+	}
+
+	/**
+	 * Replaces the data with the ranges requested by the client, if the resource accepts ranges.
+	 * A single range is sent as is, multiple ranges as <code>multipart/byteranges</code>. Ranges
+	 * which can not be served in one pass over the data, i.e. unordered or overlapping ranges, are
+	 * ignored and the whole data is sent.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @param attributes
+	 *            request attributes
+	 */
+	private void selectRanges(final ResourceResponse data, final Attributes attributes)
+	{
+		final long contentLength = data.getContentLength();
+		if (!data.getAcceptRanges() || (data.getErrorCode() != null) ||
+			(data.getWriteCallback() == null) || (contentLength == -1) ||
+			!(attributes.getRequest() instanceof WebRequest))
+		{
+			return;
+		}
+
+		data.getHeaders().setHeader("Accept-Ranges", "bytes");
+
+		final WebRequest request = (WebRequest)attributes.getRequest();
+		final String range = request.getHeader("Range");
+		if ((range == null) || !data.dataNeedsToBeWritten(attributes))
+		{
+			return;
+		}
+
+		// ranges of another version of the data are of no use to the client
+		final String ifRange = request.getHeader("If-Range");
+		if ((ifRange != null) && !isCurrentVersion(data, request, ifRange))
+		{
+			return;
+		}
+
+		final List<ByteRange> ranges = parseRanges(range, contentLength);
+		if (ranges == null)
+		{
+			return;
+		}
+
+		if (ranges.isEmpty())
+		{
+			data.setStatusCode(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			data.getHeaders().setHeader("Content-Range", "bytes */" + contentLength);
+			writeData(data, new byte[0]);
+			return;
+		}
+
+		final WriteCallback callback = data.getWriteCallback();
+		data.setStatusCode(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+		if (ranges.size() == 1)
+		{
+			final ByteRange byteRange = ranges.get(0);
+			data.getHeaders().setHeader("Content-Range", byteRange.toContentRange(contentLength));
+			data.setContentLength(byteRange.length);
+			data.setWriteCallback(new WriteCallback()
+			{
+				@Override
+				public void writeData(final Attributes attributes)
+				{
+					try
+					{
+						callback.writeData(attributes, byteRange.offset, byteRange.length);
+					}
+					finally
+					{
+						callback.rangesWritten();
+					}
+				}
+			});
+			return;
+		}
+
+		String partContentType = data.getContentType();
+		if ((partContentType != null) && partContentType.contains("text") &&
+			(data.getTextEncoding() != null))
+		{
+			partContentType += "; charset=" + data.getTextEncoding();
+		}
+
+		final String boundary = Long.toHexString(Double.doubleToLongBits(Math.random()));
+		final List<byte[]> partHeaders = new ArrayList<byte[]>(ranges.size());
+		long length = 0;
+		for (ByteRange byteRange : ranges)
+		{
+			final StringBuilder partHeader = new StringBuilder();
+			partHeader.append("\r\n--").append(boundary).append("\r\n");
+			if (partContentType != null)
+			{
+				partHeader.append("Content-Type: ").append(partContentType).append("\r\n");
+			}
+			partHeader.append("Content-Range: ")
+				.append(byteRange.toContentRange(contentLength))
+				.append("\r\n\r\n");
+			final byte[] bytes = toAscii(partHeader);
+			partHeaders.add(bytes);
+			length += bytes.length + byteRange.length;
+		}
+		final byte[] end = toAscii("\r\n--" + boundary + "--\r\n");
+		length += end.length;
+
+		data.setContentType("multipart/byteranges; boundary=" + boundary);
+		data.setContentLength(length);
+		data.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(final Attributes attributes)
+			{
+				try
+				{
+					for (int i = 0; i < ranges.size(); i++)
+					{
+						final ByteRange byteRange = ranges.get(i);
+						attributes.getResponse().write(partHeaders.get(i));
+						callback.writeData(attributes, byteRange.offset, byteRange.length);
+					}
+					attributes.getResponse().write(end);
+				}
+				finally
+				{
+					callback.rangesWritten();
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param data
+	 *            resource data
+	 * @param request
+	 *            the request
+	 * @param ifRange
+	 *            the If-Range header of the request
+	 * @return whether the entity tag or date of the If-Range header identifies the current
+	 *         version of the data
+	 */
+	private static boolean isCurrentVersion(final ResourceResponse data, final WebRequest request,
+		final String ifRange)
+	{
+		final String value = ifRange.trim();
+		if (value.startsWith("\"") || value.startsWith("W/"))
+		{
+			// only a strong entity tag may be used
+			return (data.getETag() != null) && (data.isETagWeak() == false) &&
+				matchesETag(value, data.getETag(), false);
+		}
+
+		final Time date = request.getDateHeader("If-Range");
+		final Time lastModified = data.getLastModified();
+		return (date != null) && (lastModified != null) &&
+			(date.getMilliseconds() / 1000 == lastModified.getMilliseconds() / 1000);
+	}
+
+	/**
+	 * @param header
+	 *            an If-None-Match or If-Range header
+	 * @param eTag
+	 *            the unquoted entity tag of the data
+	 * @param weak
+	 *            whether a weak entity tag in the header matches
+	 * @return whether the header contains the entity tag
+	 */
+	private static boolean matchesETag(final String header, final String eTag, final boolean weak)
+	{
+		final String quoted = '"' + eTag + '"';
+		for (String tag : Strings.split(header, ','))
+		{
+			tag = tag.trim();
+			if ("*".equals(tag))
+			{
+				return true;
+			}
+			if (tag.startsWith("W/"))
+			{
+				if (weak == false)
+				{
+					continue;
+				}
+				tag = tag.substring(2);
+			}
+			if (quoted.equals(tag))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a Range header
+	 * 
+	 * @param header
+	 *            the Range header of the request
+	 * @param contentLength
+	 *            the length of the data
+	 * @return the satisfiable ranges in the order of the header, an empty list if none is
+	 *         satisfiable, <code>null</code> if the header is malformed or the ranges can not be
+	 *         served in one pass over the data
+	 */
+	static List<ByteRange> parseRanges(final String header, final long contentLength)
+	{
+		final String value = header.trim();
+		if (value.startsWith("bytes=") == false)
+		{
+			return null;
+		}
+
+		final String[] specs = Strings.split(value.substring(6), ',');
+		if (specs.length > MAX_RANGES)
+		{
+			return null;
+		}
+
+		final List<ByteRange> ranges = new ArrayList<ByteRange>(specs.length);
+		long next = 0;
+		for (String spec : specs)
+		{
+			spec = spec.trim();
+			final int dash = spec.indexOf('-');
+			if (dash == -1)
+			{
+				return null;
+			}
+
+			final long first;
+			final long last;
+			try
+			{
+				if (dash == 0)
+				{
+					// the last bytes
+					final long suffix = Long.parseLong(spec.substring(1).trim());
+					if (suffix == 0)
+					{
+						continue;
+					}
+					first = Math.max(0, contentLength - suffix);
+					last = contentLength - 1;
+				}
+				else
+				{
+					first = Long.parseLong(spec.substring(0, dash).trim());
+					final String end = spec.substring(dash + 1).trim();
+					last = end.length() == 0 ? contentLength - 1 : Math.min(Long.parseLong(end),
+						contentLength - 1);
+					if (last < first && end.length() > 0 && first < contentLength)
+					{
+						return null;
+					}
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+
+			if ((first < 0) || (first >= contentLength))
+			{
+				// not satisfiable
+				continue;
+			}
+			if (first < next)
+			{
+				// overlapping or out of order
+				return null;
+			}
+			ranges.add(new ByteRange(first, last - first + 1));
+			next = last + 1;
+		}
+		return ranges;
+	}
+
+	/**
+	 * @param chars
+	 * @return the ASCII bytes of the characters
+	 */
+	private static byte[] toAscii(final CharSequence chars)
+	{
+		try
+		{
+			return chars.toString().getBytes("US-ASCII");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new WicketRuntimeException(e);
+		}
+	}
+
+	/**
+	 * Gets the key of the data of this resource in the {@link PackageResourceCache}, which the
+	 * key of its gzip and deflate encoded variants is derived from. The key is combined with the
+	 * class of this resource and the last modification time and length of the data, so a new
+	 * version of the resource gets a new key.
+	 * 
+	 * @param data
+	 *            resource data
+	 * @return the key, <code>null</code> to not cache the encoded data
+	 */
+	protected Serializable getEncodedDataKey(final ResourceResponse data)
+	{
+		return ((IStaticCacheableResource)this).getCacheKey();
+	}
+
+	/**
+	 * @param data
+	 *            resource data
+	 * @param bytes
+	 *            bytes to write instead of the data of the current {@link WriteCallback}
+	 */
+	private static void writeData(final ResourceResponse data, final byte[] bytes)
+	{
+		data.setContentLength(bytes.length);
+		data.setWriteCallback(new WriteCallback()
+		{
+			@Override
+			public void writeData(final Attributes attributes)
+			{
+				attributes.getResponse().write(bytes);
+			}
+
+			@Override
+			public void writeData(final Attributes attributes, final long offset, final long length)
+			{
+				attributes.getResponse().write(bytes, (int)offset, (int)length);
+			}
+		});
+	}
+
+	/**
+	 * Gets the file whose content is served by a resource stream, so it can be written with
+	 * {@link WriteCallback#writeFile(IResource.Attributes, java.io.File, long, long)}. Only a
+	 * plain {@link FileResourceStream} qualifies, subclasses may provide other content through
+	 * {@link IResourceStream#getInputStream()}.
+	 * 
+	 * @param stream
+	 *            the resource stream
+	 * @return the file, <code>null</code> if the content has to be read from the stream
+	 */
+	protected static java.io.File getFile(final IResourceStream stream)
+	{
+		if ((stream != null) && (stream.getClass() == FileResourceStream.class))
+		{
+			return ((FileResourceStream)stream).getFile();
+		}
+		return null;
+	}
+
+	/**
+	 * @param lastModified
+	 *            the last modification time of the data
+	 * @param length
+	 *            the length of the data
+	 * @return a weak entity tag derived from the last modification time and the length of the
+	 *         data. Data changed within the precision of the modification time keeps its tag.
+	 */
+	static String newETag(final Time lastModified, final long length)
+	{
+		return Long.toHexString(lastModified.getMilliseconds()) + "-" + Long.toHexString(length);
+	}
+
+	/**
+	 * @param contentType
+	 * @return whether data of the content type is worth compressing
+	 */
+	private static boolean isCompressible(String contentType)
+	{
+		if (contentType == null)
+		{
+			return false;
+		}
+
+		contentType = withoutParameters(contentType);
+		return contentType.startsWith("text/") || contentType.endsWith("+xml") ||
+			contentType.endsWith("/xml") || contentType.endsWith("/json") ||
+			contentType.endsWith("javascript");
+	}
+
+	/**
+	 * Picks the content encoding of the response, preferring gzip over deflate
+	 * 
+	 * @param acceptEncoding
+	 *            the Accept-Encoding header of the request
+	 * @return <code>gzip</code>, <code>deflate</code> or <code>null</code> if the client accepts
+	 *         neither
+	 */
+	static String negotiateContentEncoding(final String acceptEncoding)
+	{
+		if (Strings.isEmpty(acceptEncoding))
+		{
+			return null;
+		}
+
+		Boolean gzip = null;
+		Boolean deflate = null;
+		Boolean any = null;
+		for (String coding : Strings.split(acceptEncoding, ','))
+		{
+			final String name = withoutParameters(coding);
+			final Boolean accepted = isAccepted(coding);
+			if ("gzip".equals(name) || "x-gzip".equals(name))
+			{
+				gzip = accepted;
+			}
+			else if ("deflate".equals(name))
+			{
+				deflate = accepted;
+			}
+			else if ("*".equals(name))
+			{
+				any = accepted;
+			}
+		}
+
+		if (Boolean.TRUE.equals(gzip) || ((gzip == null) && Boolean.TRUE.equals(any)))
+		{
+			return "gzip";
+		}
+		if (Boolean.TRUE.equals(deflate) || ((deflate == null) && Boolean.TRUE.equals(any)))
+		{
+			return "deflate";
+		}
+		return null;
+	}
+
+	/**
+	 * @param value
+	 *            a header value with optional parameters
+	 * @return the trimmed value in lower case, without the parameters
+	 */
+	private static String withoutParameters(final String value)
+	{
+		final int semicolon = value.indexOf(';');
+		final String name = (semicolon == -1) ? value : value.substring(0, semicolon);
+		return name.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * @param coding
+	 *            a coding of the Accept-Encoding header, with an optional quality value
+	 * @return whether the quality value is greater than 0
+	 */
+	private static Boolean isAccepted(final String coding)
+	{
+		final String parameters = Strings.afterFirst(coding, ';');
+		if (Strings.isEmpty(parameters))
+		{
+			return Boolean.TRUE;
+		}
+		for (String parameter : Strings.split(parameters, ';'))
+		{
+			final String name = Strings.beforeFirst(parameter, '=').trim();
+			if ("q".equalsIgnoreCase(name))
+			{
+				try
+				{
+					return Double.parseDouble(Strings.afterFirst(parameter, '=').trim()) > 0;
+				}
+				catch (NumberFormatException e)
+				{
+					return Boolean.FALSE;
+				}
+			}
+		}
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * @param bytes
+	 * @param contentEncoding
+	 *            <code>gzip</code> or <code>deflate</code>
+	 * @return the encoded bytes
+	 */
+	private static byte[] encode(final byte[] bytes, final String contentEncoding)
+	{
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream(bytes.length / 3 + 64);
+		try
+		{
+			final OutputStream out = "gzip".equals(contentEncoding) ? new GZIPOutputStream(
+				encoded) : new DeflaterOutputStream(encoded);
+			out.write(bytes);
+			out.close();
+		}
+		catch (IOException e)
+		{
+			throw new WicketRuntimeException("Unable to " + contentEncoding + " resource data", e);
+		}
+		return encoded.toByteArray();
+	}
+
 	/**
 	 * check if header is directly modifyable
 	 * 
@@ -537,6 +1308,13 @@ public abstract class AbstractResource implements IResource
 				webResponse.setLastModifiedTime(lastModified);
 			}
 
+			// ... and entity tag
+			String eTag = data.getETag();
+			if (eTag != null)
+			{
+				webResponse.setHeader("ETag", (data.isETagWeak() ? "W/\"" : "\"") + eTag + '"');
+			}
+
 			// 2. Caching
 			configureCache(data, attributes);
 
@@ -552,6 +1330,11 @@ public abstract class AbstractResource implements IResource
 				return;
 			}
 
+			if (data.getStatusCode() != null)
+			{
+				webResponse.setStatus(data.getStatusCode());
+			}
+
 			String fileName = data.getFileName();
 			ContentDisposition disposition = data.getContentDisposition();
 			String mimeType = data.getContentType();
@@ -593,6 +1376,12 @@ public abstract class AbstractResource implements IResource
 				webResponse.setContentLength(contentLength);
 			}
 
+			// 6. Content Encoding
+			if (data.getContentEncoding() != null)
+			{
+				webResponse.setHeader("Content-Encoding", data.getContentEncoding());
+			}
+
 			// add custom headers and values
 			final HttpHeaderCollection headers = data.getHeaders();
 
@@ -606,7 +1395,7 @@ public abstract class AbstractResource implements IResource
 				}
 			}
 
-			// 6. Flush the response
+			// 7. Flush the response
 			// This is necessary for firefox if this resource is an image, otherwise it messes up
 			// other images on page
 			webResponse.flush();
@@ -630,6 +1419,171 @@ public abstract class AbstractResource implements IResource
 		 */
 		public abstract void writeData(Attributes attributes);
 
+		/**
+		 * Writes a range of the resource data to response. If the client requests several ranges
+		 * this method is called for each of them in ascending order, followed by a call to
+		 * {@link #rangesWritten()}.
+		 * <p>
+		 * The default implementation calls {@link #writeData(IResource.Attributes)} and drops
+		 * everything outside of the range, characters are encoded with UTF-8. Callbacks which can
+		 * access the data randomly should override it.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param offset
+		 *            the offset of the range in the data
+		 * @param length
+		 *            the length of the range
+		 * @see ResourceResponse#setAcceptRanges(boolean)
+		 */
+		public void writeData(Attributes attributes, long offset, long length)
+		{
+			writeData(new Attributes(attributes.getRequest(), new RangeResponse(
+				attributes.getResponse(), offset, length), attributes.getParameters()));
+		}
+
+		/**
+		 * Called after the ranges requested by the client have been written, e.g. to release the
+		 * source of the data. Not called if the whole data is written.
+		 */
+		public void rangesWritten()
+		{
+		}
+
+		/**
+		 * Convenience method to write a range of a file to response. The file is transferred with
+		 * {@link FileChannel#transferTo(long, long, WritableByteChannel)} to the output stream of
+		 * the response, so it is never read into memory as a whole. The data is still copied
+		 * through a buffer of the JDK, unless the output stream is a {@link WritableByteChannel}
+		 * itself.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param file
+		 *            the file
+		 * @param offset
+		 *            the offset of the range in the file
+		 * @param length
+		 *            the number of bytes to write
+		 */
+		protected final void writeFile(Attributes attributes, java.io.File file, long offset,
+			long length)
+		{
+			final OutputStream output = attributes.getResponse().getOutputStream();
+			final WritableByteChannel target = (output instanceof WritableByteChannel)
+				? (WritableByteChannel)output : Channels.newChannel(output);
+
+			FileInputStream input = null;
+			try
+			{
+				input = new FileInputStream(file);
+				final FileChannel channel = input.getChannel();
+				while (length > 0)
+				{
+					final long transferred = channel.transferTo(offset, length, target);
+					if (transferred <= 0)
+					{
+						throw new IOException("Unexpected end of file " + file);
+					}
+					offset += transferred;
+					length -= transferred;
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(input);
+			}
+		}
+
+		/**
+		 * Convenience method to write an {@link IResourceStream} to response and close it. The
+		 * file of a plain {@link FileResourceStream} is written with
+		 * {@link #writeFile(IResource.Attributes, java.io.File, long, long)}.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param stream
+		 *            resource stream
+		 * @see AbstractResource#getFile(IResourceStream)
+		 */
+		protected final void writeStream(Attributes attributes, IResourceStream stream)
+		{
+			try
+			{
+				final java.io.File file = getFile(stream);
+				if (file != null)
+				{
+					writeFile(attributes, file, 0, file.length());
+				}
+				else
+				{
+					writeStream(attributes, stream.getInputStream());
+				}
+			}
+			catch (ResourceStreamNotFoundException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+			finally
+			{
+				IOUtils.closeQuietly(stream);
+			}
+		}
+
+		/**
+		 * Convenience method to write a range of an {@link InputStream} to response.
+		 * 
+		 * @param attributes
+		 *            request attributes
+		 * @param stream
+		 *            input stream
+		 * @param skip
+		 *            the number of bytes to skip from the current position of the stream
+		 * @param length
+		 *            the number of bytes to write
+		 */
+		protected final void writeStream(Attributes attributes, InputStream stream, long skip,
+			long length)
+		{
+			final Response response = attributes.getResponse();
+			final byte[] buffer = new byte[(int)Math.min(length, 4096)];
+			try
+			{
+				while (skip > 0)
+				{
+					long skipped = stream.skip(skip);
+					if (skipped <= 0)
+					{
+						// skip() may not skip at the end of the stream
+						if (stream.read() == -1)
+						{
+							throw new IOException("Unexpected end of stream");
+						}
+						skipped = 1;
+					}
+					skip -= skipped;
+				}
+				while (length > 0)
+				{
+					int read = stream.read(buffer, 0, (int)Math.min(length, buffer.length));
+					if (read == -1)
+					{
+						throw new IOException("Unexpected end of stream");
+					}
+					response.write(buffer, 0, read);
+					length -= read;
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
 		/**
 		 * Convenience method to write an {@link InputStream} to response.
 		 * 
@@ -671,4 +1625,159 @@ public abstract class AbstractResource implements IResource
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * A range of the data
+	 */
+	static final class ByteRange
+	{
+		final long offset;
+
+		final long length;
+
+		ByteRange(long offset, long length)
+		{
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/**
+		 * @param contentLength
+		 *            the length of the whole data
+		 * @return the value of the Content-Range header
+		 */
+		String toContentRange(long contentLength)
+		{
+			return "bytes " + offset + "-" + (offset + length - 1) + "/" + contentLength;
+		}
+
+		@Override
+		public String toString()
+		{
+			return offset + "+" + length;
+		}
+	}
+
+	/**
+	 * Writes a range of the bytes written to it to another response
+	 */
+	private static final class RangeResponse extends Response
+	{
+		private final Response response;
+
+		private final long offset;
+
+		private final long end;
+
+		private long position;
+
+		private RangeResponse(Response response, long offset, long length)
+		{
+			this.response = response;
+			this.offset = offset;
+			end = offset + length;
+		}
+
+		@Override
+		public void write(CharSequence sequence)
+		{
+			try
+			{
+				write(sequence.toString().getBytes("UTF-8"));
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				throw new WicketRuntimeException(e);
+			}
+		}
+
+		@Override
+		public void write(byte[] array)
+		{
+			write(array, 0, array.length);
+		}
+
+		@Override
+		public void write(byte[] array, int offset, int length)
+		{
+			final long start = position;
+			position += length;
+
+			final long from = Math.max(start, this.offset);
+			final long to = Math.min(position, end);
+			if (from < to)
+			{
+				response.write(array, offset + (int)(from - start), (int)(to - from));
+			}
+		}
+
+		@Override
+		public String encodeURL(CharSequence url)
+		{
+			return response.encodeURL(url);
+		}
+
+		@Override
+		public Object getContainerResponse()
+		{
+			return response.getContainerResponse();
+		}
+	}
+
+	/**
+	 * The key of the encoded variant of a version of a resource
+	 */
+	private static final class EncodedDataKey implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String className;
+		private final Serializable dataKey;
+		private final Time lastModified;
+		private final long contentLength;
+		private final String contentEncoding;
+
+		private EncodedDataKey(String className, Serializable dataKey, Time lastModified,
+			long contentLength, String contentEncoding)
+		{
+			this.className = className;
+			this.dataKey = dataKey;
+			this.lastModified = lastModified;
+			this.contentLength = contentLength;
+			this.contentEncoding = contentEncoding;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+				return true;
+			if (!(o instanceof EncodedDataKey))
+				return false;
+
+			EncodedDataKey key = (EncodedDataKey)o;
+			return className.equals(key.className) && dataKey.equals(key.dataKey) &&
+				Objects.equal(lastModified, key.lastModified) &&
+				(contentLength == key.contentLength) && contentEncoding.equals(key.contentEncoding);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = className.hashCode();
+			result = 31 * result + dataKey.hashCode();
+			result = 31 * result + (lastModified != null ? lastModified.hashCode() : 0);
+			result = 31 * result + (int)(contentLength ^ (contentLength >>> 32));
+			result = 31 * result + contentEncoding.hashCode();
+			return result;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "EncodedDataKey{className='" + className + "', dataKey=" + dataKey +
+				", lastModified=" + lastModified + ", contentLength=" + contentLength +
+				", contentEncoding='" + contentEncoding + "'}";
+		}
+	}
+}
@@ -77,6 +77,13 @@ public class CssPackageResource extends PackageResource
 		}
 	}
 
+	@Override
+	protected String getCompressorName()
+	{
+		final ICssCompressor compressor = getCompressor();
+		return ((compressor != null) && getCompress()) ? compressor.getClass().getName() : null;
+	}
+
 	/**
 	 * Gets the {@link ICssCompressor} to be used. By default returns the configured compressor on
 	 * application level, but can be overriden by the user application to provide compressor
@@ -77,6 +77,13 @@ public class JavaScriptPackageResource extends PackageResource
 		}
 	}
 
+	@Override
+	protected String getCompressorName()
+	{
+		final IJavaScriptCompressor compressor = getCompressor();
+		return ((compressor != null) && getCompress()) ? compressor.getClass().getName() : null;
+	}
+
 	/**
 	 * Gets the {@link IJavaScriptCompressor} to be used. By default returns the configured
 	 * compressor on application level, but can be overriden by the user application to provide
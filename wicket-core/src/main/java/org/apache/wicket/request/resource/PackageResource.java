@@ -27,9 +27,12 @@ import org.apache.wicket.Session;
 import org.apache.wicket.ThreadContext;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
+import org.apache.wicket.request.resource.PackageResourceCache.ProcessedData;
 import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
 import org.apache.wicket.settings.IResourceSettings;
+import org.apache.wicket.util.collections.ClassMetaCache;
 import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Objects;
 import org.apache.wicket.util.lang.Packages;
 import org.apache.wicket.util.lang.WicketObjects;
 import org.apache.wicket.util.resource.IResourceStream;
@@ -67,6 +70,9 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 
 	private static final long serialVersionUID = 1L;
 
+	/** Whether the processed data of the resources of a class may be cached */
+	private static final ClassMetaCache<Boolean> CACHEABLE_CLASSES = new ClassMetaCache<Boolean>();
+
 	/**
 	 * Exception thrown when the creation of a package resource is not allowed.
 	 */
@@ -246,72 +252,246 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 
 		if (resourceResponse.dataNeedsToBeWritten(attributes))
 		{
-			// get resource stream
-			final IResourceStream resourceStream = getResourceStream();
+			// look up the data processed for an earlier request or before a restart
+			final PackageResourceCache cache = PackageResourceCache.get();
+			final ResourceManifest manifest = ResourceManifest.get();
+			final Serializable dataKey = ((cache != null) || (manifest != null))
+				? getProcessedDataKey() : null;
+			ProcessedData data = ((cache != null) && (dataKey != null)) ? cache.get(dataKey) : null;
+
+			IResourceStream resourceStream = null;
+			if ((data != null) && Application.get().usesDevelopmentConfig())
+			{
+				// the resource may have been modified in the meantime
+				resourceStream = getResourceStream();
+				if ((resourceStream == null) ||
+					!Objects.equal(data.getLastModified(), resourceStream.lastModifiedTime()))
+				{
+					cache.remove(dataKey);
+					data = null;
+				}
+			}
 
-			// bail out if resource stream could not be found
-			if (resourceStream == null)
-				return sendResourceError(resourceResponse, HttpServletResponse.SC_NOT_FOUND,
-					"Unable to find resource");
+			if (data == null)
+			{
+				// get resource stream
+				if (resourceStream == null)
+				{
+					resourceStream = getResourceStream();
+				}
 
-			String contentType = resourceStream.getContentType();
+				// bail out if resource stream could not be found
+				if (resourceStream == null)
+					return sendResourceError(resourceResponse, HttpServletResponse.SC_NOT_FOUND,
+						"Unable to find resource");
 
-			if (contentType == null && Application.exists())
-			{
-				contentType = Application.get().getMimeType(path);
+				try
+				{
+					data = readData(attributes, resourceStream, manifest, dataKey);
+				}
+				catch (IOException e)
+				{
+					log.debug(e.getMessage(), e);
+					return sendResourceError(resourceResponse, 500, "Unable to read resource stream");
+				}
+				catch (ResourceStreamNotFoundException e)
+				{
+					log.debug(e.getMessage(), e);
+					return sendResourceError(resourceResponse, 500, "Unable to open resource stream");
+				}
+
+				if ((cache != null) && (dataKey != null))
+				{
+					cache.put(dataKey, data);
+				}
 			}
 
 			// set Content-Type (may be null)
-			resourceResponse.setContentType(contentType);
+			resourceResponse.setContentType(data.getContentType());
+
+			final byte[] processed = data.getData();
 
 			// add Last-Modified header (to support HEAD requests and If-Modified-Since)
-			final Time lastModified = resourceStream.lastModifiedTime();
+			// and a weak entity tag, which the caching strategy may replace with the strong
+			// resource version
+			if (data.getLastModified() != null)
+			{
+				resourceResponse.setLastModified(data.getLastModified());
+				resourceResponse.setETag(newETag(data.getLastModified(), processed.length), true);
+			}
 
-			if (lastModified != null)
-				resourceResponse.setLastModified(lastModified);
+			// send Content-Length header
+			resourceResponse.setContentLength(processed.length);
+			resourceResponse.setAcceptRanges(true);
 
-			try
+			// send response body with resource data
+			resourceResponse.setWriteCallback(new WriteCallback()
 			{
-				// read resource data
-				final byte[] bytes;
-
-				try
+				@Override
+				public void writeData(Attributes attributes)
 				{
-					bytes = IOUtils.toByteArray(resourceStream.getInputStream());
+					attributes.getResponse().write(processed);
 				}
-				finally
+
+				@Override
+				public void writeData(Attributes attributes, long offset, long length)
 				{
-					resourceStream.close();
+					attributes.getResponse().write(processed, (int)offset, (int)length);
 				}
+			});
+		}
+
+		return resourceResponse;
+	}
+
+	/**
+	 * Reads and processes the data of the resource stream, unless the manifest holds the data
+	 * processed from the current version of the resource
+	 * 
+	 * @param attributes
+	 *            current request attributes from client
+	 * @param resourceStream
+	 *            the stream of the resource
+	 * @param manifest
+	 *            the manifest of the application, may be <code>null</code>
+	 * @param dataKey
+	 *            the key of the processed data, may be <code>null</code>
+	 * @return the processed data
+	 * @throws IOException
+	 * @throws ResourceStreamNotFoundException
+	 */
+	private ProcessedData readData(final Attributes attributes,
+		final IResourceStream resourceStream, final ResourceManifest manifest,
+		final Serializable dataKey) throws IOException, ResourceStreamNotFoundException
+	{
+		String contentType = resourceStream.getContentType();
 
-				final byte[] processed = processResponse(attributes, bytes);
+		if (contentType == null && Application.exists())
+		{
+			contentType = Application.get().getMimeType(path);
+		}
 
-				// send Content-Length header
-				resourceResponse.setContentLength(processed.length);
+		final Time lastModified = resourceStream.lastModifiedTime();
 
-				// send response body with resource data
-				resourceResponse.setWriteCallback(new WriteCallback()
-				{
-					@Override
-					public void writeData(Attributes attributes)
-					{
-						attributes.getResponse().write(processed);
-					}
-				});
+		final String stableKey = (manifest != null) ? ResourceManifest.keyOf(dataKey) : null;
+		final String manifestKey = (stableKey != null) ? "processed:" + stableKey : null;
+		if (manifestKey != null)
+		{
+			final byte[] processed = manifest.get(manifestKey, lastModified);
+			if (processed != null)
+			{
+				return new ProcessedData(processed, contentType, lastModified);
 			}
-			catch (IOException e)
+		}
+
+		// read resource data
+		final byte[] bytes;
+		try
+		{
+			bytes = IOUtils.toByteArray(resourceStream.getInputStream());
+		}
+		finally
+		{
+			resourceStream.close();
+		}
+
+		final byte[] processed = processResponse(attributes, bytes);
+		if (manifestKey != null)
+		{
+			manifest.put(manifestKey, lastModified, processed);
+		}
+		return new ProcessedData(processed, contentType, lastModified);
+	}
+
+	/**
+	 * Gets the key of the data processed by {@link #processResponse(IResource.Attributes, byte[])}
+	 * in the {@link PackageResourceCache}. By default the key consists of the class of this
+	 * resource, its {@link #getCacheKey() cache key}, the current style and locale and the
+	 * compressor the data is compressed with. Subclasses whose processing depends on anything
+	 * else, e.g. the request, have to override this method and include it in the key, or return
+	 * <code>null</code>.
+	 * 
+	 * @return the key, <code>null</code> to not cache the processed data
+	 * @see #isProcessedDataCacheable()
+	 */
+	protected Serializable getProcessedDataKey()
+	{
+		if (isProcessedDataCacheable() == false)
+		{
+			return null;
+		}
+		final Serializable cacheKey = getCacheKey();
+		if (cacheKey == null)
+		{
+			return null;
+		}
+		return new ProcessedDataKey(getClass().getName(), cacheKey, getCurrentStyle(),
+			getCurrentLocale(), getCompressorName());
+	}
+
+	/**
+	 * Whether the data processed by {@link #processResponse(IResource.Attributes, byte[])} may be
+	 * cached. By default this is the case only if this class and its superclasses do not override
+	 * the processing of {@link PackageResource}, {@link CssPackageResource} and
+	 * {@link JavaScriptPackageResource}, as an overridden processing may depend on the request or
+	 * session. Subclasses whose processing depends on the resource only may return
+	 * <code>true</code> to opt in.
+	 * 
+	 * @return whether the processed data may be cached
+	 */
+	protected boolean isProcessedDataCacheable()
+	{
+		final Class<?> clazz = getClass();
+		Boolean cacheable = CACHEABLE_CLASSES.get(clazz);
+		if (cacheable == null)
+		{
+			cacheable = !overridesProcessResponse(clazz);
+			CACHEABLE_CLASSES.put(clazz, cacheable);
+		}
+		return cacheable;
+	}
+
+	/**
+	 * @param clazz
+	 * @return whether the class or one of its superclasses overrides the processing of the Wicket
+	 *         package resources
+	 */
+	private static boolean overridesProcessResponse(final Class<?> clazz)
+	{
+		for (Class<?> c = clazz; c != PackageResource.class && c != CssPackageResource.class &&
+			c != JavaScriptPackageResource.class; c = c.getSuperclass())
+		{
+			try
 			{
-				log.debug(e.getMessage(), e);
-				return sendResourceError(resourceResponse, 500, "Unable to read resource stream");
+				c.getDeclaredMethod("processResponse", Attributes.class, byte[].class);
+				return true;
 			}
-			catch (ResourceStreamNotFoundException e)
+			catch (NoSuchMethodException e)
 			{
-				log.debug(e.getMessage(), e);
-				return sendResourceError(resourceResponse, 500, "Unable to open resource stream");
+				// not overridden by this class
 			}
 		}
+		return false;
+	}
 
-		return resourceResponse;
+	/**
+	 * Uses the {@link #getProcessedDataKey() key of the processed data}, which the encoded data is
+	 * derived from.
+	 */
+	@Override
+	protected Serializable getEncodedDataKey(final ResourceResponse data)
+	{
+		return getProcessedDataKey();
+	}
+
+	/**
+	 * @return the class name of the compressor
+	 *         {@link #processResponse(IResource.Attributes, byte[])} compresses the data with,
+	 *         <code>null</code> by default
+	 */
+	protected String getCompressorName()
+	{
+		return null;
 	}
 
 	/**
@@ -499,6 +679,76 @@ public class PackageResource extends AbstractResource implements IStaticCacheabl
 		return true;
 	}
 
+	/**
+	 * @param key
+	 *            a key of the data of a resource
+	 * @return whether the key has been created by this class and has a string form which does not
+	 *         change with a restart of the application
+	 * @see ResourceManifest#keyOf(Serializable)
+	 */
+	static boolean isStableKey(final Serializable key)
+	{
+		if (key instanceof ProcessedDataKey)
+		{
+			return ((ProcessedDataKey)key).cacheKey instanceof CacheKey;
+		}
+		return key instanceof CacheKey;
+	}
+
+	private static class ProcessedDataKey implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String className;
+		private final Serializable cacheKey;
+		private final String style;
+		private final Locale locale;
+		private final String compressor;
+
+		public ProcessedDataKey(String className, Serializable cacheKey, String style,
+			Locale locale, String compressor)
+		{
+			this.className = className;
+			this.cacheKey = cacheKey;
+			this.style = style;
+			this.locale = locale;
+			this.compressor = compressor;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+				return true;
+			if (!(o instanceof ProcessedDataKey))
+				return false;
+
+			ProcessedDataKey key = (ProcessedDataKey)o;
+			return className.equals(key.className) && cacheKey.equals(key.cacheKey) &&
+				Objects.equal(style, key.style) && Objects.equal(locale, key.locale) &&
+				Objects.equal(compressor, key.compressor);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = className.hashCode();
+			result = 31 * result + cacheKey.hashCode();
+			result = 31 * result + (style != null ? style.hashCode() : 0);
+			result = 31 * result + (locale != null ? locale.hashCode() : 0);
+			result = 31 * result + (compressor != null ? compressor.hashCode() : 0);
+			return result;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "ProcessedDataKey{className='" + className + "', cacheKey=" + cacheKey +
+				", style='" + style + "', locale=" + locale + ", compressor='" + compressor +
+				"'}";
+		}
+	}
+
 	private static class CacheKey implements Serializable
 	{
 		private final String scopeName;
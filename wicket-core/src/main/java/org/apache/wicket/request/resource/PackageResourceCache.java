@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.Serializable;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.util.collections.SegmentedLruCache;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * The application wide cache of the data of {@link PackageResource}s, after it has been read and
+ * processed by {@link PackageResource#processResponse(IResource.Attributes, byte[])}, e.g.
+ * compressed by the configured JavaScript or CSS compressor. It also holds the gzip and deflate
+ * encoded variants of static resources, see {@link AbstractResource}. The cache is bounded by the
+ * total number of cached bytes and evicts the least recently used data first.
+ * <p>
+ * In development mode the data is validated against the last modification time of the resource
+ * on each request, in deployment mode it is served until it is evicted.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.IResourceSettings#setPackageResourceCacheMaxWeight(long)
+ */
+public class PackageResourceCache
+{
+	/** The default maximum number of cached bytes */
+	public static final long DEFAULT_MAX_WEIGHT = 4 * 1024 * 1024;
+
+	private final SegmentedLruCache<Serializable, ProcessedData> cache;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxWeight
+	 *            The maximum number of cached bytes
+	 */
+	public PackageResourceCache(final long maxWeight)
+	{
+		cache = new SegmentedLruCache<Serializable, ProcessedData>(maxWeight,
+			new SegmentedLruCache.IWeigher<Serializable, ProcessedData>()
+			{
+				@Override
+				public int weigh(final Serializable key, final ProcessedData value)
+				{
+					return value.getData().length;
+				}
+			});
+	}
+
+	/**
+	 * @return The cache of the current application, <code>null</code> if there is no application
+	 *         or the cache is disabled
+	 * @see org.apache.wicket.settings.IResourceSettings#getPackageResourceCache()
+	 */
+	public static PackageResourceCache get()
+	{
+		return Application.exists() ? Application.get().getResourceSettings()
+			.getPackageResourceCache() : null;
+	}
+
+	/**
+	 * @param key
+	 *            The key of the data, see {@link PackageResource#getProcessedDataKey()} and
+	 *            {@link AbstractResource#getEncodedDataKey(AbstractResource.ResourceResponse)}
+	 * @return The cached data, <code>null</code> if none
+	 */
+	public ProcessedData get(final Serializable key)
+	{
+		return cache.get(key);
+	}
+
+	/**
+	 * @param key
+	 *            The key of the data
+	 * @param data
+	 */
+	public void put(final Serializable key, final ProcessedData data)
+	{
+		Args.notNull(key, "key");
+		Args.notNull(data, "data");
+
+		cache.put(key, data);
+	}
+
+	/**
+	 * @param key
+	 * @return <code>true</code> if data has been removed
+	 */
+	public boolean remove(final Serializable key)
+	{
+		return cache.remove(key);
+	}
+
+	/**
+	 * Removes all data
+	 */
+	public void clear()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * @return The number of cached resources
+	 */
+	public int size()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * @return The number of cached bytes
+	 */
+	public long getWeight()
+	{
+		return cache.getWeight();
+	}
+
+	/**
+	 * @return The maximum number of cached bytes
+	 */
+	public long getMaxWeight()
+	{
+		return cache.getMaxWeight();
+	}
+
+	/**
+	 * @return The ratio of lookups which found cached data
+	 */
+	public double getHitRate()
+	{
+		return cache.getHitRate();
+	}
+
+	/**
+	 * @return The number of resources evicted to stay within the maximum weight
+	 */
+	public long getEvictionCount()
+	{
+		return cache.getEvictionCount();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[PackageResourceCache size=" + size() + " weight=" + getWeight() + " hitRate=" +
+			getHitRate() + "]";
+	}
+
+	/**
+	 * The processed data of a resource, along with the response headers derived from the resource
+	 * stream.
+	 */
+	public static final class ProcessedData
+	{
+		private final byte[] data;
+
+		private final String contentType;
+
+		private final Time lastModified;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param data
+		 *            The processed data, which must not be modified afterwards
+		 * @param contentType
+		 *            The content type, may be <code>null</code>
+		 * @param lastModified
+		 *            The last modification time of the resource, may be <code>null</code>
+		 */
+		public ProcessedData(final byte[] data, final String contentType, final Time lastModified)
+		{
+			this.data = Args.notNull(data, "data");
+			this.contentType = contentType;
+			this.lastModified = lastModified;
+		}
+
+		/**
+		 * @return The processed data, which must not be modified
+		 */
+		public byte[] getData()
+		{
+			return data;
+		}
+
+		/**
+		 * @return The content type, may be <code>null</code>
+		 */
+		public String getContentType()
+		{
+			return contentType;
+		}
+
+		/**
+		 * @return The last modification time of the resource, may be <code>null</code>
+		 */
+		public Time getLastModified()
+		{
+			return lastModified;
+		}
+	}
+}
@@ -0,0 +1,595 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent store of data derived from static resources, which is expensive to compute but
+ * does not change as long as the resource does not change: the versions computed by
+ * {@link org.apache.wicket.request.resource.caching.version.ManifestResourceVersion}, the data
+ * processed by {@link PackageResource}s and its gzip encoded variant, see
+ * {@link AbstractResource}.
+ * <p>
+ * The manifest is loaded from a file at startup, so a restarted application does not need to
+ * read, digest, minify and compress every resource again. Each entry is stamped with the last
+ * modification time of the resource it was derived from and is ignored once the resource has been
+ * modified, e.g. by a redeployment.
+ * </p>
+ * <p>
+ * Only the stamps and the positions of the entries in the file are held in memory, along with
+ * small data like versions. Entries are appended to the file when they are put and larger data is
+ * read back from it on demand, which happens on a miss of the {@link PackageResourceCache} only.
+ * {@link #store()} compacts the file to the entries which have been used since the manifest has
+ * been loaded or stored, so the entries of modified or no longer served resources are dropped. A
+ * manifest without a file keeps all data in memory.
+ * </p>
+ * <p>
+ * The manifest outlives the application, so its keys must have the same string form after a
+ * restart. {@link #keyOf(Serializable)} accepts only the keys of {@link PackageResource}s.
+ * </p>
+ * 
+ * @see org.apache.wicket.settings.IResourceSettings#setResourceManifest(ResourceManifest)
+ */
+public class ResourceManifest
+{
+	private static final Logger log = LoggerFactory.getLogger(ResourceManifest.class);
+
+	/** Identifies manifest files */
+	private static final int MAGIC = 0x57524d46;
+
+	/** The version of the file format */
+	private static final int FORMAT_VERSION = 2;
+
+	/** The length of the header of the file */
+	private static final int HEADER_LENGTH = 8;
+
+	/** Data up to this length is held in memory, e.g. versions */
+	private static final int MAX_INLINE_LENGTH = 256;
+
+	private final File file;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** The file while it is open, guarded by this */
+	private RandomAccessFile raf;
+
+	/** The length of the valid content of the file, -1 if it has to be rewritten */
+	private long length = -1;
+
+	private volatile boolean modified;
+
+	/**
+	 * Construct an empty manifest.
+	 * 
+	 * @param file
+	 *            The file the manifest is stored to, <code>null</code> to keep it in memory only
+	 */
+	public ResourceManifest(final File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Loads the manifest from a file. A missing or unreadable file results in an empty manifest,
+	 * which replaces the file later on.
+	 * 
+	 * @param file
+	 *            The file of the manifest
+	 * @return The manifest
+	 */
+	public static ResourceManifest load(final File file)
+	{
+		Args.notNull(file, "file");
+
+		final ResourceManifest manifest = new ResourceManifest(file);
+		if (file.exists())
+		{
+			try
+			{
+				manifest.read();
+			}
+			catch (IOException e)
+			{
+				log.warn("Unable to read resource manifest " + file + ", starting empty", e);
+				manifest.entries.clear();
+				manifest.length = -1;
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * @return The manifest of the current application, <code>null</code> if there is no
+	 *         application or it does not use a manifest
+	 */
+	public static ResourceManifest get()
+	{
+		return Application.exists() ? Application.get().getResourceSettings()
+			.getResourceManifest() : null;
+	}
+
+	/**
+	 * Gets the key of data in the manifest from the key of a resource, e.g. its
+	 * {@link org.apache.wicket.request.resource.caching.IStaticCacheableResource#getCacheKey()
+	 * cache key}. Only the keys created by {@link PackageResource} are accepted, the string form
+	 * of other keys may change with every start of the application.
+	 * 
+	 * @param key
+	 *            The key of a resource
+	 * @return The key in the manifest, <code>null</code> if the key can not be used for the
+	 *         manifest
+	 */
+	public static String keyOf(final Serializable key)
+	{
+		return PackageResource.isStableKey(key) ? key.toString() : null;
+	}
+
+	/**
+	 * @param key
+	 *            The key of the data
+	 * @param lastModified
+	 *            The last modification time of the resource the data is derived from
+	 * @return The data, <code>null</code> if none or if it has been derived from an older version
+	 *         of the resource
+	 */
+	public byte[] get(final String key, final Time lastModified)
+	{
+		if (lastModified == null)
+		{
+			return null;
+		}
+
+		final Entry entry = entries.get(key);
+		if ((entry == null) || (entry.lastModified != lastModified.getMilliseconds()))
+		{
+			return null;
+		}
+		entry.used = true;
+		if (entry.data != null)
+		{
+			return entry.data;
+		}
+
+		synchronized (this)
+		{
+			// the entry may have been moved by a compaction meanwhile
+			final Entry current = entries.get(key);
+			if ((current == null) || (current.lastModified != entry.lastModified))
+			{
+				return null;
+			}
+			try
+			{
+				return readData(current);
+			}
+			catch (IOException e)
+			{
+				log.warn("Unable to read " + key + " from resource manifest " + file, e);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Puts data into the manifest. The data is not stored if the last modification time of the
+	 * resource is unknown, as it could not be validated later on.
+	 * 
+	 * @param key
+	 *            The key of the data
+	 * @param lastModified
+	 *            The last modification time of the resource the data is derived from
+	 * @param data
+	 *            The data
+	 */
+	public void put(final String key, final Time lastModified, final byte[] data)
+	{
+		Args.notNull(key, "key");
+		Args.notNull(data, "data");
+
+		if (lastModified == null)
+		{
+			return;
+		}
+
+		if (file == null)
+		{
+			entries.put(key, new Entry(lastModified.getMilliseconds(), data, -1).use());
+			modified = true;
+			return;
+		}
+
+		synchronized (this)
+		{
+			try
+			{
+				entries.put(key, append(key, lastModified.getMilliseconds(), data).use());
+				modified = true;
+			}
+			catch (IOException e)
+			{
+				log.warn("Unable to write " + key + " to resource manifest " + file, e);
+				reset();
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return <code>true</code> if data has been removed
+	 */
+	public synchronized boolean remove(final String key)
+	{
+		if (entries.remove(key) != null)
+		{
+			modified = true;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		close();
+		length = -1;
+		modified = true;
+	}
+
+	/**
+	 * @return The number of entries
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return The file the manifest is stored to, <code>null</code> if none
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @return Whether the manifest has been modified since it has been loaded or stored
+	 */
+	public boolean isModified()
+	{
+		return modified;
+	}
+
+	/**
+	 * Stores the manifest to its file, if it has been modified or has unused entries. The file is
+	 * compacted to the entries which have been used since the manifest has been loaded or stored
+	 * and replaced only once they have all been written. It is closed afterwards and reopened when
+	 * needed.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void store() throws IOException
+	{
+		if (file == null)
+		{
+			return;
+		}
+		if (!modified && !hasUnusedEntries())
+		{
+			close();
+			return;
+		}
+
+		final File parent = file.getAbsoluteFile().getParentFile();
+		if ((parent != null) && !parent.exists() && !parent.mkdirs())
+		{
+			throw new IOException("Unable to create directory " + parent);
+		}
+
+		final Map<String, Entry> compacted = new HashMap<String, Entry>();
+		final File temp = new File(file.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(temp)));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			long offset = HEADER_LENGTH;
+			for (Map.Entry<String, Entry> e : entries.entrySet())
+			{
+				final Entry entry = e.getValue();
+				if (!entry.used)
+				{
+					// outdated or not served anymore
+					continue;
+				}
+				final byte[] data = (entry.data != null) ? entry.data : readData(entry);
+				final long dataOffset = offset + recordHeaderLength(e.getKey());
+				writeRecord(out, e.getKey(), entry.lastModified, data);
+				offset = dataOffset + data.length;
+				compacted.put(e.getKey(), new Entry(entry.lastModified,
+					(data.length <= MAX_INLINE_LENGTH) ? data : null, dataOffset, data.length));
+			}
+			out.flush();
+		}
+		finally
+		{
+			IOUtils.closeQuietly(out);
+		}
+
+		close();
+		if ((file.exists() && !file.delete()) || !temp.renameTo(file))
+		{
+			reset();
+			throw new IOException("Unable to replace " + file + " with " + temp);
+		}
+		entries.keySet().retainAll(compacted.keySet());
+		entries.putAll(compacted);
+		length = file.length();
+		modified = false;
+	}
+
+	/**
+	 * @return Whether an entry has not been used since the manifest has been loaded or stored
+	 */
+	private boolean hasUnusedEntries()
+	{
+		for (Entry entry : entries.values())
+		{
+			if (!entry.used)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Starts a new file with the next record, dropping the entries whose data is in the current
+	 * file.
+	 */
+	private void reset()
+	{
+		close();
+		length = -1;
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();)
+		{
+			if (it.next().data == null)
+			{
+				it.remove();
+			}
+		}
+	}
+
+	private RandomAccessFile open() throws IOException
+	{
+		if (raf == null)
+		{
+			raf = new RandomAccessFile(file, "rw");
+		}
+		return raf;
+	}
+
+	private void close()
+	{
+		if (raf != null)
+		{
+			try
+			{
+				raf.close();
+			}
+			catch (IOException e)
+			{
+				log.debug("Unable to close resource manifest " + file, e);
+			}
+			raf = null;
+		}
+	}
+
+	/**
+	 * Appends a record to the file, writing a new file if it is missing or has not been read.
+	 */
+	private Entry append(final String key, final long lastModified, final byte[] data)
+		throws IOException
+	{
+		if (length < 0)
+		{
+			final File parent = file.getAbsoluteFile().getParentFile();
+			if ((parent != null) && !parent.exists() && !parent.mkdirs())
+			{
+				throw new IOException("Unable to create directory " + parent);
+			}
+			open().setLength(0);
+			raf.writeInt(MAGIC);
+			raf.writeInt(FORMAT_VERSION);
+			length = HEADER_LENGTH;
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + data.length +
+			16);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		writeRecord(out, key, lastModified, data);
+		out.flush();
+
+		open().seek(length);
+		raf.write(bytes.toByteArray());
+		final long dataOffset = length + recordHeaderLength(key);
+		length += bytes.size();
+		if (raf.length() > length)
+		{
+			// drop a truncated record left behind by a crash
+			raf.setLength(length);
+		}
+		return new Entry(lastModified, (data.length <= MAX_INLINE_LENGTH) ? data : null,
+			dataOffset, data.length);
+	}
+
+	private byte[] readData(final Entry entry) throws IOException
+	{
+		final byte[] data = new byte[entry.dataLength];
+		open().seek(entry.dataOffset);
+		raf.readFully(data);
+		return data;
+	}
+
+	private static void writeRecord(final DataOutputStream out, final String key,
+		final long lastModified, final byte[] data) throws IOException
+	{
+		out.writeUTF(key);
+		out.writeLong(lastModified);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private static int recordHeaderLength(final String key) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(key.length() + 2);
+		new DataOutputStream(bytes).writeUTF(key);
+		return bytes.size() + 8 + 4;
+	}
+
+	/**
+	 * Reads the records of the file, the last record of a key wins. A truncated record at the end
+	 * of the file, e.g. after a crash, is ignored and overwritten by the next record.
+	 */
+	private void read() throws IOException
+	{
+		final long fileLength = file.length();
+		final DataInputStream data = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(file)));
+		try
+		{
+			if (data.readInt() != MAGIC)
+			{
+				throw new IOException("Not a resource manifest");
+			}
+			final int formatVersion = data.readInt();
+			if (formatVersion != FORMAT_VERSION)
+			{
+				throw new IOException("Unsupported manifest format " + formatVersion);
+			}
+
+			long offset = HEADER_LENGTH;
+			while (offset < fileLength)
+			{
+				try
+				{
+					final String key = data.readUTF();
+					final long lastModified = data.readLong();
+					final int dataLength = data.readInt();
+					final long dataOffset = offset + recordHeaderLength(key);
+					if ((dataLength < 0) || (dataOffset + dataLength > fileLength))
+					{
+						break;
+					}
+					byte[] inline = null;
+					if (dataLength <= MAX_INLINE_LENGTH)
+					{
+						inline = new byte[dataLength];
+						data.readFully(inline);
+					}
+					else if (data.skipBytes(dataLength) != dataLength)
+					{
+						break;
+					}
+					entries.put(key, new Entry(lastModified, inline, dataOffset, dataLength));
+					offset = dataOffset + dataLength;
+				}
+				catch (EOFException e)
+				{
+					break;
+				}
+			}
+			length = offset;
+			modified = (offset != fileLength);
+		}
+		finally
+		{
+			IOUtils.closeQuietly(data);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ResourceManifest{file=" + file + ", size=" + size() + ", modified=" + modified +
+			"}";
+	}
+
+	/**
+	 * An entry of the manifest.
+	 */
+	private static final class Entry
+	{
+		private final long lastModified;
+
+		/** The data if it is held in memory, <code>null</code> if it has to be read */
+		private final byte[] data;
+
+		private final long dataOffset;
+
+		private final int dataLength;
+
+		/** Whether the entry has been put or read since the manifest has been loaded or stored */
+		private volatile boolean used;
+
+		private Entry(final long lastModified, final byte[] data, final long dataOffset)
+		{
+			this(lastModified, data, dataOffset, data.length);
+		}
+
+		private Entry(final long lastModified, final byte[] data, final long dataOffset,
+			final int dataLength)
+		{
+			this.lastModified = lastModified;
+			this.data = data;
+			this.dataOffset = dataOffset;
+			this.dataLength = dataLength;
+		}
+
+		private Entry use()
+		{
+			used = true;
+			return this;
+		}
+	}
+}
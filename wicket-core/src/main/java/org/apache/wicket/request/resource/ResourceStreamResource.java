@@ -124,7 +124,16 @@ public class ResourceStreamResource extends AbstractResource
 		if (data.dataNeedsToBeWritten(attributes))
 		{
 			InputStream inputStream = null;
-			if (stream instanceof IResourceStreamWriter == false)
+			final java.io.File file = getFile(stream);
+			if (file != null)
+			{
+				// the file is transferred without opening an input stream
+				if (file.exists() == false)
+				{
+					data.setError(HttpServletResponse.SC_NOT_FOUND);
+				}
+			}
+			else if (stream instanceof IResourceStreamWriter == false)
 			{
 				try
 				{
@@ -142,6 +151,11 @@ public class ResourceStreamResource extends AbstractResource
 			if (length != null)
 			{
 				data.setContentLength(length.bytes());
+
+				if (lastModifiedTime != null)
+				{
+					data.setETag(newETag(lastModifiedTime, length.bytes()), true);
+				}
 			}
 			data.setFileName(fileName);
 
@@ -174,11 +188,49 @@ public class ResourceStreamResource extends AbstractResource
 					}
 				});
 			}
+			else if (file != null)
+			{
+				data.setAcceptRanges(true);
+
+				final long fileLength = length.bytes();
+				data.setWriteCallback(new WriteCallback()
+				{
+					@Override
+					public void writeData(Attributes attributes)
+					{
+						try
+						{
+							writeFile(attributes, file, 0, fileLength);
+						}
+						finally
+						{
+							close();
+						}
+					}
+
+					@Override
+					public void writeData(Attributes attributes, long offset, long length)
+					{
+						writeFile(attributes, file, offset, length);
+					}
+
+					@Override
+					public void rangesWritten()
+					{
+						close();
+					}
+				});
+			}
 			else
 			{
+				// ranges can be read from the stream in one pass
+				data.setAcceptRanges(length != null);
+
 				final InputStream s = inputStream;
 				data.setWriteCallback(new WriteCallback()
 				{
+					private long position;
+
 					@Override
 					public void writeData(Attributes attributes)
 					{
@@ -191,6 +243,19 @@ public class ResourceStreamResource extends AbstractResource
 							close();
 						}
 					}
+
+					@Override
+					public void writeData(Attributes attributes, long offset, long length)
+					{
+						writeStream(attributes, s, offset - position, length);
+						position = offset + length;
+					}
+
+					@Override
+					public void rangesWritten()
+					{
+						close();
+					}
 				});
 			}
 		}
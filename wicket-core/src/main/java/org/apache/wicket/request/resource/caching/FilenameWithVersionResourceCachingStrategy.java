@@ -169,7 +169,8 @@ public class FilenameWithVersionResourceCachingStrategy implements IResourceCach
 	}
 
 	/**
-	 * set resource caching to maximum and set cache-visibility to 'public'
+	 * set resource caching to maximum, set cache-visibility to 'public' and use the version as
+	 * entity tag
 	 * 
 	 * @param response
 	 */
@@ -178,5 +179,12 @@ public class FilenameWithVersionResourceCachingStrategy implements IResourceCach
 	{
 		response.setCacheDurationToMaximum();
 		response.setCacheScope(WebResponse.CacheScope.PUBLIC);
+
+		// the version identifies the data as well
+		String version = resourceVersion.getVersion(resource);
+		if (version != null)
+		{
+			response.setETag(version);
+		}
 	}
 }
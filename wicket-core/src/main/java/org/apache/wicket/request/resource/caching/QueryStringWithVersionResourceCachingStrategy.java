@@ -118,5 +118,12 @@ public class QueryStringWithVersionResourceCachingStrategy implements IResourceC
 	{
 		response.setCacheDurationToMaximum();
 		response.setCacheScope(WebResponse.CacheScope.PUBLIC);
+
+		// the version identifies the data as well
+		String version = resourceVersion.getVersion(resource);
+		if (version != null)
+		{
+			response.setETag(version);
+		}
 	}
 }
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource.caching.version;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wicket.request.resource.ResourceManifest;
+import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * Keeps the results of a delegating {@link IResourceVersion} instance in a
+ * {@link ResourceManifest}, so they survive a restart of the application. A version taken from
+ * the manifest is validated once against the last modification time of the resource and then
+ * held in memory for the lifetime of this instance, without reading the resource again. The
+ * versions of resources whose cache key is not accepted by
+ * {@link ResourceManifest#keyOf(Serializable)} are held in memory only.
+ * <p/>
+ * Other than {@link CachingResourceVersion} the versions are not evicted, there is one entry per
+ * static resource referenced by the application.
+ * 
+ * @since 6.0
+ */
+public class ManifestResourceVersion implements IResourceVersion
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * null value replacement holder for storing <code>null</code> in the map
+	 */
+	private static final String NULL_VALUE = "null";
+
+	/**
+	 * persistent store of the versions
+	 */
+	private final ResourceManifest manifest;
+
+	/**
+	 * delegating resource version provider
+	 */
+	private final IResourceVersion delegate;
+
+	/**
+	 * validated versions
+	 */
+	private final Map<Serializable, String> versions = new ConcurrentHashMap<Serializable, String>();
+
+	/**
+	 * create manifest backed version provider
+	 * 
+	 * @param manifest
+	 *           persistent store of the versions
+	 * @param delegate
+	 *           resource version provider computing versions missing in the manifest
+	 */
+	public ManifestResourceVersion(ResourceManifest manifest, IResourceVersion delegate)
+	{
+		this.manifest = Args.notNull(manifest, "manifest");
+		this.delegate = Args.notNull(delegate, "delegate");
+	}
+
+	@Override
+	public String getVersion(IStaticCacheableResource resource)
+	{
+		// get unique cache key for resource reference
+		final Serializable key = resource.getCacheKey();
+
+		// if key can not be determined do not cache
+		if (key == null)
+		{
+			return null;
+		}
+
+		String version = versions.get(key);
+
+		if (version == null)
+		{
+			final String stableKey = ResourceManifest.keyOf(key);
+			if (stableKey == null)
+			{
+				version = delegate.getVersion(resource);
+			}
+			else
+			{
+				version = getManifestVersion(resource, stableKey);
+			}
+
+			versions.put(key, (version != null) ? version : NULL_VALUE);
+		}
+
+		//noinspection StringEquality
+		if (version == NULL_VALUE)
+		{
+			// replace holder with null value
+			return null;
+		}
+
+		return version;
+	}
+
+	/**
+	 * Gets the version from the manifest or from the delegate, storing it in the manifest.
+	 * 
+	 * @param resource
+	 *            the resource
+	 * @param stableKey
+	 *            the key of the resource in the manifest
+	 * @return the version, <code>null</code> if none
+	 */
+	private String getManifestVersion(IStaticCacheableResource resource, String stableKey)
+	{
+		// versions of other providers are not interchangeable
+		final String manifestKey = "version:" + delegate.getClass().getName() + ":" + stableKey;
+
+		final IResourceStream stream = resource.getCacheableResourceStream();
+		final Time lastModified = (stream != null) ? stream.lastModifiedTime() : null;
+
+		final byte[] stored = manifest.get(manifestKey, lastModified);
+		if (stored != null)
+		{
+			return new String(stored, UTF_8);
+		}
+
+		final String version = delegate.getVersion(resource);
+		if (version != null)
+		{
+			manifest.put(manifestKey, lastModified, version.getBytes(UTF_8));
+		}
+		return version;
+	}
+
+	/**
+	 * remove cacheable resource from the validated versions, so its version is validated against
+	 * the manifest again
+	 * 
+	 * @param resource
+	 *           cacheable resource
+	 */
+	public void invalidate(IStaticCacheableResource resource)
+	{
+		final Serializable key = Args.notNull(resource, "resource").getCacheKey();
+
+		if (key != null)
+		{
+			versions.remove(key);
+		}
+	}
+}
@@ -17,6 +17,7 @@
 package org.apache.wicket.resource.bundles;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
@@ -35,6 +36,7 @@ import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
 import org.apache.wicket.util.resource.AbstractResourceStream;
+import org.apache.wicket.util.resource.FileResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 import org.apache.wicket.util.time.Time;
@@ -74,7 +76,7 @@ public class ConcatBundleResource extends AbstractResource implements IStaticCac
 		{
 			try
 			{
-				List<IResourceStream> resources = collectResourceStreams();
+				final List<IResourceStream> resources = collectResourceStreams();
 				if (resources == null)
 					return sendResourceError(resourceResponse, HttpServletResponse.SC_NOT_FOUND,
 						"Unable to find resource");
@@ -87,6 +89,25 @@ public class ConcatBundleResource extends AbstractResource implements IStaticCac
 				if (lastModified != null)
 					resourceResponse.setLastModified(lastModified);
 
+				final long length = findFileLength(resources);
+				if (length != -1)
+				{
+					// send Content-Length header
+					resourceResponse.setContentLength(length);
+
+					// transfer the files without reading them into memory
+					resourceResponse.setWriteCallback(new WriteCallback()
+					{
+						@Override
+						public void writeData(Attributes attributes)
+						{
+							for (IResourceStream curStream : resources)
+								writeStream(attributes, curStream);
+						}
+					});
+					return resourceResponse;
+				}
+
 				// read resource data
 				final byte[] bytes = readAllResources(resources);
 
@@ -152,12 +173,40 @@ public class ConcatBundleResource extends AbstractResource implements IStaticCac
 		return ret;
 	}
 
+	/**
+	 * @param resources
+	 * @return the total length of the files of the resources, -1 if not all of them are plain
+	 *         {@link FileResourceStream}s
+	 * @see #getFile(IResourceStream)
+	 */
+	private long findFileLength(List<IResourceStream> resources)
+	{
+		long ret = 0;
+		for (IResourceStream curStream : resources)
+		{
+			final File file = getFile(curStream);
+			if (file == null)
+				return -1;
+			ret += file.length();
+		}
+		return ret;
+	}
+
 	private byte[] readAllResources(List<IResourceStream> resources) throws IOException,
 		ResourceStreamNotFoundException
 	{
 		ByteArrayOutputStream output = new ByteArrayOutputStream();
 		for (IResourceStream curStream : resources)
-			IOUtils.copy(curStream.getInputStream(), output);
+		{
+			try
+			{
+				IOUtils.copy(curStream.getInputStream(), output);
+			}
+			finally
+			{
+				curStream.close();
+			}
+		}
 		return output.toByteArray();
 	}
 
@@ -0,0 +1,386 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.response;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.util.string.AppendingStringBuffer;
+
+/**
+ * A pool of the buffers responses collect their content in, e.g. the buffered page of a
+ * {@link org.apache.wicket.protocol.http.BufferedWebResponse} or the body of an ajax response.
+ * These buffers grow to the size of the response, and allocating them anew for each request
+ * produces a lot of garbage.
+ * <p>
+ * A buffer acquired while a request cycle is active is returned to the pool when the request
+ * cycle detaches, unless it is {@link #retain(Object) retained} beyond the request or
+ * {@link #release(AppendingStringBuffer) released} earlier. Buffers which have grown beyond the
+ * maximum capacity are not pooled, thus the pool holds at most
+ * <code>maxPooled * maxCapacity</code> chars and bytes.
+ * </p>
+ * <p>
+ * The pool is thread safe.
+ * </p>
+ * 
+ * @see org.apache.wicket.Application#setResponseBufferPool(ResponseBufferPool)
+ */
+public class ResponseBufferPool
+{
+	/** The default number of buffers of each kind kept in the pool */
+	public static final int DEFAULT_MAX_POOLED = 32;
+
+	/** The default capacity in chars or bytes beyond which a buffer is not pooled */
+	public static final int DEFAULT_MAX_CAPACITY = 512 * 1024;
+
+	/** The initial capacity of new buffers */
+	private static final int INITIAL_CAPACITY = 4096;
+
+	/** The buffers to return to the pool when the request cycle detaches */
+	private static final MetaDataKey<List<Object>> BUFFERS = new MetaDataKey<List<Object>>()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private final int maxPooled;
+
+	private final int maxCapacity;
+
+	private final BlockingQueue<AppendingStringBuffer> charBuffers;
+
+	private final BlockingQueue<PooledByteArrayOutputStream> byteBuffers;
+
+	private final AtomicLong acquireCount = new AtomicLong();
+
+	private final AtomicLong allocationCount = new AtomicLong();
+
+	private final AtomicLong reusedCapacity = new AtomicLong();
+
+	private final AtomicLong discardCount = new AtomicLong();
+
+	/**
+	 * Construct a pool with the default limits.
+	 */
+	public ResponseBufferPool()
+	{
+		this(DEFAULT_MAX_POOLED, DEFAULT_MAX_CAPACITY);
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxPooled
+	 *            The maximum number of buffers of each kind kept in the pool, 0 to disable pooling
+	 * @param maxCapacity
+	 *            The capacity in chars or bytes beyond which a buffer is not pooled
+	 */
+	public ResponseBufferPool(final int maxPooled, final int maxCapacity)
+	{
+		if (maxPooled < 0)
+		{
+			throw new IllegalArgumentException("Argument 'maxPooled' must not be negative: " +
+				maxPooled);
+		}
+		if (maxCapacity < 1)
+		{
+			throw new IllegalArgumentException("Argument 'maxCapacity' must be greater than 0: " +
+				maxCapacity);
+		}
+
+		this.maxPooled = maxPooled;
+		this.maxCapacity = maxCapacity;
+
+		// a queue can't have a capacity of 0, recycle() doesn't offer buffers in that case
+		charBuffers = new ArrayBlockingQueue<AppendingStringBuffer>(Math.max(1, maxPooled));
+		byteBuffers = new ArrayBlockingQueue<PooledByteArrayOutputStream>(Math.max(1, maxPooled));
+	}
+
+	/**
+	 * Gets an empty char buffer. If a request cycle is active, the buffer is released when it
+	 * detaches.
+	 * 
+	 * @return The buffer
+	 */
+	public AppendingStringBuffer acquireCharBuffer()
+	{
+		acquireCount.incrementAndGet();
+
+		AppendingStringBuffer buffer = charBuffers.poll();
+		if (buffer == null)
+		{
+			allocationCount.incrementAndGet();
+			buffer = new AppendingStringBuffer(INITIAL_CAPACITY);
+		}
+		else
+		{
+			reusedCapacity.addAndGet(buffer.capacity());
+		}
+		register(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Gets an empty byte buffer. If a request cycle is active, the buffer is released when it
+	 * detaches.
+	 * 
+	 * @return The buffer
+	 */
+	public ByteArrayOutputStream acquireByteBuffer()
+	{
+		acquireCount.incrementAndGet();
+
+		PooledByteArrayOutputStream buffer = byteBuffers.poll();
+		if (buffer == null)
+		{
+			allocationCount.incrementAndGet();
+			buffer = new PooledByteArrayOutputStream(INITIAL_CAPACITY);
+		}
+		else
+		{
+			reusedCapacity.addAndGet(buffer.capacity());
+		}
+		register(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Returns the buffer to the pool. It must not be used afterwards.
+	 * 
+	 * @param buffer
+	 *            A buffer acquired from this pool
+	 */
+	public void release(final AppendingStringBuffer buffer)
+	{
+		unregister(buffer);
+		recycle(buffer);
+	}
+
+	/**
+	 * Returns the buffer to the pool. It must not be used afterwards.
+	 * 
+	 * @param buffer
+	 *            A buffer acquired from this pool
+	 */
+	public void release(final ByteArrayOutputStream buffer)
+	{
+		unregister(buffer);
+		recycle(buffer);
+	}
+
+	/**
+	 * Keeps the buffer from being returned to the pool when the current request cycle detaches,
+	 * e.g. because the response is stored for a later request. The buffer is left to the garbage
+	 * collector unless it is released explicitly.
+	 * 
+	 * @param buffer
+	 *            A buffer acquired from this pool
+	 */
+	public void retain(final Object buffer)
+	{
+		unregister(buffer);
+	}
+
+	/**
+	 * Hands a previously {@link #retain(Object) retained} buffer back to the current request
+	 * cycle, so that it is returned to the pool when the request cycle detaches.
+	 * 
+	 * @param buffer
+	 *            A buffer acquired from this pool
+	 */
+	public void releaseOnDetach(final Object buffer)
+	{
+		register(buffer);
+	}
+
+	/**
+	 * Returns the buffers acquired during the request to the pool. Called by the request cycle
+	 * when it detaches.
+	 * 
+	 * @param requestCycle
+	 */
+	public void detach(final RequestCycle requestCycle)
+	{
+		final List<Object> buffers = requestCycle.getMetaData(BUFFERS);
+		if (buffers == null)
+		{
+			return;
+		}
+		requestCycle.setMetaData(BUFFERS, null);
+
+		for (Object buffer : buffers)
+		{
+			if (buffer instanceof AppendingStringBuffer)
+			{
+				recycle((AppendingStringBuffer)buffer);
+			}
+			else
+			{
+				recycle((ByteArrayOutputStream)buffer);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of buffers acquired
+	 */
+	public long getAcquireCount()
+	{
+		return acquireCount.get();
+	}
+
+	/**
+	 * @return The number of buffers allocated because the pool was empty
+	 */
+	public long getAllocationCount()
+	{
+		return allocationCount.get();
+	}
+
+	/**
+	 * @return The number of buffers taken from the pool instead of being allocated
+	 */
+	public long getReuseCount()
+	{
+		return acquireCount.get() - allocationCount.get();
+	}
+
+	/**
+	 * @return The total capacity in chars and bytes of the buffers taken from the pool, i.e. the
+	 *         buffer space not allocated anew
+	 */
+	public long getReusedCapacity()
+	{
+		return reusedCapacity.get();
+	}
+
+	/**
+	 * @return The number of buffers not returned to the pool because they exceeded the maximum
+	 *         capacity or the pool was full
+	 */
+	public long getDiscardCount()
+	{
+		return discardCount.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[ResponseBufferPool acquired=" + getAcquireCount() + " allocated=" +
+			getAllocationCount() + " reusedCapacity=" + getReusedCapacity() + " discarded=" +
+			getDiscardCount() + "]";
+	}
+
+	/**
+	 * @param buffer
+	 */
+	private void recycle(final AppendingStringBuffer buffer)
+	{
+		if ((maxPooled == 0) || (buffer.capacity() > maxCapacity))
+		{
+			discardCount.incrementAndGet();
+			return;
+		}
+		buffer.clear();
+		if (charBuffers.offer(buffer) == false)
+		{
+			discardCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @param buffer
+	 */
+	private void recycle(final ByteArrayOutputStream buffer)
+	{
+		if ((maxPooled == 0) || ((buffer instanceof PooledByteArrayOutputStream) == false) ||
+			(((PooledByteArrayOutputStream)buffer).capacity() > maxCapacity))
+		{
+			discardCount.incrementAndGet();
+			return;
+		}
+		buffer.reset();
+		if (byteBuffers.offer((PooledByteArrayOutputStream)buffer) == false)
+		{
+			discardCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Remembers the buffer to be released when the request cycle detaches
+	 * 
+	 * @param buffer
+	 */
+	private static void register(final Object buffer)
+	{
+		final RequestCycle requestCycle = RequestCycle.get();
+		if (requestCycle != null)
+		{
+			List<Object> buffers = requestCycle.getMetaData(BUFFERS);
+			if (buffers == null)
+			{
+				buffers = new ArrayList<Object>();
+				requestCycle.setMetaData(BUFFERS, buffers);
+			}
+			buffers.add(buffer);
+		}
+	}
+
+	/**
+	 * @param buffer
+	 */
+	private static void unregister(final Object buffer)
+	{
+		final RequestCycle requestCycle = RequestCycle.get();
+		if (requestCycle != null)
+		{
+			final List<Object> buffers = requestCycle.getMetaData(BUFFERS);
+			if (buffers != null)
+			{
+				for (int i = buffers.size() - 1; i >= 0; i--)
+				{
+					if (buffers.get(i) == buffer)
+					{
+						buffers.remove(i);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Exposes the capacity of the buffer
+	 */
+	private static final class PooledByteArrayOutputStream extends ByteArrayOutputStream
+	{
+		private PooledByteArrayOutputStream(final int size)
+		{
+			super(size);
+		}
+
+		private int capacity()
+		{
+			return buf.length;
+		}
+	}
+}
@@ -17,6 +17,7 @@
 package org.apache.wicket.response;
 
 import org.apache.wicket.request.Response;
+import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.string.AppendingStringBuffer;
 
 
@@ -41,6 +42,18 @@ public class StringResponse extends Response
 		out = new AppendingStringBuffer(128);
 	}
 
+	/**
+	 * Constructor writing to the given buffer, e.g. one acquired from the
+	 * {@link ResponseBufferPool}
+	 * 
+	 * @param buffer
+	 *            the buffer to write to
+	 */
+	public StringResponse(final AppendingStringBuffer buffer)
+	{
+		out = Args.notNull(buffer, "buffer");
+	}
+
 	/**
 	 * @see org.apache.wicket.request.Response#write(CharSequence)
 	 */
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * An {@link ISerializer} decorator that compresses the data produced by another serializer.
+ * <p>
+ * The compressed data starts with a header: a magic number, the version of the format, the
+ * {@link Compression#getId() id} of the used algorithm and the length of the uncompressed data.
+ * Small data, or data which cannot be made smaller, is passed through without a header, as is all
+ * data with {@link Compression#NONE}. Data which does not start with the header (e.g. pages stored
+ * before compression was enabled) is passed to the wrapped serializer as is.
+ * </p>
+ * The serializer keeps statistics about the compression ratio and the time spent compressing and
+ * decompressing.
+ */
+public class CompressingSerializer implements ISerializer
+{
+	/**
+	 * Data smaller than this is not worth compressing
+	 */
+	private static final int MIN_COMPRESSION_LENGTH = 256;
+
+	/**
+	 * Identifies compressed data; Java serialization streams start with 0xACED instead
+	 */
+	private static final byte[] MAGIC = { (byte)0xC0, (byte)0x3B, (byte)0x57, (byte)0x4B };
+
+	/**
+	 * The version of the header
+	 */
+	private static final byte FORMAT_VERSION = 1;
+
+	/**
+	 * The length of the magic number and the version
+	 */
+	private static final int PREFIX_LENGTH = MAGIC.length + 1;
+
+	private final ISerializer serializer;
+
+	private final Compression compression;
+
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+
+	private final AtomicLong compressedBytes = new AtomicLong();
+
+	private final AtomicLong compressionNanos = new AtomicLong();
+
+	private final AtomicLong decompressionNanos = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param serializer
+	 *            the serializer whose data is compressed
+	 * @param compression
+	 *            the compression algorithm
+	 */
+	public CompressingSerializer(final ISerializer serializer, final Compression compression)
+	{
+		this.serializer = Args.notNull(serializer, "serializer");
+		this.compression = Args.notNull(compression, "compression");
+	}
+
+	@Override
+	public byte[] serialize(final Object object)
+	{
+		byte[] data = serializer.serialize(object);
+		if (data == null)
+		{
+			return null;
+		}
+
+		long start = System.nanoTime();
+		byte[] result = data;
+		if (data.length >= MIN_COMPRESSION_LENGTH && compression != Compression.NONE)
+		{
+			byte[] compressed = compression.compress(data);
+			int headerLength = PREFIX_LENGTH + 1 + getLengthSize(data.length);
+			if (headerLength + compressed.length < data.length)
+			{
+				result = new byte[headerLength + compressed.length];
+				System.arraycopy(MAGIC, 0, result, 0, MAGIC.length);
+				result[MAGIC.length] = FORMAT_VERSION;
+				result[PREFIX_LENGTH] = compression.getId();
+				int offset = writeLength(data.length, result, PREFIX_LENGTH + 1);
+				System.arraycopy(compressed, 0, result, offset, compressed.length);
+			}
+		}
+
+		compressionNanos.addAndGet(System.nanoTime() - start);
+		uncompressedBytes.addAndGet(data.length);
+		compressedBytes.addAndGet(result.length);
+		return result;
+	}
+
+	@Override
+	public Object deserialize(final byte[] data)
+	{
+		Compression used = hasHeader(data) ? Compression.forId(data[PREFIX_LENGTH]) : null;
+		if (used == null)
+		{
+			// not compressed by this serializer
+			return serializer.deserialize(data);
+		}
+
+		long start = System.nanoTime();
+		int length = readLength(data, PREFIX_LENGTH + 1);
+		int offset = PREFIX_LENGTH + 1 + getLengthSize(length);
+		byte[] uncompressed = used.decompress(data, offset, length);
+		decompressionNanos.addAndGet(System.nanoTime() - start);
+
+		return serializer.deserialize(uncompressed);
+	}
+
+	/**
+	 * @return the compression used for new data
+	 */
+	public Compression getCompression()
+	{
+		return compression;
+	}
+
+	/**
+	 * @return the number of bytes produced by the wrapped serializer
+	 */
+	public long getUncompressedBytes()
+	{
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * @return the number of bytes after compression
+	 */
+	public long getCompressedBytes()
+	{
+		return compressedBytes.get();
+	}
+
+	/**
+	 * @return the compressed size relative to the uncompressed size, e.g. 0.25 if the data has
+	 *         been compressed to a quarter of its size
+	 */
+	public double getCompressionRatio()
+	{
+		long uncompressed = uncompressedBytes.get();
+		return uncompressed > 0 ? (double)compressedBytes.get() / uncompressed : 1.0;
+	}
+
+	/**
+	 * @return the total time spent compressing in nanoseconds
+	 */
+	public long getCompressionNanos()
+	{
+		return compressionNanos.get();
+	}
+
+	/**
+	 * @return the total time spent decompressing in nanoseconds
+	 */
+	public long getDecompressionNanos()
+	{
+		return decompressionNanos.get();
+	}
+
+	/**
+	 * @param data
+	 * @return whether the data starts with the magic number and the version of the header
+	 */
+	private static boolean hasHeader(final byte[] data)
+	{
+		if (data == null || data.length < PREFIX_LENGTH + 2)
+		{
+			return false;
+		}
+		for (int i = 0; i < MAGIC.length; i++)
+		{
+			if (data[i] != MAGIC[i])
+			{
+				return false;
+			}
+		}
+		return data[MAGIC.length] == FORMAT_VERSION;
+	}
+
+	private static int getLengthSize(int length)
+	{
+		int size = 1;
+		while ((length >>>= 7) != 0)
+		{
+			size++;
+		}
+		return size;
+	}
+
+	private static int writeLength(int length, byte[] dst, int offset)
+	{
+		while ((length & ~0x7F) != 0)
+		{
+			dst[offset++] = (byte)((length & 0x7F) | 0x80);
+			length >>>= 7;
+		}
+		dst[offset++] = (byte)length;
+		return offset;
+	}
+
+	private static int readLength(byte[] src, int offset)
+	{
+		int length = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = src[offset++];
+			length |= (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return length;
+	}
+}
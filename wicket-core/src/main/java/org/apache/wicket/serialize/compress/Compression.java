@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compress;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.wicket.WicketRuntimeException;
+
+/**
+ * The compression algorithms supported by {@link CompressingSerializer}. The
+ * {@link #getId() id} of the algorithm is written into the header of the compressed data, so data
+ * can be decompressed no matter which algorithm is currently configured.
+ */
+public enum Compression
+{
+	/**
+	 * The data is stored as is
+	 */
+	NONE((byte)0) {
+		@Override
+		byte[] compress(byte[] data)
+		{
+			return data;
+		}
+
+		@Override
+		byte[] decompress(byte[] data, int offset, int uncompressedLength)
+		{
+			byte[] result = new byte[uncompressedLength];
+			System.arraycopy(data, offset, result, 0, uncompressedLength);
+			return result;
+		}
+	},
+
+	/**
+	 * The fast {@link LzCompressor}
+	 */
+	LZ((byte)2) {
+		@Override
+		byte[] compress(byte[] data)
+		{
+			return LzCompressor.compress(data);
+		}
+
+		@Override
+		byte[] decompress(byte[] data, int offset, int uncompressedLength)
+		{
+			return LzCompressor.decompress(data, offset, uncompressedLength);
+		}
+	},
+
+	/**
+	 * {@link Deflater} with {@link Deflater#BEST_SPEED}
+	 */
+	DEFLATE_FAST((byte)1, Deflater.BEST_SPEED),
+
+	/**
+	 * {@link Deflater} with {@link Deflater#DEFAULT_COMPRESSION}
+	 */
+	DEFLATE((byte)1, Deflater.DEFAULT_COMPRESSION),
+
+	/**
+	 * {@link Deflater} with {@link Deflater#BEST_COMPRESSION}
+	 */
+	DEFLATE_BEST((byte)1, Deflater.BEST_COMPRESSION);
+
+	private final byte id;
+
+	private final int level;
+
+	private Compression(byte id)
+	{
+		this(id, 0);
+	}
+
+	private Compression(byte id, int level)
+	{
+		this.id = id;
+		this.level = level;
+	}
+
+	/**
+	 * @return the id written as the first byte of the compressed data
+	 */
+	public byte getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Compresses the data.
+	 *
+	 * @param data
+	 * @return the compressed data
+	 */
+	byte[] compress(byte[] data)
+	{
+		Deflater deflater = new Deflater(level);
+		try
+		{
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+			byte[] buffer = new byte[4096];
+			while (deflater.finished() == false)
+			{
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Decompresses the data.
+	 *
+	 * @param data
+	 * @param offset
+	 *            the offset of the compressed data
+	 * @param uncompressedLength
+	 *            the length of the uncompressed data
+	 * @return the uncompressed data
+	 */
+	byte[] decompress(byte[] data, int offset, int uncompressedLength)
+	{
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(data, offset, data.length - offset);
+			byte[] result = new byte[uncompressedLength];
+			int length = 0;
+			while (length < uncompressedLength)
+			{
+				int count = inflater.inflate(result, length, uncompressedLength - length);
+				if (count == 0 && (inflater.finished() || inflater.needsInput()))
+				{
+					break;
+				}
+				length += count;
+			}
+			if (length != uncompressedLength)
+			{
+				throw new WicketRuntimeException("Corrupt data: expected " + uncompressedLength +
+					" bytes but got " + length);
+			}
+			return result;
+		}
+		catch (DataFormatException e)
+		{
+			throw new WicketRuntimeException("Corrupt data", e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return the compression with the given id or {@code null} if there is no such
+	 */
+	static Compression forId(byte id)
+	{
+		for (Compression compression : values())
+		{
+			if (compression.id == id)
+			{
+				return compression;
+			}
+		}
+		return null;
+	}
+}
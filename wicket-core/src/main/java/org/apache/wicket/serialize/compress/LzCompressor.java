@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compress;
+
+/**
+ * A fast LZ77 compressor in the spirit of LZ4. It trades compression ratio for speed and is
+ * well suited for serialized pages, which contain many repeated class descriptors and strings.
+ * <p>
+ * The compressed data is a sequence of blocks. Each block starts with a token byte whose high
+ * nibble is the number of literals and whose low nibble is the match length minus
+ * {@value #MIN_MATCH}; a nibble value of 15 is followed by extension bytes that are added until
+ * a byte different from 255 is read. The literals follow, then the little endian two byte offset
+ * of the match. The last block contains literals only.
+ * </p>
+ * The length of the uncompressed data is not part of the format and has to be stored by the
+ * caller.
+ */
+public final class LzCompressor
+{
+	private static final int MIN_MATCH = 4;
+
+	/** the number of bytes at the end which are always emitted as literals */
+	private static final int LAST_LITERALS = 5;
+
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	private static final int HASH_BITS = 12;
+
+	/**
+	 * Construct.
+	 */
+	private LzCompressor()
+	{
+	}
+
+	/**
+	 * Compresses the given data.
+	 *
+	 * @param src
+	 *            the data to compress
+	 * @return the compressed data
+	 */
+	public static byte[] compress(final byte[] src)
+	{
+		final int length = src.length;
+		final byte[] dst = new byte[length + length / 255 + 16];
+		final int[] table = new int[1 << HASH_BITS];
+
+		int op = 0;
+		int anchor = 0;
+		int ip = 0;
+		final int matchLimit = length - LAST_LITERALS;
+		while (ip + MIN_MATCH <= matchLimit)
+		{
+			int sequence = readInt(src, ip);
+			int hash = hash(sequence);
+			// the table holds positions + 1 so that 0 means 'empty'
+			int ref = table[hash] - 1;
+			table[hash] = ip + 1;
+
+			if (ref >= 0 && ip - ref <= MAX_OFFSET && readInt(src, ref) == sequence)
+			{
+				int matchLength = MIN_MATCH;
+				while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength])
+				{
+					matchLength++;
+				}
+				op = writeBlock(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+				ip += matchLength;
+				anchor = ip;
+			}
+			else
+			{
+				ip++;
+			}
+		}
+
+		// the remaining bytes as literals only
+		op = writeBlock(src, anchor, length - anchor, 0, 0, dst, op);
+
+		byte[] result = new byte[op];
+		System.arraycopy(dst, 0, result, 0, op);
+		return result;
+	}
+
+	/**
+	 * Decompresses the given data.
+	 *
+	 * @param src
+	 *            the compressed data
+	 * @param offset
+	 *            the offset of the compressed data in src
+	 * @param uncompressedLength
+	 *            the length of the uncompressed data
+	 * @return the uncompressed data
+	 * @throws IllegalArgumentException
+	 *             if the data is corrupt
+	 */
+	public static byte[] decompress(final byte[] src, final int offset,
+		final int uncompressedLength)
+	{
+		final byte[] dst = new byte[uncompressedLength];
+		int ip = offset;
+		int op = 0;
+		try
+		{
+			while (ip < src.length)
+			{
+				int token = src[ip++] & 0xFF;
+
+				int literals = token >>> 4;
+				if (literals == 15)
+				{
+					int b;
+					do
+					{
+						b = src[ip++] & 0xFF;
+						literals += b;
+					}
+					while (b == 255);
+				}
+				System.arraycopy(src, ip, dst, op, literals);
+				ip += literals;
+				op += literals;
+
+				if (ip >= src.length)
+				{
+					// the last block has no match
+					break;
+				}
+
+				int matchOffset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+				int matchLength = token & 0x0F;
+				if (matchLength == 15)
+				{
+					int b;
+					do
+					{
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					}
+					while (b == 255);
+				}
+				matchLength += MIN_MATCH;
+
+				int ref = op - matchOffset;
+				if (ref < 0 || matchOffset == 0)
+				{
+					throw new IllegalArgumentException("Corrupt data: invalid match offset " +
+						matchOffset);
+				}
+				// byte by byte because the match may overlap the output
+				for (int i = 0; i < matchLength; i++)
+				{
+					dst[op++] = dst[ref++];
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("Corrupt data", e);
+		}
+
+		if (op != uncompressedLength)
+		{
+			throw new IllegalArgumentException("Corrupt data: expected " + uncompressedLength +
+				" bytes but got " + op);
+		}
+		return dst;
+	}
+
+	private static int writeBlock(final byte[] src, final int literalsStart, final int literals,
+		final int matchOffset, final int matchLength, final byte[] dst, int op)
+	{
+		int tokenPos = op++;
+		int token;
+
+		if (literals >= 15)
+		{
+			token = 15 << 4;
+			op = writeLength(literals - 15, dst, op);
+		}
+		else
+		{
+			token = literals << 4;
+		}
+		System.arraycopy(src, literalsStart, dst, op, literals);
+		op += literals;
+
+		if (matchLength > 0)
+		{
+			dst[op++] = (byte)matchOffset;
+			dst[op++] = (byte)(matchOffset >>> 8);
+
+			int length = matchLength - MIN_MATCH;
+			if (length >= 15)
+			{
+				token |= 15;
+				op = writeLength(length - 15, dst, op);
+			}
+			else
+			{
+				token |= length;
+			}
+		}
+
+		dst[tokenPos] = (byte)token;
+		return op;
+	}
+
+	private static int writeLength(int length, final byte[] dst, int op)
+	{
+		while (length >= 255)
+		{
+			dst[op++] = (byte)255;
+			length -= 255;
+		}
+		dst[op++] = (byte)length;
+		return op;
+	}
+
+	private static int readInt(final byte[] src, final int i)
+	{
+		return (src[i] & 0xFF) | ((src[i + 1] & 0xFF) << 8) | ((src[i + 2] & 0xFF) << 16) |
+			((src[i + 3] & 0xFF) << 24);
+	}
+
+	private static int hash(final int sequence)
+	{
+		return (sequence * -1640531535) >>> (32 - HASH_BITS);
+	}
+}
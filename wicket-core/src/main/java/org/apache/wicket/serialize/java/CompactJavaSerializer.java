@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.util.collections.ClassMetaCache;
+
+/**
+ * A {@link JavaSerializer} that writes compact class descriptors.
+ * <p>
+ * Java serialization writes the full description of every class (its name, serialVersionUID,
+ * flags and the name and type of each field) once per stream, i.e. once per serialized page.
+ * This serializer writes only the class name, the serialVersionUID and a fingerprint of the
+ * serializable fields, and takes the remaining description from the local class when reading.
+ * Reading fails with an {@link InvalidClassException} if the serialVersionUID or the fields of
+ * the local class differ from the ones of the written class, like with plain Java serialization.
+ * </p>
+ * <p>
+ * The classes resolved while reading and the computed fingerprints are cached, so the
+ * {@link org.apache.wicket.application.IClassResolver} is consulted only once per class. The
+ * caches hold the classes weakly and do not keep the class loader of a redeployed application
+ * from being garbage collected.
+ * </p>
+ * All other aspects of Java serialization, like <code>writeObject</code>,
+ * <code>readObject</code> and <code>writeReplace</code>, work unchanged. Data written by this
+ * serializer can not be read by {@link JavaSerializer} and vice versa.
+ */
+public class CompactJavaSerializer extends JavaSerializer
+{
+	/** class name -> class */
+	private final ConcurrentMap<String, WeakReference<Class<?>>> classes = new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+
+	/** class -> fingerprint of its serializable fields, per class loader */
+	private final ClassMetaCache<Long> fingerprints = new ClassMetaCache<Long>();
+
+	/**
+	 * Construct.
+	 *
+	 * @param applicationKey
+	 */
+	public CompactJavaSerializer(final String applicationKey)
+	{
+		super(applicationKey);
+	}
+
+	@Override
+	protected ObjectInputStream newObjectInputStream(final InputStream in) throws IOException
+	{
+		return new CompactObjectInputStream(in);
+	}
+
+	@Override
+	protected ObjectOutputStream newObjectOutputStream(final OutputStream out) throws IOException
+	{
+		return new CheckerObjectOutputStream(new CompactObjectOutputStream(out));
+	}
+
+	/**
+	 * @param desc
+	 * @return a fingerprint of the names and types of the serializable fields of the class
+	 */
+	private long getFingerprint(final ObjectStreamClass desc)
+	{
+		Class<?> cl = desc.forClass();
+		Long fingerprint = cl != null ? fingerprints.get(cl) : null;
+		if (fingerprint == null)
+		{
+			// FNV-1a
+			long hash = 0xcbf29ce484222325L;
+			for (ObjectStreamField field : desc.getFields())
+			{
+				String signature = field.getName() + ':' +
+					(field.isPrimitive() ? String.valueOf(field.getTypeCode()) : field.getTypeString());
+				for (int i = 0; i < signature.length(); i++)
+				{
+					hash ^= signature.charAt(i);
+					hash *= 0x100000001b3L;
+				}
+			}
+			fingerprint = hash;
+			if (cl != null)
+			{
+				fingerprints.put(cl, fingerprint);
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Resolves the class with the application's class resolver, or the class loader of this class
+	 * if there is no application.
+	 *
+	 * @param className
+	 * @return the class
+	 * @throws ClassNotFoundException
+	 */
+	private Class<?> resolveClass(final String className) throws ClassNotFoundException
+	{
+		Class<?> cl = getCachedClass(className);
+		if (cl == null)
+		{
+			if (Application.exists())
+			{
+				cl = Application.get().getApplicationSettings().getClassResolver().resolveClass(
+					className);
+			}
+			else
+			{
+				cl = Class.forName(className, false, CompactJavaSerializer.class.getClassLoader());
+			}
+			classes.put(className, new WeakReference<Class<?>>(cl));
+		}
+		return cl;
+	}
+
+	/**
+	 * @param className
+	 * @return the cached class, <code>null</code> if none or if it has been garbage collected
+	 */
+	private Class<?> getCachedClass(final String className)
+	{
+		final WeakReference<Class<?>> reference = classes.get(className);
+		return (reference != null) ? reference.get() : null;
+	}
+
+	/**
+	 * Writes the name, serialVersionUID and field fingerprint instead of the full class
+	 * descriptor.
+	 */
+	private class CompactObjectOutputStream extends ObjectOutputStream
+	{
+		private CompactObjectOutputStream(final OutputStream out) throws IOException
+		{
+			super(out);
+		}
+
+		@Override
+		protected void writeClassDescriptor(final ObjectStreamClass desc) throws IOException
+		{
+			writeUTF(desc.getName());
+			writeLong(desc.getSerialVersionUID());
+			writeLong(getFingerprint(desc));
+		}
+	}
+
+	/**
+	 * Reads the descriptors written by {@link CompactObjectOutputStream} and restores them from
+	 * the local classes.
+	 */
+	private class CompactObjectInputStream extends ClassResolverObjectInputStream
+	{
+		private CompactObjectInputStream(final InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException,
+			ClassNotFoundException
+		{
+			String className = readUTF();
+			long serialVersionUID = readLong();
+			long fingerprint = readLong();
+
+			Class<?> cl = CompactJavaSerializer.this.resolveClass(className);
+			ObjectStreamClass desc = ObjectStreamClass.lookup(cl);
+			if (desc == null)
+			{
+				throw new InvalidClassException(className, "local class is not serializable");
+			}
+			if (desc.getSerialVersionUID() != serialVersionUID)
+			{
+				throw new InvalidClassException(className,
+					"local class incompatible: stream classdesc serialVersionUID = " +
+						serialVersionUID + ", local class serialVersionUID = " +
+						desc.getSerialVersionUID());
+			}
+			if (getFingerprint(desc) != fingerprint)
+			{
+				throw new InvalidClassException(className,
+					"local class incompatible: the serializable fields have changed");
+			}
+			return desc;
+		}
+
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+			ClassNotFoundException
+		{
+			Class<?> cl = getCachedClass(desc.getName());
+			if (cl == null)
+			{
+				cl = super.resolveClass(desc);
+				if (cl != null)
+				{
+					classes.put(desc.getName(), new WeakReference<Class<?>>(cl));
+				}
+			}
+			return cl;
+		}
+	}
+}
@@ -173,13 +173,13 @@ public class JavaSerializer implements ISerializer
 	 */
 	protected ObjectOutputStream newObjectOutputStream(OutputStream out) throws IOException
 	{
-		return new CheckerObjectOutputStream(out);
+		return new CheckerObjectOutputStream(new ObjectOutputStream(out));
 	}
 
 	/**
 	 * Extend {@link ObjectInputStream} to add framework class resolution logic.
 	 */
-	private static class ClassResolverObjectInputStream extends ObjectInputStream
+	static class ClassResolverObjectInputStream extends ObjectInputStream
 	{
 		public ClassResolverObjectInputStream(InputStream in) throws IOException
 		{
@@ -235,13 +235,13 @@ public class JavaSerializer implements ISerializer
 	 * Write objects to the wrapped output stream and log a meaningful message for serialization
 	 * problems
 	 */
-	private static class CheckerObjectOutputStream extends ObjectOutputStream
+	static class CheckerObjectOutputStream extends ObjectOutputStream
 	{
 		private final ObjectOutputStream oos;
 
-		public CheckerObjectOutputStream(OutputStream out) throws IOException
+		public CheckerObjectOutputStream(ObjectOutputStream oos) throws IOException
 		{
-			oos = new ObjectOutputStream(out);
+			this.oos = oos;
 		}
 
 		@Override
@@ -17,6 +17,7 @@
 package org.apache.wicket.settings;
 
 import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.html.outputcache.ComponentOutputCache;
 
 /**
  * Interface for markup related settings.
@@ -64,6 +65,12 @@ public interface IMarkupSettings
 	 */
 	String getDefaultMarkupEncoding();
 
+	/**
+	 * @return The maximum number of markup elements held by the markup cache, 0 if unbounded
+	 * @see IMarkupSettings#setMarkupCacheMaxWeight(long)
+	 */
+	long getMarkupCacheMaxWeight();
+
 	/**
 	 * @return Returns the stripComments.
 	 * @see IMarkupSettings#setStripComments(boolean)
@@ -132,6 +139,18 @@ public interface IMarkupSettings
 	 */
 	void setDefaultMarkupEncoding(final String encoding);
 
+	/**
+	 * Limits the markup cache to the given number of markup elements. Markup not used recently is
+	 * evicted from the cache once the limit is exceeded and reloaded when needed again. Useful for
+	 * applications with many locales, styles or variations of their markup. Must be set before the
+	 * markup cache is created. Defaults to 0, i.e. the cache is unbounded.
+	 * 
+	 * @param maxWeight
+	 *            The maximum number of markup elements, 0 for an unbounded cache
+	 * @see org.apache.wicket.util.collections.SegmentedLruCache
+	 */
+	void setMarkupCacheMaxWeight(long maxWeight);
+
 	/**
 	 * Enables stripping of markup comments denoted in markup by HTML comment tagging.
 	 * 
@@ -169,4 +188,24 @@ public interface IMarkupSettings
 	 * @param factory
 	 */
 	void setMarkupFactory(MarkupFactory factory);
+
+	/**
+	 * Gets the cache of the output of
+	 * {@link org.apache.wicket.markup.html.outputcache.ICacheableComponent}s. Unless one has been
+	 * set, a cache with the {@link ComponentOutputCache#DEFAULT_MAX_WEIGHT default maximum weight}
+	 * is created on first use.
+	 * 
+	 * @return The component output cache
+	 */
+	ComponentOutputCache getComponentOutputCache();
+
+	/**
+	 * Sets the cache of the output of
+	 * {@link org.apache.wicket.markup.html.outputcache.ICacheableComponent}s, e.g. one with a
+	 * different maximum weight. Set it in {@link org.apache.wicket.Application#init()}, output
+	 * cached before is discarded.
+	 * 
+	 * @param cache
+	 */
+	void setComponentOutputCache(ComponentOutputCache cache);
 }
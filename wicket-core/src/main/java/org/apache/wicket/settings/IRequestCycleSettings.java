@@ -155,6 +155,19 @@ public interface IRequestCycleSettings
 	 */
 	boolean getGatherExtendedBrowserInfo();
 
+	/**
+	 * @return True if static markup is written to the servlet response as pre-encoded bytes
+	 * @see #setPreEncodedMarkup(boolean)
+	 */
+	boolean getPreEncodedMarkup();
+
+	/**
+	 * @return The number of characters after which a streamed page is flushed to the client, 0 if
+	 *         pages are not streamed
+	 * @see #setStreamingFlushThreshold(int)
+	 */
+	int getStreamingFlushThreshold();
+
 	/**
 	 * Gets in what way the render part of a request is handled.
 	 * 
@@ -232,6 +245,21 @@ public interface IRequestCycleSettings
 	 */
 	void setGatherExtendedBrowserInfo(boolean gatherExtendedBrowserInfo);
 
+	/**
+	 * Sets whether the static parts of the markup are written to the servlet response as bytes.
+	 * The bytes are encoded once per markup element and reused by all requests, while the dynamic
+	 * output of the components is still encoded per request. The servlet response's output stream
+	 * is used instead of its writer.
+	 * <p>
+	 * This only applies to pages rendered directly into the servlet response, e.g. with the
+	 * {@link RenderStrategy#ONE_PASS_RENDER} strategy and without response filters. Buffered
+	 * responses are written as characters anyway. False by default.
+	 * 
+	 * @param preEncodedMarkup
+	 *            True if static markup should be written as pre-encoded bytes
+	 */
+	void setPreEncodedMarkup(boolean preEncodedMarkup);
+
 	/**
 	 * Sets in what way the render part of a request is handled. Basically, there are two different
 	 * options:
@@ -267,6 +295,27 @@ public interface IRequestCycleSettings
 	 */
 	void setRenderStrategy(IRequestCycleSettings.RenderStrategy renderStrategy);
 
+	/**
+	 * Sets whether pages rendered with the {@link RenderStrategy#ONE_PASS_RENDER} strategy are
+	 * streamed to the client instead of being buffered completely. The page's
+	 * <code>&lt;head&gt;</code> is flushed as soon as it has been rendered, the body whenever at
+	 * least the given number of characters is pending. This lowers the time to the first byte and
+	 * the memory needed for large pages. Pages are not streamed in ajax requests or if response
+	 * filters are configured, because these need the complete page.
+	 * <p>
+	 * Once a part of the page has been flushed, the response can't be replaced anymore: headers and
+	 * cookies can't be set, and an exception or a request handler scheduled while rendering the rest
+	 * of the page is logged instead of being handled, leaving the client with a truncated page.
+	 * </p>
+	 * 0 by default, which disables streaming.
+	 * 
+	 * @param threshold
+	 *            The number of characters after which a streamed page is flushed, 0 to disable
+	 *            streaming
+	 * @see org.apache.wicket.protocol.http.StreamingWebResponse
+	 */
+	void setStreamingFlushThreshold(int threshold);
+
 	/**
 	 * In order to do proper form parameter decoding it is important that the response and the
 	 * following request have the same encoding. see
@@ -26,6 +26,8 @@ import org.apache.wicket.javascript.IJavaScriptCompressor;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.PackageResourceGuard;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.resource.PackageResourceCache;
+import org.apache.wicket.request.resource.ResourceManifest;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.resource.IPropertiesFactory;
 import org.apache.wicket.resource.IPropertiesFactoryContext;
@@ -73,6 +75,10 @@ import org.apache.wicket.util.watch.IModificationWatcher;
  * searched in order to obtain string resources used during localization. By default the chain is
  * set up to first search for resources against a particular component (e.g. page etc.) and then
  * against the application.
+ * <p>
+ * <i>useResponseCompression </i> (defaults to false) - Set to true to compress the responses of
+ * textual static resources for clients accepting gzip or deflate. Leave it off if a servlet filter
+ * or a proxy in front of the application compresses the responses already.
  * </p>
  * 
  * @author Igor Vaynberg (ivaynberg)
@@ -397,4 +403,76 @@ public interface IResourceSettings extends IPropertiesFactoryContext
 	 * @return The comparator used to sort header items.
 	 */
 	Comparator<? super RecordedHeaderItem> getHeaderItemComparator();
+
+	/**
+	 * Sets the maximum number of bytes held by the cache of processed package resources, e.g. the
+	 * compressed content of JavaScript and CSS files. Changing the setting replaces the cache, so
+	 * it should be changed before the first resource is served, e.g. in
+	 * {@link org.apache.wicket.Application#init()}.
+	 * 
+	 * @param maxWeight
+	 *            The maximum number of bytes, 0 to disable the cache
+	 * @see org.apache.wicket.request.resource.PackageResourceCache
+	 */
+	void setPackageResourceCacheMaxWeight(long maxWeight);
+
+	/**
+	 * @return The maximum number of bytes held by the cache of processed package resources, 0 if
+	 *         disabled
+	 * @see #setPackageResourceCacheMaxWeight(long)
+	 */
+	long getPackageResourceCacheMaxWeight();
+
+	/**
+	 * Gets the cache of processed package resources. It is created on first use with the
+	 * configured maximum weight.
+	 * 
+	 * @return The cache, <code>null</code> if it is disabled
+	 * @see #setPackageResourceCacheMaxWeight(long)
+	 */
+	PackageResourceCache getPackageResourceCache();
+
+	/**
+	 * Sets whether the responses of static resources with a textual content type, e.g.
+	 * JavaScript and CSS files, are compressed with gzip or deflate for clients which accept it.
+	 * The compressed data is kept in the
+	 * {@link org.apache.wicket.request.resource.PackageResourceCache}, so each version of a
+	 * resource is compressed once.
+	 * <p>
+	 * Compression is off by default. Enable it only if the responses are not compressed already by
+	 * a servlet filter or a proxy in front of the application, compressing them twice makes them
+	 * unreadable for the client.
+	 * 
+	 * @param useResponseCompression
+	 *            <code>true</code> to compress the responses, <code>false</code> (the default) to
+	 *            send them as they are
+	 * @see org.apache.wicket.request.resource.caching.IStaticCacheableResource
+	 */
+	void setUseResponseCompression(boolean useResponseCompression);
+
+	/**
+	 * @return Whether the responses of static resources are compressed
+	 * @see #setUseResponseCompression(boolean)
+	 */
+	boolean getUseResponseCompression();
+
+	/**
+	 * Sets the manifest which keeps the versions, the processed data and the gzip encoded data of
+	 * static resources across restarts of the application. In deployment mode the default
+	 * {@link #getCachingStrategy() caching strategy} takes the resource versions from the
+	 * manifest, so the manifest has to be set before the strategy is created, e.g. in
+	 * {@link org.apache.wicket.Application#init()}. The manifest appends new entries to its file
+	 * and compacts it when the application is destroyed.
+	 * 
+	 * @param manifest
+	 *            The manifest, e.g. {@link ResourceManifest#load(java.io.File)}, or
+	 *            <code>null</code> for none, the default
+	 */
+	void setResourceManifest(ResourceManifest manifest);
+
+	/**
+	 * @return The manifest of static resources, <code>null</code> if none
+	 * @see #setResourceManifest(ResourceManifest)
+	 */
+	ResourceManifest getResourceManifest();
 }
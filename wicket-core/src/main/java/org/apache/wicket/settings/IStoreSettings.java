@@ -23,6 +23,8 @@ import org.apache.wicket.pageStore.AsynchronousDataStore;
 import org.apache.wicket.pageStore.DiskDataStore;
 import org.apache.wicket.pageStore.IDataStore;
 import org.apache.wicket.pageStore.IPageStore;
+import org.apache.wicket.serialize.compress.CompressingSerializer;
+import org.apache.wicket.serialize.compress.Compression;
 import org.apache.wicket.util.lang.Bytes;
 
 /**
@@ -100,6 +102,22 @@ public interface IStoreSettings
 	 */
 	void setAsynchronousQueueCapacity(int capacity);
 
+	/**
+	 * @return the number of threads saving the pages asynchronously
+	 * @see AsynchronousDataStore
+	 */
+	int getAsynchronousWriterThreads();
+
+	/**
+	 * Sets the number of threads saving the pages asynchronously. The pages of a session are
+	 * always saved by the same thread.
+	 * 
+	 * @param writerThreads
+	 *            the number of threads
+	 * @see AsynchronousDataStore
+	 */
+	void setAsynchronousWriterThreads(int writerThreads);
+
 	/**
 	 * Sets a flag whether to wrap the configured {@link IDataStore} with
 	 * {@link AsynchronousDataStore}. By doing this the HTTP worker thread will not wait for the
@@ -114,4 +132,25 @@ public interface IStoreSettings
 	 * @return {@code true} if the storing of page's bytes is asynchronous
 	 */
 	boolean isAsynchronous();
+
+	/**
+	 * @return the compression applied to the serialized pages before they are passed to the
+	 *         {@link IDataStore}
+	 * @see CompressingSerializer
+	 */
+	Compression getPageCompression();
+
+	/**
+	 * Sets the compression applied to the serialized pages before they are passed to the
+	 * {@link IDataStore}. Pages stored with another compression, or before the compression has
+	 * been switched off, can still be read. The statistics of the compression are kept by the
+	 * serializer created by
+	 * {@link org.apache.wicket.DefaultPageManagerProvider#newPageSerializer(org.apache.wicket.serialize.ISerializer, Compression)}.
+	 * 
+	 * @param compression
+	 *            the compression, {@link Compression#NONE} to store the pages as they are
+	 *            serialized
+	 * @see CompressingSerializer
+	 */
+	void setPageCompression(Compression compression);
 }
@@ -17,6 +17,7 @@
 package org.apache.wicket.settings.def;
 
 import org.apache.wicket.markup.MarkupFactory;
+import org.apache.wicket.markup.html.outputcache.ComponentOutputCache;
 import org.apache.wicket.settings.IMarkupSettings;
 import org.apache.wicket.util.lang.Args;
 
@@ -47,9 +48,15 @@ public class MarkupSettings implements IMarkupSettings
 	/** Default markup encoding. If null, the OS default will be used */
 	private String defaultMarkupEncoding;
 
+	/** The maximum number of markup elements in the markup cache, 0 if unbounded */
+	private long markupCacheMaxWeight = 0;
+
 	/** Factory for creating markup parsers */
 	private MarkupFactory markupFactory;
 
+	/** The cache of the output of cacheable components */
+	private ComponentOutputCache componentOutputCache;
+
 	/** if true than throw an exception if the xml declaration is missing from the markup file */
 	private boolean throwExceptionOnMissingXmlDeclaration = false;
 
@@ -113,6 +120,15 @@ public class MarkupSettings implements IMarkupSettings
 		return defaultMarkupEncoding;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupCacheMaxWeight()
+	 */
+	@Override
+	public long getMarkupCacheMaxWeight()
+	{
+		return markupCacheMaxWeight;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#getMarkupFactory()
 	 */
@@ -208,6 +224,38 @@ public class MarkupSettings implements IMarkupSettings
 		markupFactory = factory;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#getComponentOutputCache()
+	 */
+	@Override
+	public ComponentOutputCache getComponentOutputCache()
+	{
+		if (componentOutputCache == null)
+		{
+			componentOutputCache = new ComponentOutputCache(ComponentOutputCache.DEFAULT_MAX_WEIGHT);
+		}
+		return componentOutputCache;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setComponentOutputCache(ComponentOutputCache)
+	 */
+	@Override
+	public void setComponentOutputCache(final ComponentOutputCache cache)
+	{
+		Args.notNull(cache, "cache");
+		componentOutputCache = cache;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxWeight(long)
+	 */
+	@Override
+	public void setMarkupCacheMaxWeight(final long maxWeight)
+	{
+		markupCacheMaxWeight = maxWeight;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IMarkupSettings#setStripComments(boolean)
 	 */
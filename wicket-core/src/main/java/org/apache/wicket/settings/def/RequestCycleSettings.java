@@ -48,6 +48,12 @@ public class RequestCycleSettings implements IRequestCycleSettings
 	 */
 	private boolean gatherExtendedBrowserInfo = false;
 
+	/** True if static markup is written as pre-encoded bytes */
+	private boolean preEncodedMarkup = false;
+
+	/** The number of characters after which a streamed page is flushed, 0 to disable streaming */
+	private int streamingFlushThreshold = 0;
+
 	/** Type of handling for unexpected exceptions */
 	private IExceptionSettings.UnexpectedExceptionDisplay unexpectedExceptionDisplay = IExceptionSettings.SHOW_EXCEPTION_PAGE;
 
@@ -170,6 +176,47 @@ public class RequestCycleSettings implements IRequestCycleSettings
 		this.bufferResponse = bufferResponse;
 	}
 
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#getPreEncodedMarkup()
+	 */
+	@Override
+	public boolean getPreEncodedMarkup()
+	{
+		return preEncodedMarkup;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setPreEncodedMarkup(boolean)
+	 */
+	@Override
+	public void setPreEncodedMarkup(boolean preEncodedMarkup)
+	{
+		this.preEncodedMarkup = preEncodedMarkup;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#getStreamingFlushThreshold()
+	 */
+	@Override
+	public int getStreamingFlushThreshold()
+	{
+		return streamingFlushThreshold;
+	}
+
+	/**
+	 * @see org.apache.wicket.settings.IRequestCycleSettings#setStreamingFlushThreshold(int)
+	 */
+	@Override
+	public void setStreamingFlushThreshold(int threshold)
+	{
+		if (threshold < 0)
+		{
+			throw new IllegalArgumentException("Argument 'threshold' must not be negative: " +
+				threshold);
+		}
+		streamingFlushThreshold = threshold;
+	}
+
 	/**
 	 * @see org.apache.wicket.settings.IRequestCycleSettings#setGatherExtendedBrowserInfo(boolean)
 	 */
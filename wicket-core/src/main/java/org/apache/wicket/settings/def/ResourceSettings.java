@@ -29,12 +29,15 @@ import org.apache.wicket.javascript.IJavaScriptCompressor;
 import org.apache.wicket.markup.html.IPackageResourceGuard;
 import org.apache.wicket.markup.html.PackageResourceGuard;
 import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.PackageResourceCache;
+import org.apache.wicket.request.resource.ResourceManifest;
 import org.apache.wicket.request.resource.caching.FilenameWithVersionResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.IResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.NoOpResourceCachingStrategy;
 import org.apache.wicket.request.resource.caching.version.CachingResourceVersion;
 import org.apache.wicket.request.resource.caching.version.IResourceVersion;
 import org.apache.wicket.request.resource.caching.version.LastModifiedResourceVersion;
+import org.apache.wicket.request.resource.caching.version.ManifestResourceVersion;
 import org.apache.wicket.request.resource.caching.version.MessageDigestResourceVersion;
 import org.apache.wicket.request.resource.caching.version.RequestCycleCachedResourceVersion;
 import org.apache.wicket.resource.PropertiesFactory;
@@ -136,6 +139,14 @@ public class ResourceSettings implements IResourceSettings
 
 	private Comparator<? super RecordedHeaderItem> headerItemComparator;
 
+	private long packageResourceCacheMaxWeight = PackageResourceCache.DEFAULT_MAX_WEIGHT;
+
+	private PackageResourceCache packageResourceCache;
+
+	private boolean useResponseCompression = false;
+
+	private ResourceManifest resourceManifest;
+
 	/**
 	 * Configures Wicket's default ResourceLoaders.<br>
 	 * For an example in {@code FooApplication} let {@code bar.Foo} extend {@link Component}, this
@@ -530,6 +541,14 @@ public class ResourceSettings implements IResourceSettings
 				resourceVersion = new RequestCycleCachedResourceVersion(
 					new LastModifiedResourceVersion());
 			}
+			else if (resourceManifest != null)
+			{
+				// deployment mode with a manifest:
+				// use message digest over resource content for resource caching
+				// keep the version information across restarts of the application
+				resourceVersion = new ManifestResourceVersion(resourceManifest,
+					new MessageDigestResourceVersion());
+			}
 			else
 			{
 				// deployment mode:
@@ -598,4 +617,56 @@ public class ResourceSettings implements IResourceSettings
 	{
 		this.headerItemComparator = headerItemComparator;
 	}
+
+	@Override
+	public void setPackageResourceCacheMaxWeight(final long maxWeight)
+	{
+		if (maxWeight < 0)
+		{
+			throw new IllegalArgumentException("Argument 'maxWeight' must not be negative: " +
+				maxWeight);
+		}
+		packageResourceCacheMaxWeight = maxWeight;
+		packageResourceCache = null;
+	}
+
+	@Override
+	public long getPackageResourceCacheMaxWeight()
+	{
+		return packageResourceCacheMaxWeight;
+	}
+
+	@Override
+	public PackageResourceCache getPackageResourceCache()
+	{
+		if ((packageResourceCache == null) && (packageResourceCacheMaxWeight > 0))
+		{
+			packageResourceCache = new PackageResourceCache(packageResourceCacheMaxWeight);
+		}
+		return packageResourceCache;
+	}
+
+	@Override
+	public void setUseResponseCompression(final boolean useResponseCompression)
+	{
+		this.useResponseCompression = useResponseCompression;
+	}
+
+	@Override
+	public boolean getUseResponseCompression()
+	{
+		return useResponseCompression;
+	}
+
+	@Override
+	public void setResourceManifest(final ResourceManifest resourceManifest)
+	{
+		this.resourceManifest = resourceManifest;
+	}
+
+	@Override
+	public ResourceManifest getResourceManifest()
+	{
+		return resourceManifest;
+	}
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import org.apache.wicket.Application;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.serialize.compress.Compression;
 import org.apache.wicket.settings.IStoreSettings;
 import org.apache.wicket.util.lang.Args;
 import org.apache.wicket.util.lang.Bytes;
@@ -37,6 +38,8 @@ public class StoreSettings implements IStoreSettings
 
 	private static final int DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY = 100;
 
+	private static final int DEFAULT_ASYNCHRONOUS_WRITER_THREADS = 1;
+
 	private int inmemoryCacheSize = DEFAULT_CACHE_SIZE;
 
 	private Bytes maxSizePerSession = DEFAULT_MAX_SIZE_PER_SESSION;
@@ -45,8 +48,12 @@ public class StoreSettings implements IStoreSettings
 
 	private int asynchronousQueueCapacity = DEFAULT_ASYNCHRONOUS_QUEUE_CAPACITY;
 
+	private int asynchronousWriterThreads = DEFAULT_ASYNCHRONOUS_WRITER_THREADS;
+
 	private boolean isAsynchronous = true;
 
+	private Compression pageCompression = Compression.NONE;
+
 	/**
 	 * Construct.
 	 * 
@@ -131,6 +138,23 @@ public class StoreSettings implements IStoreSettings
 		asynchronousQueueCapacity = queueCapacity;
 	}
 
+	@Override
+	public int getAsynchronousWriterThreads()
+	{
+		return asynchronousWriterThreads;
+	}
+
+	@Override
+	public void setAsynchronousWriterThreads(int writerThreads)
+	{
+		if (writerThreads < 1)
+		{
+			throw new IllegalArgumentException(
+				"The number of asynchronous writer threads should be at least 1.");
+		}
+		asynchronousWriterThreads = writerThreads;
+	}
+
 	@Override
 	public void setAsynchronous(boolean async)
 	{
@@ -142,4 +166,16 @@ public class StoreSettings implements IStoreSettings
 	{
 		return isAsynchronous;
 	}
+
+	@Override
+	public Compression getPageCompression()
+	{
+		return pageCompression;
+	}
+
+	@Override
+	public void setPageCompression(final Compression compression)
+	{
+		pageCompression = Args.notNull(compression, "compression");
+	}
 }
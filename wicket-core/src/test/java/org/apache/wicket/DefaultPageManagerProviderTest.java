@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket;
+
+import org.apache.wicket.serialize.ISerializer;
+import org.apache.wicket.serialize.compress.CompressingSerializer;
+import org.apache.wicket.serialize.compress.Compression;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DefaultPageManagerProvider}
+ */
+public class DefaultPageManagerProviderTest extends WicketTestCase
+{
+	/**
+	 * Pages stored compressed can be read after the compression has been switched off
+	 */
+	@Test
+	public void readsCompressedPagesWithoutCompression()
+	{
+		DefaultPageManagerProvider provider = new DefaultPageManagerProvider(
+			tester.getApplication());
+		ISerializer serializer = tester.getApplication().getFrameworkSettings().getSerializer();
+
+		StringBuilder page = new StringBuilder();
+		while (page.length() < 10000)
+		{
+			page.append("org.apache.wicket.markup.html.basic.Label");
+		}
+
+		CompressingSerializer compressing = provider.newPageSerializer(serializer,
+			Compression.DEFLATE);
+		byte[] data = compressing.serialize(page.toString());
+		assertTrue(compressing.getCompressionRatio() < 0.5);
+
+		CompressingSerializer uncompressing = provider.newPageSerializer(serializer,
+			Compression.NONE);
+		assertEquals(page.toString(), uncompressing.deserialize(data));
+
+		// without compression the pages are stored as they are serialized
+		assertArrayEquals(serializer.serialize(page.toString()),
+			uncompressing.serialize(page.toString()));
+	}
+}
@@ -16,16 +16,21 @@
  */
 package org.apache.wicket;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
 import org.apache.wicket.request.resource.IResource;
 import org.apache.wicket.request.resource.ResourceStreamResource;
 import org.apache.wicket.util.resource.FileResourceStream;
 import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
 import org.apache.wicket.util.resource.StringResourceStream;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -64,6 +69,76 @@ public class ResourceTest extends WicketTestCase
 		assertEquals(TEST_STRING.length(), tester.getContentLengthFromResponseHeader());
 	}
 
+	/**
+	 * Tests that files are transferred completely and in ranges
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void fileTransfer() throws IOException
+	{
+		File testFile = File.createTempFile(ResourceTest.class.getName(), null);
+		testFile.deleteOnExit();
+		OutputStream out = new FileOutputStream(testFile);
+		try
+		{
+			for (int i = 0; i < 10000; i++)
+			{
+				out.write(TEST_STRING.getBytes());
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		FileResourceStream stream = new FileResourceStream(testFile);
+
+		tester.startResource(new ResourceStreamResource(stream));
+		byte[] content = tester.getLastResponse().getBinaryContent();
+		assertEquals(TEST_STRING.length() * 10000, content.length);
+		assertEquals(TEST_STRING, new String(content, 0, TEST_STRING.length()));
+
+		long offset = TEST_STRING.length() * 5000L + 7;
+		tester.getRequest().addHeader("Range", "bytes=" + offset + "-" + (offset + 4));
+		tester.startResource(new ResourceStreamResource(stream));
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, tester.getLastResponse().getStatus());
+		assertEquals("World", tester.getLastResponseAsString());
+	}
+
+	/**
+	 * Tests that a subclass of {@link FileResourceStream} is written from its input stream
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void fileResourceStreamSubclass() throws IOException
+	{
+		File testFile = File.createTempFile(ResourceTest.class.getName(), null);
+		testFile.deleteOnExit();
+		OutputStream out = new FileOutputStream(testFile);
+		try
+		{
+			out.write(TEST_STRING.getBytes());
+		}
+		finally
+		{
+			out.close();
+		}
+		FileResourceStream stream = new FileResourceStream(testFile)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public InputStream getInputStream() throws ResourceStreamNotFoundException
+			{
+				return new ByteArrayInputStream(TEST_STRING.toUpperCase().getBytes());
+			}
+		};
+
+		tester.startResource(new ResourceStreamResource(stream));
+		assertEquals(TEST_STRING.toUpperCase(), tester.getLastResponseAsString());
+	}
+
 	/**
 	 * testStringResourceStream()
 	 */
@@ -21,6 +21,7 @@ import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketTestCase;
 import org.apache.wicket.markup.html.panel.Panel;
 import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -86,6 +87,44 @@ public class MarkupCacheTest extends WicketTestCase
 		assertNull(markup);
 	}
 
+	/**
+	 * Markup evicted from a bounded cache takes the markup derived from it along
+	 */
+	@Test
+	public void evictingBaseMarkupEvictsDerivedMarkup()
+	{
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		MarkupInheritanceExtension_1 page = (MarkupInheritanceExtension_1)tester.getLastRenderedPage();
+		final int size = cache.getMarkup(page, null, false).size();
+
+		// room for the derived markup and a filler of the same size
+		Application.get().getMarkupSettings().setMarkupCacheMaxWeight(2 * size);
+		cache = new MarkupCache();
+		assertTrue(cache.getMarkupCache() instanceof MarkupCache.BoundedCacheImplementation);
+
+		tester.startPage(MarkupInheritanceExtension_1.class);
+		page = (MarkupInheritanceExtension_1)tester.getLastRenderedPage();
+		IMarkupFragment markup = cache.getMarkup(page, null, false);
+		String key = markup.getMarkupResourceStream().getCacheKey();
+		String baseKey = markup.getMarkupResourceStream()
+			.getBaseMarkupResourceStream()
+			.getCacheKey();
+
+		// used again, hence the base markup is evicted before the derived markup
+		assertNotNull(cache.getMarkupFromCache(key, page));
+
+		Markup filler = new Markup(new MarkupResourceStream(new StringResourceStream("")));
+		for (int i = 0; i < size; i++)
+		{
+			filler.addMarkupElement(new RawMarkup("x"));
+		}
+		cache.getMarkupCache().put("filler", filler);
+
+		assertNull(cache.getMarkupFromCache(baseKey, page));
+		assertNull(cache.getMarkupFromCache(key, page));
+		assertNotNull(cache.getMarkupCache().get("filler"));
+	}
+
 	private static class MarkupCachingAssumingComponent extends Panel
 		implements
 			IMarkupResourceStreamProvider
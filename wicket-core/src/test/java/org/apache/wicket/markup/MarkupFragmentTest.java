@@ -94,4 +94,46 @@ public class MarkupFragmentTest extends WicketTestCase
 
 		assertEquals(1, fragment.size());
 	}
+
+	/** */
+	@Test
+	public void findChildren()
+	{
+		Markup markup = Markup.of("<div wicket:id='a'><span wicket:id='b'></span><span wicket:id='c'><i wicket:id='b'/></span></div><p wicket:id='d'/>");
+
+		assertEquals("a", ((ComponentTag)markup.find("a").get(0)).getId());
+		assertEquals("d", ((ComponentTag)markup.find("d").get(0)).getId());
+		assertNull("nested children are not found", markup.find("b"));
+		assertNull(markup.find("x"));
+
+		IMarkupFragment a = markup.find("a");
+		assertEquals(1, ((MarkupFragment)a.find("b")).size() - 1);
+		assertEquals("span", ((ComponentTag)a.find("b").get(0)).getName());
+		IMarkupFragment c = a.find("c");
+		assertEquals("i", ((ComponentTag)c.find("b").get(0)).getName());
+
+		// a second fragment for the same range shares the index
+		assertEquals("c", ((ComponentTag)markup.find("a").find("c").get(0)).getId());
+		assertNull(markup.find("a").find("d"));
+	}
+
+	/** */
+	@Test
+	public void findChildrenAfterModification()
+	{
+		Markup a = Markup.of("<p wicket:id='a'></p>");
+		Markup markup = new Markup(a.getMarkupResourceStream());
+		for (MarkupElement element : a)
+		{
+			markup.addMarkupElement(element);
+		}
+		assertNotNull(markup.find("a"));
+		assertNull(markup.find("b"));
+
+		for (MarkupElement element : Markup.of("<p wicket:id='b'></p>"))
+		{
+			markup.addMarkupElement(element);
+		}
+		assertNotNull(markup.find("b"));
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.basic.SimplePage;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupWarmup}
+ */
+public class MarkupWarmupTest extends WicketTestCase
+{
+	/**
+	 * Preloaded markup, including merged and base markup, is found by the components
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void preloadMarkup() throws Exception
+	{
+		MarkupWarmup warmup = new MarkupWarmup(tester.getApplication()).addClass(
+			MarkupInheritanceExtension_1.class)
+			.addClass(NoMarkupPage.class)
+			.addClass(AbstractPage.class)
+			.setLocales(tester.getSession().getLocale())
+			.start();
+		assertTrue(warmup.await(30, TimeUnit.SECONDS));
+		assertEquals(3, warmup.getCompleted());
+		assertEquals(1, warmup.getLoaded());
+		assertEquals(0, warmup.getFailed());
+
+		IMarkupCache cache = MarkupFactory.get().getMarkupCache();
+		int size = cache.size();
+		Markup markup = MarkupFactory.get().getMarkup(new MarkupInheritanceExtension_1(), false);
+		assertTrue(markup instanceof MergedMarkup);
+		assertNotNull(MarkupFactory.get().getMarkup(new MarkupInheritanceBase_1(), false));
+		assertEquals(size, cache.size());
+
+		executeTest(MarkupInheritanceExtension_1.class, "MarkupInheritanceExpectedResult_1.html");
+	}
+
+	/**
+	 * The warm-up loads the markup of the classes in a package
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void warmup() throws Exception
+	{
+		MarkupWarmup warmup = new MarkupWarmup(tester.getApplication()).addPackage(
+			"org.apache.wicket.markup.html.basic")
+			.setLocales(tester.getSession().getLocale())
+			.setThreads(2)
+			.start();
+		assertTrue(warmup.await(30, TimeUnit.SECONDS));
+
+		assertTrue(warmup.getLoaded() > 5);
+		assertEquals(warmup.getTotal(), warmup.getCompleted());
+		assertNotNull(warmup.getDuration());
+
+		int size = MarkupFactory.get().getMarkupCache().size();
+		assertNotNull(MarkupFactory.get().getMarkup(new SimplePage(), false));
+		assertEquals(size, MarkupFactory.get().getMarkupCache().size());
+	}
+
+	/** */
+	public static class NoMarkupPage extends org.apache.wicket.markup.html.WebPage
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** */
+	public abstract static class AbstractPage extends org.apache.wicket.markup.html.WebPage
+	{
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup;
+
+import org.apache.wicket.WicketTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RenderPlan}
+ */
+public class RenderPlanTest extends WicketTestCase
+{
+	private static final String MARKUP = "<html><body><div wicket:id='a'>text<br><span wicket:id='b'>" +
+		"<i wicket:id='c'/></span><div><p wicket:id='d'>x</p></div></div>" +
+		"<wicket:container wicket:id='e'><img src='x'></wicket:container></body></html>";
+
+	/**
+	 * The plan finds the same close tags as scanning the markup
+	 */
+	@Test
+	public void sameAsScanning()
+	{
+		Markup markup = Markup.of(MARKUP);
+		RenderPlan plan = markup.getRenderPlan();
+		int known = 0;
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement element = markup.get(i);
+			int closeIndex = plan.getCloseIndex(i);
+			if (closeIndex != -1)
+			{
+				assertEquals(scan(markup, i), closeIndex);
+				known++;
+			}
+			else if ((element instanceof ComponentTag) && ((ComponentTag)element).isOpen() &&
+				(((ComponentTag)element).hasNoCloseTag() == false))
+			{
+				fail("close tag of " + element + " not known");
+			}
+		}
+		assertEquals(4, known);
+		assertEquals(-1, plan.getCloseIndex(-1));
+		assertEquals(-1, plan.getCloseIndex(markup.size()));
+	}
+
+	/**
+	 * Streams and fragments skip components with the plan
+	 */
+	@Test
+	public void skipComponent()
+	{
+		Markup markup = Markup.of(MARKUP);
+
+		MarkupStream stream = new MarkupStream(markup);
+		int a = indexOf(markup, "a");
+		stream.setCurrentIndex(a);
+		stream.skipComponent();
+		assertEquals(scan(markup, a) + 1, stream.getCurrentIndex());
+
+		IMarkupFragment fragment = markup.find("a");
+		assertEquals(scan(markup, a) - a + 1, fragment.size());
+		IMarkupFragment b = fragment.find("b");
+		assertEquals("c", ((ComponentTag)b.get(1)).getId());
+		assertEquals(3, b.size());
+
+		stream = new MarkupStream(fragment);
+		stream.next();
+		stream.skipUntil(ComponentTag.class);
+		while (stream.getTag().getId() == null || !stream.getTag().getId().equals("b"))
+		{
+			stream.next();
+		}
+		stream.skipComponent();
+		assertTrue(stream.get() instanceof RawMarkup);
+		stream.skipUntil(ComponentTag.class);
+		assertEquals("d", stream.getTag().getId());
+	}
+
+	/**
+	 * Fragments do not compile the plan, they use a slice of it once the root markup has been
+	 * rendered
+	 */
+	@Test
+	public void compiledOnRender()
+	{
+		Markup markup = Markup.of(MARKUP);
+		MarkupFragment before = (MarkupFragment)markup.find("a");
+		assertNull(markup.getCompiledRenderPlan());
+
+		// rendering the root markup compiles the plan
+		MarkupStream stream = new MarkupStream(markup);
+		int a = indexOf(markup, "a");
+		stream.setCurrentIndex(a);
+		stream.skipComponent();
+		RenderPlan plan = markup.getCompiledRenderPlan();
+		assertNotNull(plan);
+
+		// fragments created before and after the render find the same close tags
+		MarkupFragment after = (MarkupFragment)markup.find("a");
+		assertEquals(before.size(), after.size());
+		int b = indexOf(markup, "b") - a;
+		assertEquals(scan(markup, b + a) - a, before.getCloseIndex(b));
+		assertEquals(scan(markup, b + a) - a, after.getCloseIndex(b));
+		assertSame(plan, markup.getCompiledRenderPlan());
+
+		// the slice does not know close tags outside of the fragment
+		RenderPlan slice = plan.slice(a, after.size());
+		assertEquals(-1, slice.getCloseIndex(-1));
+		assertEquals(-1, slice.getCloseIndex(after.size()));
+		assertEquals(after.size() - 1, slice.getCloseIndex(0));
+	}
+
+	/**
+	 * The plan is compiled again after the markup has been modified
+	 */
+	@Test
+	public void modification()
+	{
+		Markup a = Markup.of("<p wicket:id='a'></p>");
+		Markup markup = new Markup(a.getMarkupResourceStream());
+		for (MarkupElement element : a)
+		{
+			markup.addMarkupElement(element);
+		}
+		RenderPlan plan = markup.getRenderPlan();
+		assertSame(plan, markup.getRenderPlan());
+		assertEquals(1, plan.getCloseIndex(0));
+
+		for (MarkupElement element : Markup.of("<p wicket:id='b'></p>"))
+		{
+			markup.addMarkupElement(element);
+		}
+		assertNotSame(plan, markup.getRenderPlan());
+		assertEquals(3, markup.getRenderPlan().getCloseIndex(2));
+	}
+
+	private static int indexOf(final Markup markup, final String id)
+	{
+		for (int i = 0; i < markup.size(); i++)
+		{
+			MarkupElement element = markup.get(i);
+			if ((element instanceof ComponentTag) && id.equals(((ComponentTag)element).getId()))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int scan(final Markup markup, final int openIndex)
+	{
+		for (int i = openIndex + 1; i < markup.size(); i++)
+		{
+			if (markup.get(i).closes(markup.get(openIndex)))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
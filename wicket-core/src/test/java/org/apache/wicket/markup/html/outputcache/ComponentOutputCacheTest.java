@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.html.outputcache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.IHeaderResponse;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.protocol.http.servlet.ServletWebRequest;
+import org.apache.wicket.protocol.http.servlet.ServletWebResponse;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.resource.header.JavaScriptHeaderItem;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.apache.wicket.util.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ComponentOutputCache}
+ */
+public class ComponentOutputCacheTest extends WicketTestCase
+{
+	/** The number of times the label of a panel has been rendered */
+	private static final AtomicInteger renderCount = new AtomicInteger();
+
+	/**
+	 * 
+	 */
+	@Before
+	public void before()
+	{
+		renderCount.set(0);
+	}
+
+	/**
+	 * The second render replays the output and header items without rendering the children.
+	 */
+	@Test
+	public void replaysOutputAndHeaderItems()
+	{
+		tester.startPage(new CachePage(false));
+		tester.assertContains("count-1");
+		tester.assertContains("cachedScript");
+
+		tester.startPage(new CachePage(false));
+		tester.assertContains("count-1");
+		tester.assertContains("cachedScript");
+
+		ComponentOutputCache cache = tester.getApplication()
+			.getMarkupSettings()
+			.getComponentOutputCache();
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, renderCount.get());
+	}
+
+	/**
+	 * Removed output is rendered again.
+	 */
+	@Test
+	public void removedOutputIsRenderedAgain()
+	{
+		tester.startPage(new CachePage(false));
+		tester.assertContains("count-1");
+
+		ComponentOutputCache cache = tester.getApplication()
+			.getMarkupSettings()
+			.getComponentOutputCache();
+		assertEquals(1, cache.remove(CachePanel.class, "menu"));
+
+		tester.startPage(new CachePage(false));
+		tester.assertContains("count-2");
+		assertEquals(0, cache.getHitCount());
+	}
+
+	/**
+	 * The output of stateful children is not cached.
+	 */
+	@Test
+	public void statefulOutputIsNotCached()
+	{
+		tester.startPage(new CachePage(true));
+		tester.startPage(new CachePage(true));
+		tester.assertContains("count-2");
+
+		ComponentOutputCache cache = tester.getApplication()
+			.getMarkupSettings()
+			.getComponentOutputCache();
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	/**
+	 * The output contains urls relative to the page, thus it is cached per page class and mount
+	 * path.
+	 */
+	@Test
+	public void outputIsCachedPerPage()
+	{
+		tester.getApplication().mountPage("a/b/page", CachePage.class);
+		tester.getApplication().mountPage("other", OtherCachePage.class);
+
+		tester.startPage(CachePage.class);
+		tester.assertContains("count-1");
+		String first = tester.getLastResponseAsString();
+		tester.startPage(CachePage.class);
+		assertEquals(first, tester.getLastResponseAsString());
+
+		tester.startPage(OtherCachePage.class);
+		tester.assertContains("count-2");
+		assertFalse(first.equals(tester.getLastResponseAsString()));
+
+		ComponentOutputCache cache = tester.getApplication()
+			.getMarkupSettings()
+			.getComponentOutputCache();
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	/**
+	 * Urls containing the session id are neither recorded nor replayed.
+	 */
+	@Test
+	public void outputWithSessionIdIsNotCached()
+	{
+		WicketTester sessionTester = new WicketTester(new MockApplication())
+		{
+			@Override
+			protected Response newServletWebResponse(ServletWebRequest servletWebRequest)
+			{
+				return new ServletWebResponse(servletWebRequest, getResponse())
+				{
+					@Override
+					public String encodeURL(CharSequence url)
+					{
+						return url + ";jsessionid=secret";
+					}
+				};
+			}
+		};
+		try
+		{
+			sessionTester.startPage(new CachePage(false));
+			sessionTester.startPage(new CachePage(false));
+			sessionTester.assertContains("count-2");
+
+			ComponentOutputCache cache = sessionTester.getApplication().getMarkupSettings()
+				.getComponentOutputCache();
+			assertEquals(0, cache.size());
+			assertEquals(0, cache.getMissCount());
+		}
+		finally
+		{
+			sessionTester.destroy();
+		}
+	}
+
+	/**
+	 * A page with a cacheable panel
+	 */
+	public static class CachePage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param stateful
+		 */
+		public CachePage(boolean stateful)
+		{
+			add(new CachePanel("panel", stateful));
+		}
+
+		/**
+		 * Construct.
+		 */
+		public CachePage()
+		{
+			this(false);
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head></head><body><div wicket:id='panel'></div></body></html>");
+		}
+	}
+
+	/**
+	 * Another page with a cacheable panel
+	 */
+	public static class OtherCachePage extends CachePage
+	{
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * A cacheable panel
+	 */
+	public static class CachePanel extends Panel
+		implements
+			ICacheableComponent,
+			IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final boolean stateful;
+
+		/**
+		 * Construct.
+		 * 
+		 * @param id
+		 * @param stateful
+		 *            whether to add a stateful link
+		 */
+		public CachePanel(String id, boolean stateful)
+		{
+			super(id);
+			this.stateful = stateful;
+
+			add(new Label("label", new AbstractReadOnlyModel<String>()
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public String getObject()
+				{
+					return "count-" + renderCount.incrementAndGet();
+				}
+			}));
+			add(new Link<Void>("link")
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void onClick()
+				{
+				}
+			}.setVisible(stateful));
+			add(new BookmarkablePageLink<Void>("other", OtherCachePage.class));
+		}
+
+		@Override
+		public String getOutputCacheKey()
+		{
+			return "menu";
+		}
+
+		@Override
+		public Duration getOutputCacheDuration()
+		{
+			return Duration.minutes(5);
+		}
+
+		@Override
+		public void renderHead(IHeaderResponse response)
+		{
+			super.renderHead(response);
+			response.render(JavaScriptHeaderItem.forScript("var cachedScript = " + stateful + ";",
+				"cachedScript"));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<wicket:panel><span wicket:id='label'></span><a wicket:id='link'></a>" +
+					"<a wicket:id='other'></a></wicket:panel>");
+		}
+	}
+}
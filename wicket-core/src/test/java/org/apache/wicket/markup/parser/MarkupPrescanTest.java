@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.markup.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MarkupPrescan}
+ */
+public class MarkupPrescanTest extends Assert
+{
+	/**
+	 * Markup without wicket constructs
+	 */
+	@Test
+	public void plainMarkup()
+	{
+		MarkupPrescan prescan = new MarkupPrescan(
+			"<html><body style='color: red'><a href='http://localhost:8080/x'>x</a></body></html>",
+			"wicket");
+		assertFalse(prescan.hasWicketTags());
+		assertFalse(prescan.hasWicketAttribute("message"));
+	}
+
+	/**
+	 * Wicket tags and attributes are told apart
+	 */
+	@Test
+	public void tagsAndAttributes()
+	{
+		MarkupPrescan prescan = new MarkupPrescan(
+			"<html><body><wicket:enclosure><span wicket:id='a' wicket:message='title:key'></span>" +
+				"</wicket:enclosure><WICKET:Remove>x</WICKET:Remove></body></html>", "wicket");
+		assertTrue(prescan.hasWicketTags());
+		assertTrue(prescan.hasWicketTag("enclosure"));
+		assertTrue(prescan.hasWicketTag("remove"));
+		assertFalse(prescan.hasWicketTag("link"));
+		assertTrue(prescan.hasWicketAttribute("id"));
+		assertTrue(prescan.hasWicketAttribute("message"));
+		assertFalse(prescan.hasWicketAttribute("enclosure"));
+	}
+
+	/**
+	 * Declared namespaces are considered wicket namespaces, wherever they are declared
+	 */
+	@Test
+	public void declaredNamespace()
+	{
+		MarkupPrescan prescan = new MarkupPrescan("<html><body><foo:link><a href='x'>x</a>" +
+			"</foo:link><bar:enclosure/></body></html><html xmlns:foo='http://wicket.apache.org'>",
+			"wicket");
+		assertTrue(prescan.hasWicketTag("link"));
+		assertFalse(prescan.hasWicketTag("enclosure"));
+
+		prescan = new MarkupPrescan("<bar:enclosure/>", "bar");
+		assertTrue(prescan.hasWicketTag("enclosure"));
+	}
+}
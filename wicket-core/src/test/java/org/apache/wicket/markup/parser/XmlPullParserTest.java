@@ -432,4 +432,43 @@ public class XmlPullParserTest extends Assert
 		type = parser.next();
 		assertEquals(HttpTagType.CONDITIONAL_COMMENT_ENDIF, type);
 	}
+
+	/**
+	 * Tag and attribute names are shared, attribute values are unquoted and trimmed.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void sharedNames() throws Exception
+	{
+		final XmlPullParser parser = new XmlPullParser();
+		parser.parse("<span wicket:id=\"a\" class=' b ' title=c data-x=\"\" checked></span><WICKET:Panel/>");
+		XmlTag tag = parser.nextTag();
+		assertSame("span", tag.getName());
+		assertNull(tag.getNamespace());
+		assertEquals(5, tag.getAttributes().size());
+		assertEquals("a", tag.getAttributes().getString("wicket:id"));
+		assertEquals("b", tag.getAttributes().getString("class"));
+		assertEquals("c", tag.getAttributes().getString("title"));
+		assertEquals("", tag.getAttributes().getString("data-x"));
+		assertEquals("", tag.getAttributes().getString("checked"));
+		for (String key : tag.getAttributes().keySet())
+		{
+			if ("data-x".equals(key) == false)
+			{
+				assertSame(key.intern(), key);
+			}
+		}
+
+		tag = parser.nextTag();
+		assertTrue(tag.isClose());
+		assertSame("span", tag.getName());
+
+		tag = parser.nextTag();
+		assertTrue(tag.isOpenClose());
+		assertEquals("Panel", tag.getName());
+		assertEquals("wicket", tag.getNamespace());
+
+		assertNull(parser.nextTag());
+	}
 }
\ No newline at end of file
@@ -139,6 +139,22 @@ public class PageWindowManagerTest extends Assert
 		assertWindow(window, 8, 50, 10);
 	}
 
+	/**
+	 * A page overwritten by a window of the same size is not found anymore
+	 */
+	@Test
+	public void reuseWindowOfSameSize()
+	{
+		PageWindowManager manager = new PageWindowManager(60);
+		manager.createPageWindow(1, 30);
+		manager.createPageWindow(2, 30);
+
+		PageWindow window = manager.createPageWindow(3, 30);
+		assertWindow(window, 3, 0, 30);
+		assertNull(manager.getPageWindow(1));
+		assertWindow(manager.getPageWindow(3), 3, 0, 30);
+		assertWindow(manager.getPageWindow(2), 2, 30, 30);
+	}
 
 	private void assertWindow(PageWindow window, int pageId, int filePartOffset, int filePartSize)
 	{
@@ -16,6 +16,9 @@
  */
 package org.apache.wicket.pageStore;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
 import java.security.SecureRandom;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -74,6 +77,91 @@ public class AsynchronousDataStoreTest
 		DATA_STORE.destroy();
 	}
 
+	/**
+	 * Stores many versions of the same pages with several writer threads and checks that the last
+	 * version wins and that every entry is either saved, skipped as superseded or saved
+	 * synchronously.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void multipleWriters() throws Exception
+	{
+		final InMemoryPageStore delegate = new InMemoryPageStore();
+		AsynchronousDataStore store = new AsynchronousDataStore(new IDataStore()
+		{
+			@Override
+			public synchronized byte[] getData(String sessionId, int id)
+			{
+				return delegate.getData(sessionId, id);
+			}
+
+			@Override
+			public synchronized void removeData(String sessionId, int id)
+			{
+				delegate.removeData(sessionId, id);
+			}
+
+			@Override
+			public synchronized void removeData(String sessionId)
+			{
+				delegate.removeData(sessionId);
+			}
+
+			@Override
+			public synchronized void storeData(String sessionId, int id, byte[] data)
+			{
+				delegate.storeData(sessionId, id, data);
+			}
+
+			@Override
+			public void destroy()
+			{
+			}
+
+			@Override
+			public boolean isReplicated()
+			{
+				return false;
+			}
+
+			@Override
+			public boolean canBeAsynchronous()
+			{
+				return true;
+			}
+		}, 20, 4);
+
+		int versions = 100;
+		for (int version = 0; version < versions; version++)
+		{
+			for (String sessionId : SESSIONS)
+			{
+				store.storeData(sessionId, 1, new byte[] { (byte)version });
+			}
+		}
+
+		// saves the entries still queued
+		store.destroy();
+		assertEquals(0, store.getQueueSize());
+
+		for (String sessionId : SESSIONS)
+		{
+			assertArrayEquals(new byte[] { (byte)(versions - 1) }, delegate.getData(sessionId, 1));
+		}
+
+		long total = versions * SESSIONS.length;
+		assertEquals(total, store.getSavedCount() + store.getSupersededCount() +
+			store.getSynchronousCount());
+
+		long histogramTotal = 0;
+		for (long count : store.getWriteLatencyHistogram())
+		{
+			histogramTotal += count;
+		}
+		assertEquals(store.getSavedCount(), histogramTotal);
+	}
+
 	private static abstract class AbstractTask implements Runnable
 	{
 
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DiskDataStore} reading the pages from a memory mapping
+ */
+public class DiskDataStoreMappedReadsTest extends Assert
+{
+	private File folder;
+
+	private DiskDataStore store;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("DiskDataStoreMappedReadsTest", "");
+		folder.delete();
+		folder.mkdirs();
+		store = new DiskDataStore("test", folder, Bytes.bytes(1000), 10, true);
+	}
+
+	/** */
+	@After
+	public void after()
+	{
+		store.destroy();
+		Files.removeFolder(folder);
+	}
+
+	private static byte[] data(int length, int value)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			data[i] = (byte)value;
+		}
+		return data;
+	}
+
+	/**
+	 * Pages stored after the file has been mapped are visible too
+	 */
+	@Test
+	public void readWhileGrowing()
+	{
+		store.storeData("s1", 1, data(100, 1));
+		assertArrayEquals(data(100, 1), store.getData("s1", 1));
+
+		store.storeData("s1", 2, data(200, 2));
+		assertArrayEquals(data(200, 2), store.getData("s1", 2));
+		assertArrayEquals(data(100, 1), store.getData("s1", 1));
+	}
+
+	/**
+	 * Pages overwriting the beginning of the file are read from the existing mapping
+	 */
+	@Test
+	public void readAfterWrapAround()
+	{
+		for (int i = 0; i < 12; i++)
+		{
+			store.storeData("s1", i, data(100, i));
+			assertArrayEquals(data(100, i), store.getData("s1", i));
+		}
+		assertArrayEquals(data(100, 11), store.getData("s1", 11));
+	}
+}
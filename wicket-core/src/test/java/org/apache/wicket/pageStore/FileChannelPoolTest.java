@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.wicket.util.file.Files;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileChannelPool}
+ */
+public class FileChannelPoolTest extends Assert
+{
+	private File folder;
+
+	private FileChannelPool pool;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("FileChannelPoolTest", "");
+		folder.delete();
+		folder.mkdirs();
+		pool = new FileChannelPool(2);
+	}
+
+	/** */
+	@After
+	public void after()
+	{
+		pool.destroy();
+		Files.removeFolder(folder);
+	}
+
+	private String fileName(String name)
+	{
+		return new File(folder, name).getAbsolutePath();
+	}
+
+	/**
+	 * A returned channel is reused for the same file
+	 */
+	@Test
+	public void reuse()
+	{
+		FileChannel channel = pool.getFileChannel(fileName("a"), true);
+		assertNotNull(channel);
+		pool.returnFileChannel(channel);
+
+		assertSame(channel, pool.getFileChannel(fileName("a"), false));
+		pool.returnFileChannel(channel);
+
+		assertEquals(1, pool.getMisses());
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getOpenChannels());
+	}
+
+	/**
+	 * No file is created unless asked for
+	 */
+	@Test
+	public void noCreate()
+	{
+		assertNull(pool.getFileChannel(fileName("missing"), false));
+		assertFalse(new File(fileName("missing")).exists());
+		assertEquals(0, pool.getOpenChannels());
+	}
+
+	/**
+	 * The least recently used idle channel is closed when the capacity is exceeded
+	 */
+	@Test
+	public void evictLeastRecentlyUsed()
+	{
+		FileChannel a = pool.getFileChannel(fileName("a"), true);
+		pool.returnFileChannel(a);
+		FileChannel b = pool.getFileChannel(fileName("b"), true);
+		pool.returnFileChannel(b);
+
+		// touch 'a' so that 'b' becomes the eldest
+		pool.returnFileChannel(pool.getFileChannel(fileName("a"), false));
+
+		FileChannel c = pool.getFileChannel(fileName("c"), true);
+		pool.returnFileChannel(c);
+
+		assertEquals(1, pool.getEvictions());
+		assertEquals(2, pool.getOpenChannels());
+		assertTrue(a.isOpen());
+		assertFalse(b.isOpen());
+		assertTrue(c.isOpen());
+	}
+
+	/**
+	 * Channels in use are not closed, neither by eviction nor by an explicit close
+	 */
+	@Test
+	public void channelsInUseStayOpen()
+	{
+		FileChannel a = pool.getFileChannel(fileName("a"), true);
+		FileChannel b = pool.getFileChannel(fileName("b"), true);
+		FileChannel c = pool.getFileChannel(fileName("c"), true);
+		assertEquals(3, pool.getOpenChannels());
+		assertEquals(0, pool.getEvictions());
+
+		pool.closeFileChannel(fileName("a"));
+		assertTrue(a.isOpen());
+
+		pool.returnFileChannel(a);
+		assertFalse(a.isOpen());
+
+		pool.returnFileChannel(b);
+		pool.returnFileChannel(c);
+		assertEquals(2, pool.getOpenChannels());
+		assertTrue(b.isOpen());
+		assertTrue(c.isOpen());
+	}
+
+	/**
+	 * A mapping is kept with its channel, renewed when the file grew and dropped when the channel
+	 * is evicted
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void mapping() throws IOException
+	{
+		FileChannel a = pool.getFileChannel(fileName("a"), true);
+		a.write(ByteBuffer.wrap(new byte[] { 1, 2 }), 0);
+		ByteBuffer mapping = pool.getMapping(a, 2);
+		assertEquals(2, mapping.capacity());
+		assertSame(mapping, pool.getMapping(a, 1));
+		assertNull(pool.getMapping(a, 3));
+
+		a.write(ByteBuffer.wrap(new byte[] { 3 }), 2);
+		mapping = pool.getMapping(a, 3);
+		assertEquals(3, mapping.get(2));
+		pool.returnFileChannel(a);
+
+		assertSame(mapping, pool.getMapping(pool.getFileChannel(fileName("a"), false), 3));
+		pool.returnFileChannel(a);
+
+		// evict a
+		pool.returnFileChannel(pool.getFileChannel(fileName("b"), true));
+		pool.returnFileChannel(pool.getFileChannel(fileName("c"), true));
+		assertFalse(a.isOpen());
+
+		a = pool.getFileChannel(fileName("a"), false);
+		assertNotSame(mapping, pool.getMapping(a, 3));
+		pool.returnFileChannel(a);
+	}
+}
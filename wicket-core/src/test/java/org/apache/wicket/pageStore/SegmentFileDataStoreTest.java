@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.pageStore;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.wicket.util.file.Files;
+import org.apache.wicket.util.lang.Bytes;
+import org.apache.wicket.util.time.Duration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SegmentFileDataStore}
+ */
+public class SegmentFileDataStoreTest extends Assert
+{
+	private File folder;
+
+	private SegmentFileDataStore store;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		folder = File.createTempFile("SegmentFileDataStoreTest", "");
+		folder.delete();
+		folder.mkdirs();
+		store = newStore();
+	}
+
+	/** */
+	@After
+	public void after()
+	{
+		store.destroy();
+		Files.removeFolder(folder);
+	}
+
+	private SegmentFileDataStore newStore()
+	{
+		return new SegmentFileDataStore("test", folder, Bytes.bytes(1000), Bytes.bytes(100),
+			Duration.ONE_HOUR);
+	}
+
+	private static byte[] data(int length, int value)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			data[i] = (byte)value;
+		}
+		return data;
+	}
+
+	/**
+	 * Stored pages can be read back until they are removed
+	 */
+	@Test
+	public void storeGetRemove()
+	{
+		store.storeData("s1", 1, data(30, 1));
+		store.storeData("s1", 2, data(30, 2));
+		store.storeData("s2", 1, data(30, 3));
+
+		assertArrayEquals(data(30, 1), store.getData("s1", 1));
+		assertArrayEquals(data(30, 2), store.getData("s1", 2));
+		assertArrayEquals(data(30, 3), store.getData("s2", 1));
+		assertNull(store.getData("s2", 2));
+
+		store.removeData("s1", 1);
+		assertNull(store.getData("s1", 1));
+
+		store.removeData("s2");
+		assertNull(store.getData("s2", 1));
+		assertArrayEquals(data(30, 2), store.getData("s1", 2));
+		assertEquals(30, store.getLiveBytes());
+	}
+
+	/**
+	 * Pages which don't fit into the segment size get a segment of their own
+	 */
+	@Test
+	public void largePage()
+	{
+		store.storeData("s1", 1, data(250, 1));
+		assertArrayEquals(data(250, 1), store.getData("s1", 1));
+	}
+
+	/**
+	 * The oldest pages of a session are dropped when the session gets too big
+	 */
+	@Test
+	public void maxSizePerSession()
+	{
+		for (int i = 0; i < 11; i++)
+		{
+			store.storeData("s1", i, data(100, i));
+		}
+		assertNull(store.getData("s1", 0));
+		assertArrayEquals(data(100, 1), store.getData("s1", 1));
+		assertArrayEquals(data(100, 10), store.getData("s1", 10));
+		assertEquals(1000, store.getLiveBytes());
+	}
+
+	/**
+	 * Compaction moves the remaining pages and deletes the sparse segments
+	 */
+	@Test
+	public void compact()
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			store.storeData("s" + i, 1, data(40, i));
+		}
+		for (int i = 1; i < 10; i++)
+		{
+			store.removeData("s" + i);
+		}
+		assertEquals(5, store.getSegmentCount());
+
+		store.compact();
+
+		// the first segment has been moved into a new one, the last one is no longer current
+		assertEquals(2, store.getSegmentCount());
+		assertEquals(40, store.getLiveBytes());
+		assertArrayEquals(data(40, 0), store.getData("s0", 1));
+
+		store.compact();
+		assertEquals(1, store.getSegmentCount());
+	}
+
+	/**
+	 * The index survives a restart
+	 */
+	@Test
+	public void restart()
+	{
+		store.storeData("s1", 1, data(30, 1));
+		store.destroy();
+
+		store = newStore();
+		assertArrayEquals(data(30, 1), store.getData("s1", 1));
+
+		store.storeData("s1", 2, data(30, 2));
+		assertArrayEquals(data(30, 2), store.getData("s1", 2));
+	}
+
+	/**
+	 * The pages of the segments are known again after a restart, so they can be compacted
+	 */
+	@Test
+	public void compactAfterRestart()
+	{
+		store.storeData("s1", 1, data(40, 1));
+		store.storeData("s2", 1, data(40, 2));
+		store.removeData("s2");
+		store.destroy();
+
+		store = newStore();
+		store.compact();
+
+		// the page has been moved out of the first segment, which has been deleted
+		assertFalse(new File(folder, "test-segmentstore/segment-0").exists());
+		assertEquals(1, store.getSegmentCount());
+		assertEquals(40, store.getLiveBytes());
+		assertArrayEquals(data(40, 1), store.getData("s1", 1));
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.protocol.http;
+
+import org.apache.wicket.MarkupContainer;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.html.WebPage;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.mock.MockWebResponse;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.settings.IRequestCycleSettings.RenderStrategy;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StreamingWebResponse}
+ */
+public class StreamingWebResponseTest extends WicketTestCase
+{
+	@Override
+	protected WebApplication newApplication()
+	{
+		// response filters of the development mode prevent streaming
+		return new MockApplication()
+		{
+			@Override
+			public RuntimeConfigurationType getConfigurationType()
+			{
+				return RuntimeConfigurationType.DEPLOYMENT;
+			}
+		};
+	}
+
+	/**
+	 * The text is written and flushed once the threshold has been reached.
+	 */
+	@Test
+	public void flushesAtThreshold()
+	{
+		final int[] flushes = { 0 };
+		MockWebResponse original = new MockWebResponse()
+		{
+			@Override
+			public void flush()
+			{
+				flushes[0]++;
+			}
+		};
+		StreamingWebResponse response = new StreamingWebResponse(original, 10);
+
+		response.write("12345");
+		assertNull(original.getTextResponse());
+		assertFalse(response.isFlushed());
+
+		response.write("67890");
+		assertEquals("1234567890", original.getTextResponse().toString());
+		assertEquals(1, flushes[0]);
+		assertTrue(response.isFlushed());
+
+		response.write("ab");
+		response.close();
+		assertEquals("1234567890ab", original.getTextResponse().toString());
+		assertEquals(1, flushes[0]);
+	}
+
+	/**
+	 * A response can only be reset until it has been flushed.
+	 */
+	@Test
+	public void resetBeforeFlushOnly()
+	{
+		MockWebResponse original = new MockWebResponse();
+		StreamingWebResponse response = new StreamingWebResponse(original, 100);
+
+		response.write("discarded");
+		response.reset();
+		response.write("kept");
+		response.flush();
+		assertEquals("kept", original.getTextResponse().toString());
+
+		try
+		{
+			response.reset();
+			fail("reset after flush");
+		}
+		catch (IllegalStateException expected)
+		{
+		}
+	}
+
+	/**
+	 * A streamed page renders the same as a buffered one.
+	 */
+	@Test
+	public void streamedPageEqualsBufferedPage()
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_RENDER);
+
+		tester.startPage(StreamedPage.class);
+		String buffered = tester.getLastResponseAsString();
+
+		tester.getApplication().getRequestCycleSettings().setStreamingFlushThreshold(16);
+		tester.startPage(StreamedPage.class);
+		assertEquals(buffered, tester.getLastResponseAsString());
+		assertTrue(buffered, buffered.contains("streamed label"));
+	}
+
+	/**
+	 * An exception after the first flush truncates the page.
+	 */
+	@Test
+	public void exceptionAfterFlushTruncatesPage()
+	{
+		tester.getApplication().getRequestCycleSettings().setRenderStrategy(
+			RenderStrategy.ONE_PASS_RENDER);
+		tester.getApplication().getRequestCycleSettings().setStreamingFlushThreshold(16);
+
+		tester.startPage(FailingPage.class);
+		String output = tester.getLastResponseAsString();
+		assertTrue(output, output.startsWith("<html><head><title>Failing</title>"));
+		assertFalse(output, output.contains("</body>"));
+	}
+
+	/**
+	 * A page with a head and a label
+	 */
+	public static class StreamedPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public StreamedPage()
+		{
+			add(new Label("label", "streamed label"));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head><title>Streamed</title></head><body><p>Some text before the label</p>"
+					+ "<span wicket:id='label'></span><p>Some text after the label</p></body></html>");
+		}
+	}
+
+	/**
+	 * A page failing after its head has been flushed
+	 */
+	public static class FailingPage extends WebPage implements IMarkupResourceStreamProvider
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Construct.
+		 */
+		public FailingPage()
+		{
+			add(new Label("label", new AbstractReadOnlyModel<String>()
+			{
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public String getObject()
+				{
+					throw new IllegalStateException("failing label");
+				}
+			}));
+		}
+
+		@Override
+		public IResourceStream getMarkupResourceStream(MarkupContainer container,
+			Class<?> containerClass)
+		{
+			return new StringResourceStream(
+				"<html><head><title>Failing</title></head><body><span wicket:id='label'></span></body></html>");
+		}
+	}
+}
@@ -23,10 +23,12 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.wicket.markup.RawMarkup;
 import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
 import org.apache.wicket.util.time.Time;
 import org.junit.Assert;
@@ -145,4 +147,33 @@ public class ServletWebResponseTest extends Assert
 		webResponse.sendRedirect(badUrl);
 		assertEquals(httpServletResponse.getRedirectLocation(), "bad  url  ");
 	}
+
+	/**
+	 * Pre-encoded markup is written as bytes in the order of the other output
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void preEncodedMarkup() throws Exception
+	{
+		ServletWebRequest webRequest = mock(ServletWebRequest.class);
+		MockHttpServletResponse httpServletResponse = new MockHttpServletResponse(null);
+		httpServletResponse.setCharacterEncoding("UTF-8");
+
+		ServletWebResponse webResponse = new ServletWebResponse(webRequest, httpServletResponse);
+		webResponse.setPreEncodedMarkup(true);
+
+		RawMarkup markup = new RawMarkup("<p>\u00e4</p>");
+		webResponse.write("<html>\u00fc");
+		webResponse.write(markup);
+		webResponse.write("\u00f6");
+		webResponse.write(markup);
+		webResponse.write("</html>".getBytes("UTF-8"));
+		webResponse.flush();
+
+		assertEquals("<html>\u00fc<p>\u00e4</p>\u00f6<p>\u00e4</p></html>", new String(
+			httpServletResponse.getBinaryContent(), "UTF-8"));
+		assertSame(markup.getBytes(Charset.forName("UTF-8")),
+			markup.getBytes(Charset.forName("UTF-8")));
+	}
 }
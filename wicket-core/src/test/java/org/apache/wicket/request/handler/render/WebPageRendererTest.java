@@ -109,6 +109,42 @@ public class WebPageRendererTest
 		verify(response, never()).sendRedirect(anyString());
 	}
 
+	/**
+	 * Tests that with {@link IRequestCycleSettings.RenderStrategy#ONE_PASS_RENDER} and a streaming
+	 * flush threshold the page is rendered directly into the response
+	 */
+	@Test
+	public void testOnePassRenderStreaming()
+	{
+
+		PageRenderer renderer = new TestPageRenderer(handler)
+		{
+			@Override
+			protected boolean isOnePassRender()
+			{
+				return true;
+			}
+
+			@Override
+			protected int getStreamingFlushThreshold(boolean isAjax)
+			{
+				return 1024;
+			}
+		};
+
+		when(urlRenderer.getBaseUrl()).thenReturn(Url.parse("base"));
+
+		when(requestCycle.mapUrlFor(eq(handler))).thenReturn(Url.parse("base/a"));
+
+		when(request.shouldPreserveClientUrl()).thenReturn(false);
+
+		renderer.respond(requestCycle);
+
+		verify(page).renderPage();
+		verify(response, never()).write(any(byte[].class));
+		verify(response, never()).sendRedirect(anyString());
+	}
+
 	/**
 	 * Tests that even when {@link IRequestCycleSettings.RenderStrategy#ONE_PASS_RENDER} is
 	 * configured but the {@link RedirectPolicy} says that it needs to redirect it will redirect.
@@ -755,6 +791,12 @@ public class WebPageRendererTest
 			return false;
 		}
 
+		@Override
+		protected int getStreamingFlushThreshold(boolean isAjax)
+		{
+			return 0;
+		}
+
 		@Override
 		protected boolean isRedirectToBuffer()
 		{
@@ -24,6 +24,7 @@ import org.apache.wicket.request.handler.PageProvider;
 import org.apache.wicket.request.handler.RenderPageRequestHandler;
 import org.apache.wicket.request.handler.resource.ResourceReferenceRequestHandler;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.util.IProvider;
 import org.apache.wicket.util.tester.DummyHomePage;
 import org.apache.wicket.util.tester.WicketTester;
 import org.junit.After;
@@ -243,4 +244,71 @@ public class CryptoMapperTest extends AbstractMapperTest
 		assertEquals(getClass(), handler.getResourceReference().getScope());
 		assertEquals("less-crypt.txt", handler.getResourceReference().getName());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Cached urls give the same results as encrypting and decrypting them
+	 */
+	@Test
+	public void urlCache()
+	{
+		final CryptedUrlCache cache = new CryptedUrlCache(10);
+		mapper.setUrlCacheProvider(new IProvider<CryptedUrlCache>()
+		{
+			@Override
+			public CryptedUrlCache get()
+			{
+				return cache;
+			}
+		});
+
+		RenderPageRequestHandler renderPageRequestHandler = new RenderPageRequestHandler(
+			new PageProvider(DummyHomePage.class, new PageParameters()));
+		assertEquals(ENCRYPTED_URL, mapper.mapHandler(renderPageRequestHandler).toString());
+		assertEquals(ENCRYPTED_URL, mapper.mapHandler(renderPageRequestHandler).toString());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// the encrypted url was cached when it was created
+		IRequestHandler requestHandler = mapper.mapRequest(getRequest(Url.parse(ENCRYPTED_URL)));
+		assertEquals(DummyHomePage.class,
+			((RenderPageRequestHandler)requestHandler).getPageClass());
+		assertEquals(2, cache.getHits());
+
+		// modified segments are still detected
+		String encrypted = "X5EA-RpmG5-t7GSByiSposVVWJ28fpoU-XgFo7bOPITjbCTT6mLI5l-7b-WJucu-Kc8StVsu-PL5htkbIxuxphv3mYi5-mmkCvkxPsriihj5VPg3naw2fA/X5E87/b-W6b/l-795/Juc97/mG5fa";
+		String modified = "X5EA-RpmG5-t7GSByiSposVVWJ28fpoU-XgFo7bOPITjbCTT6mLI5l-7b-WJucu-Kc8StVsu-PL5htkbIxuxphv3mYi5-mmkCvkxPsriihj5VPg3naw2fA/X5E87/b-W6b/l-795/Juc97/modified-crypt.txt";
+		mapper.mapRequest(getRequest(Url.parse(encrypted)));
+		ResourceReferenceRequestHandler handler = (ResourceReferenceRequestHandler)mapper.mapRequest(getRequest(Url.parse(modified)));
+		assertEquals("crypt/modified-crypt.txt", handler.getResourceReference().getName());
+		assertEquals(3, cache.getHits());
+		assertEquals(2, cache.size());
+
+		assertNull(mapper.mapRequest(getRequest(Url.parse("style.css"))));
+		assertEquals(2, cache.size());
+	}
+
+	/**
+	 * The least recently used urls are evicted, in both directions together
+	 */
+	@Test
+	public void urlCacheEviction()
+	{
+		CryptedUrlCache cache = new CryptedUrlCache(2);
+		for (int i = 0; i < 3; i++)
+		{
+			cache.put(new CryptedUrlCache.CachedUrl("plain" + i, "encrypted" + i, new String[0]));
+		}
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.getByPlainUrl("plain0"));
+		assertNull(cache.getByEncryptedUrl("encrypted0"));
+		assertNotNull(cache.getByPlainUrl("plain2"));
+
+		// a lookup of the encrypted url keeps the pair from being evicted
+		assertNotNull(cache.getByEncryptedUrl("encrypted1"));
+		cache.put(new CryptedUrlCache.CachedUrl("plain3", "encrypted3", new String[0]));
+		assertNotNull(cache.getByPlainUrl("plain1"));
+		assertNull(cache.getByPlainUrl("plain2"));
+		assertNull(cache.getByEncryptedUrl("encrypted2"));
+	}
+}
@@ -766,4 +766,34 @@ public class MountedMapperTest extends AbstractMapperTest
 		Url url = optionPlaceholderEncoder.mapHandler(handler);
 		assertEquals("some/path/p2/p3/i1/i2?a=b&b=c", url.toString());
 	}
+
+	/**
+	 * Subclasses which change the matching of urls are not indexed
+	 */
+	@Test
+	public void fixedLeadingSegments()
+	{
+		assertArrayEquals(new String[] { "some", "mount" },
+			new MountedMapper("/some/mount/${param}", MockPage.class).getFixedLeadingSegments());
+		assertArrayEquals(new String[] { "some", "mount" }, new MountedMapper("/some/mount",
+			MockPage.class)
+		{
+			@Override
+			protected boolean redirectFromHomePage()
+			{
+				return false;
+			}
+		}.getFixedLeadingSegments());
+
+		MountedMapper alias = new MountedMapper("/some/mount", MockPage.class)
+		{
+			@Override
+			protected boolean urlStartsWith(Url url, String... segments)
+			{
+				return super.urlStartsWith(url, segments) ||
+					super.urlStartsWith(url, "alias");
+			}
+		};
+		assertNull(alias.getFixedLeadingSegments());
+	}
 }
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.protocol.http.mock.MockHttpServletResponse;
+import org.apache.wicket.request.resource.AbstractResource.ByteRange;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.junit.Test;
+
+/**
+ * Tests entity tags and ranges of resources
+ */
+public class ByteRangeTest extends WicketTestCase
+{
+	private static final String CONTENT = "Hello, World!";
+
+	/**
+	 * Tests the parsing of the Range header
+	 */
+	@Test
+	public void parseRanges()
+	{
+		assertRanges("[0+5]", "bytes=0-4");
+		assertRanges("[10+3]", "bytes=-3");
+		assertRanges("[5+8]", "bytes=5-");
+		assertRanges("[0+13]", "bytes=0-100");
+		assertRanges("[0+2, 4+2]", "bytes=0-1, 4-5");
+		assertRanges("[0+2]", "bytes=0-1,20-30");
+		assertRanges("[]", "bytes=20-30");
+		assertRanges("[]", "bytes=-0");
+
+		// malformed or not servable in one pass
+		assertNull(AbstractResource.parseRanges("items=0-1", CONTENT.length()));
+		assertNull(AbstractResource.parseRanges("bytes=a-b", CONTENT.length()));
+		assertNull(AbstractResource.parseRanges("bytes=5-4", CONTENT.length()));
+		assertNull(AbstractResource.parseRanges("bytes=4-5,0-1", CONTENT.length()));
+		assertNull(AbstractResource.parseRanges("bytes=0-5,4-6", CONTENT.length()));
+	}
+
+	/**
+	 * A single range is sent as is
+	 */
+	@Test
+	public void singleRange()
+	{
+		tester.getRequest().addHeader("Range", "bytes=7-11");
+		tester.startResource(newResource());
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		assertEquals("bytes", response.getHeader("Accept-Ranges"));
+		assertEquals("bytes 7-11/13", response.getHeader("Content-Range"));
+		assertEquals("5", response.getHeader("Content-Length"));
+		assertEquals("World", tester.getLastResponseAsString());
+	}
+
+	/**
+	 * Multiple ranges are sent as multipart/byteranges
+	 */
+	@Test
+	public void multipleRanges()
+	{
+		tester.getRequest().addHeader("Range", "bytes=0-4,-6");
+		tester.startResource(newResource());
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+		String contentType = response.getContentType();
+		assertTrue(contentType, contentType.startsWith("multipart/byteranges; boundary="));
+		String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+		String expected = "\r\n--" + boundary + "\r\nContent-Type: text\r\n" +
+			"Content-Range: bytes 0-4/13\r\n\r\nHello" + "\r\n--" + boundary +
+			"\r\nContent-Type: text\r\nContent-Range: bytes 7-12/13\r\n\r\nWorld!" + "\r\n--" +
+			boundary + "--\r\n";
+		assertEquals(expected, tester.getLastResponseAsString());
+		assertEquals(String.valueOf(expected.length()), response.getHeader("Content-Length"));
+	}
+
+	/**
+	 * Ranges beyond the data are not satisfiable
+	 */
+	@Test
+	public void unsatisfiableRange()
+	{
+		tester.getRequest().addHeader("Range", "bytes=20-");
+		tester.startResource(newResource());
+
+		MockHttpServletResponse response = tester.getLastResponse();
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+		assertEquals("bytes */13", response.getHeader("Content-Range"));
+		assertEquals("", tester.getLastResponseAsString());
+	}
+
+	/**
+	 * The whole data is sent if the If-Range header does not match the current version
+	 */
+	@Test
+	public void ifRange()
+	{
+		ResourceStreamResource resource = new ResourceStreamResource(new StringResourceStream(
+			CONTENT))
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ResourceResponse newResourceResponse(Attributes attributes)
+			{
+				ResourceResponse data = super.newResourceResponse(attributes);
+				data.setETag("version-1");
+				return data;
+			}
+		};
+		tester.startResource(resource);
+		String eTag = tester.getLastResponse().getHeader("ETag");
+		assertEquals("\"version-1\"", eTag);
+
+		tester.getRequest().addHeader("Range", "bytes=7-11");
+		tester.getRequest().addHeader("If-Range", eTag);
+		tester.startResource(resource);
+		assertEquals("World", tester.getLastResponseAsString());
+
+		tester.getRequest().addHeader("Range", "bytes=7-11");
+		tester.getRequest().addHeader("If-Range", "\"outdated\"");
+		tester.startResource(resource);
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(CONTENT, tester.getLastResponseAsString());
+	}
+
+	/**
+	 * The entity tag derived from the modification time and the length is weak, so it can not be
+	 * used to request ranges
+	 */
+	@Test
+	public void weakETag()
+	{
+		ResourceStreamResource resource = newResource();
+		tester.startResource(resource);
+		String eTag = tester.getLastResponse().getHeader("ETag");
+		assertTrue(eTag, eTag.startsWith("W/\""));
+
+		tester.getRequest().addHeader("Range", "bytes=7-11");
+		tester.getRequest().addHeader("If-Range", eTag);
+		tester.startResource(resource);
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(CONTENT, tester.getLastResponseAsString());
+
+		tester.getRequest().addHeader("Range", "bytes=7-11");
+		tester.getRequest().addHeader("If-Range", eTag.substring(2));
+		tester.startResource(resource);
+		assertEquals(CONTENT, tester.getLastResponseAsString());
+	}
+
+	/**
+	 * The data is not sent again if the entity tag matches
+	 */
+	@Test
+	public void ifNoneMatch()
+	{
+		ResourceStreamResource resource = newResource();
+		tester.startResource(resource);
+		String eTag = tester.getLastResponse().getHeader("ETag");
+
+		tester.getRequest().addHeader("If-None-Match", "\"other\", " + eTag);
+		tester.startResource(resource);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, tester.getLastResponse().getStatus());
+		assertEquals(eTag, tester.getLastResponse().getHeader("ETag"));
+
+		tester.getRequest().addHeader("If-None-Match", "\"other\"");
+		tester.startResource(resource);
+		assertEquals(HttpServletResponse.SC_OK, tester.getLastResponse().getStatus());
+		assertEquals(CONTENT, tester.getLastResponseAsString());
+	}
+
+	private static ResourceStreamResource newResource()
+	{
+		return new ResourceStreamResource(new StringResourceStream(CONTENT));
+	}
+
+	private static void assertRanges(String expected, String header)
+	{
+		List<ByteRange> ranges = AbstractResource.parseRanges(header, CONTENT.length());
+		assertEquals(expected, String.valueOf(ranges));
+	}
+}
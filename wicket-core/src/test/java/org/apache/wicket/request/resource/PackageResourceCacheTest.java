@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.javascript.IJavaScriptCompressor;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Time;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PackageResourceCache}
+ */
+public class PackageResourceCacheTest extends WicketTestCase
+{
+	/**
+	 * The data is processed once and served from the cache afterwards
+	 */
+	@Test
+	public void processedOnce()
+	{
+		CountingResource resource = new CountingResource();
+
+		tester.startResource(resource);
+		assertEquals("TEST", tester.getLastResponseAsString());
+		tester.startResource(resource);
+		assertEquals("TEST", tester.getLastResponseAsString());
+
+		assertEquals(1, resource.processed);
+		assertEquals(1, PackageResourceCache.get().size());
+		assertEquals(4, PackageResourceCache.get().getWeight());
+	}
+
+	/**
+	 * The data of subclasses overriding the processing is not cached unless they opt in
+	 */
+	@Test
+	public void overriddenProcessing()
+	{
+		final int[] processed = { 0 };
+		JavaScriptPackageResource resource = new JavaScriptPackageResource(
+			PackageResourceTest.class, "packaged1.txt", null, null, null)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected byte[] processResponse(Attributes attributes, byte[] bytes)
+			{
+				processed[0]++;
+				return super.processResponse(attributes, bytes);
+			}
+		};
+
+		tester.startResource(resource);
+		tester.startResource(resource);
+
+		assertEquals(2, processed[0]);
+		assertEquals(0, PackageResourceCache.get().size());
+	}
+
+	/**
+	 * No data is cached with a maximum weight of 0
+	 */
+	@Test
+	public void disabled()
+	{
+		tester.getApplication().getResourceSettings().setPackageResourceCacheMaxWeight(0);
+		CountingResource resource = new CountingResource();
+
+		tester.startResource(resource);
+		tester.startResource(resource);
+
+		assertEquals(2, resource.processed);
+		assertNull(PackageResourceCache.get());
+	}
+
+	/**
+	 * Compressed and uncompressed data are cached separately
+	 */
+	@Test
+	public void compression()
+	{
+		tester.getApplication().getResourceSettings().setJavaScriptCompressor(
+			new IJavaScriptCompressor()
+			{
+				@Override
+				public String compress(String original)
+				{
+					return "COMPRESSED";
+				}
+			});
+		CountingResource resource = new CountingResource();
+
+		tester.startResource(resource);
+		assertEquals("COMPRESSED", tester.getLastResponseAsString());
+
+		resource.setCompress(false);
+		tester.startResource(resource);
+		assertEquals("TEST", tester.getLastResponseAsString());
+
+		assertEquals(2, resource.processed);
+		assertEquals(2, PackageResourceCache.get().size());
+	}
+
+	/**
+	 * Data compressed by different compressors is cached separately
+	 */
+	@Test
+	public void compressor()
+	{
+		tester.getApplication().getResourceSettings().setJavaScriptCompressor(
+			new IJavaScriptCompressor()
+			{
+				@Override
+				public String compress(String original)
+				{
+					return "FIRST";
+				}
+			});
+		CountingResource resource = new CountingResource();
+		tester.startResource(resource);
+		assertEquals("FIRST", tester.getLastResponseAsString());
+
+		tester.getApplication().getResourceSettings().setJavaScriptCompressor(
+			new IJavaScriptCompressor()
+			{
+				@Override
+				public String compress(String original)
+				{
+					return "SECOND";
+				}
+			});
+		tester.startResource(resource);
+		assertEquals("SECOND", tester.getLastResponseAsString());
+
+		assertEquals(2, resource.processed);
+		assertEquals(2, PackageResourceCache.get().size());
+	}
+
+	/**
+	 * In development mode modified resources are processed again
+	 */
+	@Test
+	public void modified()
+	{
+		final StringResourceStream[] stream = { newStream("first", 1000) };
+		CountingResource resource = new CountingResource()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public IResourceStream getResourceStream()
+			{
+				return stream[0];
+			}
+		};
+
+		tester.startResource(resource);
+		assertEquals("first", tester.getLastResponseAsString());
+		tester.startResource(resource);
+		assertEquals("first", tester.getLastResponseAsString());
+		assertEquals(1, resource.processed);
+
+		stream[0] = newStream("second", 2000);
+		tester.startResource(resource);
+		assertEquals("second", tester.getLastResponseAsString());
+		assertEquals(2, resource.processed);
+	}
+
+	private static StringResourceStream newStream(String content, long lastModified)
+	{
+		StringResourceStream stream = new StringResourceStream(content);
+		stream.setLastModified(Time.millis(lastModified));
+		return stream;
+	}
+
+	private static class CountingResource extends JavaScriptPackageResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int processed;
+
+		private CountingResource()
+		{
+			super(PackageResourceTest.class, "packaged1.txt", null, null, null);
+		}
+
+		@Override
+		protected byte[] processResponse(Attributes attributes, byte[] bytes)
+		{
+			processed++;
+			return super.processResponse(attributes, bytes);
+		}
+
+		@Override
+		protected boolean isProcessedDataCacheable()
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.settings.def.ResourceSettings;
+import org.apache.wicket.util.io.IOUtils;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.time.Time;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the gzip and deflate content encoding of static resources
+ */
+public class ResourceCompressionTest extends WicketTestCase
+{
+	private static final String CONTENT;
+
+	static
+	{
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 20; i++)
+		{
+			content.append("var compressible = 'content';\n");
+		}
+		CONTENT = content.toString();
+	}
+
+	/**
+	 * Enables the compression of the responses
+	 */
+	@Before
+	public void enableCompression()
+	{
+		tester.getApplication().getResourceSettings().setUseResponseCompression(true);
+	}
+
+	/**
+	 * Tests the negotiation of the content encoding
+	 */
+	@Test
+	public void negotiateContentEncoding()
+	{
+		assertNull(AbstractResource.negotiateContentEncoding(null));
+		assertNull(AbstractResource.negotiateContentEncoding(""));
+		assertNull(AbstractResource.negotiateContentEncoding("identity"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("gzip, deflate"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("deflate, GZIP"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("x-gzip"));
+		assertEquals("deflate", AbstractResource.negotiateContentEncoding("gzip;q=0, deflate"));
+		assertEquals("gzip", AbstractResource.negotiateContentEncoding("*"));
+		assertEquals("deflate", AbstractResource.negotiateContentEncoding("gzip; q=0.0, *;q=0.5"));
+		assertNull(AbstractResource.negotiateContentEncoding("*;q=0"));
+	}
+
+	/**
+	 * The resource is gzipped once and served from the cache afterwards
+	 */
+	@Test
+	public void gzip() throws IOException
+	{
+		CompressibleResource resource = new CompressibleResource();
+
+		for (int i = 0; i < 2; i++)
+		{
+			tester.getRequest().addHeader("Accept-Encoding", "gzip, deflate");
+			tester.startResource(resource);
+
+			assertEquals("gzip", tester.getLastResponse().getHeader("Content-Encoding"));
+			assertEquals("Accept-Encoding", tester.getLastResponse().getHeader("Vary"));
+			byte[] bytes = tester.getLastResponse().getBinaryContent();
+			assertEquals(String.valueOf(bytes.length),
+				tester.getLastResponse().getHeader("Content-Length"));
+			assertEquals(CONTENT, decode(new GZIPInputStream(new ByteArrayInputStream(bytes))));
+		}
+
+		// the processed data and its gzipped variant
+		assertEquals(2, PackageResourceCache.get().size());
+		assertEquals(1, resource.processed);
+	}
+
+	/**
+	 * The resource is deflated if the client does not accept gzip
+	 */
+	@Test
+	public void deflate() throws IOException
+	{
+		tester.getRequest().addHeader("Accept-Encoding", "deflate");
+		tester.startResource(new CompressibleResource());
+
+		assertEquals("deflate", tester.getLastResponse().getHeader("Content-Encoding"));
+		byte[] bytes = tester.getLastResponse().getBinaryContent();
+		assertEquals(CONTENT, decode(new InflaterInputStream(new ByteArrayInputStream(bytes))));
+	}
+
+	/**
+	 * The resource is not compressed if the client does not accept it
+	 */
+	@Test
+	public void identity()
+	{
+		tester.startResource(new CompressibleResource());
+
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertEquals("Accept-Encoding", tester.getLastResponse().getHeader("Vary"));
+		assertEquals(CONTENT, tester.getLastResponseAsString());
+	}
+
+	/**
+	 * Compression is disabled by default
+	 */
+	@Test
+	public void disabledByDefault()
+	{
+		assertFalse(new ResourceSettings(tester.getApplication()).getUseResponseCompression());
+	}
+
+	/**
+	 * The resource is not compressed if compression is disabled
+	 */
+	@Test
+	public void disabled()
+	{
+		tester.getApplication().getResourceSettings().setUseResponseCompression(false);
+		tester.getRequest().addHeader("Accept-Encoding", "gzip");
+		tester.startResource(new CompressibleResource());
+
+		assertNull(tester.getLastResponse().getHeader("Content-Encoding"));
+		assertNull(tester.getLastResponse().getHeader("Vary"));
+		assertEquals(CONTENT, tester.getLastResponseAsString());
+	}
+
+	private static String decode(InputStream in) throws IOException
+	{
+		try
+		{
+			return new String(IOUtils.toByteArray(in), "UTF-8");
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static class CompressibleResource extends PackageResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int processed;
+
+		private CompressibleResource()
+		{
+			super(PackageResourceTest.class, "packaged1.txt", null, null, null);
+		}
+
+		@Override
+		public IResourceStream getResourceStream()
+		{
+			StringResourceStream stream = new StringResourceStream(CONTENT, "text/javascript");
+			stream.setLastModified(Time.millis(1000));
+			return stream;
+		}
+
+		@Override
+		protected byte[] processResponse(Attributes attributes, byte[] bytes)
+		{
+			processed++;
+			return super.processResponse(attributes, bytes);
+		}
+
+		@Override
+		protected boolean isProcessedDataCacheable()
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.markup.html.PackageResourceTest;
+import org.apache.wicket.request.resource.caching.IStaticCacheableResource;
+import org.apache.wicket.request.resource.caching.version.IResourceVersion;
+import org.apache.wicket.request.resource.caching.version.ManifestResourceVersion;
+import org.apache.wicket.util.time.Time;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ResourceManifest}
+ */
+public class ResourceManifestTest extends WicketTestCase
+{
+	private File file;
+
+	/**
+	 * @throws IOException
+	 */
+	@Before
+	public void before() throws IOException
+	{
+		file = File.createTempFile("wicket-manifest", ".bin");
+		file.delete();
+	}
+
+	/**
+	 * 
+	 */
+	@After
+	public void after()
+	{
+		file.delete();
+	}
+
+	/**
+	 * Entries are stored to and loaded from the file and validated against the last
+	 * modification time
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void storeAndLoad() throws IOException
+	{
+		ResourceManifest manifest = ResourceManifest.load(file);
+		assertEquals(0, manifest.size());
+
+		manifest.put("a", Time.millis(1000), new byte[] { 1, 2, 3 });
+		manifest.put("b", null, new byte[] { 4 });
+		assertTrue(manifest.isModified());
+		manifest.store();
+		assertFalse(manifest.isModified());
+
+		ResourceManifest loaded = ResourceManifest.load(file);
+		assertEquals(1, loaded.size());
+		assertFalse(loaded.isModified());
+		assertEquals(3, loaded.get("a", Time.millis(1000)).length);
+		assertNull(loaded.get("a", Time.millis(2000)));
+		assertNull(loaded.get("a", null));
+		assertNull(loaded.get("b", Time.millis(1000)));
+	}
+
+	/**
+	 * Larger data is not held in memory but read from the file, which is appended to when data is
+	 * put and compacted when the manifest is stored
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void dataReadFromFile() throws IOException
+	{
+		byte[] large = new byte[10000];
+		large[9999] = 7;
+
+		ResourceManifest manifest = ResourceManifest.load(file);
+		manifest.put("large", Time.millis(1000), large);
+		manifest.put("large", Time.millis(2000), large);
+		manifest.put("small", Time.millis(1000), new byte[] { 1 });
+		assertEquals(7, manifest.get("large", Time.millis(2000))[9999]);
+		assertNull(manifest.get("large", Time.millis(1000)));
+
+		// appended records are found without storing, e.g. after a crash
+		ResourceManifest loaded = ResourceManifest.load(file);
+		assertEquals(2, loaded.size());
+		assertEquals(7, loaded.get("large", Time.millis(2000))[9999]);
+
+		long length = file.length();
+		manifest.store();
+		assertTrue(file.length() < length);
+		assertEquals(7, manifest.get("large", Time.millis(2000))[9999]);
+		assertEquals(1, manifest.get("small", Time.millis(1000))[0]);
+
+		loaded = ResourceManifest.load(file);
+		assertEquals(2, loaded.size());
+		assertEquals(10000, loaded.get("large", Time.millis(2000)).length);
+		loaded.store();
+	}
+
+	/**
+	 * Entries which have not been used since the manifest has been loaded are dropped when it is
+	 * stored
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void unusedEntriesDropped() throws IOException
+	{
+		ResourceManifest manifest = ResourceManifest.load(file);
+		manifest.put("used", Time.millis(1000), new byte[] { 1 });
+		manifest.put("outdated", Time.millis(1000), new byte[] { 2 });
+		manifest.put("unused", Time.millis(1000), new byte[] { 3 });
+		manifest.store();
+
+		ResourceManifest loaded = ResourceManifest.load(file);
+		assertEquals(3, loaded.size());
+		assertNotNull(loaded.get("used", Time.millis(1000)));
+		assertNull(loaded.get("outdated", Time.millis(2000)));
+		assertFalse(loaded.isModified());
+		loaded.store();
+		assertEquals(1, loaded.size());
+
+		loaded = ResourceManifest.load(file);
+		assertEquals(1, loaded.size());
+		assertEquals(1, loaded.get("used", Time.millis(1000))[0]);
+	}
+
+	/**
+	 * Only the keys of package resources are used for the manifest
+	 */
+	@Test
+	public void keyOf()
+	{
+		CountingResource resource = new CountingResource();
+		String key = ResourceManifest.keyOf(resource.getCacheKey());
+		assertNotNull(key);
+		assertEquals(key, ResourceManifest.keyOf(new CountingResource().getCacheKey()));
+		assertNotNull(ResourceManifest.keyOf(resource.getProcessedDataKey()));
+
+		assertNull(ResourceManifest.keyOf(null));
+		assertNull(ResourceManifest.keyOf("key"));
+
+		// the processed data of a resource with a custom cache key
+		resource = new CountingResource()
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Serializable getCacheKey()
+			{
+				return "custom";
+			}
+		};
+		assertNotNull(resource.getProcessedDataKey());
+		assertNull(ResourceManifest.keyOf(resource.getProcessedDataKey()));
+	}
+
+	/**
+	 * The processed data of a package resource is taken from the manifest after a restart
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void processedDataSurvivesRestart() throws IOException
+	{
+		ResourceManifest manifest = ResourceManifest.load(file);
+		tester.getApplication().getResourceSettings().setResourceManifest(manifest);
+
+		CountingResource resource = new CountingResource();
+		tester.startResource(resource);
+		assertEquals("TEST", tester.getLastResponseAsString());
+		assertEquals(1, resource.processed);
+		assertEquals(1, manifest.size());
+		manifest.store();
+
+		// simulate a restart
+		PackageResourceCache.get().clear();
+		tester.getApplication().getResourceSettings().setResourceManifest(
+			ResourceManifest.load(file));
+
+		resource = new CountingResource();
+		tester.startResource(resource);
+		assertEquals("TEST", tester.getLastResponseAsString());
+		assertEquals(0, resource.processed);
+	}
+
+	/**
+	 * Versions are taken from the manifest after a restart
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void versionSurvivesRestart() throws IOException
+	{
+		CountingVersion delegate = new CountingVersion();
+		ResourceManifest manifest = ResourceManifest.load(file);
+		ManifestResourceVersion version = new ManifestResourceVersion(manifest, delegate);
+
+		assertEquals("v1", version.getVersion(new CountingResource()));
+		assertEquals("v1", version.getVersion(new CountingResource()));
+		assertEquals(1, delegate.computed);
+		manifest.store();
+
+		// simulate a restart
+		version = new ManifestResourceVersion(ResourceManifest.load(file), delegate);
+		assertEquals("v1", version.getVersion(new CountingResource()));
+		assertEquals(1, delegate.computed);
+	}
+
+	private static class CountingVersion implements IResourceVersion
+	{
+		private int computed;
+
+		@Override
+		public String getVersion(IStaticCacheableResource resource)
+		{
+			return "v" + (++computed);
+		}
+	}
+
+	private static class CountingResource extends JavaScriptPackageResource
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int processed;
+
+		private CountingResource()
+		{
+			super(PackageResourceTest.class, "packaged1.txt", null, null, null);
+		}
+
+		@Override
+		protected byte[] processResponse(Attributes attributes, byte[] bytes)
+		{
+			processed++;
+			return super.processResponse(attributes, bytes);
+		}
+
+		@Override
+		protected boolean isProcessedDataCacheable()
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.response;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.wicket.WicketTestCase;
+import org.apache.wicket.util.string.AppendingStringBuffer;
+import org.apache.wicket.util.tester.DummyHomePage;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ResponseBufferPool}
+ */
+public class ResponseBufferPoolTest extends WicketTestCase
+{
+	/**
+	 * A released buffer is handed out again, emptied
+	 */
+	@Test
+	public void reuseAfterRelease()
+	{
+		ResponseBufferPool pool = new ResponseBufferPool();
+
+		AppendingStringBuffer chars = pool.acquireCharBuffer();
+		chars.append("content");
+		pool.release(chars);
+		AppendingStringBuffer reusedChars = pool.acquireCharBuffer();
+		assertSame(chars, reusedChars);
+		assertEquals(0, reusedChars.length());
+
+		ByteArrayOutputStream bytes = pool.acquireByteBuffer();
+		bytes.write(1);
+		pool.release(bytes);
+		ByteArrayOutputStream reusedBytes = pool.acquireByteBuffer();
+		assertSame(bytes, reusedBytes);
+		assertEquals(0, reusedBytes.size());
+
+		assertEquals(4, pool.getAcquireCount());
+		assertEquals(2, pool.getAllocationCount());
+		assertEquals(2, pool.getReuseCount());
+	}
+
+	/**
+	 * Buffers which grew beyond the maximum capacity and buffers beyond the maximum count are
+	 * discarded
+	 */
+	@Test
+	public void discardOversizedAndSurplus()
+	{
+		ResponseBufferPool pool = new ResponseBufferPool(1, 8192);
+
+		AppendingStringBuffer oversized = pool.acquireCharBuffer();
+		oversized.append(new char[10000]);
+		pool.release(oversized);
+		assertEquals(1, pool.getDiscardCount());
+		assertNotSame(oversized, pool.acquireCharBuffer());
+
+		AppendingStringBuffer first = pool.acquireCharBuffer();
+		AppendingStringBuffer second = pool.acquireCharBuffer();
+		pool.release(first);
+		pool.release(second);
+		assertEquals(2, pool.getDiscardCount());
+	}
+
+	/**
+	 * A pool without capacity never reuses buffers
+	 */
+	@Test
+	public void disabled()
+	{
+		ResponseBufferPool pool = new ResponseBufferPool(0, 8192);
+
+		AppendingStringBuffer buffer = pool.acquireCharBuffer();
+		pool.release(buffer);
+		assertNotSame(buffer, pool.acquireCharBuffer());
+		assertEquals(0, pool.getReuseCount());
+	}
+
+	/**
+	 * Buffers acquired during a request are returned when the request cycle detaches, unless
+	 * they are retained
+	 */
+	@Test
+	public void releaseOnDetach()
+	{
+		ResponseBufferPool pool = new ResponseBufferPool();
+
+		AppendingStringBuffer released = pool.acquireCharBuffer();
+		ByteArrayOutputStream retained = pool.acquireByteBuffer();
+		pool.retain(retained);
+		pool.detach(tester.getRequestCycle());
+
+		assertSame(released, pool.acquireCharBuffer());
+		assertNotSame(retained, pool.acquireByteBuffer());
+	}
+
+	/**
+	 * Rendering pages reuses the buffers of previous requests
+	 */
+	@Test
+	public void reuseAcrossRequests()
+	{
+		ResponseBufferPool pool = new ResponseBufferPool();
+		tester.getApplication().setResponseBufferPool(pool);
+
+		tester.startPage(DummyHomePage.class);
+		tester.assertRenderedPage(DummyHomePage.class);
+		long allocated = pool.getAllocationCount();
+		assertTrue(allocated > 0);
+
+		tester.startPage(DummyHomePage.class);
+		tester.assertRenderedPage(DummyHomePage.class);
+		assertTrue(pool.getReuseCount() > 0);
+		assertEquals(allocated, pool.getAllocationCount());
+	}
+}
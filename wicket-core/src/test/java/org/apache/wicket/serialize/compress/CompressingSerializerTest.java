@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.compress;
+
+import java.util.Random;
+
+import org.apache.wicket.serialize.ISerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressingSerializer} and {@link LzCompressor}
+ */
+public class CompressingSerializerTest extends Assert
+{
+	/**
+	 * A serializer which passes byte arrays through
+	 */
+	private static class BytesSerializer implements ISerializer
+	{
+		@Override
+		public byte[] serialize(Object object)
+		{
+			return (byte[])object;
+		}
+
+		@Override
+		public Object deserialize(byte[] data)
+		{
+			return data;
+		}
+	}
+
+	private static byte[] repetitiveData(int length)
+	{
+		StringBuilder builder = new StringBuilder();
+		int i = 0;
+		while (builder.length() < length)
+		{
+			builder.append("org.apache.wicket.markup.html.basic.Label").append(i++ % 17);
+		}
+		return builder.substring(0, length).getBytes();
+	}
+
+	private static byte[] randomData(int length)
+	{
+		byte[] data = new byte[length];
+		new Random(length).nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * All algorithms restore the original data
+	 */
+	@Test
+	public void roundTrip()
+	{
+		int[] lengths = new int[] { 0, 1, 10, 255, 256, 1000, 70000, 200000 };
+		for (Compression compression : Compression.values())
+		{
+			CompressingSerializer serializer = new CompressingSerializer(new BytesSerializer(),
+				compression);
+			for (int length : lengths)
+			{
+				byte[] repetitive = repetitiveData(length);
+				assertArrayEquals(compression + ":" + length, repetitive,
+					(byte[])serializer.deserialize(serializer.serialize(repetitive)));
+
+				byte[] random = randomData(length);
+				assertArrayEquals(compression + ":" + length, random,
+					(byte[])serializer.deserialize(serializer.serialize(random)));
+			}
+		}
+	}
+
+	/**
+	 * Repetitive data gets smaller and the statistics reflect it
+	 */
+	@Test
+	public void compresses()
+	{
+		CompressingSerializer serializer = new CompressingSerializer(new BytesSerializer(),
+			Compression.LZ);
+		byte[] data = repetitiveData(100000);
+		byte[] compressed = serializer.serialize(data);
+		assertTrue(compressed.length < data.length / 4);
+		assertEquals(data.length, serializer.getUncompressedBytes());
+		assertEquals(compressed.length, serializer.getCompressedBytes());
+		assertTrue(serializer.getCompressionRatio() < 0.25);
+	}
+
+	/**
+	 * Data stored with another compression, or without any, can be read
+	 */
+	@Test
+	public void readsOtherFormats()
+	{
+		byte[] data = repetitiveData(10000);
+		byte[] deflated = new CompressingSerializer(new BytesSerializer(),
+			Compression.DEFLATE_BEST).serialize(data);
+
+		CompressingSerializer serializer = new CompressingSerializer(new BytesSerializer(),
+			Compression.LZ);
+		assertArrayEquals(data, (byte[])serializer.deserialize(deflated));
+
+		// java serialization streams start with 0xAC 0xED
+		byte[] legacy = new byte[] { (byte)0xAC, (byte)0xED, 0, 5 };
+		assertArrayEquals(legacy, (byte[])serializer.deserialize(legacy));
+
+		// data of other serializers may start with any byte
+		for (int first = 0; first < 3; first++)
+		{
+			byte[] other = new byte[] { (byte)first, 3, 1, 0, 0, 0, 0 };
+			assertArrayEquals(other, (byte[])serializer.deserialize(other));
+		}
+	}
+
+	/**
+	 * Data which is not compressed is passed through without a header
+	 */
+	@Test
+	public void uncompressedWithoutHeader()
+	{
+		byte[] repetitive = repetitiveData(10000);
+		assertArrayEquals(repetitive, new CompressingSerializer(new BytesSerializer(),
+			Compression.NONE).serialize(repetitive));
+
+		byte[] random = randomData(10000);
+		assertArrayEquals(random, new CompressingSerializer(new BytesSerializer(),
+			Compression.LZ).serialize(random));
+
+		byte[] small = repetitiveData(10);
+		assertArrayEquals(small, new CompressingSerializer(new BytesSerializer(),
+			Compression.LZ).serialize(small));
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.serialize.java;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactJavaSerializer}
+ */
+public class CompactJavaSerializerTest extends Assert
+{
+	private static class Node implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final String name;
+
+		private final int[] values;
+
+		private final List<Node> children = new ArrayList<Node>();
+
+		private transient String cached;
+
+		private Node(String name, int... values)
+		{
+			this.name = name;
+			this.values = values;
+		}
+
+		private void writeObject(ObjectOutputStream out) throws IOException
+		{
+			out.defaultWriteObject();
+			out.writeUTF("custom");
+		}
+
+		private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+		{
+			in.defaultReadObject();
+			cached = in.readUTF();
+		}
+	}
+
+	private static Node graph()
+	{
+		Node root = new Node("root", 1, 2, 3);
+		for (int i = 0; i < 10; i++)
+		{
+			root.children.add(new Node("child" + i, i));
+		}
+		return root;
+	}
+
+	/**
+	 * An object graph survives the round trip, including custom writeObject/readObject
+	 */
+	@Test
+	public void roundTrip()
+	{
+		CompactJavaSerializer serializer = new CompactJavaSerializer("test");
+
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("graph", graph());
+		map.put("array", new Node[] { new Node("a") });
+		map.put("class", Node.class);
+
+		@SuppressWarnings("unchecked")
+		Map<String, Object> copy = (Map<String, Object>)serializer.deserialize(serializer.serialize(map));
+
+		Node root = (Node)copy.get("graph");
+		assertEquals("root", root.name);
+		assertArrayEquals(new int[] { 1, 2, 3 }, root.values);
+		assertEquals(10, root.children.size());
+		assertEquals("child9", root.children.get(9).name);
+		assertEquals("custom", root.cached);
+		assertEquals("a", ((Node[])copy.get("array"))[0].name);
+		assertSame(Node.class, copy.get("class"));
+	}
+
+	/**
+	 * The compact class descriptors make the data smaller
+	 */
+	@Test
+	public void smallerThanJavaSerializer()
+	{
+		byte[] plain = new JavaSerializer("test").serialize(graph());
+		byte[] compact = new CompactJavaSerializer("test").serialize(graph());
+
+		assertTrue(compact.length + " < " + plain.length, compact.length < plain.length);
+	}
+}
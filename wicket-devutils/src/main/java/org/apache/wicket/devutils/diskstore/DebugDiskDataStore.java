@@ -71,8 +71,7 @@ public class DebugDiskDataStore extends DiskDataStore
 		SessionEntry sessionEntry = getSessionEntry(sessionId, false);
 		if (sessionEntry != null)
 		{
-			PageWindowManager windowManager = sessionEntry.getManager();
-			pageWindows.addAll(windowManager.getLastPageWindows(count));
+			pageWindows.addAll(sessionEntry.getLastPageWindows(count));
 		}
 		return pageWindows;
 	}
@@ -19,6 +19,10 @@ package org.apache.wicket.jmx;
 import java.io.IOException;
 
 import org.apache.wicket.ThreadContext;
+import org.apache.wicket.markup.IMarkupCache;
+import org.apache.wicket.markup.Markup;
+import org.apache.wicket.markup.MarkupCache;
+import org.apache.wicket.util.collections.SegmentedLruCache;
 
 /**
  * Exposes Application related functionality for JMX.
@@ -88,6 +92,52 @@ public class Application implements ApplicationMBean
 		}
 	}
 
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupCacheWeight()
+	 */
+	public long getMarkupCacheWeight() throws IOException
+	{
+		SegmentedLruCache<String, Markup> cache = getBoundedMarkupCache();
+		return (cache != null) ? cache.getWeight() : -1;
+	}
+
+	/**
+	 * @see org.apache.wicket.jmx.ApplicationMBean#getMarkupCacheHitRate()
+	 */
+	public double getMarkupCacheHitRate() throws IOException
+	{
+		SegmentedLruCache<String, Markup> cache = getBoundedMarkupCache();
+		return (cache != null) ? cache.getHitRate() : -1;
+	}
+
+	/**
+	 * @return the bounded cache holding the markup, null if the markup cache is not bounded
+	 */
+	private SegmentedLruCache<String, Markup> getBoundedMarkupCache()
+	{
+		ThreadContext.setApplication(application);
+
+		try
+		{
+			IMarkupCache markupCache = application.getMarkupSettings()
+				.getMarkupFactory()
+				.getMarkupCache();
+			if (markupCache instanceof MarkupCache)
+			{
+				MarkupCache.ICache<String, Markup> cache = ((MarkupCache)markupCache).getMarkupCache();
+				if (cache instanceof MarkupCache.BoundedCacheImplementation)
+				{
+					return ((MarkupCache.BoundedCacheImplementation<String, Markup>)cache).getCache();
+				}
+			}
+			return null;
+		}
+		finally
+		{
+			ThreadContext.detach();
+		}
+	}
+
 	/**
 	 * @see org.apache.wicket.jmx.ApplicationMBean#getWicketVersion()
 	 */
@@ -69,6 +69,28 @@ public interface ApplicationMBean
 	 */
 	int getMarkupCacheSize() throws IOException;
 
+	/**
+	 * Gets the number of markup elements currently in the markup cache, if the markup cache is
+	 * bounded.
+	 * 
+	 * @return the number of markup elements currently in the markup cache, -1 if the markup cache
+	 *         is not bounded
+	 * @throws IOException
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxWeight(long)
+	 */
+	long getMarkupCacheWeight() throws IOException;
+
+	/**
+	 * Gets the share of markup cache lookups which found the markup, if the markup cache is
+	 * bounded.
+	 * 
+	 * @return the hit rate of the markup cache between 0 and 1, -1 if the markup cache is not
+	 *         bounded
+	 * @throws IOException
+	 * @see org.apache.wicket.settings.IMarkupSettings#setMarkupCacheMaxWeight(long)
+	 */
+	double getMarkupCacheHitRate() throws IOException;
+
 	/**
 	 * Gets the Wicket version. The Wicket version is in the same format as the version element in
 	 * the pom.xml file (project descriptor). The version is generated by maven in the build/release
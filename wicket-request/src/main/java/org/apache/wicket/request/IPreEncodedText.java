@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request;
+
+import java.nio.charset.Charset;
+
+/**
+ * A static text, e.g. a piece of markup, which is written to many responses. The text caches its
+ * encoded form, so that responses writing bytes do not have to encode it again and again.
+ *
+ * @see Response#write(IPreEncodedText)
+ */
+public interface IPreEncodedText
+{
+	/**
+	 * @return the text
+	 */
+	CharSequence getText();
+
+	/**
+	 * Returns the text encoded with the given charset. The returned array is shared and must not
+	 * be modified.
+	 *
+	 * @param charset
+	 *            the charset
+	 * @return the encoded text
+	 */
+	byte[] getBytes(Charset charset);
+}
@@ -67,6 +67,22 @@ public abstract class Response
 	 */
 	public abstract void write(byte[] array, int offset, int length);
 
+	/**
+	 * Writes a static text to output. Responses which write bytes can write the text's cached
+	 * encoded form instead of encoding the characters again.
+	 * <p>
+	 * The default implementation writes the characters with {@link #write(CharSequence)}, so it
+	 * fails wherever that method fails, e.g. on a response which has already been written bytes
+	 * to.
+	 * 
+	 * @param text
+	 *            the text
+	 */
+	public void write(final IPreEncodedText text)
+	{
+		write(text.getText());
+	}
+
 	/**
 	 * Closes the response
 	 */
@@ -75,6 +75,26 @@ public abstract class AbstractMapper implements IRequestMapper
 		}
 	}
 
+	/**
+	 * Returns the segments before the first required or optional placeholder.
+	 * 
+	 * @param segments
+	 *            the mount segments
+	 * @return the fixed leading segments
+	 */
+	protected String[] getFixedPrefix(final String[] segments)
+	{
+		int length = 0;
+		while (length < segments.length && getPlaceholder(segments[length]) == null &&
+			getOptionalPlaceholder(segments[length]) == null)
+		{
+			length++;
+		}
+		String[] prefix = new String[length];
+		System.arraycopy(segments, 0, prefix, 0, length);
+		return prefix;
+	}
+
 	/**
 	 * Construct.
 	 */
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.wicket.request.IRequestHandler;
 import org.apache.wicket.request.IRequestMapper;
@@ -34,6 +35,9 @@ import org.apache.wicket.request.Url;
  * Thread safe compound {@link IRequestMapper}. The mappers are searched depending on their
  * compatibility score and the orders they were registered. If two or more {@link IRequestMapper}s
  * have the same compatibility score, the last registered mapper has highest priority.
+ * <p>
+ * {@link IIndexableRequestMapper}s are indexed by their fixed leading segments, so that only the
+ * mappers which can possibly map a request are scored and asked to map it.
  * 
  * @author igor.vaynberg
  * @author Matej Knopp
@@ -77,6 +81,12 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 
 	private final List<IRequestMapper> mappers = new CopyOnWriteArrayList<IRequestMapper>();
 
+	/** incremented on each modification of {@link #mappers} */
+	private final AtomicInteger version = new AtomicInteger();
+
+	/** the index of {@link #mappers}, rebuilt lazily after modifications */
+	private volatile RequestMapperIndex index;
+
 	/**
 	 * Construct.
 	 */
@@ -90,6 +100,7 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	public CompoundRequestMapper add(final IRequestMapper mapper)
 	{
 		mappers.add(0, mapper);
+		version.incrementAndGet();
 		return this;
 	}
 
@@ -99,6 +110,7 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	public CompoundRequestMapper remove(final IRequestMapper mapper)
 	{
 		mappers.remove(mapper);
+		version.incrementAndGet();
 		return this;
 	}
 
@@ -109,6 +121,9 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 * score.
 	 * <p>
 	 * The mapper with highest compatibility score which can map the request is returned.
+	 * <p>
+	 * Indexed mappers whose fixed leading segments do not match the request url are skipped, since
+	 * they would not be able to map the request anyway.
 	 * 
 	 * @param request
 	 * @return RequestHandler for the request or <code>null</code> if no mapper for the request is
@@ -116,9 +131,10 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 	 */
 	public IRequestHandler mapRequest(final Request request)
 	{
-		List<MapperWithScore> list = new ArrayList<MapperWithScore>(mappers.size());
+		List<IRequestMapper> candidates = getIndex().getCandidates(request.getUrl());
+		List<MapperWithScore> list = new ArrayList<MapperWithScore>(candidates.size());
 
-		for (IRequestMapper mapper : mappers)
+		for (IRequestMapper mapper : candidates)
 		{
 			int score = mapper.getCompatibilityScore(request);
 			list.add(new MapperWithScore(mapper, score));
@@ -138,6 +154,24 @@ public class CompoundRequestMapper implements ICompoundRequestMapper
 		return null;
 	}
 
+	/**
+	 * @return the index of the current mappers
+	 */
+	private RequestMapperIndex getIndex()
+	{
+		RequestMapperIndex current = index;
+		int currentVersion = version.get();
+		if (current == null || current.getVersion() != currentVersion)
+		{
+			// read the version before the mappers, so a concurrent modification leads to
+			// another rebuild
+			current = new RequestMapperIndex(new ArrayList<IRequestMapper>(mappers),
+				currentVersion);
+			index = current;
+		}
+		return current;
+	}
+
 	/**
 	 * Searches the registered {@link IRequestMapper}s to find one that can map the
 	 * {@link IRequestHandler}. Each registered {@link IRequestMapper} is asked to map the
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
+
+/**
+ * A {@link IRequestMapper} which maps only requests starting with known url segments, e.g. the
+ * fixed part of a mount path. {@link CompoundRequestMapper} uses these segments to ask only the
+ * mappers which can possibly map a request.
+ *
+ * @see CompoundRequestMapper
+ */
+public interface IIndexableRequestMapper extends IRequestMapper
+{
+	/**
+	 * Returns the segments every url mapped by this mapper starts with.
+	 * <p>
+	 * {@link #mapRequest(Request)} must return <code>null</code> for all requests whose url has
+	 * at least one segment but does not start with the returned segments. Mappers which can not
+	 * guarantee this, e.g. because a subclass changed the matching, have to return
+	 * <code>null</code>.
+	 *
+	 * @return the leading segments, an empty array if any url might be mapped or
+	 *         <code>null</code> if the mapper must not be indexed
+	 */
+	String[] getFixedLeadingSegments();
+}
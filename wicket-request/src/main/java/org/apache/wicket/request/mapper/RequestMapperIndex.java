@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.request.mapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Url;
+
+/**
+ * An immutable index of the mappers registered in a {@link CompoundRequestMapper}. The
+ * {@link IIndexableRequestMapper}s are kept in a trie of their fixed leading segments, so only
+ * the mappers whose segments are a prefix of the request url, and the mappers which are not
+ * indexable, have to be asked to map a request.
+ * <p>
+ * The candidates are returned in registration order, so scoring and sorting them results in the
+ * same order as for all mappers.
+ * </p>
+ */
+final class RequestMapperIndex
+{
+	/**
+	 * A trie node
+	 */
+	private static final class Node
+	{
+		private final Map<String, Node> children = new HashMap<String, Node>();
+
+		/** the positions of the mappers whose leading segments end at this node */
+		private int[] positions = new int[0];
+
+		private Node child(final String segment)
+		{
+			Node child = children.get(segment);
+			if (child == null)
+			{
+				child = new Node();
+				children.put(segment, child);
+			}
+			return child;
+		}
+
+		private void add(final int position)
+		{
+			positions = Arrays.copyOf(positions, positions.length + 1);
+			positions[positions.length - 1] = position;
+		}
+	}
+
+	private final int version;
+
+	/** all mappers in registration order */
+	private final IRequestMapper[] mappers;
+
+	/** positions of the mappers which are not indexed */
+	private final int[] unindexed;
+
+	private final Node root = new Node();
+
+	/**
+	 * Construct.
+	 *
+	 * @param mappers
+	 *            the mappers in registration order
+	 * @param version
+	 *            the version of the mappers
+	 */
+	RequestMapperIndex(final List<IRequestMapper> mappers, final int version)
+	{
+		this.version = version;
+		this.mappers = mappers.toArray(new IRequestMapper[mappers.size()]);
+
+		int[] unindexed = new int[this.mappers.length];
+		int unindexedCount = 0;
+		for (int i = 0; i < this.mappers.length; i++)
+		{
+			String[] segments = null;
+			if (this.mappers[i] instanceof IIndexableRequestMapper)
+			{
+				segments = ((IIndexableRequestMapper)this.mappers[i]).getFixedLeadingSegments();
+			}
+
+			if (segments == null)
+			{
+				unindexed[unindexedCount++] = i;
+			}
+			else
+			{
+				Node node = root;
+				for (String segment : segments)
+				{
+					node = node.child(segment);
+				}
+				node.add(i);
+			}
+		}
+		this.unindexed = Arrays.copyOf(unindexed, unindexedCount);
+	}
+
+	/**
+	 * @return the version of the mappers this index was built for
+	 */
+	int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Returns the mappers which may be able to map the url.
+	 *
+	 * @param url
+	 * @return the mappers in registration order
+	 */
+	List<IRequestMapper> getCandidates(final Url url)
+	{
+		List<String> segments = url.getSegments();
+		if (segments.isEmpty())
+		{
+			// indexed mappers may map urls without segments, e.g. to redirect from the home page
+			return Arrays.asList(mappers);
+		}
+
+		int[] positions = new int[mappers.length];
+		int count = 0;
+		System.arraycopy(unindexed, 0, positions, 0, unindexed.length);
+		count += unindexed.length;
+
+		Node node = root;
+		int index = 0;
+		while (node != null)
+		{
+			System.arraycopy(node.positions, 0, positions, count, node.positions.length);
+			count += node.positions.length;
+			node = index < segments.size() ? node.children.get(segments.get(index++)) : null;
+		}
+
+		Arrays.sort(positions, 0, count);
+		List<IRequestMapper> candidates = new ArrayList<IRequestMapper>(count);
+		for (int i = 0; i < count; i++)
+		{
+			candidates.add(mappers[positions[i]]);
+		}
+		return candidates;
+	}
+}
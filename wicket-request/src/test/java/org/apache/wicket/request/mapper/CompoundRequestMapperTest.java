@@ -16,6 +16,12 @@
  */
 package org.apache.wicket.request.mapper;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.IRequestMapper;
+import org.apache.wicket.request.Request;
 import org.apache.wicket.request.Url;
 import org.apache.wicket.request.handler.EmptyRequestHandler;
 import org.apache.wicket.request.mapper.CompoundRequestMapper.MapperWithScore;
@@ -82,4 +88,100 @@ public class CompoundRequestMapperTest extends Assert
 	{
 		return new MapperWithScore(null, score);
 	}
+
+	/**
+	 * Indexed mappers with a longer mount path have precedence, mappers which are not indexed are
+	 * still asked.
+	 */
+	@Test
+	public void indexedPrecedence()
+	{
+		EmptyRequestHandler short1 = new EmptyRequestHandler();
+		EmptyRequestHandler long1 = new EmptyRequestHandler();
+		EmptyRequestHandler other = new EmptyRequestHandler();
+
+		CompoundRequestMapper compound = new CompoundRequestMapper();
+		compound.add(new MountMapper("mount/${placeholder}", new EmptyRequestHandler()));
+		compound.add(new MountMapper("mount/path/1", long1));
+		compound.add(new MountMapper("mount/path", short1));
+		compound.add(unindexed(new MountMapper("other", other)));
+
+		assertSame(long1, compound.mapRequest(compound.createRequest(Url.parse("mount/path/1"))));
+		assertSame(short1, compound.mapRequest(compound.createRequest(Url.parse("mount/path/2"))));
+		assertSame(other, compound.mapRequest(compound.createRequest(Url.parse("other/x"))));
+		assertNull(compound.mapRequest(compound.createRequest(Url.parse("unknown"))));
+
+		// the index is rebuilt after modifications
+		compound.remove(compound.iterator().next());
+		assertNull(compound.mapRequest(compound.createRequest(Url.parse("other/x"))));
+	}
+
+	/**
+	 * The indexed lookup finds the same handlers as asking all mappers.
+	 */
+	@Test
+	public void indexedSameAsLinear()
+	{
+		CompoundRequestMapper indexed = new CompoundRequestMapper();
+		CompoundRequestMapper linear = new CompoundRequestMapper();
+		List<String> urls = new ArrayList<String>();
+		urls.add("");
+		urls.add("unknown");
+		for (int i = 0; i < 400; i++)
+		{
+			String path;
+			switch (i % 4)
+			{
+				case 0 :
+					path = "app/section" + (i % 20) + "/page" + i;
+					break;
+				case 1 :
+					path = "app/section" + (i % 20);
+					break;
+				case 2 :
+					path = "app/${placeholder}/page" + i;
+					break;
+				default :
+					path = "page" + i;
+			}
+			MountMapper mapper = new MountMapper(path, new EmptyRequestHandler());
+			indexed.add(mapper);
+			linear.add(unindexed(mapper));
+
+			String url = path.replace("${placeholder}", "x");
+			urls.add(url);
+			urls.add(url + "/more");
+		}
+
+		for (String url : urls)
+		{
+			Request request = indexed.createRequest(Url.parse(url));
+			assertSame(url, linear.mapRequest(request), indexed.mapRequest(request));
+		}
+	}
+
+	/**
+	 * @param mapper
+	 * @return a mapper which delegates to the given one but is not indexable
+	 */
+	private static IRequestMapper unindexed(final IRequestMapper mapper)
+	{
+		return new IRequestMapper()
+		{
+			public IRequestHandler mapRequest(Request request)
+			{
+				return mapper.mapRequest(request);
+			}
+
+			public int getCompatibilityScore(Request request)
+			{
+				return mapper.getCompatibilityScore(request);
+			}
+
+			public Url mapHandler(IRequestHandler requestHandler)
+			{
+				return mapper.mapHandler(requestHandler);
+			}
+		};
+	}
 }
@@ -0,0 +1,568 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * A cache bounded by the total weight of its entries, e.g. the number of markup elements or bytes.
+ * Once the weight exceeds the limit, entries are evicted following a segmented LRU policy: new
+ * entries enter a probationary segment and are promoted to a protected segment when they are
+ * accessed again. Entries are evicted from the probationary segment first, thus entries used only
+ * once, e.g. the markup of a rarely used style or locale, do not push out the entries used by most
+ * requests.
+ * <p>
+ * Lookups don't block: the entries are kept in a {@link ConcurrentHashMap} and the LRU order is
+ * updated only if the lock is available. Under contention an access may not be recorded, which
+ * affects the eviction order but never the content of the cache.
+ * </p>
+ *
+ * @param <K>
+ *            The key type
+ * @param <V>
+ *            The value type
+ */
+public class SegmentedLruCache<K, V>
+{
+	/**
+	 * Computes the weight of a cache entry.
+	 *
+	 * @param <K>
+	 *            The key type
+	 * @param <V>
+	 *            The value type
+	 */
+	public interface IWeigher<K, V>
+	{
+		/**
+		 * @param key
+		 * @param value
+		 * @return The weight of the entry. Weights less than 1 are counted as 1.
+		 */
+		int weigh(K key, V value);
+	}
+
+	/**
+	 * Notified about entries evicted from the cache to stay within its maximum weight. Entries
+	 * removed explicitly are not reported.
+	 *
+	 * @param <K>
+	 *            The key type
+	 * @param <V>
+	 *            The value type
+	 */
+	public interface IEvictionListener<K, V>
+	{
+		/**
+		 * Called after the entry has been evicted, without holding any lock of the cache.
+		 *
+		 * @param key
+		 * @param value
+		 */
+		void onEvicted(K key, V value);
+	}
+
+	/** The share of the maximum weight available to the protected segment */
+	private static final double PROTECTED_SHARE = 0.8;
+
+	/** The entries by key */
+	private final ConcurrentHashMap<K, Node<K, V>> entries = new ConcurrentHashMap<K, Node<K, V>>();
+
+	/** Guards the segments and the weights */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** The probationary segment, least recently used first */
+	private final Node<K, V> probation = new Node<K, V>(null, null, 0);
+
+	/** The protected segment, least recently used first */
+	private final Node<K, V> protection = new Node<K, V>(null, null, 0);
+
+	private final long maxWeight;
+
+	private final long maxProtectedWeight;
+
+	private final IWeigher<K, V> weigher;
+
+	private volatile IEvictionListener<K, V> evictionListener;
+
+	/** The total weight of all entries */
+	private long weight;
+
+	/** The weight of the entries in the protected segment */
+	private long protectedWeight;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Construct.
+	 *
+	 * @param maxWeight
+	 *            The maximum total weight of the entries
+	 * @param weigher
+	 *            Computes the weight of the entries
+	 */
+	public SegmentedLruCache(final long maxWeight, final IWeigher<K, V> weigher)
+	{
+		Args.notNull(weigher, "weigher");
+		if (maxWeight < 1)
+		{
+			throw new IllegalArgumentException("Argument 'maxWeight' must be greater than 0: " +
+				maxWeight);
+		}
+
+		this.maxWeight = maxWeight;
+		maxProtectedWeight = (long)(maxWeight * PROTECTED_SHARE);
+		this.weigher = weigher;
+		clearSegments();
+	}
+
+	/**
+	 * @param evictionListener
+	 *            The listener notified about evicted entries, may be null
+	 */
+	public void setEvictionListener(final IEvictionListener<K, V> evictionListener)
+	{
+		this.evictionListener = evictionListener;
+	}
+
+	/**
+	 * Gets the value of the key and records the access, i.e. counts a hit or miss and updates the
+	 * eviction order.
+	 *
+	 * @param key
+	 * @return The value, null if none
+	 */
+	public V get(final K key)
+	{
+		if (key == null)
+		{
+			return null;
+		}
+
+		final Node<K, V> node = entries.get(key);
+		if (node == null)
+		{
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+
+		// Don't wait for the lock on lookups. Losing an access only affects the eviction order.
+		if (lock.tryLock())
+		{
+			try
+			{
+				onAccess(node);
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		return node.value;
+	}
+
+	/**
+	 * Gets the value of the key without recording the access: neither the hit rate nor the
+	 * eviction order are affected.
+	 *
+	 * @param key
+	 * @return The value, null if none
+	 */
+	public V peek(final K key)
+	{
+		if (key == null)
+		{
+			return null;
+		}
+
+		final Node<K, V> node = entries.get(key);
+		return (node != null) ? node.value : null;
+	}
+
+	/**
+	 * @param key
+	 * @return True, if the cache holds a value for the key. The access is not recorded.
+	 */
+	public boolean containsKey(final K key)
+	{
+		if (key == null)
+		{
+			return false;
+		}
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Puts the value into the probationary segment and evicts entries if the maximum weight is
+	 * exceeded. A value heavier than the maximum weight is evicted immediately.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void put(final K key, final V value)
+	{
+		Args.notNull(key, "key");
+		Args.notNull(value, "value");
+
+		final Node<K, V> node = new Node<K, V>(key, value, Math.max(1, weigher.weigh(key, value)));
+		final List<Node<K, V>> evicted = new ArrayList<Node<K, V>>();
+
+		lock.lock();
+		try
+		{
+			final Node<K, V> old = entries.put(key, node);
+			if (old != null)
+			{
+				discard(old);
+			}
+
+			if (node.weight > maxWeight)
+			{
+				// It would evict everything else and still not fit
+				entries.remove(key, node);
+				evicted.add(node);
+			}
+			else
+			{
+				link(node, probation);
+				weight += node.weight;
+				evict(evicted);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		notifyEvicted(evicted);
+	}
+
+	/**
+	 * Removes the entry of the key. Removed entries are not reported to the eviction listener.
+	 *
+	 * @param key
+	 * @return True, if an entry has been removed
+	 */
+	public boolean remove(final K key)
+	{
+		if (key == null)
+		{
+			return false;
+		}
+
+		lock.lock();
+		try
+		{
+			final Node<K, V> node = entries.remove(key);
+			if (node != null)
+			{
+				discard(node);
+				return true;
+			}
+			return false;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return A read-only view of the keys
+	 */
+	public Collection<K> getKeys()
+	{
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @return A copy of the values
+	 */
+	public Collection<V> getValues()
+	{
+		final List<V> values = new ArrayList<V>(entries.size());
+		for (Node<K, V> node : entries.values())
+		{
+			values.add(node.value);
+		}
+		return values;
+	}
+
+	/**
+	 * @return The number of entries
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Removes all entries
+	 */
+	public void clear()
+	{
+		lock.lock();
+		try
+		{
+			entries.clear();
+			clearSegments();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The total weight of all entries
+	 */
+	public long getWeight()
+	{
+		lock.lock();
+		try
+		{
+			return weight;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The maximum total weight of all entries
+	 */
+	public long getMaxWeight()
+	{
+		return maxWeight;
+	}
+
+	/**
+	 * @return The number of lookups which found an entry
+	 */
+	public long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	/**
+	 * @return The number of lookups which did not find an entry
+	 */
+	public long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	/**
+	 * @return The share of lookups which found an entry, 0 if there were no lookups yet
+	 */
+	public double getHitRate()
+	{
+		final long hits = hitCount.get();
+		final long lookups = hits + missCount.get();
+		return (lookups == 0) ? 0 : ((double)hits / lookups);
+	}
+
+	/**
+	 * @return The number of entries evicted to stay within the maximum weight
+	 */
+	public long getEvictionCount()
+	{
+		return evictionCount.get();
+	}
+
+	/**
+	 * Promotes an entry from the probationary to the protected segment, or moves it to the most
+	 * recently used position of the protected segment.
+	 *
+	 * @param node
+	 */
+	private void onAccess(final Node<K, V> node)
+	{
+		if (node.segment == protection)
+		{
+			unlink(node);
+			link(node, protection);
+		}
+		else if (node.segment == probation)
+		{
+			unlink(node);
+			link(node, protection);
+
+			// Demote the least recently used entries of the protected segment if it is full
+			while (protectedWeight > maxProtectedWeight)
+			{
+				final Node<K, V> demoted = protection.next;
+				unlink(demoted);
+				link(demoted, probation);
+			}
+		}
+	}
+
+	/**
+	 * Evicts entries until the total weight is within the limit
+	 *
+	 * @param evicted
+	 *            Collects the evicted entries
+	 */
+	private void evict(final List<Node<K, V>> evicted)
+	{
+		while (weight > maxWeight)
+		{
+			Node<K, V> victim = probation.next;
+			if (victim == probation)
+			{
+				victim = protection.next;
+			}
+			entries.remove(victim.key, victim);
+			discard(victim);
+			evicted.add(victim);
+		}
+	}
+
+	/**
+	 * @param evicted
+	 */
+	private void notifyEvicted(final List<Node<K, V>> evicted)
+	{
+		if (evicted.isEmpty())
+		{
+			return;
+		}
+
+		evictionCount.addAndGet(evicted.size());
+		final IEvictionListener<K, V> listener = evictionListener;
+		if (listener != null)
+		{
+			for (Node<K, V> node : evicted)
+			{
+				listener.onEvicted(node.key, node.value);
+			}
+		}
+	}
+
+	/**
+	 * Adds the node as the most recently used of the segment
+	 *
+	 * @param node
+	 * @param segment
+	 */
+	private void link(final Node<K, V> node, final Node<K, V> segment)
+	{
+		node.segment = segment;
+		node.next = segment;
+		node.prev = segment.prev;
+		segment.prev.next = node;
+		segment.prev = node;
+		if (segment == protection)
+		{
+			protectedWeight += node.weight;
+		}
+	}
+
+	/**
+	 * Removes the node from its segment, if any
+	 *
+	 * @param node
+	 */
+	private void unlink(final Node<K, V> node)
+	{
+		if (node.segment == null)
+		{
+			return;
+		}
+		if (node.segment == protection)
+		{
+			protectedWeight -= node.weight;
+		}
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+		node.segment = null;
+	}
+
+	/**
+	 * Removes the node from its segment and its weight from the total weight, if not done yet
+	 *
+	 * @param node
+	 */
+	private void discard(final Node<K, V> node)
+	{
+		if (node.segment != null)
+		{
+			unlink(node);
+			weight -= node.weight;
+		}
+	}
+
+	/**
+	 * Empties both segments
+	 */
+	private void clearSegments()
+	{
+		probation.next = probation;
+		probation.prev = probation;
+		protection.next = protection;
+		protection.prev = protection;
+		weight = 0;
+		protectedWeight = 0;
+	}
+
+	/**
+	 * An entry of the cache and of a segment's doubly linked list. The segments are circular lists
+	 * whose head is a node without key.
+	 *
+	 * @param <K>
+	 * @param <V>
+	 */
+	private static final class Node<K, V>
+	{
+		private final K key;
+
+		private final V value;
+
+		private final int weight;
+
+		/** The head of the segment the node is linked into, null if not linked. Guarded by lock. */
+		private Node<K, V> segment;
+
+		private Node<K, V> prev;
+
+		private Node<K, V> next;
+
+		private Node(final K key, final V value, final int weight)
+		{
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
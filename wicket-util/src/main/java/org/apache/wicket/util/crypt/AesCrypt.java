@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.crypt;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts and decrypts strings with 128 bit AES in CBC mode.
+ * <p>
+ * The AES key and a separate HMAC key are derived once from the {@link #setKey(String) encryption
+ * key} with PBKDF2. The initialization vector is the truncated HMAC-SHA256 of the plain text and is
+ * prepended to the cipher text. This makes the encryption deterministic, i.e. the same URL is
+ * always encrypted to the same string, which keeps encrypted resource URLs cacheable by browsers.
+ * When decrypting, the HMAC is verified, so manipulated cipher texts are rejected.
+ * </p>
+ * Cipher and Mac instances are pooled, so the cost of encrypting a string is dominated by the
+ * cipher itself instead of its setup.
+ *
+ * @see SunJceCrypt
+ */
+public class AesCrypt extends AbstractCrypt
+{
+	private static final String CRYPT_METHOD = "AES/CBC/PKCS5Padding";
+
+	private static final String MAC_METHOD = "HmacSHA256";
+
+	private static final String KEY_DERIVATION_METHOD = "PBKDF2WithHmacSHA1";
+
+	private static final int KEY_DERIVATION_ITERATIONS = 1000;
+
+	/** The length of the AES key, the HMAC key and the initialization vector in bytes */
+	private static final int BLOCK_SIZE = 16;
+
+	/** Salt */
+	private final static byte[] salt = { (byte)0x3e, (byte)0x91, (byte)0x07, (byte)0xd2,
+			(byte)0x5b, (byte)0xc8, (byte)0x64, (byte)0x1f, (byte)0xa9, (byte)0x30, (byte)0xe7,
+			(byte)0x4d, (byte)0x82, (byte)0x16, (byte)0xbb, (byte)0x59 };
+
+	/** The derived keys and the instances using them, <code>null</code> until first used */
+	private volatile Pool pool;
+
+	/**
+	 * Constructor
+	 */
+	public AesCrypt()
+	{
+	}
+
+	/**
+	 * @see org.apache.wicket.util.crypt.AbstractCrypt#crypt(byte[], int)
+	 */
+	@Override
+	protected final byte[] crypt(final byte[] input, final int mode)
+		throws GeneralSecurityException
+	{
+		Pool pool = getPool();
+		Cipher cipher = pool.ciphers.poll();
+		if (cipher == null)
+		{
+			cipher = Cipher.getInstance(CRYPT_METHOD);
+		}
+		Mac mac = pool.macs.poll();
+		if (mac == null)
+		{
+			mac = Mac.getInstance(MAC_METHOD);
+			mac.init(pool.macKey);
+		}
+
+		byte[] result;
+		if (mode == Cipher.ENCRYPT_MODE)
+		{
+			result = encrypt(input, pool, cipher, mac);
+		}
+		else
+		{
+			result = decrypt(input, pool, cipher, mac);
+		}
+
+		// instances which failed are not returned to the pool
+		pool.ciphers.offer(cipher);
+		pool.macs.offer(mac);
+		return result;
+	}
+
+	private static byte[] encrypt(final byte[] input, final Pool pool, final Cipher cipher,
+		final Mac mac) throws GeneralSecurityException
+	{
+		byte[] iv = mac.doFinal(input);
+		cipher.init(Cipher.ENCRYPT_MODE, pool.cipherKey, new IvParameterSpec(iv, 0, BLOCK_SIZE));
+
+		byte[] result = new byte[BLOCK_SIZE + cipher.getOutputSize(input.length)];
+		System.arraycopy(iv, 0, result, 0, BLOCK_SIZE);
+		int length = BLOCK_SIZE + cipher.doFinal(input, 0, input.length, result, BLOCK_SIZE);
+		if (length == result.length)
+		{
+			return result;
+		}
+		byte[] trimmed = new byte[length];
+		System.arraycopy(result, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
+	private static byte[] decrypt(final byte[] input, final Pool pool, final Cipher cipher,
+		final Mac mac) throws GeneralSecurityException
+	{
+		if (input.length < 2 * BLOCK_SIZE || input.length % BLOCK_SIZE != 0)
+		{
+			throw new GeneralSecurityException("Invalid cipher text length " + input.length);
+		}
+		cipher.init(Cipher.DECRYPT_MODE, pool.cipherKey, new IvParameterSpec(input, 0,
+			BLOCK_SIZE));
+		byte[] plain = cipher.doFinal(input, BLOCK_SIZE, input.length - BLOCK_SIZE);
+
+		byte[] expected = mac.doFinal(plain);
+		byte[] actual = new byte[BLOCK_SIZE];
+		System.arraycopy(input, 0, actual, 0, BLOCK_SIZE);
+		byte[] truncated = new byte[BLOCK_SIZE];
+		System.arraycopy(expected, 0, truncated, 0, BLOCK_SIZE);
+		if (MessageDigest.isEqual(truncated, actual) == false)
+		{
+			throw new GeneralSecurityException("Invalid cipher text");
+		}
+		return plain;
+	}
+
+	/**
+	 * Sets the encryption key and discards the keys derived from the previous one.
+	 *
+	 * @see org.apache.wicket.util.crypt.AbstractCrypt#setKey(java.lang.String)
+	 */
+	@Override
+	public void setKey(final String key)
+	{
+		super.setKey(key);
+		pool = null;
+	}
+
+	/**
+	 * @return the pool for the current key, derives the keys if necessary
+	 * @throws GeneralSecurityException
+	 */
+	private Pool getPool() throws GeneralSecurityException
+	{
+		Pool current = pool;
+		if (current == null)
+		{
+			// concurrent threads may both derive the keys, which is harmless
+			PBEKeySpec spec = new PBEKeySpec(getKey().toCharArray(), salt,
+				KEY_DERIVATION_ITERATIONS, 2 * BLOCK_SIZE * 8);
+			byte[] keys = SecretKeyFactory.getInstance(KEY_DERIVATION_METHOD)
+				.generateSecret(spec)
+				.getEncoded();
+			current = new Pool(new SecretKeySpec(keys, 0, BLOCK_SIZE, "AES"), new SecretKeySpec(
+				keys, BLOCK_SIZE, BLOCK_SIZE, MAC_METHOD));
+			pool = current;
+		}
+		return current;
+	}
+
+	/**
+	 * The derived keys and the Cipher and Mac instances using them. These instances are not thread
+	 * safe, so each one is used by one thread at a time.
+	 */
+	private static final class Pool
+	{
+		private final SecretKeySpec cipherKey;
+
+		private final SecretKeySpec macKey;
+
+		private final Queue<Cipher> ciphers = new ConcurrentLinkedQueue<Cipher>();
+
+		private final Queue<Mac> macs = new ConcurrentLinkedQueue<Mac>();
+
+		private Pool(final SecretKeySpec cipherKey, final SecretKeySpec macKey)
+		{
+			this.cipherKey = cipherKey;
+			this.macKey = macKey;
+		}
+	}
+}
@@ -21,6 +21,8 @@ import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
@@ -34,6 +36,10 @@ import javax.crypto.spec.PBEParameterSpec;
  * implementation is based around Sun's security providers and uses the <a
  * href="http://www.ietf.org/rfc/rfc2898.txt">PBEWithMD5AndDES</a> method to encrypt and decrypt the
  * data.
+ * <p>
+ * The key derivation is done once per instance and the initialized ciphers are pooled, so that
+ * encrypting many URLs does not repeat the expensive setup. See {@link AesCrypt} for a faster and
+ * stronger alternative.
  * 
  * @author Juergen Donnerstag
  */
@@ -51,6 +57,9 @@ public class SunJceCrypt extends AbstractCrypt
 	private final static byte[] salt = { (byte)0x15, (byte)0x8c, (byte)0xa3, (byte)0x4a,
 			(byte)0x66, (byte)0x51, (byte)0x2a, (byte)0xbc };
 
+	/** The derived key and the ciphers using it, <code>null</code> until first used */
+	private volatile CipherPool cipherPool;
+
 	/**
 	 * Constructor
 	 */
@@ -87,11 +96,49 @@ public class SunJceCrypt extends AbstractCrypt
 	protected final byte[] crypt(final byte[] input, final int mode)
 		throws GeneralSecurityException
 	{
-		SecretKey key = generateSecretKey();
-		PBEParameterSpec spec = new PBEParameterSpec(salt, COUNT);
-		Cipher ciph = Cipher.getInstance(CRYPT_METHOD);
-		ciph.init(mode, key, spec);
-		return ciph.doFinal(input);
+		CipherPool pool = getCipherPool();
+		Queue<Cipher> ciphers = (mode == Cipher.ENCRYPT_MODE) ? pool.encrypt : pool.decrypt;
+
+		Cipher ciph = ciphers.poll();
+		if (ciph == null)
+		{
+			ciph = Cipher.getInstance(CRYPT_METHOD);
+			ciph.init(mode, pool.key, new PBEParameterSpec(salt, COUNT));
+		}
+
+		// doFinal() resets the cipher to its initialized state, so it can be reused. A cipher
+		// which failed is not returned to the pool.
+		byte[] result = ciph.doFinal(input);
+		ciphers.offer(ciph);
+		return result;
+	}
+
+	/**
+	 * Sets the encryption key and discards the key and ciphers derived from the previous one.
+	 * 
+	 * @see org.apache.wicket.util.crypt.AbstractCrypt#setKey(java.lang.String)
+	 */
+	@Override
+	public void setKey(final String key)
+	{
+		super.setKey(key);
+		cipherPool = null;
+	}
+
+	/**
+	 * @return the pool for the current key, derives the key if necessary
+	 * @throws GeneralSecurityException
+	 */
+	private CipherPool getCipherPool() throws GeneralSecurityException
+	{
+		CipherPool pool = cipherPool;
+		if (pool == null)
+		{
+			// concurrent threads may both derive the key, which is harmless
+			pool = new CipherPool(generateSecretKey());
+			cipherPool = pool;
+		}
+		return pool;
 	}
 
 	/**
@@ -112,4 +159,22 @@ public class SunJceCrypt extends AbstractCrypt
 		final PBEKeySpec spec = new PBEKeySpec(getKey().toCharArray());
 		return SecretKeyFactory.getInstance(CRYPT_METHOD).generateSecret(spec);
 	}
+
+	/**
+	 * The key derived from the encryption key and the initialized ciphers using it. Ciphers are
+	 * not thread safe, so each one is used by one thread at a time.
+	 */
+	private static final class CipherPool
+	{
+		private final SecretKey key;
+
+		private final Queue<Cipher> encrypt = new ConcurrentLinkedQueue<Cipher>();
+
+		private final Queue<Cipher> decrypt = new ConcurrentLinkedQueue<Cipher>();
+
+		private CipherPool(final SecretKey key)
+		{
+			this.key = key;
+		}
+	}
 }
@@ -61,6 +61,43 @@ public class Group extends MetaPattern
 		return matcher.group(group);
 	}
 
+	/**
+	 * Threadsafe method to retrieve the start index of this captured group. Unlike
+	 * {@link #get(Matcher)} it does not copy the captured characters.
+	 * 
+	 * @param matcher
+	 *            The matcher from which to retrieve this Group's group
+	 * @return The index of the first captured character in the input or -1 if the group did not
+	 *         capture anything
+	 */
+	public final int start(final Matcher matcher)
+	{
+		if (group == -1)
+		{
+			throw new GroupNotBoundException();
+		}
+
+		return matcher.start(group);
+	}
+
+	/**
+	 * Threadsafe method to retrieve the end index of this captured group.
+	 * 
+	 * @param matcher
+	 *            The matcher from which to retrieve this Group's group
+	 * @return The index after the last captured character in the input or -1 if the group did not
+	 *         capture anything
+	 */
+	public final int end(final Matcher matcher)
+	{
+		if (group == -1)
+		{
+			throw new GroupNotBoundException();
+		}
+
+		return matcher.end(group);
+	}
+
 	/**
 	 * @see java.lang.Object#toString()
 	 */
@@ -75,4 +75,40 @@ public final class TagNameParser extends MetaPatternParser
 	{
 		return nameGroup.get(matcher());
 	}
+
+	/**
+	 * @return The index of the name part in the input
+	 * @see #getName()
+	 */
+	public int getNameStart()
+	{
+		return nameGroup.start(matcher());
+	}
+
+	/**
+	 * @return The index after the name part in the input
+	 * @see #getName()
+	 */
+	public int getNameEnd()
+	{
+		return nameGroup.end(matcher());
+	}
+
+	/**
+	 * @return The index of the namespace part in the input or -1 if there is no namespace
+	 * @see #getNamespace()
+	 */
+	public int getNamespaceStart()
+	{
+		return namespaceGroup.start(matcher());
+	}
+
+	/**
+	 * @return The index after the namespace part in the input or -1 if there is no namespace
+	 * @see #getNamespace()
+	 */
+	public int getNamespaceEnd()
+	{
+		return namespaceGroup.end(matcher());
+	}
 }
@@ -94,4 +94,40 @@ public final class VariableAssignmentParser extends MetaPatternParser
 	{
 		return value.get(matcher());
 	}
+
+	/**
+	 * @return The index of the key part in the input
+	 * @see #getKey()
+	 */
+	public int getKeyStart()
+	{
+		return key.start(matcher());
+	}
+
+	/**
+	 * @return The index after the key part in the input
+	 * @see #getKey()
+	 */
+	public int getKeyEnd()
+	{
+		return key.end(matcher());
+	}
+
+	/**
+	 * @return The index of the value part in the input or -1 if there is no value
+	 * @see #getValue()
+	 */
+	public int getValueStart()
+	{
+		return value.start(matcher());
+	}
+
+	/**
+	 * @return The index after the value part in the input or -1 if there is no value
+	 * @see #getValue()
+	 */
+	public int getValueEnd()
+	{
+		return value.end(matcher());
+	}
 }
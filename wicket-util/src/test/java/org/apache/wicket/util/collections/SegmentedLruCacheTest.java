@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SegmentedLruCache}
+ */
+public class SegmentedLruCacheTest extends Assert
+{
+	private final List<String> evicted = new ArrayList<String>();
+
+	private SegmentedLruCache<String, String> newCache(final long maxWeight)
+	{
+		SegmentedLruCache<String, String> cache = new SegmentedLruCache<String, String>(
+			maxWeight, new SegmentedLruCache.IWeigher<String, String>()
+			{
+				@Override
+				public int weigh(final String key, final String value)
+				{
+					return value.length();
+				}
+			});
+		cache.setEvictionListener(new SegmentedLruCache.IEvictionListener<String, String>()
+		{
+			@Override
+			public void onEvicted(final String key, final String value)
+			{
+				evicted.add(key);
+			}
+		});
+		return cache;
+	}
+
+	/**
+	 * The cache stays within its weight, evicting the least recently used entries first
+	 */
+	@Test
+	public void evictsByWeight()
+	{
+		SegmentedLruCache<String, String> cache = newCache(10);
+		cache.put("a", "aaaa");
+		cache.put("b", "bbbb");
+		assertEquals(8, cache.getWeight());
+		assertTrue(evicted.isEmpty());
+
+		cache.put("c", "cccc");
+		assertEquals(8, cache.getWeight());
+		assertEquals(2, cache.size());
+		assertEquals("[a]", evicted.toString());
+		assertNull(cache.get("a"));
+		assertEquals("bbbb", cache.get("b"));
+		assertEquals(1, cache.getEvictionCount());
+
+		// replacing an entry replaces its weight
+		cache.put("b", "b");
+		assertEquals(5, cache.getWeight());
+
+		// too heavy for the cache at all
+		cache.put("d", "ddddddddddd");
+		assertFalse(cache.containsKey("d"));
+		assertEquals(5, cache.getWeight());
+
+		assertTrue(cache.remove("b"));
+		assertFalse(cache.remove("b"));
+		assertEquals(4, cache.getWeight());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * Entries accessed again are protected from being evicted by entries used only once
+	 */
+	@Test
+	public void protectsEntriesAccessedAgain()
+	{
+		SegmentedLruCache<String, String> cache = newCache(10);
+		cache.put("a", "aaa");
+		cache.put("b", "bbb");
+		cache.put("c", "ccc");
+
+		// promote "a"
+		assertEquals("aaa", cache.get("a"));
+
+		cache.put("d", "ddd");
+		cache.put("e", "eee");
+		assertEquals("[b, c]", evicted.toString());
+		assertEquals("aaa", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(9, cache.getWeight());
+	}
+
+	/**
+	 * The protected segment is limited. The least recently used protected entries are demoted.
+	 */
+	@Test
+	public void demotesFromFullProtectedSegment()
+	{
+		SegmentedLruCache<String, String> cache = newCache(10);
+		cache.put("a", "aaaaa");
+		cache.put("b", "bbbb");
+		cache.get("a");
+		cache.get("b");
+
+		// "a" has been demoted to make room for "b" and thus is evicted first
+		cache.put("c", "cc");
+		cache.put("d", "d");
+		assertEquals("[a]", evicted.toString());
+		assertEquals("bbbb", cache.get("b"));
+	}
+
+	/**
+	 * Hit rate
+	 */
+	@Test
+	public void hitRate()
+	{
+		SegmentedLruCache<String, String> cache = newCache(10);
+		assertEquals(0, cache.getHitRate(), 0);
+
+		cache.put("a", "a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+		assertEquals(3, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.75, cache.getHitRate(), 0.0001);
+	}
+
+	/**
+	 * Peeking neither counts as a hit or miss nor protects the entry from eviction
+	 */
+	@Test
+	public void peekRecordsNothing()
+	{
+		SegmentedLruCache<String, String> cache = newCache(10);
+		cache.put("a", "aaaaa");
+		cache.put("b", "bbbbb");
+
+		assertEquals("aaaaa", cache.peek("a"));
+		assertNull(cache.peek("c"));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+
+		cache.put("c", "c");
+		assertEquals("[a]", evicted.toString());
+	}
+}
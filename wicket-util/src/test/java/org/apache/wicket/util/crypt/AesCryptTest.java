@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.wicket.util.crypt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AesCrypt} and the key and cipher caching of {@link SunJceCrypt}
+ */
+public class AesCryptTest extends Assert
+{
+	private static final String TEXT = "abcdefghijkABC: A test which creates a '/' and/or a '+'";
+
+	/**
+	 * Encrypting is deterministic and decrypting restores the text
+	 */
+	@Test
+	public void roundTrip()
+	{
+		AesCrypt crypt = new AesCrypt();
+		crypt.setKey("secret");
+
+		String encrypted = crypt.encryptUrlSafe(TEXT);
+		assertFalse(TEXT.equals(encrypted));
+		assertEquals(encrypted, crypt.encryptUrlSafe(TEXT));
+		assertEquals(TEXT, crypt.decryptUrlSafe(encrypted));
+		assertEquals("", crypt.decryptUrlSafe(crypt.encryptUrlSafe("")));
+	}
+
+	/**
+	 * Manipulated or foreign cipher texts are rejected
+	 */
+	@Test
+	public void rejectInvalid()
+	{
+		AesCrypt crypt = new AesCrypt();
+		String encrypted = crypt.encryptUrlSafe(TEXT);
+
+		char[] chars = encrypted.toCharArray();
+		chars[chars.length / 2] = chars[chars.length / 2] == 'A' ? 'B' : 'A';
+		assertNull(crypt.decryptUrlSafe(new String(chars)));
+		assertNull(crypt.decryptUrlSafe("style.css"));
+
+		AesCrypt other = new AesCrypt();
+		other.setKey("other");
+		assertNull(other.decryptUrlSafe(encrypted));
+	}
+
+	/**
+	 * Changing the key discards the derived keys
+	 */
+	@Test
+	public void changeKey()
+	{
+		AesCrypt aes = new AesCrypt();
+		String aesEncrypted = aes.encryptUrlSafe(TEXT);
+		aes.setKey("changed");
+		assertFalse(aesEncrypted.equals(aes.encryptUrlSafe(TEXT)));
+
+		SunJceCrypt sunJce = new SunJceCrypt();
+		String sunJceEncrypted = sunJce.encryptUrlSafe(TEXT);
+		sunJce.setKey("changed");
+		assertFalse(sunJceEncrypted.equals(sunJce.encryptUrlSafe(TEXT)));
+		assertEquals(TEXT, sunJce.decryptUrlSafe(sunJce.encryptUrlSafe(TEXT)));
+	}
+
+	/**
+	 * The pooled ciphers can be used by concurrent threads
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void concurrentUse() throws Exception
+	{
+		final ICrypt[] crypts = { new AesCrypt(), new SunJceCrypt() };
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 200; i++)
+			{
+				final ICrypt crypt = crypts[i % 2];
+				final String text = TEXT + i;
+				results.add(executor.submit(new Callable<Boolean>()
+				{
+					@Override
+					public Boolean call() throws Exception
+					{
+						return text.equals(crypt.decryptUrlSafe(crypt.encryptUrlSafe(text)));
+					}
+				}));
+			}
+			for (Future<Boolean> result : results)
+			{
+				assertTrue(result.get());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}